@@ -23,10 +23,15 @@ import genj.gedcom.Entity;
 import genj.gedcom.Gedcom;
 import genj.gedcom.GedcomListener;
 import genj.gedcom.Property;
+import genj.gedcom.PropertyAge;
+import genj.gedcom.PropertyChange;
 import genj.gedcom.PropertyDate;
+import genj.gedcom.PropertyName;
 import genj.gedcom.PropertyNumericValue;
 import genj.gedcom.PropertySex;
+import genj.gedcom.PropertyXRef;
 
+import java.text.Collator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -180,4 +185,92 @@ public abstract class AbstractPropertyTableModel implements PropertyTableModel,
   /*package*/ static int defaultCompare(Property valueA, Property valueB, int col) {
     return valueA.compareTo(valueB);
   }
+
+  /**
+   * A sort key for a property - comparing keys has to yield the same result as
+   * comparing properties via {@link #compare(Property, Property, int)}
+   */
+  public Comparable<?> getSortKey(Property property, int row, int col) {
+    return defaultSortKey(property);
+  }
+  
+  /*package*/ static Comparable<?> defaultSortKey(Property property) {
+    
+    // these know how to compare themselves
+    if (property instanceof Entity
+      ||property instanceof PropertyDate
+      ||property instanceof PropertyAge
+      ||property instanceof PropertyChange
+      ||property instanceof PropertyNumericValue)
+      return new SortKey(property, null);
+    
+    // names compare last and first name
+    if (property instanceof PropertyName) {
+      PropertyName name = (PropertyName)property;
+      return new SortKey(property, new Comparable<?>[]{ 
+        collate(property, name.getLastName()), collate(property, name.getFirstName()) 
+      });
+    }
+    
+    // references compare their targets - a target's display value can change 
+    // without the reference changing (see isSortKeyShared)
+    if (property instanceof PropertyXRef) {
+      Entity target = ((PropertyXRef)property).getTargetEntity();
+      if (target!=null)
+        return new SortKey(property, new Comparable<?>[]{ collate(property, target.toString()) });
+    }
+    
+    // everything else compares display values
+    return new SortKey(property, new Comparable<?>[]{ collate(property, property.getDisplayValue()) });
+  }
+  
+  /**
+   * Whether a sort key of a property depends on other entities than the
+   * property's own - such keys might be stale after any change to the gedcom
+   */
+  public static boolean isSortKeyShared(Property property) {
+    return property instanceof PropertyXRef && ((PropertyXRef)property).getTargetEntity()!=null;
+  }
+  
+  /** 
+   * a gedcom language aware key for a string (see Property.compare(String,String))
+   */
+  private static Comparable<?> collate(Property property, String value) {
+    if (value==null)
+      value = "";
+    Gedcom ged = property.getGedcom();
+    if (ged==null)
+      return value;
+    Collator collator = ged.getCollator();
+    return collator.getCollationKey(value);
+  }
+  
+  /**
+   * A cached sort key - either precomputed collation keys or the property itself 
+   */
+  private static class SortKey implements Comparable<SortKey> {
+    
+    private Property property;
+    private Comparable<?>[] keys;
+    
+    private SortKey(Property property, Comparable<?>[] keys) {
+      this.property = property;
+      this.keys = keys;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public int compareTo(SortKey that) {
+      // fallback to property comparison
+      if (this.keys==null||that.keys==null)
+        return this.property.compareTo(that.property);
+      // compare keys
+      for (int i=0, j=Math.min(this.keys.length, that.keys.length); i<j; i++) {
+        int result = ((Comparable<Object>)this.keys[i]).compareTo(that.keys[i]);
+        if (result!=0)
+          return result;
+      }
+      return this.keys.length - that.keys.length;
+    }
+  } //SortKey
+  
 }
@@ -22,6 +22,8 @@ package genj.common;
 import genj.gedcom.Context;
 import genj.gedcom.Entity;
 import genj.gedcom.Gedcom;
+import genj.gedcom.GedcomListener;
+import genj.gedcom.GedcomListenerAdapter;
 import genj.gedcom.Property;
 import genj.gedcom.PropertyDate;
 import genj.gedcom.PropertyName;
@@ -51,6 +53,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.text.Collator;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.StringTokenizer;
 import java.util.logging.Logger;
@@ -75,6 +78,8 @@ import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
 import javax.swing.table.TableModel;
 
+import spin.Spin;
+
 /**
  * A widget that shows entities in rows and columns
  */
@@ -701,7 +706,7 @@ public class PropertyTableWidget extends JPanel  {
     /**
      * The logical model
      */
-    private class Model extends AbstractTableModel implements PropertyTableModelListener, SortableTableModel.RowComparator {
+    private class Model extends AbstractTableModel implements PropertyTableModelListener, SortableTableModel.RowComparator, SortableTableModel.RowKeyProvider {
       
       /** our model */
       private PropertyTableModel model;
@@ -709,6 +714,16 @@ public class PropertyTableWidget extends JPanel  {
       /** cached table content */
       private Property cells[][];
       
+      /** columns with sort keys depending on other entities */
+      private BitSet sharedKeys = new BitSet();
+      
+      /** sort again after changes that might have left shared keys stale */
+      private GedcomListener callback = (GedcomListener)Spin.over(new GedcomListenerAdapter() {
+        public void gedcomWriteLockReleased(Gedcom gedcom) {
+          sortableModel.refreshSortKeys();
+        }
+      });
+      
       /** constructor */
       private Model(PropertyTableModel set) {
         // setup state
@@ -755,16 +770,20 @@ public class PropertyTableWidget extends JPanel  {
       public void addTableModelListener(TableModelListener l) {
         super.addTableModelListener(l);
         // start listening ?
-        if (model!=null&&getListeners(TableModelListener.class).length==1)
+        if (model!=null&&getListeners(TableModelListener.class).length==1) {
           model.addListener(this);
+          model.getGedcom().addGedcomListener(callback);
+        }
       }
       
       /** someone lost interest */
       public void removeTableModelListener(TableModelListener l) {
         super.removeTableModelListener(l);
         // stop listening ?
-        if (model!=null&&getListeners(TableModelListener.class).length==0)
+        if (model!=null&&getListeners(TableModelListener.class).length==0) {
           model.removeListener(this);
+          model.getGedcom().removeGedcomListener(callback);
+        }
       }
       
       @Override
@@ -774,6 +793,23 @@ public class PropertyTableWidget extends JPanel  {
         return AbstractPropertyTableModel.defaultCompare((Property)valueA,(Property)valueB, col);
       }
       
+      public Comparable<?> getSortKey(int row, int col) {
+        Property prop = getPropertyAt(row, col);
+        if (prop==null)
+          return null;
+        if (AbstractPropertyTableModel.isSortKeyShared(prop))
+          sharedKeys.set(col);
+        if (propertyModel instanceof AbstractPropertyTableModel)
+          return ((AbstractPropertyTableModel)propertyModel).getSortKey(prop, row, col);
+        return AbstractPropertyTableModel.defaultSortKey(prop);
+      }
+      
+      public int getSortKeyStamp(int col) {
+        // shared keys are good until the gedcom changes
+        Gedcom gedcom = getGedcom();
+        return gedcom!=null&&sharedKeys.get(col) ? gedcom.getChangeStamp() : 0;
+      }
+      
       /**
        *  patched column name
        */
@@ -52,7 +52,7 @@ public class CSVFormat extends Format {
     Transformer transformer = getTemplates("./contrib/xslt/fo2csv.xsl").newTransformer();
     
     // do the transformation
-    transformer.transform(doc.getDOMSource(), new StreamResult(out));
+    transformer.transform(doc.getSource(), new StreamResult(out));
 
     // done
   }
@@ -0,0 +1,138 @@
+/**
+ * GenJ - GenealogyJ
+ *
+ * Copyright (C) 1997 - 2002 Nils Meier <nils@meiers.net>
+ *
+ * This piece of code is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package genj.fo;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedList;
+
+import org.xml.sax.Attributes;
+
+/**
+ * Format for CSV written directly - the same values as ./contrib/xslt/fo2csv.xsl
+ * without an XSLT transformation
+ */
+public class DirectCSVFormat extends DirectFormat {
+
+  /**
+   * Constructor
+   */
+  public DirectCSVFormat() {
+    super("CSV (direct)", "csv", true);
+  }
+
+  /**
+   * We don't support documents with csv tables inside
+   */
+  public boolean supports(Document doc) {
+    return doc.containsCSV();
+  }
+
+  /**
+   * Our handler
+   */
+  protected Handler createHandler(Writer out) {
+    return new CSVHandler(out);
+  }
+
+  /**
+   * Writing one line per row of tables marked with genj:csv=true
+   */
+  private static class CSVHandler extends Handler {
+
+    /** name and csv prefix of open elements (outside of cells) */
+    private LinkedList<String[]> frames = new LinkedList<String[]>();
+
+    /** whether the current row has a cell already */
+    private boolean isCell;
+
+    /** text of current cell */
+    private StringBuffer cell;
+
+    /** depth of elements in current cell */
+    private int depth;
+
+    private CSVHandler(Writer out) {
+      super(out);
+    }
+
+    protected boolean start(String name, Attributes atts) throws IOException {
+
+      // in a cell?
+      if (cell!=null) {
+        depth++;
+        return true;
+      }
+
+      if (name.equals("table")&&!"true".equals(atts.getValue("genj:csv")))
+        return false;
+
+      // cells of a row only
+      String[] parent = frames.isEmpty() ? null : frames.getLast();
+      if (parent!=null&&parent[0].equals("table-row")) {
+        if (!name.equals("table-cell"))
+          return false;
+        if (isCell)
+          out.write(';');
+        isCell = true;
+        cell = new StringBuffer();
+        depth = 0;
+        return true;
+      }
+
+      // row with prefix of table?
+      if (name.equals("table-row")) {
+        String prefix = frames.size()<2 ? null : frames.get(frames.size()-2)[1];
+        if (prefix!=null) {
+          out.write(prefix);
+          out.write(';');
+        }
+        isCell = false;
+      }
+
+      frames.add(new String[]{ name, atts.getValue("genj:csvprefix") });
+      return true;
+    }
+
+    protected void end(String name) throws IOException {
+
+      // in a cell?
+      if (cell!=null) {
+        if (depth-->0)
+          return;
+        out.write(cell.toString());
+        cell = null;
+        return;
+      }
+
+      if (name.equals("table-row"))
+        out.write('\n');
+
+      frames.removeLast();
+    }
+
+    protected void text(char[] ch, int start, int length) throws IOException {
+      if (cell!=null)
+        cell.append(ch, start, length);
+    }
+
+  } //CSVHandler
+
+}
@@ -0,0 +1,165 @@
+/**
+ * GenJ - GenealogyJ
+ *
+ * Copyright (C) 1997 - 2002 Nils Meier <nils@meiers.net>
+ *
+ * This piece of code is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package genj.fo;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A format writing a document directly while walking its stream of events -
+ * instead of transforming the document with a stylesheet. Output is written
+ * as it is generated, nothing but the path to the current element is kept.
+ */
+public abstract class DirectFormat extends Format {
+
+  /**
+   * Constructor
+   */
+  protected DirectFormat(String format, String extension, boolean isExternalizedFiles) {
+    super(format, extension, isExternalizedFiles);
+  }
+
+  /**
+   * Formatting logic
+   */
+  protected void formatImpl(Document doc, OutputStream out) throws Throwable {
+
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), 64*1024);
+
+    // walk the document
+    try {
+      doc.stream(createHandler(writer));
+    } catch (SAXException e) {
+      if (e.getException() instanceof IOException)
+        throw e.getException();
+      throw e;
+    }
+
+    writer.flush();
+
+    // done
+  }
+
+  /**
+   * Create the handler of the document's events writing the output
+   */
+  protected abstract Handler createHandler(Writer out);
+
+  /**
+   * A handler of a document's events - keeping track of elements that are skipped
+   * and of the number of characters seen (skipped or not)
+   */
+  protected static abstract class Handler extends DefaultHandler {
+
+    /** current output */
+    protected Writer out;
+
+    /** depth of elements skipped */
+    private int skip = 0;
+
+    /** number of characters seen */
+    private long numChars = 0;
+
+    /**
+     * Constructor
+     */
+    protected Handler(Writer out) {
+      this.out = out;
+    }
+
+    /**
+     * Number of characters seen so far - text of an element is
+     * empty if this didn't change between its start and end
+     */
+    protected long getNumChars() {
+      return numChars;
+    }
+
+    /**
+     * Start of an element
+     * @return false to skip the element and its content
+     */
+    protected abstract boolean start(String name, Attributes atts) throws IOException;
+
+    /**
+     * End of an element that wasn't skipped
+     */
+    protected abstract void end(String name) throws IOException;
+
+    /**
+     * Text in an element that wasn't skipped
+     */
+    protected abstract void text(char[] ch, int start, int length) throws IOException;
+
+    /**
+     * sax callback - element start
+     */
+    public final void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+      if (skip>0) {
+        skip++;
+        return;
+      }
+      try {
+        if (!start(localName.length()>0 ? localName : qName, atts))
+          skip = 1;
+      } catch (IOException e) {
+        throw new SAXException(e);
+      }
+    }
+
+    /**
+     * sax callback - element end
+     */
+    public final void endElement(String uri, String localName, String qName) throws SAXException {
+      if (skip>0) {
+        skip--;
+        return;
+      }
+      try {
+        end(localName.length()>0 ? localName : qName);
+      } catch (IOException e) {
+        throw new SAXException(e);
+      }
+    }
+
+    /**
+     * sax callback - text
+     */
+    public final void characters(char[] ch, int start, int length) throws SAXException {
+      numChars += length;
+      if (skip>0)
+        return;
+      try {
+        text(ch, start, length);
+      } catch (IOException e) {
+        throw new SAXException(e);
+      }
+    }
+
+  } //Handler
+
+} //DirectFormat
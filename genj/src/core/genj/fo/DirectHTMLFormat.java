@@ -0,0 +1,846 @@
+/**
+ * GenJ - GenealogyJ
+ *
+ * Copyright (C) 1997 - 2002 Nils Meier <nils@meiers.net>
+ *
+ * This piece of code is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package genj.fo;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Format for HTML written directly - the same markup as ./contrib/xslt/fo2html.xsl
+ * for the elements a document consists of, without an XSLT transformation.
+ * Characters beyond Latin-1 are written as is instead of as entity references.
+ */
+public class DirectHTMLFormat extends DirectFormat {
+
+  /** how children of an element are handled */
+  private final static int
+    ROOT = 0,      // page sequences only
+    LAYOUT = 1,    // page masters are remembered
+    SEQUENCE = 2,  // flow and static content only
+    CONTENT = 3,   // elements and text
+    PRE = 4,       // elements and text - elements that preserve whitespace wrapped in <pre>
+    DISPLAY = 5,   // table cells and text
+    LIST = 6,      // list items only
+    ITEM = 7,      // list item label and body only
+    NONE = 8;      // nothing
+
+  /** attributes copied to css style as is */
+  private final static Set<String> CSS = new HashSet<String>(Arrays.asList(new String[]{
+    "color", "background", "background-color", "background-image", "background-position", "background-repeat",
+    "padding", "padding-top", "padding-bottom", "padding-right", "padding-left",
+    "margin", "margin-top", "margin-bottom", "margin-right", "margin-left",
+    "border", "border-top", "border-bottom", "border-right", "border-left",
+    "border-width", "border-top-width", "border-bottom-width", "border-right-width", "border-left-width",
+    "border-color", "border-top-color", "border-bottom-color", "border-right-color", "border-left-color",
+    "border-style", "border-top-style", "border-bottom-style", "border-right-style", "border-left-style",
+    "letter-spacing", "word-spacing", "line-height", "font", "font-family", "font-size", "font-weight", "font-style",
+    "font-variant", "vertical-align", "text-decoration", "text-indent", "text-transform"
+  }));
+
+  /** writing-mode relative attributes mapped to css style */
+  private final static Set<String> RELATIVE = new HashSet<String>();
+
+  private final static String[] SIDES = { "before", "after", "start", "end" };
+
+  static {
+    for (int i=0;i<SIDES.length;i++) {
+      String side = SIDES[i];
+      RELATIVE.addAll(Arrays.asList(new String[]{
+        "padding-"+side, "padding-"+side+".length", "margin-"+side, "border-"+side,
+        "border-"+side+"-width", "border-"+side+"-width.length", "border-"+side+"-color", "border-"+side+"-style"
+      }));
+    }
+  }
+
+  /** entity names of characters 160-255 */
+  private final static String[] LATIN1 = (
+    "nbsp iexcl cent pound curren yen brvbar sect uml copy ordf laquo not shy reg macr "+
+    "deg plusmn sup2 sup3 acute micro para middot cedil sup1 ordm raquo frac14 frac12 frac34 iquest "+
+    "Agrave Aacute Acirc Atilde Auml Aring AElig Ccedil Egrave Eacute Ecirc Euml Igrave Iacute Icirc Iuml "+
+    "ETH Ntilde Ograve Oacute Ocirc Otilde Ouml times Oslash Ugrave Uacute Ucirc Uuml Yacute THORN szlig "+
+    "agrave aacute acirc atilde auml aring aelig ccedil egrave eacute ecirc euml igrave iacute icirc iuml "+
+    "eth ntilde ograve oacute ocirc otilde ouml divide oslash ugrave uacute ucirc uuml yacute thorn yuml"
+  ).split(" ");
+
+  private final static String HEAD =
+    "<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.0 Transitional//EN\">\n"+
+    "<html xmlns:genj=\"http://genj.sourceforge.net/XSL/Format\"><head>"+
+    "<META http-equiv=\"Content-Type\" content=\"text/html; charset=utf-8\"><title>";
+
+  private final static String BODY =
+    "</title><META http-equiv=\"Content-Style-Type\" content=\"text/css\"><style type=\"text/css\">\n"+
+    "        a { color: black; border: none; text-decoration: underline; }\n"+
+    "        img { border: none; }\n"+
+    "      </style></head><body bgcolor=\"white\" marginwidth=\"6\" marginheight=\"6\" leftmargin=\"6\" topmargin=\"6\">";
+
+  /**
+   * Constructor
+   */
+  public DirectHTMLFormat() {
+    super("HTML (direct)", "html", true);
+  }
+
+  /**
+   * Our handler
+   */
+  protected Handler createHandler(Writer out) {
+    return new HTMLHandler(out);
+  }
+
+  /**
+   * Writing HTML for elements
+   */
+  private static class HTMLHandler extends Handler {
+
+    /** open elements */
+    private LinkedList<Frame> frames = new LinkedList<Frame>();
+
+    /** page masters - regions by name */
+    private Map<String, Map<String, Attributes>> masters = new HashMap<String, Map<String, Attributes>>();
+
+    private HTMLHandler(Writer out) {
+      super(out);
+    }
+
+    /**
+     * element start
+     */
+    protected boolean start(String name, Attributes atts) throws IOException {
+
+      Frame parent = frames.isEmpty() ? null : frames.getLast();
+      Frame frame = new Frame(name);
+
+      // root
+      if (parent==null) {
+        String title = atts.getValue("genj:title");
+        out.write(HEAD);
+        escape(title!=null ? title : "XSL FO Document");
+        out.write(BODY);
+        frame.mode = ROOT;
+        frame.end = "</body></html>";
+        return push(frame);
+      }
+
+      switch (parent.mode) {
+        case ROOT:
+          if (name.equals("layout-master-set")) {
+            frame.mode = LAYOUT;
+            return push(frame);
+          }
+          if (name.equals("page-sequence")) {
+            out.write("<br>");
+            frame.master = masters.get(atts.getValue("master-reference"));
+            frame.mode = SEQUENCE;
+            frame.headers = new ArrayList<CharArrayWriter>();
+            frame.footers = new ArrayList<CharArrayWriter>();
+            return push(frame);
+          }
+          return false;
+        case LAYOUT:
+          if (name.equals("simple-page-master")) {
+            frame.master = new HashMap<String, Attributes>();
+            masters.put(atts.getValue("master-name"), frame.master);
+          } else if (parent.master!=null) {
+            parent.master.put(name, new AttributesImpl(atts));
+          }
+          frame.mode = LAYOUT;
+          return push(frame);
+        case SEQUENCE:
+          if (name.equals("static-content")) {
+            Attributes before = region(parent, "region-before"), after = region(parent, "region-after");
+            frame.header = isFlow(atts, before, "before");
+            frame.footer = isFlow(atts, after, "after");
+            if (!frame.header&&!frame.footer)
+              return false;
+            frame.previous = out;
+            out = new CharArrayWriter();
+            flow(frame, atts, frame.header ? before : after, true);
+            return push(frame);
+          }
+          if (name.equals("flow")) {
+            writeHeaders(parent);
+            flow(frame, atts, region(parent, "region-body"), false);
+            return push(frame);
+          }
+          return false;
+        case LIST:
+          if (!name.equals("list-item"))
+            return false;
+          out.write("<tr");
+          style(name, atts);
+          out.write('>');
+          frame.labelWidth = parent.labelWidth;
+          frame.gapWidth = parent.gapWidth;
+          frame.mode = ITEM;
+          frame.end = "</tr>";
+          return push(frame);
+        case ITEM:
+          if (name.equals("list-item-label")) {
+            cell(frame, atts, parent.labelWidth);
+            return push(frame);
+          }
+          if (name.equals("list-item-body")) {
+            writeGap(parent);
+            cell(frame, atts, null);
+            return push(frame);
+          }
+          return false;
+        case NONE:
+          return false;
+      }
+
+      // content - anything but table cells is transparent for display
+      if (parent.mode==DISPLAY) {
+        if (name.equals("table-cell")) {
+          out.write("<td");
+          style(name, atts);
+          if (atts.getValue("display-align")==null)
+            attribute("valign", "top");
+          for (int i=0;i<atts.getLength();i++) {
+            if (atts.getQName(i).equals("number-columns-spanned"))
+              attribute("colspan", atts.getValue(i));
+            if (atts.getQName(i).equals("number-rows-spanned"))
+              attribute("rowspan", atts.getValue(i));
+          }
+          out.write('>');
+          frame.chars = getNumChars();
+          frame.previous = out;
+          out = new CharArrayWriter();
+          frame.mode = PRE;
+        } else {
+          frame.mode = DISPLAY;
+        }
+        return push(frame);
+      }
+
+      // whitespace preserved?
+      if (parent.mode==PRE&&isPre(atts)) {
+        out.write("<pre>");
+        frame.pre = true;
+      }
+
+      frame.mode = CONTENT;
+
+      if (name.equals("block")) {
+        anchor(atts);
+        out.write("<div");
+        style(name, atts);
+        out.write('>');
+        frame.mode = PRE;
+        frame.end = "</div>";
+      } else if (name.equals("inline")||name.equals("wrapper")) {
+        anchor(atts);
+        out.write("<span");
+        style(name, atts);
+        out.write('>');
+        frame.end = "</span>";
+      } else if (name.equals("list-block")) {
+        String separation = atts.getValue("provisional-label-separation");
+        separation = separation!=null ? toPixels(separation) : "8";
+        String offset = atts.getValue("provisional-distance-between-starts");
+        offset = offset!=null ? toPixels(offset) : "32";
+        frame.labelWidth = string(number(offset) - number(separation));
+        frame.gapWidth = separation;
+        out.write("<div");
+        style(name, atts);
+        out.write('>');
+        anchor(atts);
+        out.write("<table width=\"100%\">");
+        frame.mode = LIST;
+        frame.end = "</table></div>";
+      } else if (name.equals("table")) {
+        anchor(atts);
+        out.write("<table cellspacing=\"0\"");
+        style(name, atts);
+        if (atts.getValue("display-align")==null)
+          attribute("valign", "top");
+        if (atts.getValue("width")!=null)
+          attribute("width", atts.getValue("width"));
+        out.write('>');
+        frame.end = "</table>";
+      } else if (name.equals("table-column")) {
+        anchor(atts);
+        if (atts.getValue("column-width")!=null) {
+          out.write("<col");
+          attribute("width", atts.getValue("column-width"));
+          out.write('>');
+        }
+        frame.mode = NONE;
+      } else if (name.equals("table-header")||name.equals("table-footer")||name.equals("table-body")) {
+        String tag = name.equals("table-header") ? "thead" : name.equals("table-footer") ? "tfoot" : "tbody";
+        out.write("<"+tag);
+        style(name, atts);
+        out.write('>');
+        frame.end = "</"+tag+">";
+      } else if (name.equals("table-row")) {
+        out.write("<tr");
+        style(name, atts);
+        out.write('>');
+        frame.mode = DISPLAY;
+        frame.end = "</tr>";
+      } else if (name.equals("table-cell")) {
+        // cells outside of rows aren't shown
+        frame.mode = NONE;
+      } else if (name.equals("external-graphic")) {
+        anchor(atts);
+        out.write("<img");
+        uriAttribute("src", unbracket(atts.getValue("src")));
+        List<String> borders = new ArrayList<String>();
+        for (int i=0;i<atts.getLength();i++) {
+          String att = atts.getQName(i);
+          if (att.equals("width")||att.equals("height"))
+            attribute(att, toPixels(atts.getValue(i)));
+          if (att.startsWith("border"))
+            borders.add(atts.getValue(i));
+        }
+        out.write('>');
+        for (String border : borders)
+          escape(border);
+        frame.mode = NONE;
+      } else if (name.equals("basic-link")&&(atts.getValue("internal-destination")!=null||atts.getValue("external-destination")!=null)) {
+        anchor(atts);
+        out.write("<a");
+        if (atts.getValue("internal-destination")!=null)
+          uriAttribute("href", "#"+atts.getValue("internal-destination"));
+        else
+          uriAttribute("href", unbracket(atts.getValue("external-destination")));
+        style(name, atts);
+        out.write('>');
+        frame.end = "</a>";
+      } else if (name.equals("page-number")||name.equals("page-number-citation")) {
+        // replaced with citation if available
+        String citation = atts.getValue("genj:citation");
+        if (citation!=null) {
+          out.write("<a");
+          uriAttribute("href", "#"+nonNull(atts.getValue("ref-id")));
+          out.write(">[");
+          escape(citation);
+          out.write("]</a>");
+        }
+        frame.mode = NONE;
+      } else if (name.equals("leader")||name.equals("marker")||name.equals("retrieve-marker")) {
+        frame.mode = NONE;
+      }
+
+      return push(frame);
+    }
+
+    private boolean push(Frame frame) {
+      frames.add(frame);
+      return true;
+    }
+
+    /**
+     * element end
+     */
+    protected void end(String name) throws IOException {
+
+      Frame frame = frames.removeLast();
+
+      // table cell with text?
+      if (frame.chars>=0) {
+        CharArrayWriter content = (CharArrayWriter)out;
+        out = frame.previous;
+        if (frame.chars==getNumChars())
+          out.write("\n     &nbsp;\n    ");
+        else
+          content.writeTo(out);
+        out.write("</td>");
+      }
+
+      // list item without body?
+      if (frame.mode==ITEM)
+        writeGap(frame);
+
+      // page sequence
+      if (frame.mode==SEQUENCE) {
+        writeHeaders(frame);
+        for (CharArrayWriter footer : frame.footers)
+          footer.writeTo(out);
+        out.write("<br>");
+      }
+
+      if (frame.end!=null)
+        out.write(frame.end);
+
+      // header or footer
+      if (frame.header||frame.footer) {
+        CharArrayWriter content = (CharArrayWriter)out;
+        out = frame.previous;
+        Frame sequence = frames.getLast();
+        if (frame.header)
+          sequence.headers.add(content);
+        if (frame.footer)
+          sequence.footers.add(content);
+      }
+
+      if (frame.pre)
+        out.write("</pre>");
+    }
+
+    /**
+     * text
+     */
+    protected void text(char[] ch, int start, int length) throws IOException {
+      int mode = frames.getLast().mode;
+      if (mode==CONTENT||mode==PRE||mode==DISPLAY)
+        escape(ch, start, length);
+    }
+
+    private void escape(String s) throws IOException {
+      char[] ch = s.toCharArray();
+      escape(ch, 0, ch.length);
+    }
+
+    private void escape(char[] ch, int start, int length) throws IOException {
+      for (int i=start,j=start+length;i<j;i++)
+        escape(ch[i], ch, i, j);
+    }
+
+    private void escape(char c, char[] ch, int i, int j) throws IOException {
+      switch (c) {
+        case '<':
+          out.write("&lt;");
+          return;
+        case '>':
+          out.write("&gt;");
+          return;
+        case '&':
+          out.write("&amp;");
+          return;
+      }
+      character(c, ch, i, j);
+    }
+
+    /**
+     * write a character - as an entity reference if applicable
+     */
+    private void character(char c, char[] ch, int i, int j) throws IOException {
+      if (c>=160&&c<=255) {
+        out.write('&');
+        out.write(LATIN1[c-160]);
+        out.write(';');
+      } else if (c>=127&&c<160) {
+        out.write("&#"+(int)c+";");
+      } else if (Character.isHighSurrogate(c)&&i+1<j&&Character.isLowSurrogate(ch[i+1])) {
+        out.write("&#"+Character.toCodePoint(c, ch[i+1])+";");
+      } else if (Character.isLowSurrogate(c)&&i>0&&Character.isHighSurrogate(ch[i-1])) {
+        // written with high surrogate
+      } else {
+        out.write(c);
+      }
+    }
+
+    /**
+     * write an attribute
+     */
+    private void attribute(String name, String value) throws IOException {
+      out.write(' ');
+      out.write(name);
+      out.write("=\"");
+      char[] ch = value.toCharArray();
+      for (int i=0;i<ch.length;i++) {
+        char c = ch[i];
+        if (c=='&'&&(i+1==ch.length||ch[i+1]!='{'))
+          out.write("&amp;");
+        else if (c=='"')
+          out.write("&quot;");
+        else
+          character(c, ch, i, ch.length);
+      }
+      out.write('"');
+    }
+
+    /**
+     * write an attribute with a URI value - non-ascii characters are %-escaped
+     */
+    private void uriAttribute(String name, String value) throws IOException {
+      out.write(' ');
+      out.write(name);
+      out.write("=\"");
+      for (int i=0;i<value.length();i++) {
+        char c = value.charAt(i);
+        if (c=='&') {
+          out.write("&amp;");
+        } else if (c=='"') {
+          out.write("%22");
+        } else if (c<32||c>126) {
+          int end = Character.isHighSurrogate(c)&&i+1<value.length() ? i+2 : i+1;
+          byte[] bytes = utf8(value.substring(i, end));
+          for (int b=0;b<bytes.length;b++) {
+            out.write('%');
+            out.write(Character.toUpperCase(Character.forDigit((bytes[b]>>4)&0xf, 16)));
+            out.write(Character.toUpperCase(Character.forDigit(bytes[b]&0xf, 16)));
+          }
+          i = end-1;
+        } else {
+          out.write(c);
+        }
+      }
+      out.write('"');
+    }
+
+    private static byte[] utf8(String s) {
+      try {
+        return s.getBytes("UTF-8");
+      } catch (UnsupportedEncodingException e) {
+        throw new Error(e);
+      }
+    }
+
+    /**
+     * write an anchor for an element's id
+     */
+    private void anchor(Attributes atts) throws IOException {
+      String id = atts.getValue("id");
+      if (id!=null) {
+        out.write("<a");
+        uriAttribute("name", id);
+        out.write("></a>");
+      }
+    }
+
+    /**
+     * write style attribute for css compatible attributes of an element
+     */
+    private void style(String element, Attributes atts) throws IOException {
+      String style = collectStyle(element, atts, null);
+      if (style!=null)
+        attribute("style", style);
+    }
+
+    /**
+     * start a flow or static content
+     */
+    private void flow(Frame frame, Attributes atts, Attributes region, boolean isStatic) throws IOException {
+
+      String style = collectStyle(frame.name, atts, null);
+      String area = region==null ? null : collectStyle("region", region, isStatic ? new String[]{ "margin", "space", "padding" } : new String[]{ "margin", "space" });
+
+      out.write("<div");
+      if (style!=null)
+        attribute("style", area!=null ? area : style);
+      if (region!=null)
+        attribute("valign", region.getValue("display-align")!=null ? region.getValue("display-align") : "top");
+      if (style==null&&area!=null)
+        attribute("style", area);
+      out.write('>');
+      anchor(atts);
+
+      frame.mode = CONTENT;
+      frame.end = "</div>";
+    }
+
+    /**
+     * start a cell of a list item
+     */
+    private void cell(Frame frame, Attributes atts, String width) throws IOException {
+      out.write("<td valign=\"top\"");
+      style(frame.name, atts);
+      if (width!=null)
+        attribute("width", width);
+      out.write('>');
+      anchor(atts);
+      frame.mode = PRE;
+      frame.end = "</td>";
+    }
+
+    /**
+     * write the gap between list item label and body
+     */
+    private void writeGap(Frame item) throws IOException {
+      if (item.gapWidth==null)
+        return;
+      if (number(item.gapWidth)>0) {
+        out.write("<td");
+        attribute("width", item.gapWidth);
+        out.write(">&nbsp;</td>");
+      }
+      item.gapWidth = null;
+    }
+
+    /**
+     * write page sequence headers
+     */
+    private void writeHeaders(Frame sequence) throws IOException {
+      for (CharArrayWriter header : sequence.headers)
+        header.writeTo(out);
+      sequence.headers.clear();
+    }
+
+    /**
+     * a region of the page master of a page sequence
+     */
+    private Attributes region(Frame sequence, String name) {
+      return sequence.master!=null ? sequence.master.get(name) : null;
+    }
+
+    /**
+     * check whether a static content flows into region on given side
+     */
+    private boolean isFlow(Attributes atts, Attributes region, String side) {
+      String flow = atts.getValue("flow-name");
+      String name = region!=null ? region.getValue("region-name") : null;
+      if (name!=null)
+        return name.equals(flow);
+      return ("xsl-region-"+side).equals(flow);
+    }
+
+    /**
+     * check whether an element preserves whitespace
+     */
+    private boolean isPre(Attributes atts) {
+      return "false".equals(atts.getValue("white-space-collapse"))
+        || "preserve".equals(atts.getValue("linefeed-treatment"))
+        || "no-wrap".equals(atts.getValue("wrap-option"))
+        || "pre".equals(atts.getValue("white-space"));
+    }
+
+  } //HTMLHandler
+
+  /**
+   * Collect css style for attributes of an element
+   * @param exclude prefixes of attributes to ignore
+   * @return style or null if there are no attributes with a css equivalent
+   */
+  private static String collectStyle(String element, Attributes atts, String[] exclude) {
+
+    StringBuffer result = new StringBuffer();
+
+    for (int i=0;i<atts.getLength();i++) {
+      String name = atts.getQName(i), value = atts.getValue(i);
+      if (exclude!=null&&startsWith(name, exclude))
+        continue;
+      if (CSS.contains(name)) {
+        result.append(name);
+      } else if (name.equals("text-align")) {
+        result.append(name);
+        if (value.equals("start")||value.equals("inside"))
+          value = "left";
+        if (value.equals("end")||value.equals("outside"))
+          value = "right";
+      } else if (isRelative(element, name, atts)) {
+        // property
+        if (name.startsWith("border"))
+          result.append("border");
+        else if (name.startsWith("padding"))
+          result.append("padding");
+        else if (name.startsWith("margin")||name.startsWith("space")||name.indexOf("-indent")>=0)
+          result.append("margin");
+        // side
+        if (name.indexOf("-before")>=0||name.indexOf("-top")>=0)
+          result.append("-top");
+        else if (name.indexOf("-after")>=0||name.indexOf("-bottom")>=0)
+          result.append("-bottom");
+        else if (name.indexOf("-start")>=0||name.startsWith("start-")||name.indexOf("-left")>=0)
+          result.append("-left");
+        else if (name.indexOf("-end")>=0||name.startsWith("end-")||name.indexOf("-right")>=0)
+          result.append("-right");
+        // parameter
+        if (name.indexOf("-width")>=0)
+          result.append("-width");
+        else if (name.indexOf("-color")>=0)
+          result.append("-color");
+        else if (name.indexOf("-style")>=0)
+          result.append("-style");
+      } else {
+        continue;
+      }
+      result.append(": ").append(value).append("; ");
+    }
+
+    return result.length()==0 ? null : normalize(result.toString());
+  }
+
+  /**
+   * check whether an attribute of an element is relative to the writing-mode
+   */
+  private static boolean isRelative(String element, String name, Attributes atts) {
+    if (RELATIVE.contains(name))
+      return true;
+    if (name.equals("start-indent"))
+      return !element.equals("list-item-body");
+    if (name.equals("end-indent"))
+      return !element.equals("list-item-label");
+    // space-before.optimum over space-before over space-before.minimum over space-before.maximum
+    for (int i=0;i<SIDES.length;i++) {
+      String space = "space-"+SIDES[i];
+      if (!name.startsWith(space))
+        continue;
+      String[] precedence = { space+".optimum", space, space+".minimum", space+".maximum" };
+      for (int j=0;j<precedence.length;j++) {
+        if (name.equals(precedence[j]))
+          return true;
+        if (atts.getValue(precedence[j])!=null)
+          return false;
+      }
+    }
+    return false;
+  }
+
+  private static boolean startsWith(String name, String[] prefixes) {
+    for (int i=0;i<prefixes.length;i++) {
+      if (name.startsWith(prefixes[i]))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * collapse whitespace like xpath's normalize-space()
+   */
+  private static String normalize(String s) {
+    StringBuffer result = new StringBuffer(s.length());
+    boolean space = false;
+    for (int i=0;i<s.length();i++) {
+      char c = s.charAt(i);
+      if (c==' '||c=='\t'||c=='\n'||c=='\r') {
+        space = result.length()>0;
+      } else {
+        if (space)
+          result.append(' ');
+        result.append(c);
+        space = false;
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * remove url(...) and quotes around a url
+   */
+  private static String unbracket(String url) {
+    if (url==null)
+      return "";
+    String href = normalize(url);
+    if (!(href.startsWith("url(")||href.startsWith("url ("))||!href.endsWith(")"))
+      return url;
+    String bracketed = normalize(href.substring(3));
+    String quoted = bracketed.length()<2 ? "" : normalize(bracketed.substring(1, bracketed.length()-1));
+    if (quoted.length()>0) {
+      char first = quoted.charAt(0), last = quoted.charAt(quoted.length()-1);
+      if (first==last&&(first=='"'||first=='\''))
+        return quoted.length()<2 ? "" : quoted.substring(1, quoted.length()-1);
+    }
+    return quoted;
+  }
+
+  /**
+   * Convert a length to pixels - 1 in = 96 px, 1 em = 1 pc
+   */
+  private static String toPixels(String length) {
+    double factor = 1;
+    if (length.indexOf("pt")>=0) factor = 1.33;
+    else if (length.indexOf("px")>=0) factor = 1;
+    else if (length.indexOf("pc")>=0) factor = 16;
+    else if (length.indexOf("in")>=0) factor = 96;
+    else if (length.indexOf("cm")>=0) factor = 37.8;
+    else if (length.indexOf("mm")>=0) factor = 3.78;
+    else if (length.indexOf("em")>=0) factor = 16;
+    StringBuffer digits = new StringBuffer(length.length());
+    for (int i=0;i<length.length();i++) {
+      if ("ptxcinme".indexOf(length.charAt(i))<0)
+        digits.append(length.charAt(i));
+    }
+    return string(number(digits.toString()) * factor);
+  }
+
+  /**
+   * a number like xpath's number()
+   */
+  private static double number(String s) {
+    s = normalize(s);
+    if (!s.matches("-?([0-9]+(\\.[0-9]*)?|\\.[0-9]+)"))
+      return Double.NaN;
+    return Double.parseDouble(s);
+  }
+
+  /**
+   * a string for a number like xpath's string()
+   */
+  private static String string(double d) {
+    if (Double.isNaN(d))
+      return "NaN";
+    if (Double.isInfinite(d))
+      return d>0 ? "Infinity" : "-Infinity";
+    if (d==0)
+      return "0";
+    double abs = Math.abs(d);
+    if (abs<1E-3||abs>=1E7)
+      return new BigDecimal(Double.toString(d)).toPlainString();
+    String result = Double.toString(d);
+    return result.endsWith(".0") ? result.substring(0, result.length()-2) : result;
+  }
+
+  private static String nonNull(String s) {
+    return s==null ? "" : s;
+  }
+
+  /**
+   * An open element
+   */
+  private static class Frame {
+
+    private String name;
+
+    /** how children are handled */
+    private int mode;
+
+    /** markup closing the element */
+    private String end;
+
+    /** whether element is wrapped in <pre> */
+    private boolean pre;
+
+    /** number of characters seen before table cell - or -1 */
+    private long chars = -1;
+
+    /** output before content was buffered */
+    private Writer previous;
+
+    /** regions of page master (of page sequence) and buffered headers/footers */
+    private Map<String, Attributes> master;
+    private List<CharArrayWriter> headers, footers;
+    private boolean header, footer;
+
+    /** list block or item's label and gap width */
+    private String labelWidth, gapWidth;
+
+    private Frame(String name) {
+      this.name = name;
+    }
+
+  } //Frame
+
+}
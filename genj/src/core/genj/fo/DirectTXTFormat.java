@@ -0,0 +1,90 @@
+/**
+ * GenJ - GenealogyJ
+ *
+ * Copyright (C) 1997 - 2002 Nils Meier <nils@meiers.net>
+ *
+ * This piece of code is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package genj.fo;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedList;
+
+import org.xml.sax.Attributes;
+
+/**
+ * Format for text written directly - the same text as ./contrib/xslt/fo2txt.xsl
+ * without an XSLT transformation
+ */
+public class DirectTXTFormat extends DirectFormat {
+
+  /**
+   * Constructor
+   */
+  public DirectTXTFormat() {
+    super("Text (direct)", "txt", false);
+  }
+
+  /**
+   * Our handler
+   */
+  protected Handler createHandler(Writer out) {
+    return new TXTHandler(out);
+  }
+
+  /**
+   * Writing text of blocks - one line per block with text, tables are skipped
+   * and list item labels replaced with a '+'
+   */
+  private static class TXTHandler extends Handler {
+
+    /** number of characters seen before open blocks - or -1 for other elements */
+    private LinkedList<Long> chars = new LinkedList<Long>();
+
+    private TXTHandler(Writer out) {
+      super(out);
+    }
+
+    protected boolean start(String name, Attributes atts) throws IOException {
+      if (name.equals("table"))
+        return false;
+      if (name.equals("list-item-label")) {
+        out.write('+');
+        return false;
+      }
+      if (name.equals("block")) {
+        if (atts.getValue("start-indent")!=null)
+          out.write(' ');
+        chars.add(new Long(getNumChars()));
+      } else {
+        chars.add(new Long(-1));
+      }
+      return true;
+    }
+
+    protected void end(String name) throws IOException {
+      long before = chars.removeLast().longValue();
+      if (before>=0&&before!=getNumChars())
+        out.write('\n');
+    }
+
+    protected void text(char[] ch, int start, int length) throws IOException {
+      out.write(ch, start, length);
+    }
+
+  } //TXTHandler
+
+}
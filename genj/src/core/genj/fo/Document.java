@@ -24,8 +24,17 @@ import genj.util.ImageSniffer;
 import genj.util.Resources;
 
 import java.awt.geom.Dimension2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -33,14 +42,22 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.Source;
+import javax.xml.transform.sax.SAXSource;
 
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
 
 /**
  * An abstract layer above docbook handling and transformations.
@@ -58,6 +75,12 @@ import org.w3c.dom.Node;
  * <li><a href="http://xmlgraphics.apache.org/fop/resources.html">The Apache FOP Resources page</a>
  * <li><a ref="http://www.renderx.com/demos/src_examples.html">Samples at renderx.com</a>
  * </ul>
+ *
+ * <p>The document is kept as a lightweight tree of elements. Once a document grows
+ * large, content that can't change anymore (everything but the elements on the
+ * way to the current position) is spilled to a temporary file and streamed from
+ * there as SAX events when the document is formatted - memory stays bounded
+ * independent of the size of a report.
  */
 public class Document {
   /** Symbolic constant for font size for sections.
@@ -80,6 +103,21 @@ public class Document {
 
   private final static Resources RESOURCES = Resources.get(Document.class);
   
+  private final static Logger LOG = Logger.getLogger("genj.fo");
+  
+  /** number of elements after which content is spilled to disk */
+  private final static int SPILL_THRESHOLD = 20000;
+  
+  /** number of children an element collects before they are spilled */
+  private final static int SPILL_CHILDREN = 64;
+  
+  /** records of spilled content */
+  private final static int 
+    SPILL_START = 1,
+    SPILL_TEXT = 2,
+    SPILL_END = 3,
+    SPILL_REF = 4;
+  
   /** matching a=b,c-d=e,f:g=h,x=y(m,n,o),z=1 */
   protected final static Pattern REGEX_ATTR = Pattern.compile("([^,]+)=([^,\\(]*(\\(.*?\\))?)");
   
@@ -88,11 +126,11 @@ public class Document {
     NS_XSLFO = "http://www.w3.org/1999/XSL/Format",
     NS_GENJ = "http://genj.sourceforge.net/XSL/Format";
   
-  private org.w3c.dom.Document doc;
+  private Element root;
   private Element cursor;
   private String title;
   private boolean needsTOC = false;
-  private Map file2elements = new HashMap();
+  private Map<File, String> image2src = new HashMap<File, String>();
   private List toc = new ArrayList();
   private String formatSection = "font-weight=bold,space-before=0.5cm,space-after=0.2cm,keep-with-next.within-page=always";
   private String formatSectionLarger = "font-size=larger," + formatSection;
@@ -104,24 +142,30 @@ public class Document {
   private Map index2primary2secondary2elements = new TreeMap();
   private int idSequence = 0;
   private boolean containsCSV = false;
+  private int numElements = 0, spillThreshold;
+  private File spillFile;
+  private SpillOutputStream spillOut;
+  private boolean disposed = false;
   
   /**
    * Constructor
    */
   public Document(String title) {
+    this(title, SPILL_THRESHOLD);
+  }
+  
+  /**
+   * Constructor
+   * @param spillThreshold number of elements after which content is spilled to disk
+   */
+  /*package*/ Document(String title, int spillThreshold) {
     
     // remember title
     this.title = title;
+    this.spillThreshold = spillThreshold;
 
     // section size range
     setSectionSizes(FONT_MEDIUM, FONT_XX_LARGE);
-    // create a dom document
-    try {
-      DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-      doc = dbf.newDocumentBuilder().newDocument();
-    } catch (Throwable t) {
-      throw new RuntimeException(t);
-    }
     
     // boilerplate
     //  <root>
@@ -137,13 +181,11 @@ public class Document {
     //     <block/>
     //    </flow>
     //   </page-sequence>
-    cursor = (Element)doc.appendChild(doc.createElementNS(NS_XSLFO, "root")); 
-    cursor.setAttribute("xmlns", NS_XSLFO);
-    cursor.setAttribute("xmlns:genj", NS_GENJ);
+    root = cursor = new Element("root", null); 
 
     // FOP crashes when a title element is present so we use an extension to pass it to our fo2html stylesheet
     // @see http://issues.apache.org/bugzilla/show_bug.cgi?id=38710
-    cursor.setAttributeNS(NS_GENJ, "genj:title", title);
+    cursor.setAttribute("genj:title", title);
     
     push("layout-master-set");
     // Tip: see also http://www.dpawson.co.uk/xsl/sect3/N8565.html for a minimal page master.
@@ -261,6 +303,27 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
     
     // done
     cursor = null;
+    if (spillOut!=null) try {
+      spillOut.flush();
+    } catch (IOException e) {
+      throw new RuntimeException("can't write "+spillFile, e);
+    }
+  }
+  
+  /**
+   * Cleanup content spilled to disk - a document that was spilled can't be
+   * formatted afterwards, one kept in memory can
+   */
+  public void dispose() {
+    disposed = true;
+    spillThreshold = Integer.MAX_VALUE;
+    if (spillOut!=null) try {
+      spillOut.close();
+    } catch (IOException e) {
+      // ignored
+    }
+    if (spillFile!=null&&!spillFile.delete()&&spillFile.exists())
+      LOG.warning("can't delete "+spillFile);
   }
   
   /**
@@ -271,10 +334,19 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
   }
   
   /**
-   * Access to DOM source
+   * Access to the document as a source of SAX events
+   */
+  /*package*/ Source getSource() {
+    return new SAXSource(new Replay(), new InputSource());
+  }
+  
+  /**
+   * Stream the document as SAX events to given handler
    */
-  /*package*/ DOMSource getDOMSource() {
-    return new DOMSource(doc);
+  /*package*/ void stream(ContentHandler handler) throws IOException, SAXException {
+    Replay replay = new Replay();
+    replay.setContentHandler(handler);
+    replay.parse(new InputSource());
   }
   
   /**
@@ -326,9 +398,8 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
     if (id!=null&&id.startsWith("_"))
       throw new IllegalArgumentException("underscore is reserved for internal IDs");
     
-    // return to the last block in flow
+    // return to flow
     pop("flow", "addSection() is not applicable outside document flow");
-    cursor = (Element)cursor.getLastChild();
     
     // generate an id if necessary
     if (id==null||id.length()==0)
@@ -336,7 +407,7 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
       
     // start a new block
     String fontSize = getFontSize(sectionDepth);
-    pop().push("block", "font-size="+fontSize + "," + formatSection + ",id="+id);
+    push("block", "font-size="+fontSize + "," + formatSection + ",id="+id);
     
     // remember
     toc.add(new TOCEntry(id, title));
@@ -504,12 +575,8 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
     push("external-graphic", "src="+file.getAbsolutePath()+","+atts);
     
     // remember file in case a formatter wants to resolve file location later
-    List elements = (List)file2elements.get(file);
-    if (elements==null) {
-      elements = new ArrayList(3);
-      file2elements.put(file, elements);
-    }
-    elements.add(cursor);
+    if (!image2src.containsKey(file))
+      image2src.put(file, null);
     
     // back to enclosing block
     pop();
@@ -526,19 +593,15 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
    * Access to external image files
    */
   protected File[] getImages() {
-    Set files = file2elements.keySet();
-    return (File[])files.toArray(new File[files.size()]);
+    Set<File> files = image2src.keySet();
+    return files.toArray(new File[files.size()]);
   }
   
   /**
-   * Replace referenced image file with a calculated value
+   * Replace referenced image file with a calculated value - applied when the document is streamed
    */
   protected void setImage(File file, String value) {
-    List nodes = (List)file2elements.get(file);
-    for (int i = 0; i < nodes.size(); i++) {
-      Element external = (Element)nodes.get(i);
-      external.setAttribute("src", value);
-    }
+    image2src.put(file, value);
   }
   
   /**
@@ -554,7 +617,7 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
   public Document nextParagraph(String format) {
     
     // start a new block if the current is not-empty
-    if (cursor.getFirstChild()!=null)
+    if (cursor.size>0)
       pop().push("block", format);
     else
       attributes(cursor, format);
@@ -606,9 +669,9 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
     Element list = peek("list-block", "nextListItem() is not applicable outside list block");
     
     // a list with only one item containing an empty block?
-    if (list.getChildNodes().getLength()==1&&cursor.getFirstChild()==null&&cursor.getPreviousSibling()==null&&cursor.getParentNode().getLocalName().equals("list-item-body")) {
+    if (list.size==1&&cursor.size==0&&cursor.isFirstChild()&&cursor.parent.name.equals("list-item-body")) {
       // delete list-item and start over
-      list.removeChild(list.getFirstChild());
+      list.removeFirstChild();
     } 
     
     // continue with list
@@ -684,11 +747,11 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
     // mark as cvs if applicable - non fo namespace attributes won't be picked up by push() and attributes()
     if ("true".equals(attribute("genj:csv", format))) {
       containsCSV = true;
-      cursor.setAttributeNS(NS_GENJ, "genj:csv", "true");
+      cursor.setAttribute("genj:csv", "true");
       
       String prefix = attribute("genj:csvprefix", format);
       if (prefix!=null)
-        cursor.setAttributeNS(NS_GENJ, "genj:csvprefix", prefix);
+        cursor.setAttribute("genj:csvprefix", prefix);
     }
     
     // head/body & row
@@ -720,9 +783,9 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
     pop("table", "addTableColumn() is not applicable outside enclosing table");
     
     // find last table definition
-    Node before = cursor.getFirstChild();
-    while (before!=null && before.getNodeName().equals("table-column"))
-      before = before.getNextSibling();
+    int before = 0;
+    while (before<cursor.children.size() && cursor.isElement(before, "table-column"))
+      before++;
     
     push("table-column", atts, before);
 
@@ -745,7 +808,7 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
     //  + the current cursor points at the first child (a block)
     //  + the block pointed by cursor is empty
     Element cell = peek("table-cell", "nextTableCell() is not applicable outside enclosing table");
-    if (cell.getPreviousSibling()==null&&cursor==cell.getFirstChild()&&!cursor.hasChildNodes()) {
+    if (cell.isFirstChild()&&cursor.parent==cell&&cursor.isFirstChild()&&cursor.size==0) {
       attributes(cell, atts);
       // add empty content to block so another call to nextTableCell() willl actually move forward
       push("inline", "").pop(); 
@@ -754,11 +817,11 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
     
     // peek at row
     Element row = peek("table-row", "nextTableCell() is not applicable outside enclosing table row");
-    int cells = row.getElementsByTagName("table-cell").getLength();
+    int cells = row.count("table-cell");
     
     // peek at table - add new row if we have all columns already
     Element table = peek("table", "nextTableCell() is not applicable outside enclosing table");
-    int cols = table.getElementsByTagName("table-column").getLength();
+    int cols = table.count("table-column");
     if (cols>0&&cells==cols) 
       return nextTableRow();
 
@@ -794,8 +857,8 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
     //  + the current cursor points at the first child (a block)
     //  + the block pointed by cursor is empty
     Element cell = peek("table-cell", "nextTableRow() is not applicable outside enclosing table");
-    if (cell.getPreviousSibling()==null&&cursor==cell.getFirstChild()&&!cursor.hasChildNodes()) {
-      attributes((Element)cell.getParentNode(), atts);
+    if (cell.isFirstChild()&&cursor.parent==cell&&cursor.isFirstChild()&&cursor.size==0) {
+      attributes(cell.parent, atts);
       return this;
     }
     
@@ -804,8 +867,8 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
     Element table = cursor;
     
     // last child is already table-body?
-    if ( table.getLastChild().getNodeName().equals("table-body") ) {
-      cursor = (Element)table.getLastChild();
+    if ( table.isElement(table.children.size()-1, "table-body") ) {
+      cursor = (Element)table.children.get(table.children.size()-1);
     } else {
       push("table-body");
     }
@@ -952,7 +1015,7 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
             
             push("basic-link", "internal-destination="+id);
             push("page-number-citation", "ref-id="+id);
-            cursor.setAttributeNS(NS_GENJ, "genj:citation", Integer.toString(e+1));
+            cursor.setAttribute("genj:citation", Integer.toString(e+1));
             pop();
             pop();
           }
@@ -989,7 +1052,7 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
     pop("flow", "can't create TOC without enclosing flow");
     
     // add block for toc AS FIRST child
-    push("block", "", cursor.getFirstChild());
+    push("block", "", 0);
     
     //<block>
     //  Table of Contents
@@ -1031,24 +1094,88 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
    * Add qualified element to parent
    */
   private Document push(String name, String attributes) {
-    return push(name, attributes, null);
+    return push(name, attributes, -1);
   }
   
   /**
    * Add qualified element to parent
+   * @param before index of child to insert before or -1 to append
    */
-  private Document push(String name, String attributes, Node before) {
+  private Document push(String name, String attributes, int before) {
     // create it, set attributes and hook it up
-    Element elem = doc.createElementNS(NS_XSLFO, name);
-    if (before!=null)
-      cursor.insertBefore(elem, before);
+    Element elem = new Element(name, cursor);
+    if (before>=0)
+      cursor.insert(before, elem);
     else
-      cursor.appendChild(elem);
+      append(elem);
     cursor =  elem;
+    numElements++;
     // attribute it and done
     return attributes(elem, attributes);
   }
   
+  /**
+   * Append to current element - spilling its children once there are enough
+   */
+  private void append(Object child) {
+    if (numElements>spillThreshold&&cursor.children.size()>=SPILL_CHILDREN)
+      spill(cursor);
+    cursor.children.add(child);
+    cursor.size++;
+  }
+  
+  /**
+   * Spill children of an element but the last to disk - those can't change anymore
+   */
+  private void spill(Element elem) {
+    
+    List<Object> children = elem.children;
+    int start = 0, end = children.size()-1;
+    while (start<end&&children.get(start) instanceof Spill)
+      start++;
+    if (start==end)
+      return;
+    
+    try {
+      
+      // open file on first spill
+      if (spillOut==null) {
+        spillFile = File.createTempFile("genj", ".fo");
+        spillOut = new SpillOutputStream(new FileOutputStream(spillFile));
+      }
+      
+      // write children
+      long offset = spillOut.position;
+      for (int i=start;i<end;i++) 
+        spillOut.write(children.get(i));
+      
+      // continue previous spill or start a new one
+      Spill spill = start>0 ? (Spill)children.get(start-1) : null;
+      if (spill!=null&&spill.offset+spill.length==offset) {
+        spill.length = spillOut.position - spill.offset;
+      } else {
+        spill = new Spill(offset, spillOut.position - offset);
+        children.add(start++, spill);
+        end++;
+      }
+      
+      // keep count and let go of children
+      for (int i=start;i<end;i++) {
+        Object child = children.get(i);
+        if (child instanceof Element) {
+          elem.spilled(((Element)child).name);
+          ((Element)child).release();
+        }
+      }
+      children.subList(start, end).clear();
+      
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "can't spill document content to "+spillFile+" - continuing in memory", e);
+      spillThreshold = Integer.MAX_VALUE;
+    }
+    
+  }
+  
   /**
    * Set attributes on current element
    */
@@ -1090,14 +1217,13 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
     if (text.length()==0)
       return this;
 
-    // create a text node for it
-    Node txt = doc.createTextNode(text);
+    // add it
     if (atts.length()>0) {
       push("inline", atts);
-      cursor.appendChild(txt);
+      append(text);
       pop();
     } else {
-      cursor.appendChild(txt);
+      append(text);
     }
     return this;
   }
@@ -1106,7 +1232,7 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
    * pop element from stack
    */
   private Document pop() {
-    cursor = (Element)cursor.getParentNode();
+    cursor = cursor.parent;
     return this;
   }
   
@@ -1122,11 +1248,11 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
    * find element in current stack upwards
    */
   private Element peek(String qname, String error) {
-    Node loop = cursor;
-    while (loop instanceof Element) {
-      if (loop.getLocalName().equals(qname)) 
-        return (Element)loop;
-      loop = loop.getParentNode();
+    Element loop = cursor;
+    while (loop!=null) {
+      if (loop.name.equals(qname)) 
+        return loop;
+      loop = loop.parent;
     }
     throw new IllegalArgumentException(error);
   }
@@ -1143,6 +1269,367 @@ select="$header-width * 0.3333"/><xsl:text>pc</xsl:text>
     }
   }
   
+  /**
+   * An element of the document - children are elements, text or spilled content
+   */
+  private static class Element {
+    
+    private String name;
+    private Element parent;
+    private List<String> attributes = new ArrayList<String>(4);
+    private List<Object> children = new ArrayList<Object>(2);
+    private int size = 0;
+    private Map<String, Integer> spilled;
+    
+    private Element(String name, Element parent) {
+      this.name = name;
+      this.parent = parent;
+    }
+    
+    private String getAttribute(String key) {
+      for (int i=0;i<attributes.size();i+=2) {
+        if (attributes.get(i).equals(key))
+          return attributes.get(i+1);
+      }
+      return "";
+    }
+    
+    private void setAttribute(String key, String value) {
+      for (int i=0;i<attributes.size();i+=2) {
+        if (attributes.get(i).equals(key)) {
+          attributes.set(i+1, value);
+          return;
+        }
+      }
+      attributes.add(key);
+      attributes.add(value);
+    }
+    
+    private void insert(int index, Object child) {
+      children.add(index, child);
+      size++;
+    }
+    
+    private void removeFirstChild() {
+      children.remove(0);
+      size--;
+    }
+    
+    private boolean isFirstChild() {
+      return parent.children.get(0)==this;
+    }
+    
+    private boolean isElement(int index, String name) {
+      Object child = children.get(index);
+      return child instanceof Element && ((Element)child).name.equals(name);
+    }
+    
+    /** number of children with given name */
+    private int count(String name) {
+      int result = 0;
+      if (spilled!=null&&spilled.containsKey(name))
+        result = spilled.get(name).intValue();
+      for (int i=0;i<children.size();i++) {
+        if (isElement(i, name))
+          result++;
+      }
+      return result;
+    }
+    
+    /** let go of children after spilling - elements might still be referenced from indexes */
+    private void release() {
+      for (int i=0;i<children.size();i++) {
+        if (children.get(i) instanceof Element)
+          ((Element)children.get(i)).release();
+      }
+      children = null;
+    }
+    
+    /** keep count of child spilled */
+    private void spilled(String name) {
+      if (spilled==null)
+        spilled = new HashMap<String, Integer>();
+      Integer count = spilled.get(name);
+      spilled.put(name, new Integer(count==null ? 1 : count.intValue()+1));
+    }
+    
+  } //Element
+  
+  /**
+   * A range of spilled content
+   */
+  private static class Spill {
+    private long offset, length;
+    private Spill(long offset, long length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  } //Spill
+  
+  /**
+   * Output of spilled content
+   */
+  private static class SpillOutputStream extends FilterOutputStream {
+    
+    private long position = 0;
+    private DataOutputStream data;
+    
+    private SpillOutputStream(OutputStream out) {
+      super(new BufferedOutputStream(out));
+      data = new DataOutputStream(this);
+    }
+    
+    public void write(int b) throws IOException {
+      out.write(b);
+      position++;
+    }
+    
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      position += len;
+    }
+    
+    /** write element, text or reference to spilled content */
+    private void write(Object content) throws IOException {
+      if (content instanceof String) {
+        data.writeByte(SPILL_TEXT);
+        writeString((String)content);
+      } else if (content instanceof Spill) {
+        data.writeByte(SPILL_REF);
+        data.writeLong(((Spill)content).offset);
+        data.writeLong(((Spill)content).length);
+      } else {
+        Element elem = (Element)content;
+        data.writeByte(SPILL_START);
+        writeString(elem.name);
+        data.writeShort(elem.attributes.size());
+        for (int i=0;i<elem.attributes.size();i++)
+          writeString(elem.attributes.get(i));
+        for (int i=0;i<elem.children.size();i++)
+          write(elem.children.get(i));
+        data.writeByte(SPILL_END);
+      }
+    }
+    
+    private void writeString(String s) throws IOException {
+      byte[] bytes = s.getBytes("UTF-8");
+      data.writeInt(bytes.length);
+      data.write(bytes);
+    }
+    
+  } //SpillOutputStream
+  
+  /**
+   * Input of a range of spilled content
+   */
+  private static class SpillInputStream extends InputStream {
+    
+    private RandomAccessFile file;
+    private long position, end;
+    
+    private SpillInputStream(RandomAccessFile file, Spill spill) {
+      this.file = file;
+      this.position = spill.offset;
+      this.end = spill.offset+spill.length;
+    }
+    
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1)<0 ? -1 : b[0]&0xff;
+    }
+    
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (position>=end)
+        return -1;
+      file.seek(position);
+      int read = file.read(b, off, (int)Math.min(len, end-position));
+      if (read>0)
+        position += read;
+      return read;
+    }
+    
+  } //SpillInputStream
+  
+  /**
+   * Streaming of the document as SAX events - with content spilled to disk read back on the fly
+   */
+  private class Replay implements XMLReader {
+    
+    private ContentHandler handler;
+    private DTDHandler dtdHandler;
+    private EntityResolver resolver;
+    private ErrorHandler errorHandler;
+    private Map<String, Object> properties = new HashMap<String, Object>();
+    private Map<String, String> path2src = new HashMap<String, String>();
+    private RandomAccessFile file;
+    
+    public void parse(InputSource input) throws IOException, SAXException {
+      
+      if (handler==null)
+        throw new SAXException("no content handler");
+      if (disposed&&spillFile!=null)
+        throw new IOException("spilled content of "+title+" has been disposed");
+      
+      // image files replaced?
+      for (Map.Entry<File, String> entry : image2src.entrySet()) {
+        if (entry.getValue()!=null)
+          path2src.put(entry.getKey().getAbsolutePath(), entry.getValue());
+      }
+      
+      // spilled content?
+      if (spillOut!=null) {
+        spillOut.flush();
+        file = new RandomAccessFile(spillFile, "r");
+      }
+      
+      try {
+        handler.startDocument();
+        handler.startPrefixMapping("", NS_XSLFO);
+        handler.startPrefixMapping("genj", NS_GENJ);
+        replay(root);
+        handler.endPrefixMapping("genj");
+        handler.endPrefixMapping("");
+        handler.endDocument();
+      } finally {
+        if (file!=null) file.close();
+      }
+      
+    }
+    
+    /** replay element, text or spilled content */
+    private void replay(Object content) throws IOException, SAXException {
+      if (content instanceof String) {
+        characters((String)content);
+      } else if (content instanceof Spill) {
+        replay((Spill)content);
+      } else {
+        Element elem = (Element)content;
+        startElement(elem.name, elem.attributes);
+        for (int i=0;i<elem.children.size();i++)
+          replay(elem.children.get(i));
+        handler.endElement(NS_XSLFO, elem.name, elem.name);
+      }
+    }
+    
+    /** replay spilled content */
+    private void replay(Spill spill) throws IOException, SAXException {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new SpillInputStream(file, spill)));
+      List<String> names = new ArrayList<String>();
+      List<String> attributes = new ArrayList<String>();
+      while (true) {
+        int record = in.read();
+        switch (record) {
+          case -1:
+            return;
+          case SPILL_START:
+            String name = readString(in);
+            attributes.clear();
+            for (int i=0,j=in.readShort();i<j;i++)
+              attributes.add(readString(in));
+            startElement(name, attributes);
+            names.add(name);
+            break;
+          case SPILL_TEXT:
+            characters(readString(in));
+            break;
+          case SPILL_END:
+            name = names.remove(names.size()-1);
+            handler.endElement(NS_XSLFO, name, name);
+            break;
+          case SPILL_REF:
+            replay(new Spill(in.readLong(), in.readLong()));
+            break;
+          default:
+            throw new IOException("unexpected record "+record+" in "+spillFile);
+        }
+      }
+    }
+    
+    private String readString(DataInputStream in) throws IOException {
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      return new String(bytes, "UTF-8");
+    }
+    
+    private void startElement(String name, List<String> attributes) throws SAXException {
+      AttributesImpl atts = new AttributesImpl();
+      for (int i=0;i<attributes.size();i+=2) {
+        String key = attributes.get(i), value = attributes.get(i+1);
+        if (name.equals("external-graphic")&&key.equals("src")&&path2src.containsKey(value))
+          value = path2src.get(value);
+        // in order of name like a DOM would
+        int pos = atts.getLength();
+        while (pos>0&&atts.getQName(pos-1).compareTo(key)>0)
+          pos--;
+        atts.addAttribute("", "", "", "", "");
+        for (int j=atts.getLength()-1;j>pos;j--)
+          atts.setAttribute(j, atts.getURI(j-1), atts.getLocalName(j-1), atts.getQName(j-1), "CDATA", atts.getValue(j-1));
+        if (key.startsWith("genj:"))
+          atts.setAttribute(pos, NS_GENJ, key.substring(5), key, "CDATA", value);
+        else
+          atts.setAttribute(pos, "", key, key, "CDATA", value);
+      }
+      handler.startElement(NS_XSLFO, name, name, atts);
+    }
+    
+    private void characters(String text) throws SAXException {
+      handler.characters(text.toCharArray(), 0, text.length());
+    }
+    
+    public void parse(String systemId) throws IOException, SAXException {
+      parse(new InputSource(systemId));
+    }
+    
+    public boolean getFeature(String name) {
+      return name.equals("http://xml.org/sax/features/namespaces");
+    }
+    
+    public void setFeature(String name, boolean value) {
+      // we always report namespaces and never prefixes as attributes
+    }
+    
+    public Object getProperty(String name) {
+      return properties.get(name);
+    }
+    
+    public void setProperty(String name, Object value) {
+      properties.put(name, value);
+    }
+    
+    public ContentHandler getContentHandler() {
+      return handler;
+    }
+    
+    public void setContentHandler(ContentHandler handler) {
+      this.handler = handler;
+    }
+    
+    public DTDHandler getDTDHandler() {
+      return dtdHandler;
+    }
+    
+    public void setDTDHandler(DTDHandler handler) {
+      dtdHandler = handler;
+    }
+    
+    public EntityResolver getEntityResolver() {
+      return resolver;
+    }
+    
+    public void setEntityResolver(EntityResolver resolver) {
+      this.resolver = resolver;
+    }
+    
+    public ErrorHandler getErrorHandler() {
+      return errorHandler;
+    }
+    
+    public void setErrorHandler(ErrorHandler handler) {
+      errorHandler = handler;
+    }
+    
+  } //Replay
+  
   /**
    * A test main
    */
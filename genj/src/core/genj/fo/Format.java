@@ -159,7 +159,7 @@ public abstract class Format {
     FileOutputStream out = null;
     
     // no need for stream?
-    if (getFileExtension()!=null) {
+    if (getFileExtension()!=null) try {
       
       if (file==null)
         throw new IOException("Formatter requires output file");
@@ -171,6 +171,10 @@ public abstract class Format {
       if (isExternalizedFiles)
         externalizeFiles(doc, file);
 
+    } catch (IOException e) {
+      if (out!=null) try { out.close(); } catch (Throwable t) {}
+      doc.dispose();
+      throw e;
     }
     
     // continue
@@ -178,7 +182,7 @@ public abstract class Format {
   }
   
   /**
-   * Format a document
+   * Format a document - once, its content spilled to disk is deleted afterwards
    */
   public void format(Document doc, OutputStream out) throws IOException {
     
@@ -195,6 +199,7 @@ public abstract class Format {
       throw new IOException(t.getMessage());
     } finally {
       try { out.close(); } catch (Throwable t) {}
+      doc.dispose();
     }
     
     // done
@@ -45,7 +45,7 @@ public class HTMLFormat extends Format {
     Transformer transformer = getTemplates("./contrib/xslt/fo2html.xsl").newTransformer();
     
     // do the transformation
-    transformer.transform(doc.getDOMSource(), new StreamResult(out));
+    transformer.transform(doc.getSource(), new StreamResult(out));
 
     // done
   }
@@ -49,7 +49,7 @@ public class PSFormat extends Format {
     Transformer transformer = TransformerFactory.newInstance().newTransformer();
     
     // do the transformation
-    transformer.transform(doc.getDOMSource(), new SAXResult(handler));
+    transformer.transform(doc.getSource(), new SAXResult(handler));
 
     // done
   }
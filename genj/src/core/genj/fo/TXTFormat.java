@@ -44,13 +44,13 @@ public class TXTFormat extends Format {
     // could do thsi with FOP TextRenderer but it doesn't do the trick for simple text that we want to generate
 //    org.xml.sax.ContentHandler handler = new org.apache.fop.fo.FOTreeBuilder("text/plain", new org.apache.fop.apps.FOUserAgent(), out);
 //    Transformer transformer = TransformerFactory.newInstance().newTransformer();
-//    transformer.transform(doc.getDOMSource(), new SAXResult(handler));
+//    transformer.transform(doc.getSource(), new SAXResult(handler));
 
     // grab xsl transformer
     Transformer transformer = getTemplates("./contrib/xslt/fo2txt.xsl").newTransformer();
     
     // do the transformation
-    transformer.transform(doc.getDOMSource(), new StreamResult(out));
+    transformer.transform(doc.getSource(), new StreamResult(out));
 
     // done
   }
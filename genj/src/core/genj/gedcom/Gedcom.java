@@ -26,7 +26,7 @@ import genj.util.ReferenceSet;
 import genj.util.Resources;
 import genj.util.SafeProxy;
 import genj.util.swing.ImageIcon;
-
+import java.awt.EventQueue;
 import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -171,6 +171,16 @@ public class Gedcom {
   /** current lock */
   private Lock lock = null;
   
+  /** threads doing read-only work and number of writers waiting for them */
+  private List<Thread> readers = new ArrayList<Thread>();
+  private int waitingWriters = 0;
+  
+  /** how long the event dispatch thread waits for a lock - the lock's holder might be waiting for it */
+  private final static long EDT_LOCK_TIMEOUT = 500;
+  
+  /** number of changes so far */
+  private volatile int changeStamp = 0;
+  
   /** listeners */
   private List<GedcomListener> listeners = new CopyOnWriteArrayList<GedcomListener>();
   
@@ -323,6 +333,8 @@ public class Gedcom {
    */
   protected void propagateXRefLinked(final PropertyXRef property1, final PropertyXRef property2) {
     
+    changeStamp++;
+    
     if (LOG.isLoggable(Level.FINER))
       LOG.finer("Property "+property1.getTag()+" and "+property2.getTag()+" linked");
     
@@ -351,6 +363,8 @@ public class Gedcom {
    */
   protected void propagateXRefUnlinked(final PropertyXRef property1, final PropertyXRef property2) {
     
+    changeStamp++;
+    
     if (LOG.isLoggable(Level.FINER))
       LOG.finer("Property "+property1.getTag()+" and "+property2.getTag()+" unlinked");
     
@@ -379,6 +393,8 @@ public class Gedcom {
    */
   protected void propagateEntityAdded(final Entity entity) {
     
+    changeStamp++;
+    
     if (LOG.isLoggable(Level.FINER))
       LOG.finer("Entity "+entity.getId()+" added");
     
@@ -405,6 +421,8 @@ public class Gedcom {
    */
   protected void propagateEntityDeleted(final Entity entity) {
     
+    changeStamp++;
+    
     if (LOG.isLoggable(Level.FINER))
       LOG.finer("Entity "+entity.getId()+" deleted");
     
@@ -431,6 +449,8 @@ public class Gedcom {
    */
   protected void propagatePropertyAdded(Entity entity, final Property container, final int pos, Property added) {
     
+    changeStamp++;
+    
     if (LOG.isLoggable(Level.FINER))
       LOG.finer("Property "+added.getTag()+" added to "+container.getTag()+" at position "+pos+" (entity "+entity.getId()+")");
     
@@ -463,6 +483,8 @@ public class Gedcom {
    */
   protected void propagatePropertyDeleted(Entity entity, final Property container, final int pos, final Property deleted) {
     
+    changeStamp++;
+    
     if (LOG.isLoggable(Level.FINER))
       LOG.finer("Property "+deleted.getTag()+" deleted from "+container.getTag()+" at position "+pos+" (entity "+entity.getId()+")");
     
@@ -494,6 +516,8 @@ public class Gedcom {
    */
   protected void propagatePropertyChanged(Entity entity, final Property property, final String oldValue) {
     
+    changeStamp++;
+    
     if (LOG.isLoggable(Level.FINER))
       LOG.finer("Property "+property.getTag()+" changed in (entity "+entity.getId()+")");
     
@@ -520,6 +544,8 @@ public class Gedcom {
    */
   protected void propagatePropertyMoved(final Property property, final Property moved, final int from, final int to) {
     
+    changeStamp++;
+    
     if (LOG.isLoggable(Level.FINER))
       LOG.finer("Property "+property.getTag()+" moved from "+from+" to "+to+" (entity "+property.getEntity().getId()+")");
     
@@ -589,6 +615,8 @@ public class Gedcom {
    */
   protected void propagateEntityIDChanged(final Entity entity, final String old) throws GedcomException {
     
+    changeStamp++;
+    
     Map<String, Entity> id2entity = getEntityMap(entity.getTag());
     
     // known?
@@ -930,6 +958,15 @@ public class Gedcom {
     return getEntityPrefix(entity) + id;
   }
   
+  /**
+   * A stamp that changes with every change to entities and properties - values
+   * derived from more than one property (e.g. an entity's display value) stay
+   * valid as long as this stamp doesn't change
+   */
+  public int getChangeStamp() {
+    return changeStamp;
+  }
+  
   /**
    * Has the gedcom unsaved changes ?
    */
@@ -981,6 +1018,92 @@ public class Gedcom {
     }
   }
   
+  /**
+   * Perform work that doesn't change anything - other readers can work at the same time
+   * while units of work wait until all readers are done. The event dispatch thread 
+   * only waits for a short time and fails after that since a unit of work might be 
+   * waiting for it to handle its events.
+   */
+  public void doReadOnlyWork(UnitOfWork uow) throws GedcomException {
+    
+    Thread thread = Thread.currentThread();
+    
+    // wait for current and waiting writers unless we're reading or writing already
+    synchronized (writeSemaphore) {
+      if (!readers.contains(thread)&&(lock==null||lock.thread!=thread)) {
+        long deadline = getLockDeadline();
+        while (lock!=null||(waitingWriters>0&&deadline==0)) 
+          waitForLock(deadline, "read lock");
+      }
+      readers.add(thread);
+    }
+    
+    // run the runnable
+    try {
+      uow.perform(this);
+    } finally {
+      synchronized (writeSemaphore) {
+        readers.remove(thread);
+        writeSemaphore.notifyAll();
+      }
+    }
+    
+    // done
+  }
+  
+  /**
+   * Grab the write lock once all readers and other writers are done - caller has to hold writeSemaphore.
+   * The event dispatch thread only waits for a short time since readers (e.g. reports) and writers 
+   * might be waiting for it to handle their output and events.
+   */
+  private void lock() throws GedcomException {
+    
+    // a thread can't nest units of work or change what it's reading
+    Thread thread = Thread.currentThread();
+    if ((lock!=null&&lock.thread==thread)||readers.contains(thread))
+      throw new GedcomException("Cannot obtain write lock");
+    
+    // wait for readers and writers
+    long deadline = getLockDeadline();
+    waitingWriters++;
+    try {
+      while (lock!=null||!readers.isEmpty()) 
+        waitForLock(deadline, "write lock");
+    } finally {
+      waitingWriters--;
+      // let readers continue if we gave up
+      writeSemaphore.notifyAll();
+    }
+    
+    lock = new Lock();
+  }
+  
+  /**
+   * Time after which the current thread stops waiting for a lock - 0 for no limit
+   */
+  private long getLockDeadline() {
+    return EventQueue.isDispatchThread() ? System.currentTimeMillis()+EDT_LOCK_TIMEOUT : 0;
+  }
+  
+  /**
+   * Wait for a change of locks until given deadline - caller has to hold writeSemaphore
+   */
+  private void waitForLock(long deadline, String what) throws GedcomException {
+    try {
+      if (deadline==0) {
+        writeSemaphore.wait();
+        return;
+      }
+      long left = deadline-System.currentTimeMillis();
+      if (left<=0)
+        throw new GedcomException("Cannot obtain "+what);
+      writeSemaphore.wait(left);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GedcomException("Interrupted waiting for "+what);
+    }
+  }
+  
   /**
    * Starts a transaction
    */
@@ -991,9 +1114,7 @@ public class Gedcom {
     // grab lock
     synchronized (writeSemaphore) {
       
-      if (lock!=null)
-        throw new GedcomException("Cannot obtain write lock");
-      lock = new Lock();
+      lock();
 
       // hook up updater for changes
       updater = new PropertyChange.Monitor();
@@ -1032,6 +1153,7 @@ public class Gedcom {
         
       // release
       lock = null;
+      writeSemaphore.notifyAll();
       
       // unhook updater for changes
       removeGedcomListener(updater);
@@ -1073,9 +1195,11 @@ public class Gedcom {
 
     synchronized (writeSemaphore) {
       
-      if (lock!=null)
-        throw new IllegalStateException("Cannot obtain write lock");
-      lock = new Lock();
+      try {
+        lock();
+      } catch (GedcomException e) {
+        throw new IllegalStateException(e.getMessage());
+      }
   
     }
     
@@ -1104,6 +1228,7 @@ public class Gedcom {
       
       // release
       lock = null;
+      writeSemaphore.notifyAll();
     }
     
     // done
@@ -1127,9 +1252,11 @@ public class Gedcom {
 
     synchronized (writeSemaphore) {
       
-      if (lock!=null)
-        throw new IllegalStateException("Cannot obtain write lock");
-      lock = new Lock();
+      try {
+        lock();
+      } catch (GedcomException e) {
+        throw new IllegalStateException(e.getMessage());
+      }
   
     }
     
@@ -1158,6 +1285,7 @@ public class Gedcom {
       
       // clear
       lock = null;
+      writeSemaphore.notifyAll();
     }
 
     // done
@@ -1187,7 +1315,8 @@ public class Gedcom {
   }
 
   /**
-   * Returns a readable name for the given tag   */
+   * Returns a readable name for the given tag
+   */
   public static String getName(String tag) {
     return getName(tag, false);
   }
@@ -1353,6 +1482,7 @@ public class Gedcom {
    * Our locking mechanism is based on one writer at a time
    */
   private class Lock {
+    Thread thread = Thread.currentThread();
     List<Undo> undos = new ArrayList<Undo>();
     
     void addChange(Undo run) {
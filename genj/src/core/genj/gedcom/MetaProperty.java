@@ -492,7 +492,7 @@ public class MetaProperty implements Comparable<MetaProperty> {
   /**
    * Load image (once)
    */
-  private static ImageIcon loadImage(String name) {
+  private static synchronized ImageIcon loadImage(String name) {
     // look up
     ImageIcon result = (ImageIcon)name2images.get(name);
     if (result==null) {
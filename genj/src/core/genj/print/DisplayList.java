@@ -0,0 +1,783 @@
+/**
+ * GenJ - GenealogyJ
+ *
+ * Copyright (C) 1997 - 2010 Nils Meier <nils@meiers.net>
+ *
+ * This piece of code is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package genj.print;
+
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Line2D;
+import java.awt.geom.RectangularShape;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.text.AttributedCharacterIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A graphics recording everything drawn on it so that it can be replayed
+ * on another graphics later - any number of times. State like transform,
+ * clip, font and hints is tracked on a small image's graphics so that
+ * renderers can query it while recording.
+ */
+/*package*/ class DisplayList extends Graphics2D {
+
+  /** recorded operations - shared with graphics created from this one */
+  private List<Op> ops;
+
+  /** graphics created so far - shared */
+  private int[] contexts;
+
+  /** our context */
+  private int context;
+
+  /** graphics tracking state */
+  private Graphics2D state;
+
+  /**
+   * Constructor
+   */
+  /*package*/ DisplayList() {
+    this.ops = new ArrayList<Op>();
+    this.contexts = new int[]{ 1 };
+    this.context = 0;
+    this.state = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+  }
+
+  /**
+   * Constructor for a created graphics
+   */
+  private DisplayList(DisplayList parent) {
+    this.ops = parent.ops;
+    this.contexts = parent.contexts;
+    this.context = contexts[0]++;
+    this.state = (Graphics2D)parent.state.create();
+  }
+
+  /**
+   * Replay all recorded operations on given graphics
+   */
+  /*package*/ void replay(Graphics2D g) {
+    Graphics2D[] gs = new Graphics2D[contexts[0]];
+    gs[0] = g;
+    AffineTransform base = g.getTransform();
+    for (Op op : ops) {
+      if (op instanceof Create)
+        gs[((Create)op).created] = (Graphics2D)gs[op.context].create();
+      else
+        op.replay(gs[op.context], base);
+    }
+  }
+
+  /**
+   * Number of recorded operations
+   */
+  /*package*/ int size() {
+    return ops.size();
+  }
+
+  private void add(Op op) {
+    op.context = context;
+    ops.add(op);
+  }
+
+  /** a recorded operation */
+  private static abstract class Op {
+    int context;
+    abstract void replay(Graphics2D g, AffineTransform base);
+  }
+
+  /** creation of a graphics */
+  private static class Create extends Op {
+    int created;
+    Create(int created) {
+      this.created = created;
+    }
+    @Override
+    void replay(Graphics2D g, AffineTransform base) {
+    }
+  }
+
+  /** copy of a shape the caller might change after drawing */
+  private static Shape copy(Shape s) {
+    if (s instanceof RectangularShape)
+      return (Shape)((RectangularShape)s).clone();
+    if (s instanceof Line2D)
+      return (Shape)((Line2D)s).clone();
+    return new GeneralPath(s);
+  }
+
+  // state
+
+  @Override
+  public Graphics create() {
+    DisplayList result = new DisplayList(this);
+    add(new Create(result.context));
+    return result;
+  }
+
+  @Override
+  public void dispose() {
+    state.dispose();
+    if (context==0)
+      return;
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.dispose();
+      }
+    });
+  }
+
+  @Override
+  public void setColor(final Color c) {
+    state.setColor(c);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.setColor(c);
+      }
+    });
+  }
+
+  @Override
+  public void setPaint(final Paint paint) {
+    state.setPaint(paint);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.setPaint(paint);
+      }
+    });
+  }
+
+  @Override
+  public void setStroke(final Stroke s) {
+    state.setStroke(s);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.setStroke(s);
+      }
+    });
+  }
+
+  @Override
+  public void setComposite(final Composite comp) {
+    state.setComposite(comp);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.setComposite(comp);
+      }
+    });
+  }
+
+  @Override
+  public void setFont(final Font font) {
+    state.setFont(font);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.setFont(font);
+      }
+    });
+  }
+
+  @Override
+  public void setBackground(final Color color) {
+    state.setBackground(color);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.setBackground(color);
+      }
+    });
+  }
+
+  @Override
+  public void setPaintMode() {
+    state.setPaintMode();
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.setPaintMode();
+      }
+    });
+  }
+
+  @Override
+  public void setXORMode(final Color c) {
+    state.setXORMode(c);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.setXORMode(c);
+      }
+    });
+  }
+
+  @Override
+  public void setRenderingHint(final RenderingHints.Key key, final Object value) {
+    state.setRenderingHint(key, value);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.setRenderingHint(key, value);
+      }
+    });
+  }
+
+  @Override
+  public void setRenderingHints(Map<?, ?> hints) {
+    final RenderingHints copy = new RenderingHints(null);
+    copy.putAll(hints);
+    state.setRenderingHints(copy);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.setRenderingHints(copy);
+      }
+    });
+  }
+
+  @Override
+  public void addRenderingHints(Map<?, ?> hints) {
+    final RenderingHints copy = new RenderingHints(null);
+    copy.putAll(hints);
+    state.addRenderingHints(copy);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.addRenderingHints(copy);
+      }
+    });
+  }
+
+  @Override
+  public void translate(final int x, final int y) {
+    state.translate(x, y);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.translate(x, y);
+      }
+    });
+  }
+
+  @Override
+  public void translate(final double tx, final double ty) {
+    state.translate(tx, ty);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.translate(tx, ty);
+      }
+    });
+  }
+
+  @Override
+  public void rotate(final double theta) {
+    state.rotate(theta);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.rotate(theta);
+      }
+    });
+  }
+
+  @Override
+  public void rotate(final double theta, final double x, final double y) {
+    state.rotate(theta, x, y);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.rotate(theta, x, y);
+      }
+    });
+  }
+
+  @Override
+  public void scale(final double sx, final double sy) {
+    state.scale(sx, sy);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.scale(sx, sy);
+      }
+    });
+  }
+
+  @Override
+  public void shear(final double shx, final double shy) {
+    state.shear(shx, shy);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.shear(shx, shy);
+      }
+    });
+  }
+
+  @Override
+  public void transform(AffineTransform tx) {
+    final AffineTransform copy = new AffineTransform(tx);
+    state.transform(copy);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.transform(copy);
+      }
+    });
+  }
+
+  /**
+   * Transforms are recorded relative to the transform of the graphics replayed on
+   */
+  @Override
+  public void setTransform(AffineTransform tx) {
+    final AffineTransform copy = new AffineTransform(tx);
+    state.setTransform(copy);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        AffineTransform at = new AffineTransform(base);
+        at.concatenate(copy);
+        g.setTransform(at);
+      }
+    });
+  }
+
+  @Override
+  public void clip(Shape s) {
+    final Shape copy = copy(s);
+    state.clip(copy);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.clip(copy);
+      }
+    });
+  }
+
+  @Override
+  public void clipRect(final int x, final int y, final int width, final int height) {
+    state.clipRect(x, y, width, height);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.clipRect(x, y, width, height);
+      }
+    });
+  }
+
+  @Override
+  public void setClip(final int x, final int y, final int width, final int height) {
+    state.setClip(x, y, width, height);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.setClip(x, y, width, height);
+      }
+    });
+  }
+
+  @Override
+  public void setClip(Shape clip) {
+    final Shape copy = clip==null ? null : copy(clip);
+    state.setClip(copy);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.setClip(copy);
+      }
+    });
+  }
+
+  @Override
+  public Color getColor() {
+    return state.getColor();
+  }
+
+  @Override
+  public Paint getPaint() {
+    return state.getPaint();
+  }
+
+  @Override
+  public Stroke getStroke() {
+    return state.getStroke();
+  }
+
+  @Override
+  public Composite getComposite() {
+    return state.getComposite();
+  }
+
+  @Override
+  public Font getFont() {
+    return state.getFont();
+  }
+
+  @Override
+  public FontMetrics getFontMetrics(Font f) {
+    return state.getFontMetrics(f);
+  }
+
+  @Override
+  public Color getBackground() {
+    return state.getBackground();
+  }
+
+  @Override
+  public Object getRenderingHint(RenderingHints.Key key) {
+    return state.getRenderingHint(key);
+  }
+
+  @Override
+  public RenderingHints getRenderingHints() {
+    return state.getRenderingHints();
+  }
+
+  @Override
+  public AffineTransform getTransform() {
+    return state.getTransform();
+  }
+
+  @Override
+  public Shape getClip() {
+    return state.getClip();
+  }
+
+  @Override
+  public Rectangle getClipBounds() {
+    return state.getClipBounds();
+  }
+
+  @Override
+  public FontRenderContext getFontRenderContext() {
+    return state.getFontRenderContext();
+  }
+
+  @Override
+  public GraphicsConfiguration getDeviceConfiguration() {
+    return state.getDeviceConfiguration();
+  }
+
+  @Override
+  public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+    return state.hit(rect, s, onStroke);
+  }
+
+  // drawing
+
+  @Override
+  public void draw(Shape s) {
+    final Shape copy = copy(s);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.draw(copy);
+      }
+    });
+  }
+
+  @Override
+  public void fill(Shape s) {
+    final Shape copy = copy(s);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.fill(copy);
+      }
+    });
+  }
+
+  @Override
+  public void drawString(final String str, final int x, final int y) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawString(str, x, y);
+      }
+    });
+  }
+
+  @Override
+  public void drawString(final String str, final float x, final float y) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawString(str, x, y);
+      }
+    });
+  }
+
+  @Override
+  public void drawString(AttributedCharacterIterator iterator, final int x, final int y) {
+    final AttributedCharacterIterator copy = (AttributedCharacterIterator)iterator.clone();
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        copy.first();
+        g.drawString(copy, x, y);
+      }
+    });
+  }
+
+  @Override
+  public void drawString(AttributedCharacterIterator iterator, final float x, final float y) {
+    final AttributedCharacterIterator copy = (AttributedCharacterIterator)iterator.clone();
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        copy.first();
+        g.drawString(copy, x, y);
+      }
+    });
+  }
+
+  @Override
+  public void drawGlyphVector(final GlyphVector gv, final float x, final float y) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawGlyphVector(gv, x, y);
+      }
+    });
+  }
+
+  @Override
+  public void drawLine(final int x1, final int y1, final int x2, final int y2) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawLine(x1, y1, x2, y2);
+      }
+    });
+  }
+
+  @Override
+  public void drawRect(final int x, final int y, final int width, final int height) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawRect(x, y, width, height);
+      }
+    });
+  }
+
+  @Override
+  public void fillRect(final int x, final int y, final int width, final int height) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.fillRect(x, y, width, height);
+      }
+    });
+  }
+
+  @Override
+  public void clearRect(final int x, final int y, final int width, final int height) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.clearRect(x, y, width, height);
+      }
+    });
+  }
+
+  @Override
+  public void drawRoundRect(final int x, final int y, final int width, final int height, final int arcWidth, final int arcHeight) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawRoundRect(x, y, width, height, arcWidth, arcHeight);
+      }
+    });
+  }
+
+  @Override
+  public void fillRoundRect(final int x, final int y, final int width, final int height, final int arcWidth, final int arcHeight) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.fillRoundRect(x, y, width, height, arcWidth, arcHeight);
+      }
+    });
+  }
+
+  @Override
+  public void drawOval(final int x, final int y, final int width, final int height) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawOval(x, y, width, height);
+      }
+    });
+  }
+
+  @Override
+  public void fillOval(final int x, final int y, final int width, final int height) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.fillOval(x, y, width, height);
+      }
+    });
+  }
+
+  @Override
+  public void drawArc(final int x, final int y, final int width, final int height, final int startAngle, final int arcAngle) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawArc(x, y, width, height, startAngle, arcAngle);
+      }
+    });
+  }
+
+  @Override
+  public void fillArc(final int x, final int y, final int width, final int height, final int startAngle, final int arcAngle) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.fillArc(x, y, width, height, startAngle, arcAngle);
+      }
+    });
+  }
+
+  @Override
+  public void drawPolyline(int[] xPoints, int[] yPoints, final int nPoints) {
+    final int[] xs = xPoints.clone(), ys = yPoints.clone();
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawPolyline(xs, ys, nPoints);
+      }
+    });
+  }
+
+  @Override
+  public void drawPolygon(int[] xPoints, int[] yPoints, final int nPoints) {
+    final int[] xs = xPoints.clone(), ys = yPoints.clone();
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawPolygon(xs, ys, nPoints);
+      }
+    });
+  }
+
+  @Override
+  public void fillPolygon(int[] xPoints, int[] yPoints, final int nPoints) {
+    final int[] xs = xPoints.clone(), ys = yPoints.clone();
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.fillPolygon(xs, ys, nPoints);
+      }
+    });
+  }
+
+  @Override
+  public void copyArea(final int x, final int y, final int width, final int height, final int dx, final int dy) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.copyArea(x, y, width, height, dx, dy);
+      }
+    });
+  }
+
+  @Override
+  public boolean drawImage(final Image img, AffineTransform xform, final ImageObserver obs) {
+    final AffineTransform copy = new AffineTransform(xform);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawImage(img, copy, obs);
+      }
+    });
+    return true;
+  }
+
+  @Override
+  public void drawImage(final BufferedImage img, final BufferedImageOp op, final int x, final int y) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawImage(img, op, x, y);
+      }
+    });
+  }
+
+  @Override
+  public void drawRenderedImage(final RenderedImage img, AffineTransform xform) {
+    final AffineTransform copy = new AffineTransform(xform);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawRenderedImage(img, copy);
+      }
+    });
+  }
+
+  @Override
+  public void drawRenderableImage(final RenderableImage img, AffineTransform xform) {
+    final AffineTransform copy = new AffineTransform(xform);
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawRenderableImage(img, copy);
+      }
+    });
+  }
+
+  @Override
+  public boolean drawImage(final Image img, final int x, final int y, final ImageObserver observer) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawImage(img, x, y, observer);
+      }
+    });
+    return true;
+  }
+
+  @Override
+  public boolean drawImage(final Image img, final int x, final int y, final int width, final int height, final ImageObserver observer) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawImage(img, x, y, width, height, observer);
+      }
+    });
+    return true;
+  }
+
+  @Override
+  public boolean drawImage(final Image img, final int x, final int y, final Color bgcolor, final ImageObserver observer) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawImage(img, x, y, bgcolor, observer);
+      }
+    });
+    return true;
+  }
+
+  @Override
+  public boolean drawImage(final Image img, final int x, final int y, final int width, final int height, final Color bgcolor, final ImageObserver observer) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawImage(img, x, y, width, height, bgcolor, observer);
+      }
+    });
+    return true;
+  }
+
+  @Override
+  public boolean drawImage(final Image img, final int dx1, final int dy1, final int dx2, final int dy2, final int sx1, final int sy1, final int sx2, final int sy2, final ImageObserver observer) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, observer);
+      }
+    });
+    return true;
+  }
+
+  @Override
+  public boolean drawImage(final Image img, final int dx1, final int dy1, final int dx2, final int dy2, final int sx1, final int sy1, final int sx2, final int sy2, final Color bgcolor, final ImageObserver observer) {
+    add(new Op() {
+      void replay(Graphics2D g, AffineTransform base) {
+        g.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, bgcolor, observer);
+      }
+    });
+    return true;
+  }
+
+} //DisplayList
@@ -41,7 +41,10 @@ import java.awt.print.PrinterException;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -81,8 +84,18 @@ import javax.print.attribute.standard.OrientationRequested;
   /** current page */
   private int page = 0;
 
-  /** any problem that might occur async */
-  private Throwable throwable;
+  /** number of pages printed */
+  private int printed = 0;
+
+  /** pages rendered ahead of the print system */
+  private final static int AHEAD = 2;
+  private Map<Integer, DisplayList> rendered = new HashMap<Integer, DisplayList>();
+  private Thread spooler;
+  private int next = 0;
+  private boolean canceled = false;
+
+  /** problem of the spooler rendering page next */
+  private Throwable failure;
 
   /** the title */
   private String title;
@@ -421,14 +434,16 @@ import javax.print.attribute.standard.OrientationRequested;
   /**
    * @see genj.util.Trackable#cancelTrackable()
    */
-  public void cancelTrackable() {
+  public synchronized void cancelTrackable() {
+    canceled = true;
+    notifyAll();
   }
 
   /**
    * @see genj.util.Trackable#getProgress()
    */
   public int getProgress() {
-    return (int) (page / (float) (getPages().width * getPages().height) * 100);
+    return (int) (printed / (float) (getPages().width * getPages().height) * 100);
   }
 
   /**
@@ -443,11 +458,34 @@ import javax.print.attribute.standard.OrientationRequested;
     // store current settings
     registry.put(attributes);
 
+    // render pages ahead of the print system
+    synchronized (this) {
+      page = 0;
+      printed = 0;
+      next = 0;
+      canceled = false;
+      failure = null;
+      rendered.clear();
+      spooler = new Thread(new Runnable() {
+        public void run() {
+          spool();
+        }
+      }, "print-spooler");
+      spooler.setDaemon(true);
+      spooler.start();
+    }
+
     // init print
     try {
       service.createPrintJob().print(new SimpleDoc(this, FLAVOR, null), attributes);
     } catch (PrintException e) {
       LOG.log(Level.WARNING, "print failed", e);
+    } finally {
+      synchronized (this) {
+        canceled = true;
+        rendered.clear();
+        notifyAll();
+      }
     }
     
     // debug target?
@@ -473,17 +511,137 @@ import javax.print.attribute.standard.OrientationRequested;
     if (col>=pages.width||row>=pages.height) 
       return NO_SUCH_PAGE;
 
+    // the print system can ask for the same page more than once - replay
+    // the page's content rendered once
+    DisplayList content = getPage(pageIndex);
+    if (content==null)
+      return NO_SUCH_PAGE;
+    content.replay((Graphics2D)graphics);
+    
+    synchronized (this) {
+      printed = Math.max(printed, pageIndex+1);
+    }
+    
+    // next
+    return PAGE_EXISTS;
+  }
+  
+  /**
+   * Get rendered page waiting for the spooler if it's about to render it
+   * @return page or null if canceled
+   * @throws PrinterException if the spooler failed to render the page
+   */
+  private synchronized DisplayList getPage(int pageIndex) throws PrinterException {
+    
+    // move on - pages before aren't needed anymore unless asked for again
     page = pageIndex;
+    for (Iterator<Integer> it = rendered.keySet().iterator(); it.hasNext(); ) {
+      if (it.next().intValue()<pageIndex)
+        it.remove();
+    }
+    notifyAll();
+    
+    while (!canceled && !rendered.containsKey(pageIndex) && next<=pageIndex && spooler!=null) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        canceled = true;
+      }
+    }
+    if (canceled)
+      return null;
+    
+    // spooler failed on it?
+    if (failure!=null && next==pageIndex) {
+      PrinterException e = new PrinterException("can't render page "+(pageIndex+1)+" ("+failure.getMessage()+")");
+      e.initCause(failure);
+      throw e;
+    }
+    
+    // not rendered by spooler?
+    DisplayList result = rendered.get(pageIndex);
+    if (result==null) {
+      result = render(pageIndex);
+      rendered.put(pageIndex, result);
+    }
+    return result;
+  }
+  
+  /**
+   * Render pages ahead of the page currently printed
+   */
+  private void spool() {
+    try {
+      spool(getPages().width * getPages().height);
+    } finally {
+      synchronized (this) {
+        spooler = null;
+        notifyAll();
+      }
+    }
+  }
+  
+  private void spool(int total) {
+    
+    while (true) {
+
+      // wait for print system to catch up
+      int index;
+      synchronized (this) {
+        while (!canceled && next<total && next>page+AHEAD) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+        if (canceled||next>=total)
+          return;
+        index = Math.max(next, page);
+      }
+
+      // render page
+      DisplayList content;
+      try {
+        content = render(index);
+      } catch (Throwable t) {
+        // fail the print job when it gets to this page
+        LOG.log(Level.WARNING, "can't render page "+(index+1), t);
+        synchronized (this) {
+          next = index;
+          failure = t;
+        }
+        return;
+      }
+
+      // keep it
+      synchronized (this) {
+        if (index>=page)
+          rendered.put(index, content);
+        next = index+1;
+        notifyAll();
+      }
+    }
+  }
+  
+  /**
+   * Render a page's content once
+   */
+  private DisplayList render(int pageIndex) {
+    
+    Dimension pages = getPages();
+    
+    DisplayList result = new DisplayList();
     
     // bring forward resolution
-    Graphics2D g2d = (Graphics2D)graphics;
-    g2d.setRenderingHint(DPI.KEY, getResolution());
+    result.setRenderingHint(DPI.KEY, getResolution());
     
-    // draw content
-    print((Graphics2D)graphics, row, col);
+    // draw content - one page at a time
+    synchronized (renderer) {
+      print(result, pageIndex/pages.width, pageIndex%pages.width);
+    }
     
-    // next
-    return PAGE_EXISTS;
+    return result;
   }
   
   
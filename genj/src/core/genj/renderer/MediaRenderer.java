@@ -35,6 +35,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.SoftReference;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.WeakHashMap;
@@ -54,7 +55,8 @@ public class MediaRenderer {
 
   private final static Logger LOG = Logger.getLogger("genj.renderer");
   
-  private final static Map<Property, CacheEntry> CACHE = new WeakHashMap<Property, CacheEntry>();
+  /** images by property - shared by all threads rendering */
+  private final static Map<Property, CacheEntry> CACHE = Collections.synchronizedMap(new WeakHashMap<Property, CacheEntry>());
   
   /**
    * size override 
@@ -241,4 +243,4 @@ public class MediaRenderer {
     
   }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
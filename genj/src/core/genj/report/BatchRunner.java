@@ -1,11 +1,380 @@
+/**
+ * GenJ - GenealogyJ
+ *
+ * Copyright (C) 1997 - 2002 Nils Meier <nils@meiers.net>
+ *
+ * This piece of code is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
 package genj.report;
 
+import genj.fo.Document;
+import genj.fo.Format;
+import genj.gedcom.Entity;
+import genj.gedcom.Gedcom;
+import genj.io.GedcomReaderFactory;
+import genj.option.PropertyOption;
+import genj.util.Origin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Headless execution of reports in batch. Each Gedcom file is loaded once and
+ * shared by all runs on it, runs are executed in parallel with their text output
+ * streamed to files, documents returned by reports are formatted into the same
+ * files (the text output is kept next to them then), and the metrics of all runs
+ * can be written as a summary.
+ */
 public class BatchRunner {
-	
-	public static Object run(Report report, Object context, PrintWriter printWriter) throws Throwable{
-		report.setOut(printWriter);
-		return report.start(context);
-	}
-}
+
+  private final static Logger LOG = Logger.getLogger("genj.report");
+
+  /** executor for runs */
+  private ReportExecutor executor;
+
+  /** loaded gedcoms */
+  private Map<File, Gedcom> file2gedcom = new HashMap<File, Gedcom>();
+
+  /** jobs submitted */
+  private List<Job> jobs = new ArrayList<Job>();
+
+  /**
+   * Run a report synchronously on a copy of it
+   */
+  public static Object run(Report report, Object context, PrintWriter printWriter) throws Throwable {
+    report = report.copy();
+    report.setOut(printWriter);
+    return report.start(context);
+  }
+
+  /**
+   * Constructor
+   * @param threads maximum number of reports running at the same time
+   */
+  public BatchRunner(int threads) {
+    executor = new ReportExecutor(threads);
+  }
+
+  /**
+   * Access to a gedcom - loaded on first access
+   */
+  public Gedcom getGedcom(File file) throws IOException {
+
+    file = file.getAbsoluteFile();
+
+    synchronized (file2gedcom) {
+      Gedcom result = file2gedcom.get(file);
+      if (result==null) {
+        long start = System.currentTimeMillis();
+        result = GedcomReaderFactory.createReader(Origin.create(file.toURI().toURL()), null).read();
+        LOG.info("Loaded "+file+" with "+result.getEntities().size()+" entities in "+(System.currentTimeMillis()-start)+"ms");
+        file2gedcom.put(file, result);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Submit a run of a report - documents are written in the default format
+   * @see #submit(Report, Gedcom, Object, Map, File, Format)
+   */
+  public Job submit(Report report, Gedcom gedcom, Object context, Map<String, String> options, File output) {
+    return submit(report, gedcom, context, options, output, null);
+  }
+
+  /**
+   * Submit a run of a report
+   * @param report the report to run (a copy of it is used)
+   * @param gedcom the gedcom to run on
+   * @param context the context of the run - the gedcom or an entity
+   * @param options values of options by option property name
+   * @param output file for the text output of the report and for the report to write to instead of asking the user
+   *  - if the report writes to it or returns a document the text output is kept in output.log
+   * @param format format for writing a document returned by the report to output (null for default)
+   * @return the job
+   * @throws IllegalArgumentException if an option is unknown
+   */
+  public Job submit(Report report, Gedcom gedcom, Object context, Map<String, String> options, File output, Format format) {
+
+    // prepare a copy
+    Report copy = report.copy();
+    if (options!=null&&!options.isEmpty()) {
+      Map<String, PropertyOption> name2option = new HashMap<String, PropertyOption>();
+      for (PropertyOption option : PropertyOption.introspect(copy, true))
+        name2option.put(option.getProperty(), option);
+      for (Map.Entry<String, String> entry : options.entrySet()) {
+        PropertyOption option = name2option.get(entry.getKey());
+        if (option==null)
+          throw new IllegalArgumentException("Unknown option '"+entry.getKey()+"' in report "+report.getClass().getName());
+        option.setValue(entry.getValue());
+      }
+    }
+    copy.setBatchFile(output);
+
+    // start it
+    Job job = new Job(copy, gedcom, context, output, format!=null ? format : Format.DEFAULT);
+    synchronized (jobs) {
+      jobs.add(job);
+    }
+    executor.execute(job.runner);
+
+    return job;
+  }
+
+  /**
+   * Jobs submitted so far
+   */
+  public List<Job> getJobs() {
+    synchronized (jobs) {
+      return new ArrayList<Job>(jobs);
+    }
+  }
+
+  /**
+   * Wait for all jobs submitted so far
+   */
+  public void waitFor() throws InterruptedException {
+    for (Job job : getJobs())
+      job.waitFor();
+  }
+
+  /**
+   * Stop accepting jobs - jobs already submitted continue
+   */
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  /**
+   * Write a summary of all jobs as comma separated values - one line per job with
+   * report,gedcom,context,output,status,time,cpu,allocated,chars
+   */
+  public void writeSummary(Writer out) throws IOException {
+    out.write("report,gedcom,context,output,status,time,cpu,allocated,chars\n");
+    for (Job job : getJobs()) {
+      Runner runner = job.runner;
+      out.write(csv(runner.getReport().getClass().getName()));
+      out.write(',');
+      out.write(csv(job.gedcom.getOrigin()!=null ? job.gedcom.getOrigin().getFileName() : ""));
+      out.write(',');
+      out.write(csv(job.context instanceof Entity ? ((Entity)job.context).getId() : ""));
+      out.write(',');
+      out.write(csv(job.output!=null ? job.output.getPath() : ""));
+      out.write(',');
+      out.write(job.getStatus());
+      out.write(","+runner.getTime()+","+runner.getCpuTime()+","+runner.getAllocatedBytes()+","+runner.getOutputLength()+"\n");
+    }
+    out.flush();
+  }
+
+  /**
+   * quote a value for csv if necessary
+   */
+  private static String csv(String value) {
+    if (value.indexOf(',')<0&&value.indexOf('"')<0&&value.indexOf('\n')<0)
+      return value;
+    return '"'+value.replaceAll("\"", "\"\"")+'"';
+  }
+
+  /**
+   * A job - one run of a report in batch
+   */
+  public class Job implements Runner.Callback {
+
+    private Runner runner;
+    private Gedcom gedcom;
+    private Object context;
+    private File output;
+    private Format format;
+    private File log;
+    private Writer out;
+    private boolean broken = false;
+    private boolean finished = false;
+    private Throwable failure;
+
+    /** constructor */
+    private Job(Report report, Gedcom gedcom, Object context, File output, Format format) {
+      this.gedcom = gedcom;
+      this.context = context;
+      this.output = output;
+      this.format = format;
+      runner = new Runner(gedcom, context, report, this);
+    }
+
+    /**
+     * Wait for this job - including the writing of its result
+     */
+    public synchronized void waitFor() throws InterruptedException {
+      while (!finished)
+        wait();
+    }
+
+    /**
+     * The run of this job
+     */
+    public Runner getRunner() {
+      return runner;
+    }
+
+    /**
+     * The output of this job
+     */
+    public File getOutput() {
+      return output;
+    }
+
+    /**
+     * The file with the text output of this job - the output itself unless the
+     * report wrote to it or returned a document (null if there's no text output)
+     */
+    public synchronized File getLog() {
+      return log;
+    }
+
+    /**
+     * Status of this job - one of queued, running, ok, cancelled or failed
+     */
+    public String getStatus() {
+      if (!runner.isDone())
+        return runner.isStarted() ? "running" : "queued";
+      try {
+        Object result = runner.waitFor();
+        if (result instanceof InterruptedException)
+          return "cancelled";
+        if (result instanceof Throwable)
+          return "failed";
+        synchronized (this) {
+          return failure!=null ? "failed" : "ok";
+        }
+      } catch (InterruptedException e) {
+        return "running";
+      }
+    }
+
+    /**
+     * callback - stream output to output.log (opened when needed) since
+     * the report might write to output itself
+     */
+    public void handleOutput(Report report, String output) {
+
+      // nowhere to write to?
+      if (this.output==null||broken)
+        return;
+
+      try {
+        if (out==null) {
+          File dir = this.output.getAbsoluteFile().getParentFile();
+          if (dir!=null) dir.mkdirs();
+          synchronized (this) {
+            log = new File(this.output.getPath()+".log");
+          }
+          out = new OutputStreamWriter(new FileOutputStream(log), "UTF-8");
+        }
+        out.write(output);
+        out.flush();
+      } catch (IOException e) {
+        LOG.log(Level.WARNING, "Can't write output of "+report.getClass().getName()+" to "+log, e);
+        broken = true;
+        close();
+      }
+    }
+
+    /**
+     * callback - done
+     */
+    public void handleResult(Report report, Object result) {
+      close();
+      try {
+        // text output is the output unless the report used that itself
+        if (!(result instanceof Document || report.isBatchFileUsed()))
+          moveLog(report);
+        else if (getLog()!=null)
+          LOG.info("Text output of "+report.getClass().getName()+" kept in "+getLog());
+        if (result instanceof Throwable && !(result instanceof InterruptedException)) {
+          LOG.log(Level.WARNING, "Report "+report.getClass().getName()+" failed", (Throwable)result);
+          return;
+        }
+        if (result instanceof Document)
+          write(report, (Document)result);
+        LOG.info("Report "+report.getClass().getName()+" done in "+runner.getTime()+"ms");
+      } finally {
+        synchronized (this) {
+          finished = true;
+          notifyAll();
+        }
+      }
+    }
+
+    /**
+     * write a document to output in our format
+     */
+    private void write(Report report, Document doc) {
+      try {
+        if (output==null)
+          throw new IOException("no output file for document "+doc.getTitle());
+        if (format.getFileExtension()==null)
+          throw new IOException("format "+format+" doesn't write files");
+        File dir = output.getAbsoluteFile().getParentFile();
+        if (dir!=null) dir.mkdirs();
+        // formats cache templates and aren't meant to be used by several threads at once
+        synchronized (format) {
+          format.format(doc, output);
+        }
+      } catch (Throwable t) {
+        LOG.log(Level.WARNING, "Can't write document of "+report.getClass().getName()+" to "+output+" as "+format, t);
+        synchronized (this) {
+          failure = t;
+        }
+      }
+    }
+
+    /**
+     * move text output from output.log to output
+     */
+    private void moveLog(Report report) {
+      File log = getLog();
+      if (log==null)
+        return;
+      output.delete();
+      if (!log.renameTo(output)) {
+        LOG.warning("Can't move output of "+report.getClass().getName()+" from "+log+" to "+output);
+        return;
+      }
+      synchronized (this) {
+        this.log = output;
+      }
+    }
+
+    private void close() {
+      if (out!=null) try {
+        out.close();
+      } catch (IOException e) {
+      }
+      out = null;
+    }
+
+  } //Job
+
+} //BatchRunner
@@ -47,8 +47,10 @@ import java.io.PrintWriter;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -85,6 +87,9 @@ public abstract class Report implements Cloneable {
     }
   };
 
+  /** images for categories */
+  private final static Map<String, Icon> CATEGORY_ICONS = new HashMap<String, Icon>();
+
   /** global report options */
   protected Options OPTIONS = Options.getInstance();
 
@@ -131,6 +136,13 @@ public abstract class Report implements Cloneable {
   private PrintWriter out = NUL;
   private Component owner = null;
   
+  /** progress of current run */
+  private volatile float progress = 0;
+  
+  /** file to use instead of asking the user when run in batch */
+  private File batchFile;
+  private volatile boolean isBatchFileUsed = false;
+  
 
   /**
    * Constructor
@@ -139,6 +151,37 @@ public abstract class Report implements Cloneable {
     registry = new Registry(Registry.get(Report.class), getClass().getName());
   }
 
+  /**
+   * A copy of this report for one run - a new instance with the current values
+   * of this report's options, so nothing a run keeps in fields or changes in
+   * option objects is seen by other runs
+   */
+  /*package*/ Report copy() {
+    
+    Report result;
+    try {
+      result = getClass().newInstance();
+    } catch (Throwable t) {
+      throw new IllegalStateException("can't instantiate "+getClass().getName(), t);
+    }
+    result.registry = registry;
+    result.resources = resources;
+    result.icon = icon;
+    result.file = file;
+    result.owner = owner;
+    
+    // options of the copy are restored from the registry first - then take
+    // over what's set in ours (introspection finds both in the same order)
+    List<? extends Option> from = getOptions(), to = result.getOptions();
+    for (int i=0; i<from.size() && i<to.size(); i++) {
+      PropertyOption option = (PropertyOption)from.get(i), copy = (PropertyOption)to.get(i);
+      if (option.getProperty().equals(copy.getProperty()))
+        copy.setValue(option.getValue());
+    }
+    
+    return result;
+  }
+
   /**
    * integration - log a message
    */
@@ -160,6 +203,20 @@ public abstract class Report implements Cloneable {
     out = set;
   }
 
+  /** 
+   * Set file to use instead of asking the user (this is a thread local operation)
+   */
+  /*package*/ void setBatchFile(File set) {
+    batchFile = set;
+  }
+  
+  /**
+   * Whether the batch file was asked for
+   */
+  /*package*/ boolean isBatchFileUsed() {
+    return isBatchFileUsed;
+  }
+
   /** 
    * Set owner (this is a thread local operation)
    */
@@ -167,6 +224,21 @@ public abstract class Report implements Cloneable {
     owner = set;
   }
 
+  /**
+   * Progress of current run between 0 and 1 
+   */
+  public float getProgress() {
+    return progress;
+  }
+  
+  /**
+   * A sub-class can let the user know how far along it is with this method
+   * @param set progress between 0 and 1
+   */
+  protected final void setProgress(float set) {
+    progress = Math.max(0, Math.min(1, set));
+  }
+
   /**
    * Store report's options
    */
@@ -236,29 +308,40 @@ public abstract class Report implements Cloneable {
   public Icon getIcon() {
     
     // got it?
-    if (icon!=null)
-      return icon;
+    if (icon==null)
+      icon = getCategoryIcon(translate("category"));
 
+    // done
+    return icon;
+  }
+
+  /**
+   * An image for a category
+   */
+  /*package*/ static Icon getCategoryIcon(String cat) {
+    
     // find category in report settings
-    String cat = translate("category");
-    if (cat.equals("category")||cat.length()==0) {
-      icon = DEFAULT_ICON;
-    } else {
-      // resolve an image
-      String file = "Category"+Character.toUpperCase(cat.charAt(0))+cat.substring(1)+".png";
-      InputStream in = null;
-      try {
-        in = Report.class.getResourceAsStream(file);
-        icon = new genj.util.swing.ImageIcon(file, in);
-      } catch (Throwable t) {
-        icon = DEFAULT_ICON;
-      } finally {
-        if (in!=null) try { in.close(); } catch (IOException e) {}
+    if (cat==null||cat.equals("category")||cat.length()==0)
+      return DEFAULT_ICON;
+
+    synchronized (CATEGORY_ICONS) {
+      Icon result = CATEGORY_ICONS.get(cat);
+      if (result==null) {
+        // resolve an image
+        String file = "Category"+Character.toUpperCase(cat.charAt(0))+cat.substring(1)+".png";
+        InputStream in = null;
+        try {
+          in = Report.class.getResourceAsStream(file);
+          result = new genj.util.swing.ImageIcon(file, in);
+        } catch (Throwable t) {
+          result = DEFAULT_ICON;
+        } finally {
+          if (in!=null) try { in.close(); } catch (IOException e) {}
+        }
+        CATEGORY_ICONS.put(cat, result);
       }
+      return result;
     }
-    
-    // done
-    return icon;
   }
 
   /**
@@ -353,6 +436,12 @@ public abstract class Report implements Cloneable {
    */
   public File getFileFromUser(String title, String button, boolean askForOverwrite, String extension) {
 
+    // running in batch?
+    if (batchFile!=null) {
+      isBatchFileUsed = true;
+      return batchFile;
+    }
+
     // show filechooser
     String dir = registry.get("file", EnvironmentChecker.getProperty("user.home", ".", "looking for report file to let the user choose from"));
     JFileChooser chooser = new JFileChooser(dir);
@@ -384,6 +473,12 @@ public abstract class Report implements Cloneable {
    */
   public File getDirectoryFromUser(String title, String button) {
 
+    // running in batch?
+    if (batchFile!=null) {
+      isBatchFileUsed = true;
+      return batchFile;
+    }
+
     // show directory chooser
     String dir = registry.get("dir", EnvironmentChecker.getProperty("user.home", ".", "looking for report dir to let the user choose from"));
     JFileChooser chooser = new JFileChooser(dir);
@@ -675,7 +770,7 @@ public abstract class Report implements Cloneable {
   /**
    * Access to report properties
    */
-  protected Resources getResources() {
+  protected synchronized Resources getResources() {
     if (resources==null) 
       // pull from associated .properties file
       resources = new Resources(getClass().getResourceAsStream(getTypeName()+".properties"));
@@ -836,6 +931,13 @@ public abstract class Report implements Cloneable {
     }
   }
 
+  /**
+   * Called when a gedcom was closed - a report that keeps state for a gedcom
+   * beyond a run has to let go of it
+   */
+  protected void gedcomClosed(Gedcom gedcom) {
+  }
+
   /**
    * Tells wether this report doesn't change information in the Gedcom-file
    */
@@ -0,0 +1,222 @@
+/**
+ * GenJ - GenealogyJ
+ *
+ * Copyright (C) 1997 - 2002 Nils Meier <nils@meiers.net>
+ *
+ * This piece of code is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package genj.report;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+
+import javax.swing.Icon;
+
+/**
+ * What we know about a report without loading it - class, name, category, info
+ * and the types of context its start methods accept. The report itself is
+ * instantiated on first use only.
+ */
+public class ReportDescriptor {
+
+  /** the loader */
+  private ReportLoader loader;
+
+  /** report class and file */
+  private String clazz;
+  private File file;
+
+  /** cached information */
+  private String name, category, categoryKey, info;
+
+  /** types of start(...) or null if report decides itself in accepts() */
+  private String[] types;
+  private Class<?>[] resolved;
+
+  /** the report once loaded */
+  private Report report;
+
+  /**
+   * Constructor - from index
+   */
+  /*package*/ ReportDescriptor(ReportLoader loader, String clazz, File file, Properties index) {
+    this.loader = loader;
+    this.clazz = clazz;
+    this.file = file;
+    name = index.getProperty(clazz+".name");
+    category = index.getProperty(clazz+".category", "");
+    categoryKey = index.getProperty(clazz+".category.key", "");
+    info = index.getProperty(clazz+".info", "");
+    String accepts = index.getProperty(clazz+".accepts");
+    types = accepts==null ? null : (accepts.length()==0 ? new String[0] : accepts.split(","));
+  }
+
+  /**
+   * Constructor - from a loaded report
+   */
+  /*package*/ ReportDescriptor(ReportLoader loader, Report report) throws NoSuchMethodException {
+    this.loader = loader;
+    this.report = report;
+    this.clazz = report.getClass().getName();
+    this.file = report.getFile();
+    name = report.getName();
+    if (name==null) name = clazz;
+    category = report.getCategory();
+    categoryKey = report.translate("category");
+    info = report.getInfo();
+    if (info==null) info = "";
+    // report decides itself?
+    if (report.getClass().getMethod("accepts", Object.class).getDeclaringClass()==Report.class) {
+      // same as Report.getStartMethod()
+      List<String> list = new ArrayList<String>();
+      for (Method method : report.getClass().getDeclaredMethods()) {
+        if (method.getName().equals("start")&&method.getParameterTypes().length==1)
+          list.add(method.getParameterTypes()[0].getName());
+      }
+      types = list.toArray(new String[list.size()]);
+    }
+  }
+
+  /**
+   * Store information in index
+   */
+  /*package*/ void store(Properties index) {
+    index.setProperty(clazz+".name", name);
+    index.setProperty(clazz+".category", category);
+    index.setProperty(clazz+".category.key", categoryKey);
+    index.setProperty(clazz+".info", info);
+    if (types!=null) {
+      StringBuffer accepts = new StringBuffer();
+      for (int i=0;i<types.length;i++) {
+        if (i>0) accepts.append(',');
+        accepts.append(types[i]);
+      }
+      index.setProperty(clazz+".accepts", accepts.toString());
+    }
+  }
+
+  /**
+   * Whether an index contains information for given report
+   */
+  /*package*/ static boolean isIndexed(String clazz, Properties index) {
+    return index.getProperty(clazz+".name")!=null;
+  }
+
+  /**
+   * Report's class name
+   */
+  public String getClassName() {
+    return clazz;
+  }
+
+  /**
+   * Report's file
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Report's name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Report's category
+   */
+  public String getCategory() {
+    return category;
+  }
+
+  /**
+   * Report's icon
+   */
+  public Icon getIcon() {
+    return report!=null ? report.getIcon() : Report.getCategoryIcon(categoryKey);
+  }
+
+  /**
+   * Report's info
+   */
+  public String getInfo() {
+    return info;
+  }
+
+  /**
+   * Whether the report has been loaded
+   */
+  public synchronized boolean isLoaded() {
+    return report!=null;
+  }
+
+  /**
+   * The report - loaded on first access
+   * @return report or null if it can't be loaded
+   */
+  public synchronized Report getReport() {
+    if (report==null) {
+      report = loader.instantiate(clazz, file);
+      if (report==null)
+        types = new String[0];
+    }
+    return report;
+  }
+
+  /**
+   * Whether the report allows to be run on a given context - see Report.accepts()
+   * @return title of action for given context or null for n/a
+   */
+  public String accepts(Object context) {
+
+    // let report decide?
+    if (types==null) {
+      Report report = getReport();
+      return report!=null ? report.accepts(context) : null;
+    }
+
+    // check types of start methods
+    for (Class<?> type : resolve()) {
+      if (type.isAssignableFrom(context.getClass()))
+        return name;
+    }
+    return null;
+  }
+
+  /**
+   * resolve types of start methods
+   */
+  private synchronized Class<?>[] resolve() {
+    if (resolved==null) {
+      Class<?>[] result = new Class<?>[types.length];
+      for (int i=0;i<types.length;i++) {
+        try {
+          result[i] = Class.forName(types[i], false, loader.getClassLoader());
+        } catch (Throwable t) {
+          ReportView.LOG.log(Level.FINE, "Can't resolve "+types[i]+" for "+clazz, t);
+          result[i] = Void.class;
+        }
+      }
+      resolved = result;
+    }
+    return resolved;
+  }
+
+} //ReportDescriptor
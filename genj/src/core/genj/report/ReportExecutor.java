@@ -0,0 +1,100 @@
+/**
+ * GenJ - GenealogyJ
+ *
+ * Copyright (C) 1997 - 2002 Nils Meier <nils@meiers.net>
+ *
+ * This piece of code is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package genj.report;
+
+import genj.gedcom.Gedcom;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Execution of reports on a bounded number of threads. Each run works on its
+ * own copy of a report so that several runs - even of the same report - can
+ * happen at the same time.
+ */
+public class ReportExecutor implements ThreadFactory {
+
+  /** default number of threads */
+  private final static int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  /** a singleton */
+  private static ReportExecutor singleton;
+
+  /** threads */
+  private ExecutorService executor;
+  private int threads = 0;
+
+  /**
+   * Access
+   */
+  public static synchronized ReportExecutor getInstance() {
+    if (singleton==null)
+      singleton = new ReportExecutor(THREADS);
+    return singleton;
+  }
+
+  /**
+   * Constructor
+   * @param threads maximum number of reports running at the same time
+   */
+  public ReportExecutor(int threads) {
+    executor = Executors.newFixedThreadPool(threads, this);
+  }
+
+  /**
+   * Start a run of a report - runs are queued if all threads are busy
+   * @param report the report to run (a copy of it is used)
+   * @param gedcom the gedcom the report works on
+   * @param context the report's context
+   * @param callback callback for output and result
+   * @return the run
+   */
+  public Runner start(Report report, Gedcom gedcom, Object context, Runner.Callback callback) {
+    Runner runner = new Runner(gedcom, context, report.copy(), callback);
+    execute(runner);
+    return runner;
+  }
+
+  /**
+   * Start a prepared run
+   */
+  /*package*/ void execute(Runner runner) {
+    executor.execute(runner);
+  }
+
+  /**
+   * Stop accepting runs - runs already started or queued continue
+   */
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  /**
+   * thread factory callback
+   */
+  public synchronized Thread newThread(Runnable r) {
+    Thread result = new Thread(r, "report-"+(++threads));
+    result.setDaemon(true);
+    result.setPriority(Thread.NORM_PRIORITY-1);
+    return result;
+  }
+
+} //ReportExecutor
@@ -19,9 +19,15 @@
  */
 package genj.report;
 
+import genj.gedcom.Gedcom;
 import genj.util.EnvironmentChecker;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -30,16 +36,22 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
 import java.util.logging.Level;
 
 /**
- * ClassLoad for Reports
+ * ClassLoad for Reports - what's known about reports is kept in an index
+ * of descriptors so that reports don't have to be loaded before they're used
  */
 public class ReportLoader {
 
+  /** version of index */
+  private final static String INDEX_VERSION = "1";
+
   /** reports we have */
-  private List<Report> instances = new ArrayList<Report>(10);
+  private List<ReportDescriptor> descriptors = new ArrayList<ReportDescriptor>(10);
   
   /** report files */
   private Map<File,String> file2reportclass = new HashMap<File, String>(10);
@@ -47,6 +59,9 @@ public class ReportLoader {
   /** classpath */
   private List<URL> classpath = new ArrayList<URL>(10);
   
+  /** classloader for reports */
+  private URLClassLoader classloader;
+  
   /** whether reports are in classpath */
   private boolean isReportsInClasspath = false;
   
@@ -83,9 +98,9 @@ public class ReportLoader {
    * Report by class name
    */
   public Report getReportByName(String classname) {
-    for (Report report : instances) {
-      if (report.getClass().getName().equals(classname))
-        return report;
+    for (ReportDescriptor descriptor : descriptors) {
+      if (descriptor.getClassName().equals(classname))
+        return descriptor.getReport();
     }
     return null;
     
@@ -104,11 +119,20 @@ public class ReportLoader {
     ));
   }
   
+  /**
+   * index resolver
+   */
+  /*package*/ static File getIndexFile() {
+    return new File(EnvironmentChecker.getProperty("user.home.genj/reports.index", "reports.index", "looking for report index"));
+  }
+  
   /**
    * Constructor
    */
   private ReportLoader() {
 
+    long start = System.currentTimeMillis();
+    
     File base = getReportDirectory();
     ReportView.LOG.info("Reading reports from "+base);
       
@@ -121,39 +145,145 @@ public class ReportLoader {
     parseDir(base, null);
     
     // Prepare classloader
-    URLClassLoader cl = new URLClassLoader((URL[])classpath.toArray(new URL[classpath.size()]), getClass().getClassLoader());
+    classloader = new URLClassLoader((URL[])classpath.toArray(new URL[classpath.size()]), getClass().getClassLoader());
     
-    // Load reports
+    // what do we know already?
+    File indexFile = getIndexFile();
+    Properties index = readIndex(indexFile, base);
+    boolean dirty = false;
+    
+    // Describe reports - from index if up to date, by loading it otherwise
+    int loaded = 0;
     for (File file : file2reportclass.keySet()) {
       String clazz = (String)file2reportclass.get(file); 
+      
+      if (!isReportsInClasspath&&getClass().getClassLoader().getResource(clazz.replace('.', '/')+".class")!=null) {
+        ReportView.LOG.warning("Reports are in classpath and can't be reloaded");
+        isReportsInClasspath = true;
+      }
+      
+      String stamp = getStamp(file);
+      if (stamp.equals(index.getProperty(clazz)) && ReportDescriptor.isIndexed(clazz, index)) {
+        descriptors.add(new ReportDescriptor(this, clazz, file, index));
+        continue;
+      }
+      
+      Report r = instantiate(clazz, file);
+      if (r==null)
+        continue;
       try {
-        Report r = (Report)cl.loadClass(clazz).newInstance();
-        r.putFile(file);
-        if (!isReportsInClasspath&&r.getClass().getClassLoader()!=cl) {
-          ReportView.LOG.warning("Reports are in classpath and can't be reloaded");
-          isReportsInClasspath = true;
-        }
-        instances.add(r);
+        ReportDescriptor descriptor = new ReportDescriptor(this, r);
+        descriptor.store(index);
+        index.setProperty(clazz, stamp);
+        descriptors.add(descriptor);
+        loaded++;
+        dirty = true;
       } catch (Throwable t) {
-        ReportView.LOG.log(Level.WARNING, "Failed to instantiate "+clazz, t);
+        ReportView.LOG.log(Level.WARNING, "Failed to describe "+clazz, t);
       }
     }
     
     // sort 'em
-    Collections.sort(instances, new Comparator<Report>() { 
-      public int compare(Report a, Report b) {
-        // 20063008 this can actually fail if the report is bad
-        try {
-          return a.getName().compareTo(b.getName());
-        } catch (Throwable t) {
-          return 0;
-        }
+    Collections.sort(descriptors, new Comparator<ReportDescriptor>() { 
+      public int compare(ReportDescriptor a, ReportDescriptor b) {
+        return a.getName().compareTo(b.getName());
       }
     });
     
+    // keep index for next time
+    if (dirty||!String.valueOf(descriptors.size()).equals(index.getProperty("index.reports")))
+      writeIndex(indexFile, base);
+    
+    ReportView.LOG.fine("Described "+descriptors.size()+" reports ("+loaded+" loaded) in "+(System.currentTimeMillis()-start)+"ms");
+    
     // done
   }
   
+  /**
+   * Instantiate a report
+   * @return report or null if instantiation failed
+   */
+  /*package*/ Report instantiate(String clazz, File file) {
+    try {
+      Report r = (Report)classloader.loadClass(clazz).newInstance();
+      r.putFile(file);
+      return r;
+    } catch (Throwable t) {
+      ReportView.LOG.log(Level.WARNING, "Failed to instantiate "+clazz, t);
+      return null;
+    }
+  }
+  
+  /**
+   * The classloader for reports
+   */
+  /*package*/ ClassLoader getClassLoader() {
+    return classloader;
+  }
+  
+  /**
+   * Stamp of a report's files - if any changes the report has to be described again
+   */
+  private String getStamp(File file) {
+    String name = file.getName();
+    File properties = new File(file.getParentFile(), name.substring(0, name.length()-".class".length())+".properties");
+    return file.lastModified()+"/"+file.length()+"/"+properties.lastModified();
+  }
+  
+  /**
+   * Read index - an index of another version, language or report directory is ignored
+   */
+  private Properties readIndex(File file, File base) {
+    Properties result = new Properties();
+    if (!file.exists())
+      return result;
+    try {
+      InputStream in = new FileInputStream(file);
+      try {
+        result.load(in);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      ReportView.LOG.log(Level.INFO, "Can't read report index "+file, e);
+      result.clear();
+    }
+    if (!INDEX_VERSION.equals(result.getProperty("index.version"))
+      ||!Locale.getDefault().toString().equals(result.getProperty("index.locale"))
+      ||!base.getAbsolutePath().equals(result.getProperty("index.dir")))
+      result.clear();
+    return result;
+  }
+  
+  /**
+   * Write index of current descriptors
+   */
+  private void writeIndex(File file, File base) {
+    
+    Properties index = new Properties();
+    index.setProperty("index.version", INDEX_VERSION);
+    index.setProperty("index.locale", Locale.getDefault().toString());
+    index.setProperty("index.dir", base.getAbsolutePath());
+    index.setProperty("index.reports", String.valueOf(descriptors.size()));
+    for (ReportDescriptor descriptor : descriptors) {
+      descriptor.store(index);
+      index.setProperty(descriptor.getClassName(), getStamp(descriptor.getFile()));
+    }
+    
+    try {
+      File dir = file.getParentFile();
+      if (dir!=null) dir.mkdirs();
+      OutputStream out = new FileOutputStream(file);
+      try {
+        index.store(out, "GenJ report index");
+      } finally {
+        out.close();
+      }
+    } catch (IOException e) {
+      ReportView.LOG.log(Level.INFO, "Can't write report index "+file, e);
+    }
+  }
+  
   /**
    * Parse directory for lib- and report files
    */
@@ -221,19 +351,46 @@ public class ReportLoader {
   }
 
   /**
-   * Which reports do we have
+   * Which reports do we have - without loading them
+   */
+  public List<ReportDescriptor> getDescriptors() {
+    return Collections.unmodifiableList(descriptors);
+  }
+
+  /**
+   * Which reports do we have - this loads all reports
    */
   public Report[] getReports() {
-    return (Report[])instances.toArray(new Report[instances.size()]);
+    List<Report> result = new ArrayList<Report>(descriptors.size());
+    for (ReportDescriptor descriptor : descriptors) {
+      Report report = descriptor.getReport();
+      if (report!=null)
+        result.add(report);
+    }
+    return (Report[])result.toArray(new Report[result.size()]);
   }
 
   /**
-   * Save options of all reports
+   * Save options of all reports that were loaded
    */
   /*package*/ void saveOptions() {
-    Report[] rs = getReports();
-    for (int r=0;r<rs.length;r++)
-      rs[r].saveOptions();
+    for (ReportDescriptor descriptor : descriptors) {
+      if (descriptor.isLoaded()&&descriptor.getReport()!=null)
+        descriptor.getReport().saveOptions();
+    }
+  }
+  
+  /**
+   * Let all reports that were loaded know that a gedcom was closed
+   */
+  /*package*/ void gedcomClosed(Gedcom gedcom) {
+    for (ReportDescriptor descriptor : descriptors) {
+      if (descriptor.isLoaded()&&descriptor.getReport()!=null) try {
+        descriptor.getReport().gedcomClosed(gedcom);
+      } catch (Throwable t) {
+        ReportView.LOG.log(Level.WARNING, "Report "+descriptor.getClassName()+" failed in gedcomClosed()", t);
+      }
+    }
   }
   
   /**
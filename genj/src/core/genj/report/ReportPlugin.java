@@ -77,7 +77,7 @@ public class ReportPlugin extends WorkbenchAdapter implements ActionProvider {
 
         // Look through reports
         Map<String, Action2.Group> categories = new HashMap<String, Action2.Group>();
-        for (Report report : ReportLoader.getInstance().getReports()) {
+        for (ReportDescriptor report : ReportLoader.getInstance().getDescriptors()) {
           try {
             String action = report.accepts(context.getGedcom());
             if (action!=null) {
@@ -88,10 +88,10 @@ public class ReportPlugin extends WorkbenchAdapter implements ActionProvider {
                 categories.put(cat, catgroup);
                 workbenchActions.add(catgroup);
               }
-              catgroup.add(new ActionRun(report.accepts(context.getGedcom()), context.getGedcom(), report));
+              catgroup.add(new ActionRun(action, context.getGedcom(), report));
             }
           } catch (Throwable t) {
-            ReportView.LOG.log(Level.WARNING, "Report "+report.getClass().getName()+" failed in accept()", t);
+            ReportView.LOG.log(Level.WARNING, "Report "+report.getClassName()+" failed in accept()", t);
           }
         }
         
@@ -181,7 +181,7 @@ public class ReportPlugin extends WorkbenchAdapter implements ActionProvider {
   
     // Look through reports
     Map<String, Action2.Group> categories = new HashMap<String, Action2.Group>();
-    for (Report report : ReportLoader.getInstance().getReports()) {
+    for (ReportDescriptor report : ReportLoader.getInstance().getDescriptors()) {
       try {
         String accept = report.accepts(context); 
         if (accept!=null) {
@@ -199,7 +199,7 @@ public class ReportPlugin extends WorkbenchAdapter implements ActionProvider {
           }
         }
       } catch (Throwable t) {
-        ReportView.LOG.log(Level.WARNING, "Report "+report.getClass().getName()+" failed in accept()", t);
+        ReportView.LOG.log(Level.WARNING, "Report "+report.getClassName()+" failed in accept()", t);
       }
     }
     
@@ -217,13 +217,9 @@ public class ReportPlugin extends WorkbenchAdapter implements ActionProvider {
     /** context */
     private Object context;
     /** report */
-    private Report report;
+    private ReportDescriptor report;
     /** constructor */
-    private ActionRun(Report report) {
-      this(report.getName(), null, report);
-    }
-    /** constructor */
-    private ActionRun(String txt, Object context, Report report) {
+    private ActionRun(String txt, Object context, ReportDescriptor report) {
       // remember
       this.context = context;
       this.report = report;
@@ -242,6 +238,10 @@ public class ReportPlugin extends WorkbenchAdapter implements ActionProvider {
     
     /** callback */
     public void actionPerformed(ActionEvent event) {
+      // load it now
+      Report report = this.report.getReport();
+      if (report==null)
+        return;
       showReportPickerOnOpen = false;
       try {
         ReportView view = (ReportView)workbench.openView(ReportViewFactory.class);
@@ -255,6 +255,10 @@ public class ReportPlugin extends WorkbenchAdapter implements ActionProvider {
   public void viewClosed(Workbench workbench, View view) {
   }
 
+  public void gedcomClosed(Workbench workbench, Gedcom gedcom) {
+    ReportLoader.getInstance().gedcomClosed(gedcom);
+  }
+
   public void viewOpened(Workbench workbench, View view) {
     if (view instanceof ReportView) {
       if (showReportPickerOnOpen)
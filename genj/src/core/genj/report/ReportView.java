@@ -114,6 +114,9 @@ public class ReportView extends View {
   private ActionStart actionStart = new ActionStart();
   private ActionStop actionStop = new ActionStop();
   private ActionShow actionShow = new ActionShow();
+  
+  /** current run */
+  private Runner runner;
 
   /** registry for settings */
   private final static Registry REGISTRY = Registry.get(ReportView.class);
@@ -219,7 +222,7 @@ public class ReportView extends View {
     ReportPluginFactory.getInstance().setEnabled(false);
 
     // kick it off
-    new Thread(new Runner(gedcom, context, report, (Runner.Callback) Spin.over(new RunnerCallback()))).start();
+    runner = ReportExecutor.getInstance().start(report, gedcom, context, (Runner.Callback) Spin.over(new RunnerCallback()));
 
   }
   
@@ -250,6 +253,7 @@ public class ReportView extends View {
       LOG.fine("Result of report " + report.getName() + " = " + result);
 
       // let report happend again
+      runner = null;
       actionStart.setEnabled(gedcom != null);
       actionStop.setEnabled(false);
       ReportPluginFactory.getInstance().setEnabled(true);
@@ -303,7 +307,8 @@ public class ReportView extends View {
    * stop any running report
    */
   public void stopReport() {
-    // TODO there's no way to stop a running java report atm
+    if (runner!=null)
+      runner.cancel();
   }
 
   @Override
@@ -440,6 +445,7 @@ public class ReportView extends View {
       Format formatter = options.getFormat();
       File file = options.getFile();
       if (rc!=0 || formatter.getFileExtension() == null || file == null) {
+        doc.dispose();
         showResult(null);
         return;
       }
@@ -473,9 +479,7 @@ public class ReportView extends View {
   public void populate(ToolBar toolbar) {
 
     toolbar.add(actionStart);
-    
-    // TODO stopping report doesn't really work anyways
-    //toolbar.add(actionStop);
+    toolbar.add(actionStop);
     
     toolbar.add(new JToggleButton(actionShow));
     toolbar.add(new ActionSave());
@@ -25,13 +25,18 @@ import genj.gedcom.UnitOfWork;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * A runner for reports
+ * A runner for one run of a report - started through ReportExecutor. A run can
+ * be cancelled and reports its progress. Read-only reports are run under a
+ * read lock on the gedcom, others in a unit of work.
  */
-/*package*/ class Runner implements Runnable {
+public class Runner implements Runnable {
   
   private final static Logger LOG = Logger.getLogger("genj.report");
 
@@ -43,6 +48,13 @@ import java.util.logging.Logger;
   private Callback callback;
   private Object result;
   
+  /** state */
+  private Thread thread;
+  private boolean started, cancelled, done;
+  
+  /** metrics */
+  private long time = -1, cpu = -1, allocated = -1, chars = 0;
+  
   /**
    * Constructor
    * @param gedcom Gedcom the report works on
@@ -57,21 +69,126 @@ import java.util.logging.Logger;
     this.callback = callback;
   }
   
+  /**
+   * The report of this run
+   */
+  public Report getReport() {
+    return report;
+  }
+  
+  /**
+   * Progress of this run between 0 and 1
+   */
+  public float getProgress() {
+    return isDone() ? 1 : report.getProgress();
+  }
+  
+  /**
+   * Whether this run has started
+   */
+  public synchronized boolean isStarted() {
+    return started;
+  }
+  
+  /**
+   * Whether this run is done
+   */
+  public synchronized boolean isDone() {
+    return done;
+  }
+  
+  /**
+   * Milliseconds this run took or -1 if not done
+   */
+  public synchronized long getTime() {
+    return time;
+  }
+  
+  /**
+   * Milliseconds of cpu time this run took or -1 if not available
+   */
+  public synchronized long getCpuTime() {
+    return cpu;
+  }
+  
+  /**
+   * Bytes allocated by this run or -1 if not available
+   */
+  public synchronized long getAllocatedBytes() {
+    return allocated;
+  }
+  
+  /**
+   * Number of characters output by this run
+   */
+  public synchronized long getOutputLength() {
+    return chars;
+  }
+  
+  /**
+   * Wait for this run to be done
+   * @return the report's result or throwable
+   */
+  public synchronized Object waitFor() throws InterruptedException {
+    while (!done)
+      wait();
+    return result;
+  }
+  
+  /**
+   * Cancel this run - a running report is interrupted
+   */
+  public void cancel() {
+    
+    synchronized (this) {
+      if (done||cancelled)
+        return;
+      cancelled = true;
+      if (thread!=null) {
+        thread.interrupt();
+        return;
+      }
+    }
+    
+    // never started
+    done(new InterruptedException());
+  }
+  
   public void run() {
     
+    synchronized (this) {
+      if (cancelled)
+        return;
+      thread = Thread.currentThread();
+      started = true;
+    }
+    
     // set report context
     report.setOut(new PrintWriter(new WriterImpl()));
     
+    // measure
+    long start = System.currentTimeMillis();
+    long startCpu = getThreadCpuTime(), startAllocated = getThreadAllocatedBytes();
+    
     // run
     try{
-      if (report.isReadOnly()) {
+      if (gedcom==null) {
         result = report.start(context);
+      } else if (report.isReadOnly()) {
+        gedcom.doReadOnlyWork(new UnitOfWork() {
+          public void perform(Gedcom gedcom) {
+            try {
+              result = report.start(context);
+            } catch (Throwable t) {
+              throw new RuntimeException(t);
+            }
+          }
+        });
       } else {
-        final Object finalContext = context;
         gedcom.doUnitOfWork(new UnitOfWork() {
           public void perform(Gedcom gedcom) {
             try {
-              result = report.start(finalContext);
+              result = report.start(context);
             } catch (Throwable t) {
               throw new RuntimeException(t);
             }
@@ -79,27 +196,72 @@ import java.util.logging.Logger;
         });
       }    
     } catch (Throwable t) {
-      if (t.getCause()!=null)
+      while (t.getCause()!=null&&t instanceof RuntimeException)
         t = t.getCause();
       result = t;
     } finally {
       // flush
       report.flush();
       report.getOut().close();
+      // keep metrics
+      synchronized (this) {
+        time = System.currentTimeMillis()-start;
+        if (startCpu>=0) cpu = (getThreadCpuTime()-startCpu)/1000000;
+        if (startAllocated>=0) allocated = getThreadAllocatedBytes()-startAllocated;
+      }
+      // don't leave an interrupt for the next run on this thread
+      synchronized (this) {
+        thread = null;
+        Thread.interrupted();
+      }
     }
     
     // signal done
-    callback.handleResult(report, result);
+    done(result);
 
   }
   
   /**
-   * A printwriter that directs output to listener
+   * cpu time of current thread in nanoseconds or -1
+   */
+  private static long getThreadCpuTime() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : -1;
+  }
+  
+  /**
+   * bytes allocated by current thread or -1 - only available on some VMs
+   */
+  private static long getThreadAllocatedBytes() {
+    try {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      Method method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", Long.TYPE);
+      return ((Long)method.invoke(bean, new Long(Thread.currentThread().getId()))).longValue();
+    } catch (Throwable t) {
+      return -1;
+    }
+  }
+  
+  /**
+   * mark done and let callback know
+   */
+  private void done(Object result) {
+    synchronized (this) {
+      this.result = result;
+      done = true;
+      notifyAll();
+    }
+    callback.handleResult(report, result);
+  }
+  
+  /**
+   * A writer that directs output to listener - only the report's thread
+   * writes so there's no need for synchronization in the buffer
    */
   private class WriterImpl extends Writer {
 
     /** buffer */
-    private StringBuffer buffer = new StringBuffer(4*1024);
+    private StringBuilder buffer = new StringBuilder(4*1024);
 
     /** timer */
     private long lastFlush = -1;
@@ -125,6 +287,9 @@ import java.util.logging.Logger;
       lastFlush = System.currentTimeMillis();
 
       // dump buffer
+      synchronized (Runner.this) {
+        chars += buffer.length();
+      }
       callback.handleOutput(report, buffer.toString());
         
       // clear it
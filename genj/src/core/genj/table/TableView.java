@@ -25,6 +25,7 @@ import genj.common.PropertyTableWidget;
 import genj.gedcom.Context;
 import genj.gedcom.Entity;
 import genj.gedcom.Gedcom;
+import genj.gedcom.GedcomMetaListener;
 import genj.gedcom.Property;
 import genj.gedcom.TagPath;
 import genj.util.Registry;
@@ -38,6 +39,7 @@ import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -280,7 +282,7 @@ public class TableView extends View {
   /** 
    * A PropertyTableModelWrapper
    */
-  private class Model extends AbstractPropertyTableModel {
+  private class Model extends AbstractPropertyTableModel implements GedcomMetaListener {
 
     /** mode */
     private Mode mode;
@@ -288,10 +290,33 @@ public class TableView extends View {
     /** our cached rows */
     private List<Entity> rows;
     
+    /** index of entity to row */
+    private Map<Entity, Integer> entity2row;
+    
+    /** columns by path */
+    private Map<TagPath, int[]> path2cols = new HashMap<TagPath, int[]>();
+    
+    /** changed rows by column while gedcom is locked for write (null otherwise) */
+    private BitSet[] changes = null;
+    
     /** constructor */
     private Model(Gedcom gedcom, Mode set) {
       super(gedcom);
       mode = set;
+      // prepare column matching 
+      TagPath[] paths = mode.getPaths();
+      for (int i=0;i<paths.length;i++) {
+        int[] cols = path2cols.get(paths[i]);
+        if (cols==null) {
+          cols = new int[]{ i };
+        } else {
+          int[] more = new int[cols.length+1];
+          System.arraycopy(cols, 0, more, 0, cols.length);
+          more[cols.length] = i;
+          cols = more;
+        }
+        path2cols.put(paths[i], cols);
+      }
     }
     
     /** # columns */
@@ -302,8 +327,12 @@ public class TableView extends View {
     /** # rows */
     public int getNumRows() {
       // cache entities if not there yet
-      if (rows==null) 
+      if (rows==null) {
         rows = new ArrayList<Entity>(super.getGedcom().getEntities(mode.getTag()));
+        entity2row = new HashMap<Entity, Integer>(rows.size()*2);
+        for (int i=0;i<rows.size();i++)
+          entity2row.put(rows.get(i), i);
+      }
       // ready 
       return rows.size();
     }
@@ -339,8 +368,12 @@ public class TableView extends View {
       // an entity we're not looking at?
       if (!mode.getTag().equals(entity.getTag())) 
         return;
+      // pending changes have to go out before rows move
+      flushChanges();
       // add it
+      getNumRows();
       rows.add(entity);
+      entity2row.put(entity, rows.size()-1);
       // tell about it
       fireRowsAdded(rows.size()-1, rows.size()-1);
       // done
@@ -351,18 +384,24 @@ public class TableView extends View {
       // an entity we're not looking at?
       if (!mode.getTag().equals(entity.getTag())) 
         return;
-      // delete it
-      for (int i=0;i<rows.size();i++) {
-        if (rows.get(i)==entity) {
-          rows.remove(i);
-          // tell about it
-          fireRowsDeleted(i, i);
-          // done
-          return;
-        }
+      // find it
+      getNumRows();
+      Integer row = entity2row.remove(entity);
+      if (row==null) {
+        // hmm, strange
+        LOG.warning("got notified that entity "+entity.getId()+" was deleted but it wasn't in rows in the first place");
+        return;
       }
-      // hmm, strange
-      LOG.warning("got notified that entity "+entity.getId()+" was deleted but it wasn't in rows in the first place");
+      // pending changes have to go out before rows move
+      flushChanges();
+      // delete it
+      int i = row.intValue();
+      rows.remove(i);
+      for (int j=i;j<rows.size();j++) 
+        entity2row.put(rows.get(j), j);
+      // tell about it
+      fireRowsDeleted(i, i);
+      // done
     }
 
     /** gedcom callback */
@@ -385,19 +424,63 @@ public class TableView extends View {
       if (!mode.getTag().equals(entity.getTag())) 
         return;
       // a path we're interested in?
-      TagPath[] paths = mode.getPaths();
-      for (int i=0;i<paths.length;i++) {
-        if (paths[i].equals(path)) {
-          for (int j=0;j<rows.size();j++) {
-            if (rows.get(j)==entity) {
-                fireRowsChanged(j,j,i);
-                return;
-            }
-          }      
-        }
+      int[] cols = path2cols.get(path);
+      if (cols==null)
+        return;
+      // a row we know?
+      getNumRows();
+      Integer row = entity2row.get(entity);
+      if (row==null)
+        return;
+      // remember or tell right away
+      for (int i=0;i<cols.length;i++) {
+        if (changes!=null) 
+          changes[cols[i]].set(row.intValue());
+        else
+          fireRowsChanged(row.intValue(), row.intValue(), cols[i]);
       }
       // done
     }
+    
+    /** tell about changes collected so far - one event per block of rows */
+    private void flushChanges() {
+      if (changes==null)
+        return;
+      for (int col=0;col<changes.length;col++) {
+        BitSet changed = changes[col];
+        for (int start=changed.nextSetBit(0); start>=0; ) {
+          int end = changed.nextClearBit(start);
+          fireRowsChanged(start, end-1, col);
+          start = changed.nextSetBit(end);
+        }
+        changed.clear();
+      }
+    }
+
+    /** gedcom callback */
+    public void gedcomWriteLockAcquired(Gedcom gedcom) {
+      changes = new BitSet[getNumCols()];
+      for (int i=0;i<changes.length;i++)
+        changes[i] = new BitSet();
+    }
+
+    /** gedcom callback */
+    public void gedcomWriteLockReleased(Gedcom gedcom) {
+      flushChanges();
+      changes = null;
+    }
+
+    /** gedcom callback */
+    public void gedcomBeforeUnitOfWork(Gedcom gedcom) {
+    }
+
+    /** gedcom callback */
+    public void gedcomAfterUnitOfWork(Gedcom gedcom) {
+    }
+
+    /** gedcom callback */
+    public void gedcomHeaderChanged(Gedcom gedcom) {
+    }
 
   } //Model
 
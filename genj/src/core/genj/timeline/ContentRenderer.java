@@ -150,6 +150,7 @@ public class ContentRenderer {
     Rectangle2D clip = g.getClip();
     // loop through events
     Iterator events = layer.iterator();
+    if (!events.hasNext()) return;
     Model.Event event = (Model.Event)events.next();
     while (true) {
       // already grabbing next because we paint as much as we can
@@ -234,7 +235,8 @@ public class ContentRenderer {
   }
   
   /**
-   * inits painting   */
+   * inits painting
+   */
   protected void init(UnitGraphics graphics) {
     
     // calculate dot-size
@@ -36,12 +36,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -66,9 +68,23 @@ import java.util.concurrent.CopyOnWriteArrayList;
     "INDI:BIRT", "FAM:MARR", "INDI:EMIG" 
   };
     
-  /** our levels */
+  /** our levels - each sorted by time */
   /*package*/List<List<Event>> layers;
   
+  /** all events by entity */
+  private Map<Entity, List<Event>> entity2events = new LinkedHashMap<Entity, List<Event>>();
+  
+  /** order of events by time */
+  private final static Comparator<Event> BY_TIME = new Comparator<Event>() {
+    public int compare(Event e1, Event e2) {
+      if (e1.from<e2.from) return -1;
+      if (e1.from>e2.from) return 1;
+      if (e1.to<e2.to) return -1;
+      if (e1.to>e2.to) return 1;
+      return 0;
+    }
+  };
+  
   /** time per event */
   /*package*/ double 
     timeBeforeEvent = 0.5D,
@@ -209,15 +225,26 @@ import java.util.concurrent.CopyOnWriteArrayList;
    * Returns an event by year/layer
    */
   protected Event getEvent(double year, int layer) {
-    // look for events in appropriate layer
-    Iterator events = ((List)layers.get(layer)).iterator();
-    while (events.hasNext()) {
-      Event event = (Event)events.next();
-      if (event.from-timeBeforeEvent<year&&year<event.to+timeAfterEvent)
-        return event;
+    // valid layer?
+    if (layer<0||layer>=layers.size())
+      return null;
+    // binary search for last event starting before year - events in
+    // a layer don't overlap so that's the only candidate
+    List<Event> events = layers.get(layer);
+    int lo = 0, hi = events.size()-1, candidate = -1;
+    while (lo<=hi) {
+      int mid = (lo+hi) >>> 1;
+      if (events.get(mid).from-timeBeforeEvent<year) {
+        candidate = mid;
+        lo = mid+1;
+      } else {
+        hi = mid-1;
+      }
     }
-    // done
-    return null;
+    if (candidate<0)
+      return null;
+    Event event = events.get(candidate);
+    return year<event.to+timeAfterEvent ? event : null;
   }
   
   /**
@@ -225,24 +252,22 @@ import java.util.concurrent.CopyOnWriteArrayList;
    */
   protected Set<Event> getEvents(Context context) {
     
-    Set propertyHits = new HashSet();
-    Set entityHits = new HashSet();
+    Set<Event> propertyHits = new HashSet<Event>();
+    Set<Event> entityHits = new HashSet<Event>();
     
-    List<? extends Property> props = context.getProperties();
-    List<? extends Entity> ents = context.getEntities();
+    for (Entity entity : context.getEntities()) {
+      List<Event> events = entity2events.get(entity);
+      if (events!=null)
+        entityHits.addAll(events);
+    }
     
-    for (int l=0; l<layers.size(); l++) {
-      Iterator events = ((List)layers.get(l)).iterator();
-      while (events.hasNext()) {
-        Event event = (Event)events.next();
-        for (int j = 0; j < ents.size(); j++) {
-          if (ents.get(j)==event.getEntity())
-            entityHits.add(event);
-        }
-        for (int i = 0; i < props.size(); i++) {
-          if (event.getProperty()==props.get(i)||event.getProperty().contains(props.get(i)))
-            propertyHits.add(event);
-        }
+    for (Property prop : context.getProperties()) {
+      List<Event> events = entity2events.get(prop.getEntity());
+      if (events==null)
+        continue;
+      for (Event event : events) {
+        if (event.getProperty()==prop||event.getProperty().contains(prop))
+          propertyHits.add(event);
       }
     }
 
@@ -286,25 +311,25 @@ import java.util.concurrent.CopyOnWriteArrayList;
   }
 
   /**
-   * Trigger callback - our data has changed
+   * Trigger callback - our data has changed in given layers
    */
-  private void fireDataChanged() {
+  private void fireDataChanged(Set<Integer> dirty) {
+    if (dirty.isEmpty())
+      return;
     for (int l=listeners.size()-1; l>=0; l--) {
-      ((Listener)listeners.get(l)).dataChanged();
+      ((Listener)listeners.get(l)).dataChanged(dirty);
     }
   }
   
   /**
    * Retags events for given entity
    */
-  private final void contentEvents(Entity entity) {
-    // loop through layers
-    for (int l=0; l<layers.size(); l++) {
-      List layer = (List)layers.get(l);
-      Iterator events = layer.iterator();
-      while (events.hasNext()) {
-        Event event = (Event)events.next();
-        if (event.pe.getEntity()==entity) event.content();
+  private final void contentEvents(Entity entity, Set<Integer> dirty) {
+    List<Event> events = entity2events.get(entity);
+    if (events!=null) {
+      for (Event event : events) {
+        event.content();
+        dirty.add(event.layer);
       }
     }
     // done
@@ -318,18 +343,40 @@ import java.util.concurrent.CopyOnWriteArrayList;
     // reset
     min = Double.MAX_VALUE;
     max = -Double.MAX_VALUE;
-    // keep old and create some new space
-    List old = layers;
-    layers = new ArrayList(10);
-    // loop through old
-    for (int l=0; l<old.size(); l++) {
-      List layer = (List)old.get(l);
-      Iterator events = layer.iterator();
-      while (events.hasNext()) {
-        Event event = (Event)events.next();
-        insertEvent(event);
+    layers = new ArrayList<List<Event>>(10);
+    
+    // sort all events by time
+    List<Event> events = new ArrayList<Event>();
+    for (List<Event> es : entity2events.values())
+      events.addAll(es);
+    Collections.sort(events, BY_TIME);
+    
+    // sweep through them keeping track of layers that are occupied (by end
+    // of last event) and layers that are free (lowest first)
+    PriorityQueue<Event> busy = new PriorityQueue<Event>(16, new Comparator<Event>() {
+      public int compare(Event e1, Event e2) {
+        return Double.compare(e1.to, e2.to);
       }
+    });
+    PriorityQueue<Integer> free = new PriorityQueue<Integer>();
+    for (Event event : events) {
+      // release layers whose last event ends before this one starts
+      while (!busy.isEmpty() && busy.peek().to+timeAfterEvent <= event.from-timeBeforeEvent)
+        free.add(busy.poll().layer);
+      // lowest free layer or a new one
+      if (free.isEmpty()) {
+        event.layer = layers.size();
+        layers.add(new ArrayList<Event>());
+      } else {
+        event.layer = free.poll();
+      }
+      layers.get(event.layer).add(event);
+      busy.add(event);
+      // remember min and max
+      min = Math.min(Math.floor(event.from), min);
+      max = Math.max(Math.ceil (event.to  ), max);
     }
+    
     // extend time by before/after
     max += timeAfterEvent;
     min -= timeBeforeEvent;
@@ -343,20 +390,14 @@ import java.util.concurrent.CopyOnWriteArrayList;
    */
   private final void createEvents() {
     // reset
-    min = Double.MAX_VALUE;
-    max = -Double.MAX_VALUE;
-    // prepare some space
-    layers = new ArrayList<List<Event>>(10);
+    entity2events.clear();
     // look for events in INDIs and FAMs
     if (gedcom!=null) {
-      createEventsFrom(gedcom.getEntities(Gedcom.INDI).iterator());
-      createEventsFrom(gedcom.getEntities(Gedcom.FAM ).iterator());
+      createEventsFrom(gedcom.getEntities(Gedcom.INDI));
+      createEventsFrom(gedcom.getEntities(Gedcom.FAM ));
     }
-    // extend time by before/after
-    max += timeAfterEvent;
-    min -= timeBeforeEvent;
-    // trigger
-    fireStructureChanged();
+    // stack them in layers
+    layoutEvents();
     // done
   }
   
@@ -364,13 +405,12 @@ import java.util.concurrent.CopyOnWriteArrayList;
    * Gather Events for given entities
    * @param es list of entities to find events in
    */
-  private final void createEventsFrom(Iterator es) {
+  private final void createEventsFrom(Collection<? extends Entity> es) {
     // loop through entities
-    while (es.hasNext()) {
-      Entity e = (Entity)es.next();
-      List ps = e.getProperties(PropertyEvent.class);
+    for (Entity e : es) {
+      List<PropertyEvent> ps = e.getProperties(PropertyEvent.class);
       for (int j=0; j<ps.size(); j++) {
-        PropertyEvent pe = (PropertyEvent)ps.get(j);
+        PropertyEvent pe = ps.get(j);
         if (tags.contains(pe.getTag())) createEventFrom(pe);
       }
     }
@@ -381,68 +421,167 @@ import java.util.concurrent.CopyOnWriteArrayList;
    * Gather Event for given PropertyEvent
    * @param pe property to use
    */
-  private final void createEventFrom(PropertyEvent pe) {
+  private final Event createEventFrom(PropertyEvent pe) {
     // we need a valid date for new event
     PropertyDate pd = pe.getDate();
     if (pd==null||!pd.isValid()||!pd.isComparable())
-      return;
+      return null;
     
     // get it 
     try { 
-      insertEvent(new Event(pe, pd));
+      Event event = new Event(pe, pd);
+      Entity entity = pe.getEntity();
+      List<Event> events = entity2events.get(entity);
+      if (events==null) {
+        events = new ArrayList<Event>(2);
+        entity2events.put(entity, events);
+      }
+      events.add(event);
+      return event;
     } catch (GedcomException e) {
+      return null;
     }
     // done
   }
   
   /**
-   * Insert the Event into one of our layers
+   * Recreate the event for given PropertyEvent (if any) and reinsert it
+   */
+  private final void updateEvent(PropertyEvent pe, Set<Integer> dirty) {
+    // remove old
+    Entity entity = pe.getEntity();
+    List<Event> events = entity2events.get(entity);
+    if (events!=null) {
+      for (Event event : events) {
+        if (event.pe==pe) {
+          removeEvent(event, dirty);
+          break;
+        }
+      }
+    }
+    // create new
+    if (tags.contains(pe.getTag())) {
+      Event event = createEventFrom(pe);
+      if (event!=null)
+        insertEvent(event, dirty);
+    }
+    // done
+  }
+  
+  /**
+   * Remove an event from its entity and layer
+   */
+  private final void removeEvent(Event event, Set<Integer> dirty) {
+    
+    // forget about it for its entity
+    List<Event> events = entity2events.get(event.getEntity());
+    if (events!=null) {
+      events.remove(event);
+      if (events.isEmpty())
+        entity2events.remove(event.getEntity());
+    }
+    
+    // take it out of its layer
+    List<Event> layer = layers.get(event.layer);
+    for (int i=indexOf(layer, event.from); i<layer.size(); i++) {
+      if (layer.get(i)==event) {
+        layer.remove(i);
+        break;
+      }
+    }
+    dirty.add(event.layer);
+    
+    // drop empty layers at the top
+    while (!layers.isEmpty() && layers.get(layers.size()-1).isEmpty())
+      layers.remove(layers.size()-1);
+    
+  }
+  
+  /**
+   * Insert an event into the lowest layer that has room for it
    */
-  private final void insertEvent(Event e) {
-    
-    // remember min and max
-    min = Math.min(Math.floor(e.from), min);
-    max = Math.max(Math.ceil (e.to  ), max);
-    
-    // find a level that suits us
-    for (int l=0;l<layers.size();l++) {
-      // try to insert in level
-      List layer = (List)layers.get(l);
-      if (insertEvent(e, layer)) return;
-      // continue
+  private final void insertEvent(Event event, Set<Integer> dirty) {
+    
+    for (int l=0; l<layers.size(); l++) {
+      List<Event> layer = layers.get(l);
+      int i = indexOf(layer, event.from);
+      while (i<layer.size() && BY_TIME.compare(layer.get(i), event)<=0)
+        i++;
+      // fits between previous and next?
+      if (i>0 && layer.get(i-1).to+timeAfterEvent > event.from-timeBeforeEvent)
+        continue;
+      if (i<layer.size() && event.to+timeAfterEvent > layer.get(i).from-timeBeforeEvent)
+        continue;
+      layer.add(i, event);
+      event.layer = l;
+      dirty.add(l);
+      return;
     }
     
-    // create a new layer
-    List layer = new LinkedList();
+    // new layer on top
+    List<Event> layer = new ArrayList<Event>();
+    layer.add(event);
+    event.layer = layers.size();
+    dirty.add(event.layer);
     layers.add(layer);
-    layer.add(e);
     
     // done
   }
   
   /**
-   * Insert the Event into a layer
-   * @return whether that was successfull
+   * Find index of first event in layer that doesn't start before given time
    */
-  private final boolean insertEvent(Event candidate, List layer) {
-    // loop through layer
-    ListIterator events = layer.listIterator();
-    do {
-      Event event = (Event)events.next();
-      // before?
-      if (candidate.to+timeAfterEvent<event.from-timeBeforeEvent) {
-        events.previous();
-        events.add(candidate);
-        return true;
-      }
-      // overlap?
-      if (candidate.from-timeBeforeEvent<event.to+timeAfterEvent) 
-        return false;
-      // after?
-    } while (events.hasNext());
-    // after!
-    events.add(candidate);
-    return true;
+  private final static int indexOf(List<Event> layer, double from) {
+    int lo = 0, hi = layer.size();
+    while (lo<hi) {
+      int mid = (lo+hi) >>> 1;
+      if (layer.get(mid).from<from)
+        lo = mid+1;
+      else
+        hi = mid;
+    }
+    return lo;
+  }
+  
+  /**
+   * Recalculate min/max after incremental changes 
+   * @return whether that changed our structure
+   */
+  private final boolean calcLimits(int oldLayers) {
+    double
+      oldMin = min,
+      oldMax = max;
+    min = Double.MAX_VALUE;
+    max = -Double.MAX_VALUE;
+    for (List<Event> layer : layers) {
+      if (layer.isEmpty())
+        continue;
+      // events in a layer don't overlap - first and last are the limits
+      min = Math.min(Math.floor(layer.get(0).from), min);
+      max = Math.max(Math.ceil (layer.get(layer.size()-1).to), max);
+    }
+    max += timeAfterEvent;
+    min -= timeBeforeEvent;
+    return min!=oldMin || max!=oldMax || layers.size()!=oldLayers;
+  }
+  
+  /**
+   * Find the event a property belongs to
+   */
+  private final static PropertyEvent getPropertyEvent(Property prop) {
+    while (prop!=null && !(prop instanceof PropertyEvent))
+      prop = prop.getParent();
+    return (PropertyEvent)prop;
+  }
+  
+  /**
+   * Notify listeners about incremental changes
+   */
+  private final void fireChanges(int oldLayers, Set<Integer> dirty) {
+    if (calcLimits(oldLayers))
+      fireStructureChanged();
+    else
+      fireDataChanged(dirty);
   }
   
   /**
@@ -454,6 +593,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
     /*package*/ PropertyEvent pe;
     /*package*/ PropertyDate pd;
     /*package*/ String content;
+    /*package*/ int layer;
     /** 
      * Constructor
      */
@@ -504,9 +644,9 @@ import java.util.concurrent.CopyOnWriteArrayList;
    */
   /*package*/ interface Listener {
     /**
-     * callback for data changes
+     * callback for data changes in given layers
      */
-    public void dataChanged();
+    public void dataChanged(Set<Integer> layers);
     /**
      * callback for structure (and data) changes
      */
@@ -514,28 +654,76 @@ import java.util.concurrent.CopyOnWriteArrayList;
   } //ModelListener
 
   public void gedcomEntityAdded(Gedcom gedcom, Entity entity) {
-    createEvents();
+    int oldLayers = layers.size();
+    Set<Integer> dirty = new TreeSet<Integer>();
+    for (PropertyEvent pe : entity.getProperties(PropertyEvent.class)) {
+      if (tags.contains(pe.getTag())) {
+        Event event = createEventFrom(pe);
+        if (event!=null) 
+          insertEvent(event, dirty);
+      }
+    }
+    fireChanges(oldLayers, dirty);
   }
 
   public void gedcomEntityDeleted(Gedcom gedcom, Entity entity) {
-    createEvents();
+    List<Event> events = entity2events.get(entity);
+    if (events==null)
+      return;
+    int oldLayers = layers.size();
+    Set<Integer> dirty = new TreeSet<Integer>();
+    for (Event event : new ArrayList<Event>(events))
+      removeEvent(event, dirty);
+    fireChanges(oldLayers, dirty);
   }
 
   public void gedcomPropertyAdded(Gedcom gedcom, Property property, int pos, Property added) {
-    gedcomPropertyDeleted(gedcom, added, -1, added);
+    int oldLayers = layers.size();
+    Set<Integer> dirty = new TreeSet<Integer>();
+    if (added instanceof PropertyName) {
+      contentEvents(property.getEntity(), dirty);
+    } else {
+      PropertyEvent pe = getPropertyEvent(added);
+      if (pe!=null)
+        updateEvent(pe, dirty);
+    }
+    fireChanges(oldLayers, dirty);
   }
 
   public void gedcomPropertyChanged(Gedcom gedcom, Property property) {
-    gedcomPropertyDeleted(gedcom, property, -1, property);
+    int oldLayers = layers.size();
+    Set<Integer> dirty = new TreeSet<Integer>();
+    if (property instanceof PropertyName) {
+      contentEvents(property.getEntity(), dirty);
+    } else {
+      PropertyEvent pe = getPropertyEvent(property);
+      if (pe!=null)
+        updateEvent(pe, dirty);
+    }
+    fireChanges(oldLayers, dirty);
   }
 
   public void gedcomPropertyDeleted(Gedcom gedcom, Property property, int pos, Property deleted) {
-    if (deleted instanceof PropertyDate) {
-      createEvents();
-    } else if (deleted instanceof PropertyName) {
-      contentEvents(property.getEntity());
-      fireDataChanged();
+    int oldLayers = layers.size();
+    Set<Integer> dirty = new TreeSet<Integer>();
+    if (deleted instanceof PropertyName) {
+      contentEvents(property.getEntity(), dirty);
+    } else if (deleted instanceof PropertyEvent) {
+      List<Event> events = entity2events.get(property.getEntity());
+      if (events!=null) {
+        for (Event event : events) {
+          if (event.pe==deleted) {
+            removeEvent(event, dirty);
+            break;
+          }
+        }
+      }
+    } else {
+      PropertyEvent pe = getPropertyEvent(property);
+      if (pe!=null)
+        updateEvent(pe, dirty);
     }
+    fireChanges(oldLayers, dirty);
   }
   
-} //TimelineModel 
+} //TimelineModel
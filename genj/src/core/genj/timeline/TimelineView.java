@@ -586,10 +586,13 @@ public class TimelineView extends View {
    */
   private class ModelListener implements Model.Listener {
     /**
-     * @see genj.timeline.Model.Listener#dataChanged()
+     * @see genj.timeline.Model.Listener#dataChanged(Set)
      */
-    public void dataChanged() {
-      repaint();
+    public void dataChanged(Set<Integer> layers) {
+      // repaint the rows of changed layers only
+      int h = content.getFontMetrics(content.getFont()).getHeight()+1;
+      for (Integer layer : layers) 
+        content.repaint(0, layer.intValue()*h, content.getWidth(), h);
     }
     /**
      * @see genj.timeline.Model.Listener#structureChanged()
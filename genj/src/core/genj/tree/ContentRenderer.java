@@ -30,9 +30,12 @@ import gj.model.Node;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.Shape;
+import java.awt.font.GlyphVector;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.Collection;
 
@@ -41,6 +44,15 @@ import java.util.Collection;
  */
 public class ContentRenderer {
   
+  /** level of detail - shapes only */
+  public final static int DETAIL_SHAPES = 0;
+
+  /** level of detail - shapes and initials */
+  public final static int DETAIL_INITIALS = 1;
+
+  /** level of detail - full content */
+  public final static int DETAIL_FULL = 2;
+
   /*package*/ Font font = null;
 
   /** shape color for indis */
@@ -61,6 +73,12 @@ public class ContentRenderer {
   /** the entity renderer we're using */
   /*package*/ BlueprintRenderer indiRenderer, famRenderer;
   
+  /** the level of detail we're rendering at */
+  /*package*/ int detail = DETAIL_FULL;
+  
+  /** an image cache for rendered content (optional) */
+  /*package*/ NodeImageCache cache = null;
+  
   /**
    * Render the content
    */
@@ -123,13 +141,50 @@ public class ContentRenderer {
     g.setColor(getColor(content));
     g.draw(shape, x, y);
     // draw its content if not meant for speed
-    if (!Boolean.TRUE.equals(g.getGraphics().getRenderingHint(RenderPreviewHintKey.KEY)))
-      renderContent(g, x, y, shape, content);
+    if (Boolean.TRUE.equals(g.getGraphics().getRenderingHint(RenderPreviewHintKey.KEY)))
+      return;
+    switch (detail) {
+      case DETAIL_SHAPES:
+        break;
+      case DETAIL_INITIALS:
+        renderInitials(g, x, y, shape, content);
+        break;
+      default:
+        renderContent(g, x, y, shape, content);
+        break;
+    }
     // done
   }
   
   /**
-   * Calc color for given node   */
+   * Render the initials of a node's content (cheap low zoom alternative to renderContent)
+   */
+  private void renderInitials(UnitGraphics g, double x, double y, Shape shape, Object content) {
+    
+    // need an entity and the cache for glyphs
+    if (cache==null||font==null||!(content instanceof Indi||content instanceof Fam))
+      return;
+    Graphics2D graphics = g.getGraphics();
+    GlyphVector glyphs = cache.getInitials((Entity)content, font, graphics.getFontRenderContext());
+    // center in shape
+    Rectangle r = g.getRectangle(shape.getBounds2D());
+    Rectangle2D gb = glyphs.getLogicalBounds();
+    if (gb.getWidth()>r.width||gb.getHeight()>r.height)
+      return;
+    g.pushTransformation();
+    g.translate(x, y);
+    graphics.setColor(Color.black);
+    graphics.drawGlyphVector(glyphs, 
+      (float)(r.getCenterX() - gb.getCenterX()),
+      (float)(r.getCenterY() - gb.getCenterY())
+    );
+    g.popTransformation();
+    // done
+  }
+  
+  /**
+   * Calc color for given node
+   */
   private Color getColor(Object content) {
     // selected?
     if (cSelectedShape!=null&&selected.contains(content)) {
@@ -161,9 +216,13 @@ public class ContentRenderer {
     g.translate(x, y);
     Rectangle r = g.getRectangle(r2d);
     r.x+=2;r.y+=2;r.width-=4;r.height-=4;
-    g.setColor(Color.black);
-    g.setFont(font);
-    renderer.render(g.getGraphics(), (Entity)content, r);
+    if (cache!=null&&r.width>0&&r.height>0) {
+      g.getGraphics().drawImage(cache.get(g.getGraphics(), (Entity)content, renderer, font, r), r.x, r.y, null);
+    } else {
+      g.setColor(Color.black);
+      g.setFont(font);
+      renderer.render(g.getGraphics(), (Entity)content, r);
+    }
     // restore clip&transformation
     g.popTransformation();    
     g.popClip();
@@ -0,0 +1,260 @@
+/**
+ * GenJ - GenealogyJ
+ *
+ * Copyright (C) 1997 - 2002 Nils Meier <nils@meiers.net>
+ *
+ * This piece of code is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package genj.tree;
+
+import genj.gedcom.Entity;
+import genj.gedcom.Fam;
+import genj.gedcom.Indi;
+import genj.renderer.BlueprintRenderer;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded least-recently-used cache of rendered node images and of
+ * the glyph vectors used for drawing initials at low zoom levels. The
+ * cache listens to the tree model for changes and drops the images of
+ * changed entities and of the entities directly related to them.
+ */
+public class NodeImageCache implements ModelListener {
+
+  /** default budget in pixels (4 bytes each) */
+  public final static int DEFAULT_BUDGET = 8*1024*1024;
+
+  /** rendered images in access order */
+  private LinkedHashMap<Key, BufferedImage> images = new LinkedHashMap<Key, BufferedImage>(64, 0.75F, true);
+
+  /** cached initials */
+  private Map<Entity, GlyphVector> initials = new HashMap<Entity, GlyphVector>();
+
+  /** the font initials were created for */
+  private Font initialsFont;
+
+  /** the number of pixels we're allowed to hold */
+  private int budget;
+
+  /** the number of pixels we're currently holding */
+  private int pixels = 0;
+
+  /**
+   * Constructor
+   */
+  public NodeImageCache() {
+    this(DEFAULT_BUDGET);
+  }
+
+  /**
+   * Constructor
+   */
+  public NodeImageCache(int budget) {
+    this.budget = budget;
+  }
+
+  /**
+   * Lookup the rendered image for given entity, renderer and size -
+   * the image is rendered and remembered if necessary
+   */
+  public synchronized BufferedImage get(Graphics2D g, Entity entity, BlueprintRenderer renderer, Font font, Rectangle r) {
+
+    // known?
+    Key key = new Key(entity, renderer, font, r.width, r.height);
+    BufferedImage result = images.get(key);
+    if (result!=null)
+      return result;
+
+    // render it
+    result = new BufferedImage(r.width, r.height, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D ig = result.createGraphics();
+    try {
+      ig.setRenderingHints(g.getRenderingHints());
+      ig.setColor(Color.black);
+      ig.setFont(font);
+      renderer.render(ig, entity, new Rectangle(0, 0, r.width, r.height));
+    } finally {
+      ig.dispose();
+    }
+
+    // remember it
+    images.put(key, result);
+    pixels += r.width*r.height;
+
+    // evict least recently used while over budget
+    Iterator<Map.Entry<Key,BufferedImage>> it = images.entrySet().iterator();
+    while (pixels>budget && it.hasNext()) {
+      Map.Entry<Key,BufferedImage> eldest = it.next();
+      if (eldest.getKey()==key)
+        break;
+      pixels -= eldest.getKey().w*eldest.getKey().h;
+      it.remove();
+    }
+
+    // done
+    return result;
+  }
+
+  /**
+   * Lookup the glyph vector for the initials of given entity
+   */
+  public synchronized GlyphVector getInitials(Entity entity, Font font, FontRenderContext frc) {
+
+    // font change?
+    if (!font.equals(initialsFont)) {
+      initials.clear();
+      initialsFont = font;
+    }
+
+    // known?
+    GlyphVector result = initials.get(entity);
+    if (result==null) {
+      result = font.createGlyphVector(frc, calcInitials(entity));
+      initials.put(entity, result);
+    }
+    return result;
+  }
+
+  /**
+   * Calculate initials for an entity
+   */
+  private String calcInitials(Entity entity) {
+    if (entity instanceof Indi)
+      return calcInitials((Indi)entity);
+    if (entity instanceof Fam) {
+      Fam fam = (Fam)entity;
+      return calcInitials(fam.getHusband()) + "+" + calcInitials(fam.getWife());
+    }
+    return "";
+  }
+
+  private String calcInitials(Indi indi) {
+    if (indi==null)
+      return "?";
+    StringBuffer result = new StringBuffer(2);
+    String first = indi.getFirstName().trim(), last = indi.getLastName().trim();
+    if (first.length()>0) result.append(first.charAt(0));
+    if (last.length()>0) result.append(last.charAt(0));
+    return result.length()>0 ? result.toString() : "?";
+  }
+
+  /**
+   * Forget everything we know about an entity and the entities
+   * directly related to it (their rendering might include ours)
+   */
+  public synchronized void invalidate(Entity entity) {
+
+    invalidateOne(entity);
+
+    if (entity instanceof Indi) {
+      Indi indi = (Indi)entity;
+      for (Fam fam : indi.getFamiliesWhereSpouse())
+        invalidateOne(fam);
+      for (Fam fam : indi.getFamiliesWhereChild())
+        invalidateOne(fam);
+    }
+    if (entity instanceof Fam) {
+      Fam fam = (Fam)entity;
+      invalidateOne(fam.getHusband());
+      invalidateOne(fam.getWife());
+      for (Indi child : fam.getChildren())
+        invalidateOne(child);
+    }
+
+  }
+
+  private void invalidateOne(Entity entity) {
+    if (entity==null)
+      return;
+    initials.remove(entity);
+    Iterator<Key> keys = images.keySet().iterator();
+    while (keys.hasNext()) {
+      Key key = keys.next();
+      if (key.entity==entity) {
+        pixels -= key.w*key.h;
+        keys.remove();
+      }
+    }
+  }
+
+  /**
+   * Forget everything
+   */
+  public synchronized void clear() {
+    images.clear();
+    initials.clear();
+    pixels = 0;
+  }
+
+  /**
+   * model callback - nodes changed
+   */
+  public void nodesChanged(Model model, Collection<TreeNode> nodes) {
+    for (TreeNode node : nodes) {
+      if (node!=null && node.getContent() instanceof Entity)
+        invalidate((Entity)node.getContent());
+    }
+  }
+
+  /**
+   * model callback - structure changed
+   */
+  public void structureChanged(Model model) {
+    clear();
+  }
+
+  /**
+   * A key for a rendered image
+   */
+  private static class Key {
+
+    private Entity entity;
+    private BlueprintRenderer renderer;
+    private Font font;
+    private int w, h;
+
+    private Key(Entity entity, BlueprintRenderer renderer, Font font, int w, int h) {
+      this.entity = entity;
+      this.renderer = renderer;
+      this.font = font;
+      this.w = w;
+      this.h = h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      Key that = (Key)obj;
+      return this.entity==that.entity && this.renderer==that.renderer && this.w==that.w && this.h==that.h && this.font.equals(that.font);
+    }
+
+    @Override
+    public int hashCode() {
+      return entity.hashCode() + 31*System.identityHashCode(renderer) + 17*w + h;
+    }
+  } //Key
+
+} //NodeImageCache
@@ -111,6 +111,12 @@ public class TreeView extends View implements ContextProvider, ActionProvider {
   /** our content renderer */
   private ContentRenderer contentRenderer;
   
+  /** our cache of rendered nodes */
+  private NodeImageCache nodeCache = new NodeImageCache();
+  
+  /** zoom levels below which we render less detail */
+  private double zoomShapes, zoomInitials;
+  
   /** our current zoom */
   private double zoom = 1.0D;
 
@@ -184,6 +190,8 @@ public class TreeView extends View implements ContextProvider, ActionProvider {
       REGISTRY.get("pad"   ,defm.pad   )
     ));
     isAntialiasing = REGISTRY.get("antial", false);
+    zoomShapes = REGISTRY.get("lod.shapes", 0.2F);
+    zoomInitials = REGISTRY.get("lod.initials", 0.4F);
     model.setHideAncestorsIDs(REGISTRY.get("hide.ancestors", new ArrayList<String>()));
     model.setHideDescendantsIDs(REGISTRY.get("hide.descendants", new ArrayList<String>()));
  
@@ -229,6 +237,8 @@ public class TreeView extends View implements ContextProvider, ActionProvider {
     REGISTRY.put("hfams"   , m.hFams );
     REGISTRY.put("pad"     , m.pad   );
     REGISTRY.put("antial"  , isAntialiasing );
+    REGISTRY.put("lod.shapes"  , (float)zoomShapes);
+    REGISTRY.put("lod.initials", (float)zoomInitials);
     REGISTRY.put("font"    , contentFont);
     REGISTRY.put("color", colors);
     // blueprints
@@ -298,6 +308,7 @@ public class TreeView extends View implements ContextProvider, ActionProvider {
   public void setAntialiasing(boolean set) {
     if (isAntialiasing==set) return;
     isAntialiasing = set;
+    nodeCache.clear();
     repaint();
   }
   
@@ -317,6 +328,7 @@ public class TreeView extends View implements ContextProvider, ActionProvider {
       return;
     // remember
     contentFont = set;
+    nodeCache.clear();
     // show
     repaint();
   }
@@ -637,6 +649,7 @@ public class TreeView extends View implements ContextProvider, ActionProvider {
       contentRenderer.selected       = context.getEntities();
       contentRenderer.indiRenderer   = null;
       contentRenderer.famRenderer    = null;
+      contentRenderer.detail         = ContentRenderer.DETAIL_SHAPES;
       
       // let the renderer do its work
       contentRenderer.render(gw, model);
@@ -690,11 +703,14 @@ public class TreeView extends View implements ContextProvider, ActionProvider {
       // cont
       super.addNotify();
       // listen to model events
+      model.addListener(nodeCache);
       model.addListener(this);
     }
     
     public void removeNotify() {
       model.removeListener(this);
+      model.removeListener(nodeCache);
+      nodeCache.clear();
       // cont
       super.removeNotify();
     }
@@ -803,6 +819,13 @@ public class TreeView extends View implements ContextProvider, ActionProvider {
       contentRenderer.selected       = selection ? context.getEntities() : new ArrayList<Entity>() ;
       contentRenderer.indiRenderer   = getEntityRenderer(Gedcom.INDI);
       contentRenderer.famRenderer    = getEntityRenderer(Gedcom.FAM );
+      contentRenderer.cache          = nodeCache;
+      if (zoom<zoomShapes)
+        contentRenderer.detail = ContentRenderer.DETAIL_SHAPES;
+      else if (zoom<zoomInitials)
+        contentRenderer.detail = ContentRenderer.DETAIL_INITIALS;
+      else
+        contentRenderer.detail = ContentRenderer.DETAIL_FULL;
       // let the renderer do its work
       contentRenderer.render(gw, model);
       // done
@@ -330,17 +330,24 @@ public class Resources {
   public String getString(String key, Object... substitutes) {
 
     // do we have a message format already?
-    MessageFormat format = (MessageFormat)msgFormats.get(key);
+    MessageFormat format;
+    synchronized (msgFormats) {
+      format = (MessageFormat)msgFormats.get(key);
+    }
     if (format==null) {
       String string = getString(key, false);
       if (string==null)
         return key;
       format = getMessageFormat(string);
-      msgFormats.put(key, format);
+      synchronized (msgFormats) {
+        msgFormats.put(key, format);
+      }
     }
 
-    // fill with substitutes
-    return format.format(substitutes);
+    // fill with substitutes (formats aren't thread-safe)
+    synchronized (format) {
+      return format.format(substitutes);
+    }
   }
   
   /**
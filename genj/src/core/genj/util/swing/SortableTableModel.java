@@ -83,9 +83,18 @@ public class SortableTableModel extends AbstractTableModel {
 
     private static Directive EMPTY_DIRECTIVE = new Directive(-1, NOT_SORTED);
 
+    /** number of rows from which on we sort on multiple threads */
+    private static final int PARALLEL_THRESHOLD = 50000;
+
     private Row[] viewToModel;
     private int[] modelToView;
 
+    /** cached sort keys by column and model row (if model is a RowKeyProvider) */
+    private Comparable<?>[][] keys;
+
+    /** stamps of the cached sort keys by column */
+    private int[] keyStamps;
+
     private JTableHeader tableHeader;
     private MouseListener mouseListener;
     private TableModelListener tableModelListener;
@@ -112,6 +121,82 @@ public class SortableTableModel extends AbstractTableModel {
         modelToView = null;
     }
 
+    private void clearKeys() {
+        keys = null;
+        keyStamps = null;
+    }
+
+    /**
+     * Drop cached keys of sorted columns that went stale without an event
+     * for their rows
+     * @return whether any were dropped
+     */
+    private boolean dropStaleKeys() {
+        if (keys == null || !(tableModel instanceof RowKeyProvider)) {
+            return false;
+        }
+        boolean result = false;
+        for (Directive directive : sortingColumns) {
+            int column = directive.column;
+            if (keys[column] != null && keyStamps[column] != ((RowKeyProvider)tableModel).getSortKeyStamp(column)) {
+                keys[column] = null;
+                result = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sort again if cached keys of sorted columns went stale without an event
+     * for their rows (see RowKeyProvider#getSortKeyStamp(int))
+     */
+    public void refreshSortKeys() {
+        if (viewToModel != null && dropStaleKeys()) {
+            clearSortingState();
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * Resolve the sort key for a cell - computed once and cached until
+     * the cell changes
+     */
+    private Comparable<?> getKey(int row, int column) {
+        int rows = tableModel.getRowCount();
+        if (keys == null) {
+            keys = new Comparable<?>[tableModel.getColumnCount()][];
+            keyStamps = new int[keys.length];
+        }
+        Comparable<?>[] column2keys = keys[column];
+        if (column2keys == null || column2keys.length < rows) {
+            Comparable<?>[] grown = new Comparable<?>[rows];
+            if (column2keys != null) {
+                System.arraycopy(column2keys, 0, grown, 0, column2keys.length);
+            }
+            keys[column] = column2keys = grown;
+        }
+        Comparable<?> key = column2keys[row];
+        if (key == null) {
+            key = ((RowKeyProvider)tableModel).getSortKey(row, column);
+            column2keys[row] = key;
+        }
+        return key;
+    }
+
+    private void invalidateKeys(int firstRow, int lastRow, int column) {
+        if (keys == null) {
+            return;
+        }
+        for (int c = 0; c < keys.length; c++) {
+            if (keys[c] == null || (column != TableModelEvent.ALL_COLUMNS && column != c)) {
+                continue;
+            }
+            for (int row = firstRow; row <= lastRow && row < keys[c].length; row++) {
+                keys[c][row] = null;
+            }
+        }
+    }
+
     public TableModel getTableModel() {
         return tableModel;
     }
@@ -126,6 +211,7 @@ public class SortableTableModel extends AbstractTableModel {
             this.tableModel.addTableModelListener(tableModelListener);
         }
 
+        clearKeys();
         clearSortingState();
         fireTableStructureChanged();
     }
@@ -216,12 +302,129 @@ public class SortableTableModel extends AbstractTableModel {
             }
 
             if (isSorting()) {
-                Arrays.sort(viewToModel);
+                // compute keys up front so comparisons are cheap and thread-safe
+                if (tableModel instanceof RowKeyProvider) {
+                    dropStaleKeys();
+                    for (Directive directive : sortingColumns) {
+                        for (int row = 0; row < tableModelRowCount; row++) {
+                            getKey(row, directive.column);
+                        }
+                        keyStamps[directive.column] = ((RowKeyProvider)tableModel).getSortKeyStamp(directive.column);
+                    }
+                }
+                if (tableModelRowCount >= PARALLEL_THRESHOLD && tableModel instanceof RowKeyProvider) {
+                    parallelSort(viewToModel);
+                } else {
+                    Arrays.sort(viewToModel);
+                }
             }
         }
         return viewToModel;
     }
 
+    /**
+     * Sort rows in chunks on multiple threads and merge the sorted runs
+     */
+    private static void parallelSort(final Row[] rows) {
+        
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), rows.length / (PARALLEL_THRESHOLD / 4));
+        if (threads < 2) {
+            Arrays.sort(rows);
+            return;
+        }
+        
+        // sort chunks
+        final int chunk = (rows.length + threads - 1) / threads;
+        final Throwable[] error = new Throwable[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int from = t * chunk, to = Math.min(rows.length, from + chunk);
+            workers[t] = new Thread("SortableTableModel.sort") {
+                public void run() {
+                    try {
+                        Arrays.sort(rows, from, to);
+                    } catch (Throwable t) {
+                        error[0] = t;
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        for (int t = 0; t < threads; t++) {
+            try {
+                workers[t].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (error[0] instanceof RuntimeException) {
+            throw (RuntimeException)error[0];
+        }
+        if (error[0] != null) {
+            throw new RuntimeException(error[0]);
+        }
+        
+        // merge sorted runs pairwise
+        Row[] buffer = new Row[rows.length];
+        for (int width = chunk; width < rows.length; width *= 2) {
+            for (int lo = 0; lo < rows.length - width; lo += 2 * width) {
+                int mid = lo + width, hi = Math.min(rows.length, lo + 2 * width);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) {
+                    buffer[k++] = rows[j].compareTo(rows[i]) < 0 ? rows[j++] : rows[i++];
+                }
+                while (i < mid) {
+                    buffer[k++] = rows[i++];
+                }
+                while (j < hi) {
+                    buffer[k++] = rows[j++];
+                }
+                System.arraycopy(buffer, lo, rows, lo, hi - lo);
+            }
+        }
+    }
+
+    /**
+     * Move a changed row to its new sorted position without a full resort
+     */
+    private void reposition(int modelIndex) {
+        
+        Row[] rows = viewToModel;
+        int[] m2v = getModelToView();
+        int from = m2v[modelIndex];
+        Row row = rows[from];
+        
+        // find new position via binary search ignoring the row itself
+        int lo = 0, hi = rows.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int probe = mid < from ? mid : mid + 1;
+            if (rows[probe].compareTo(row) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int to = lo;
+        if (to > rows.length - 1) {
+            to = rows.length - 1;
+        }
+        
+        // shift rows in between
+        if (from < to) {
+            System.arraycopy(rows, from + 1, rows, from, to - from);
+        } else if (to < from) {
+            System.arraycopy(rows, to, rows, to + 1, from - to);
+        }
+        rows[to] = row;
+        for (int i = Math.min(from, to); i <= Math.max(from, to); i++) {
+            m2v[rows[i].modelIndex] = i;
+        }
+        
+        // tell about it
+        fireTableRowsUpdated(Math.min(from, to), Math.max(from, to));
+    }
+
     public int modelIndex(int viewIndex) {
         return getViewToModel()[viewIndex].modelIndex;
     }
@@ -286,8 +489,14 @@ public class SortableTableModel extends AbstractTableModel {
             
             for (Directive directive : sortingColumns) {
                 int column = directive.column;
-                Object o1 = tableModel.getValueAt(row1, column);
-                Object o2 = tableModel.getValueAt(row2, column);
+                Object o1, o2;
+                if (tableModel instanceof RowKeyProvider) {
+                    o1 = getKey(row1, column);
+                    o2 = getKey(row2, column);
+                } else {
+                    o1 = tableModel.getValueAt(row1, column);
+                    o2 = tableModel.getValueAt(row2, column);
+                }
 
                 int comparison = 0;
                 // Define null less than everything, except null.
@@ -298,7 +507,9 @@ public class SortableTableModel extends AbstractTableModel {
                 } else if (o2 == null) {
                     comparison = 1;
                 } else {
-                  if (tableModel instanceof RowComparator) 
+                  if (tableModel instanceof RowKeyProvider)
+                    comparison = compare(o1,o2);
+                  else if (tableModel instanceof RowComparator) 
                     comparison = ((RowComparator)tableModel).compare(o1, o2, column);
                   else
                     comparison = compare(o1,o2);
@@ -321,12 +532,30 @@ public class SortableTableModel extends AbstractTableModel {
 
     private class TableModelHandler implements TableModelListener {
         public void tableChanged(TableModelEvent e) {
+            // Keep cached sort keys up to date - rows added at the end don't 
+            // invalidate known keys, other structural changes do
+            if (e.getFirstRow() == TableModelEvent.HEADER_ROW || e.getType() == TableModelEvent.DELETE
+                    || e.getLastRow() == Integer.MAX_VALUE) {
+                clearKeys();
+            } else if (e.getType() == TableModelEvent.UPDATE) {
+                invalidateKeys(e.getFirstRow(), e.getLastRow(), e.getColumn());
+            } else if (e.getType() == TableModelEvent.INSERT && e.getLastRow() < tableModel.getRowCount() - 1) {
+                clearKeys();
+            }
+
             // If we're not sorting by anything, just pass the event along.             
             if (!isSorting()) {
                 clearSortingState();
                 fireTableChanged(e);
                 return;
             }
+
+            // Keys of other rows went stale so the row order isn't sorted anymore
+            if (viewToModel != null && dropStaleKeys()) {
+                clearSortingState();
+                fireTableDataChanged();
+                return;
+            }
                 
             // If the table structure has changed, cancel the sorting; the             
             // sorting columns may have been either moved or deleted from             
@@ -365,6 +594,18 @@ public class SortableTableModel extends AbstractTableModel {
                 fireTableChanged(new TableModelEvent(SortableTableModel.this, viewIndex, viewIndex, column, e.getType()));
                 return;
             }
+            
+            // A single row changed in a sorted column - we can move it to its new
+            // position using the cached keys of all other rows
+            if (e.getFirstRow() == e.getLastRow()
+                    && e.getType() == TableModelEvent.UPDATE
+                    && column != TableModelEvent.ALL_COLUMNS
+                    && tableModel instanceof RowKeyProvider
+                    && viewToModel != null
+                    && e.getFirstRow() < viewToModel.length) {
+                reposition(e.getFirstRow());
+                return;
+            }
 
             // Something has happened to the data that may have invalidated the row order. 
             clearSortingState();
@@ -511,4 +752,17 @@ public class SortableTableModel extends AbstractTableModel {
     public static interface RowComparator {
       public int compare(Object valueA, Object valueB, int col);
     }
+    
+    /**
+     * A table model that can provide comparable sort keys for its cells - keys
+     * are cached until the cell changes and are compared instead of values
+     */
+    public static interface RowKeyProvider {
+      public Comparable<?> getSortKey(int row, int col);
+      /**
+       * A stamp for the sort keys of a column - keys computed with another stamp
+       * might be stale even though no event was fired for their rows
+       */
+      public int getSortKeyStamp(int col);
+    }
 }
@@ -18,7 +18,6 @@ import genj.report.Report;
 
 import java.awt.BorderLayout;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -27,6 +26,10 @@ import java.util.Map;
 import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
 
+import statistics.Aggregator;
+import statistics.IntHistogram;
+import statistics.Statistics;
+
 /**
  * A report that shows pie charts with events by months
  */
@@ -83,32 +86,42 @@ public class ReportEventsByMonths extends Report {
 	Map<String, String> labels = new HashMap<String, String>();
 	  
     // look for events we consider
-    List<IndexedSeries> series = new ArrayList<IndexedSeries>();
+    List<MonthsAggregator> months = new ArrayList<MonthsAggregator>();
     if (BirthsChart) {
-    series.add(analyze(gedcom.getEntities("INDI"), "BIRT"));
-    labels.put("BIRT",translate("birt"));
+      months.add(new MonthsAggregator(Gedcom.INDI, "BIRT"));
+      labels.put("BIRT",translate("birt"));
     }
     if (BaptismsChart) {
-    series.add(analyze(gedcom.getEntities("INDI"), "BAPM"));
-    labels.put("BAPM",translate("bapm"));
+      months.add(new MonthsAggregator(Gedcom.INDI, "BAPM"));
+      labels.put("BAPM",translate("bapm"));
     }
     if (AdoptionsChart) {
-    series.add(analyze(gedcom.getEntities("INDI"), "ADOP"));
-    labels.put("ADOP",translate("adop"));
+      months.add(new MonthsAggregator(Gedcom.INDI, "ADOP"));
+      labels.put("ADOP",translate("adop"));
     }
     if (MarriagesChart) {
-    series.add(analyze(gedcom.getEntities("FAM" ), "MARR"));
-    labels.put("MARR",translate("marr"));
+      months.add(new MonthsAggregator(Gedcom.FAM, "MARR"));
+      labels.put("MARR",translate("marr"));
     }
     if (DivorcesChart) {
-    series.add(analyze(gedcom.getEntities("FAM" ), "DIV"));
-    labels.put("DIV",translate("div"));
+      months.add(new MonthsAggregator(Gedcom.FAM, "DIV"));
+      labels.put("DIV",translate("div"));
     }
     if (DeathsChart) {
-    series.add(analyze(gedcom.getEntities("INDI"), "DEAT"));
-    labels.put("DEAT",translate("deat"));
+      months.add(new MonthsAggregator(Gedcom.INDI, "DEAT"));
+      labels.put("DEAT",translate("deat"));
     }
 
+    // count all events in one pass over individuals and families
+    Statistics statistics = new Statistics();
+    for (MonthsAggregator m : months)
+      statistics.add(m);
+    statistics.analyze(gedcom, new String[]{ Gedcom.INDI, Gedcom.FAM });
+
+    List<IndexedSeries> series = new ArrayList<IndexedSeries>();
+    for (MonthsAggregator m : months)
+      series.add(m.getSeries());
+
     // show it in a chart per series
     String[] categories = CALENDARS[calendar].getMonths(true);
 
@@ -129,45 +142,57 @@ public class ReportEventsByMonths extends Report {
     // done
   }
 
-  private IndexedSeries analyze(Collection entities, String tag) {
+  /**
+   * Counts events of one type by month if the year belongs to the authorized period
+   */
+  private class MonthsAggregator implements Aggregator {
 
-    int months = CALENDARS[calendar].getMonths(true).length;
+    private String entityTag, tag;
 
-    IndexedSeries series = new IndexedSeries(tag, months);
+    private IntHistogram months = new IntHistogram(CALENDARS[calendar].getMonths(true).length);
 
-    // loop over entities
-    Iterator it = entities.iterator();
-    while (it.hasNext()) {
+    private MonthsAggregator(String entityTag, String tag) {
+      this.entityTag = entityTag;
+      this.tag = tag;
+    }
 
-      Entity e = (Entity)it.next();
+    public void add(Entity e) {
 
       // check it out
-      Property event = e.getProperty(series.getName());
+      if (!e.getTag().equals(entityTag))
+        return;
+      Property event = e.getProperty(tag);
       if (!(event instanceof PropertyEvent))
-        continue;
+        return;
       PropertyDate date = ((PropertyEvent)event).getDate();
       if (date==null)
-        continue;
+        return;
 
       // inc appropriate month if the year belongs to the authorized period
       try {
-    	  if(date.getStart().getPointInTime(CALENDARS[calendar]).getYear()<inferiorYearLimit || 
-    			  date.getStart().getPointInTime(CALENDARS[calendar]).getYear()>superiorYearLimit){
-    		 
-    	  }
-    	  else{
-    		  series.inc(date.getStart().getPointInTime(CALENDARS[calendar]).getMonth());
-    	  }
-    	  
-        
+        PointInTime pit = date.getStart().getPointInTime(CALENDARS[calendar]);
+        if (pit.getYear()>=inferiorYearLimit && pit.getYear()<=superiorYearLimit)
+          months.inc(pit.getMonth());
       } catch (Throwable t) {
       }
 
-      // next
     }
 
-    // done
-    return series;
+    public Aggregator createPartial() {
+      return new MonthsAggregator(entityTag, tag);
+    }
+
+    public void merge(Aggregator partial) {
+      months.merge(((MonthsAggregator)partial).months);
+    }
+
+    /** the counted events as a series named by their tag */
+    private IndexedSeries getSeries() {
+      IndexedSeries series = new IndexedSeries(tag, months.getSize());
+      for (int i=0;i<months.getSize();i++)
+        series.set(i, months.get(i));
+      return series;
+    }
   }
 
 } //ReportBirthMonths
@@ -22,7 +22,13 @@ import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+
+import statistics.Aggregator;
+import statistics.IntStatistic;
+import statistics.Statistics;
 
 /**
  * GenJ - Report
@@ -127,72 +133,194 @@ public class ReportGedcomStatistics extends Report {
         int which = -1;
         /** number of individuals */
         int number = 0;
-        /** individuals sorted by age */
-        ReferenceSet age = new ReferenceSet();
-        /** individuals sorted by age at child births */
-        ReferenceSet childBirthAge = new ReferenceSet();
-        /** min. age of individuals at child birth */
-        int minChildBirthAge = Integer.MAX_VALUE;
-        /** max. age of individuals at child birth */
-        int maxChildBirthAge = Integer.MIN_VALUE;
-        /** number of childbirths */
-        int childBirthNumber = 0;
-        /** age of individuals at child birth added up */
-        int sumChildBirthAge = 0;
-        /** min. age of individuals */
-        int minAge = Integer.MAX_VALUE;
-        /** min. age of individuals */
-        int maxAge = Integer.MIN_VALUE;
-        /** age of individuals added up */
-        int sumAge = 0;
+        /** ages of individuals in days */
+        IntStatistic<Indi> age = new IntStatistic<Indi>();
+        /** ages of individuals at child births in days */
+        IntStatistic<Indi> childBirthAge = new IntStatistic<Indi>();
+
+        StatisticsIndividuals(int which) {
+            this.which = which;
+        }
+
+        void merge(StatisticsIndividuals other) {
+            number += other.number;
+            age.merge(other.age);
+            childBirthAge.merge(other.childBirthAge);
+        }
+    }
+
+    /** to store data about individuals by gender */
+    private static class StatisticsGenders implements Aggregator {
+        StatisticsIndividuals all = new StatisticsIndividuals(ALL);
+        StatisticsIndividuals males = new StatisticsIndividuals(MALES);
+        StatisticsIndividuals females = new StatisticsIndividuals(FEMALES);
+        StatisticsIndividuals unknown = new StatisticsIndividuals(UNKNOWN);
+
+        public void add(Entity entity) {
+            if(entity instanceof Indi)
+                analyzeIndividual((Indi)entity, this);
+        }
+
+        public Aggregator createPartial() {
+            return new StatisticsGenders();
+        }
+
+        public void merge(Aggregator partial) {
+            StatisticsGenders other = (StatisticsGenders)partial;
+            all.merge(other.all);
+            males.merge(other.males);
+            females.merge(other.females);
+            unknown.merge(other.unknown);
+        }
+    }
+
+    /** to store data about individuals with the same last name */
+    private static class StatisticsLastName {
+        /** statistics of all, males, females, unknown gender */
+        StatisticsGenders individuals = new StatisticsGenders();
+        /** statistics of families the individuals are spouses in */
+        StatisticsFamilies families = new StatisticsFamilies();
     }
 
     /** to store data about last names */
-    private static class StatisticsLastNames {
+    private static class StatisticsLastNames implements Aggregator {
 
         /** individiuals sorted by last names */
-        ReferenceSet lastNamesIndis = new ReferenceSet();
-        /** statistics of all, males, females, unknown gender sorted by last names */
-        ReferenceSet lastNamesStatistic = new ReferenceSet();
+        ReferenceSet<String,Indi> lastNamesIndis = new ReferenceSet<String,Indi>();
+        /** statistics sorted by last names */
+        Map<String,StatisticsLastName> lastNamesStatistic = new HashMap<String,StatisticsLastName>();
+
+        public void add(Entity entity) {
+            if(entity instanceof Indi) {
+                Indi indi = (Indi)entity;
+                String name = indi.getLastName();
+                if(name!=null) {
+                    lastNamesIndis.add(name, indi);
+                    analyzeIndividual(indi, getStatistic(name).individuals);
+                }
+            }
+            if(entity instanceof Fam) {
+                // a family counts for the last names of both spouses
+                Fam fam = (Fam)entity;
+                String husband = fam.getHusband()!=null ? fam.getHusband().getLastName() : null;
+                String wife = fam.getWife()!=null ? fam.getWife().getLastName() : null;
+                if(husband!=null)
+                    analyzeFamily(fam, husband, getStatistic(husband).families);
+                if((wife!=null)&&(!wife.equals(husband)))
+                    analyzeFamily(fam, wife, getStatistic(wife).families);
+            }
+        }
+
+        StatisticsLastName getStatistic(String name) {
+            StatisticsLastName stats = lastNamesStatistic.get(name);
+            if(stats==null) {
+                stats = new StatisticsLastName();
+                lastNamesStatistic.put(name, stats);
+            }
+            return stats;
+        }
+
+        public Aggregator createPartial() {
+            return new StatisticsLastNames();
+        }
+
+        public void merge(Aggregator partial) {
+            StatisticsLastNames other = (StatisticsLastNames)partial;
+            Statistics.merge(lastNamesIndis, other.lastNamesIndis);
+            for(Map.Entry<String,StatisticsLastName> entry : other.lastNamesStatistic.entrySet()) {
+                StatisticsLastName stats = getStatistic(entry.getKey());
+                stats.individuals.merge(entry.getValue().individuals);
+                stats.families.merge(entry.getValue().families);
+            }
+        }
     }
 
     /** to store data about occupations */
-    private static class StatisticsOccupations {
+    private static class StatisticsOccupations implements Aggregator {
 
         /** number of all individuals */
         int numberIndis = 0;
         /** individiuals sorted by occupations */
-        ReferenceSet occupations = new ReferenceSet();
+        ReferenceSet<String,Indi> occupations = new ReferenceSet<String,Indi>();
+
+        public void add(Entity entity) {
+            if(entity instanceof Indi)
+                analyzeOccupations((Indi)entity, this);
+        }
+
+        public Aggregator createPartial() {
+            return new StatisticsOccupations();
+        }
+
+        public void merge(Aggregator partial) {
+            StatisticsOccupations other = (StatisticsOccupations)partial;
+            numberIndis += other.numberIndis;
+            Statistics.merge(occupations, other.occupations);
+        }
     }
 
     /** to store data about families */
-    private static class StatisticsFamilies {
+    private static class StatisticsFamilies implements Aggregator {
         /** statistics of husbands */
-        StatisticsIndividuals husbands = new StatisticsIndividuals();
+        StatisticsIndividuals husbands = new StatisticsIndividuals(-1);
         /** statistics of wifes */
-        StatisticsIndividuals wifes = new StatisticsIndividuals();
+        StatisticsIndividuals wifes = new StatisticsIndividuals(-1);
         /** number of families */
         int number = 0;
         /** number of families with children */
         int withChildren = 0;
         /** families sorted by number of children */
-        ReferenceSet children = new ReferenceSet();
+        ReferenceSet<Integer,Fam> children = new ReferenceSet<Integer,Fam>();
         /** min. number of children */
         int minChildren = 999;
         /** max. number of children */
         int maxChildren = 0;
-        /** number of children added up */
-        int sumChildren = 0;
+
+        public void add(Entity entity) {
+            if(entity instanceof Fam)
+                analyzeFamily((Fam)entity, null, this);
+        }
+
+        public Aggregator createPartial() {
+            return new StatisticsFamilies();
+        }
+
+        public void merge(Aggregator partial) {
+            StatisticsFamilies other = (StatisticsFamilies)partial;
+            husbands.merge(other.husbands);
+            wifes.merge(other.wifes);
+            number += other.number;
+            withChildren += other.withChildren;
+            Statistics.merge(children, other.children);
+            minChildren = Math.min(minChildren, other.minChildren);
+            maxChildren = Math.max(maxChildren, other.maxChildren);
+        }
     }
 
     /** to store data about places */
-    private static class StatisticsPlaces {
+    private static class StatisticsPlaces implements Aggregator {
         /** which places the statistic is about (BIRTH|BAPTISM|MARRIAGE|EMIGRATION|IMMIGRATION|NATURALIZATION|DEATH) */
         int which = -1;
         /** entities with known places */
         int entitiesWithKnownPlaces = 0;
         /** places sorted by name */
-        ReferenceSet places = new ReferenceSet();
+        ReferenceSet<String,Entity> places = new ReferenceSet<String,Entity>();
+
+        StatisticsPlaces(int which) {
+            this.which = which;
+        }
+
+        public void add(Entity entity) {
+            analyzePlaces(entity, this);
+        }
+
+        public Aggregator createPartial() {
+            return new StatisticsPlaces(which);
+        }
+
+        public void merge(Aggregator partial) {
+            entitiesWithKnownPlaces += Statistics.merge(places, ((StatisticsPlaces)partial).places);
+        }
     }
 
     // constants for statistics of individuals
@@ -214,6 +342,20 @@ public class ReportGedcomStatistics extends Report {
     private static final int NATURALIZATION = 12;
     private static final int DEATH = 13;
 
+    // paths of analyzed places
+    private static final TagPath
+        PATH_BIRT_PLAC = new TagPath("INDI:BIRT:PLAC"),
+        PATH_BAPM_PLAC = new TagPath("INDI:BAPM:PLAC"),
+        PATH_BAPL_PLAC = new TagPath("INDI:BAPL:PLAC"),
+        PATH_CHR_PLAC = new TagPath("INDI:CHR:PLAC"),
+        PATH_CHRA_PLAC = new TagPath("INDI:CHRA:PLAC"),
+        PATH_EMIG_PLAC = new TagPath("INDI:EMIG:PLAC"),
+        PATH_IMMI_PLAC = new TagPath("INDI:IMMI:PLAC"),
+        PATH_NATU_PLAC = new TagPath("INDI:NATU:PLAC"),
+        PATH_MARR_PLAC = new TagPath("FAM:MARR:PLAC"),
+        PATH_DEAT_PLAC = new TagPath("INDI:DEAT:PLAC"),
+        PATH_OCCU = new TagPath("INDI:OCCU");
+
     /**
      * This method actually starts this report
      */
@@ -228,88 +370,74 @@ public class ReportGedcomStatistics extends Report {
         (analyzeDeathPlaces==false))
             return;
 
-        // what to analyze
-        Entity[] indis = gedcom.getEntities(Gedcom.INDI, "");
-        Entity[] fams = gedcom.getEntities(Gedcom.FAM,"");
-
         // where to write the statistic data
-        StatisticsIndividuals all=null, males=null, females=null, unknown=null;
+        StatisticsGenders individuals=null;
         StatisticsLastNames lastNames = null;
         StatisticsOccupations occupations = null;
         StatisticsFamilies families=null;
         StatisticsPlaces births=null, baptisms=null, marriages=null, emigrations=null, immigrations=null, naturalizations=null, deaths=null;
 
-        // now do the desired analyzes
+        // collect the desired analyzes
+        Statistics statistics = new Statistics();
+
         if(analyzeIndividuals) {
-            all = new StatisticsIndividuals();
-            all.which = ALL;
-            males = new StatisticsIndividuals();
-            males.which= MALES;
-            females = new StatisticsIndividuals();
-            females.which= FEMALES;
-            unknown = new StatisticsIndividuals();
-            unknown.which= UNKNOWN;
-            analyzeIndividuals(indis, all, males, females, unknown);
+            individuals = new StatisticsGenders();
+            statistics.add(individuals);
         }
 
         if(analyzeFamilies) {
             families = new StatisticsFamilies();
-            families.number = fams.length;
-            analyzeFamilies(fams, null, families);
+            statistics.add(families);
         }
 
         if(analyzeLastNames) {
             lastNames = new StatisticsLastNames();
-            analyzeLastNames(indis, lastNames);
+            statistics.add(lastNames);
         }
 
         if(analyzeOccupations) {
             occupations = new StatisticsOccupations();
-            analyzeOccupations(indis, occupations);
+            statistics.add(occupations);
         }
 
         if(analyzeBirthPlaces) {
-            births = new StatisticsPlaces();
-            births.which = BIRTH;
-            analyzePlaces(indis, births);
+            births = new StatisticsPlaces(BIRTH);
+            statistics.add(births);
         }
 
         if(analyzeBaptismPlaces) {
-            baptisms = new StatisticsPlaces();
-            baptisms.which = BAPTISM;
-            analyzePlaces(indis, baptisms);
+            baptisms = new StatisticsPlaces(BAPTISM);
+            statistics.add(baptisms);
         }
 
         if(analyzeMarriagePlaces) {
-            marriages = new StatisticsPlaces();
-            marriages.which = MARRIAGE;
-            analyzePlaces(fams, marriages);
+            marriages = new StatisticsPlaces(MARRIAGE);
+            statistics.add(marriages);
         }
 
         if(analyzeEmigrationPlaces) {
-            emigrations = new StatisticsPlaces();
-            emigrations.which = EMIGRATION;
-            analyzePlaces(indis, emigrations);
+            emigrations = new StatisticsPlaces(EMIGRATION);
+            statistics.add(emigrations);
         }
 
         if(analyzeImmigrationPlaces) {
-            immigrations = new StatisticsPlaces();
-            immigrations.which = IMMIGRATION;
-            analyzePlaces(indis, immigrations);
+            immigrations = new StatisticsPlaces(IMMIGRATION);
+            statistics.add(immigrations);
         }
 
         if(analyzeNaturalizationPlaces) {
-            naturalizations = new StatisticsPlaces();
-            naturalizations.which = NATURALIZATION;
-            analyzePlaces(indis, naturalizations);
+            naturalizations = new StatisticsPlaces(NATURALIZATION);
+            statistics.add(naturalizations);
         }
 
         if(analyzeDeathPlaces) {
-            deaths = new StatisticsPlaces();
-            deaths.which = DEATH;
-            analyzePlaces(indis, deaths);
+            deaths = new StatisticsPlaces(DEATH);
+            statistics.add(deaths);
         }
 
+        // now do all analyzes in one pass over individuals and families
+        statistics.analyze(gedcom, new String[]{ Gedcom.INDI, Gedcom.FAM });
+
         // generate output
         println(translate("header",gedcom.getName()));
         println();
@@ -320,14 +448,14 @@ public class ReportGedcomStatistics extends Report {
                 i=1;
             else
                 i=3;
-            reportIndividuals(i, null, 0, all, males, females, unknown);
+            reportIndividuals(i, null, 0, individuals.all, individuals.males, individuals.females, individuals.unknown);
         }
 
         if(analyzeFamilies)
             reportFamilies(families, reportFamsToChildren, reportIndisToChildBirth, false);
 
         if(analyzeLastNames)
-            reportLastNames(lastNames,  sortLastNamesByName? gedcom.getCollator() : null, indis.length);
+            reportLastNames(lastNames,  sortLastNamesByName? gedcom.getCollator() : null, gedcom.getEntities(Gedcom.INDI).size());
 
         if(analyzeOccupations)
             reportOccupations(occupations, sortOccupationsByName? gedcom.getCollator() : null);
@@ -387,93 +515,101 @@ public class ReportGedcomStatistics extends Report {
     }
 
     /**
-     * @param e entities to analyze
+     * @param e entity to analyze
      * @param places to store results
      */
-    private void analyzePlaces(Entity[] e, StatisticsPlaces places) {
+    private static void analyzePlaces(Entity e, StatisticsPlaces places) {
 
-        Property prop;
-        Property[] props;
+        Property prop = null;
+        Property[] props = null;
         String place;
 
-        for(int i=0;i<e.length;i++) {
-
-            prop = null;
-            props = null;
+        switch(places.which) {
 
-            switch(places.which) {
-
-                case BIRTH:
-                    props = new Property[1];
-                    props[0] = e[i].getProperty(new TagPath("INDI:BIRT:PLAC"));
-                    break;
+            case BIRTH:
+                if(!(e instanceof Indi))
+                    return;
+                props = new Property[1];
+                props[0] = e.getProperty(PATH_BIRT_PLAC);
+                break;
 
-                case BAPTISM:
-                    ArrayList baps = new ArrayList();
-                    prop = e[i].getProperty("BAPM");
-                    if (prop!=null) {
-                        prop = e[i].getProperty(new TagPath("INDI:BAPM:PLAC"));
-                        baps.add(prop);
-                    }
-                    prop = e[i].getProperty("BAPL");
-                    if (prop!=null) {
-                        prop = e[i].getProperty(new TagPath("INDI:BAPL:PLAC"));
-                        baps.add(prop);
-                    }
-                    prop = e[i].getProperty("CHR");
-                    if (prop!=null) {
-                        prop = e[i].getProperty(new TagPath("INDI:CHR:PLAC"));
-                        baps.add(prop);
-                    }
-                    prop = e[i].getProperty("CHRA");
-                    if (prop!=null) {
-                        prop = e[i].getProperty(new TagPath("INDI:CHRA:PLAC"));
-                        baps.add(prop);
-                    }
-                    props = (Property[])baps.toArray(new Property[baps.size()]);
-                    break;
+            case BAPTISM:
+                if(!(e instanceof Indi))
+                    return;
+                ArrayList<Property> baps = new ArrayList<Property>();
+                prop = e.getProperty("BAPM");
+                if (prop!=null) {
+                    prop = e.getProperty(PATH_BAPM_PLAC);
+                    baps.add(prop);
+                }
+                prop = e.getProperty("BAPL");
+                if (prop!=null) {
+                    prop = e.getProperty(PATH_BAPL_PLAC);
+                    baps.add(prop);
+                }
+                prop = e.getProperty("CHR");
+                if (prop!=null) {
+                    prop = e.getProperty(PATH_CHR_PLAC);
+                    baps.add(prop);
+                }
+                prop = e.getProperty("CHRA");
+                if (prop!=null) {
+                    prop = e.getProperty(PATH_CHRA_PLAC);
+                    baps.add(prop);
+                }
+                props = (Property[])baps.toArray(new Property[baps.size()]);
+                break;
 
-                case EMIGRATION:
-                    prop = e[i].getProperty("EMIG");
-                    if (prop!=null)
-                        props = e[i].getProperties(new TagPath("INDI:EMIG:PLAC"));
-                    break;
+            case EMIGRATION:
+                if(!(e instanceof Indi))
+                    return;
+                prop = e.getProperty("EMIG");
+                if (prop!=null)
+                    props = e.getProperties(PATH_EMIG_PLAC);
+                break;
 
-                case IMMIGRATION:
-                    prop = e[i].getProperty("IMMI");
-                    if (prop!=null)
-                        props = e[i].getProperties(new TagPath("INDI:IMMI:PLAC"));
-                    break;
+            case IMMIGRATION:
+                if(!(e instanceof Indi))
+                    return;
+                prop = e.getProperty("IMMI");
+                if (prop!=null)
+                    props = e.getProperties(PATH_IMMI_PLAC);
+                break;
 
-                case NATURALIZATION:
-                    prop = e[i].getProperty("NATU");
-                    if (prop!=null)
-                        props = e[i].getProperties(new TagPath("INDI:NATU:PLAC"));
-                    break;
+            case NATURALIZATION:
+                if(!(e instanceof Indi))
+                    return;
+                prop = e.getProperty("NATU");
+                if (prop!=null)
+                    props = e.getProperties(PATH_NATU_PLAC);
+                break;
 
-                case MARRIAGE:
-                    prop = e[i].getProperty("MARR");
-                    if (prop!=null)
-                        props = e[i].getProperties(new TagPath("FAM:MARR:PLAC"));
-                    break;
+            case MARRIAGE:
+                if(!(e instanceof Fam))
+                    return;
+                prop = e.getProperty("MARR");
+                if (prop!=null)
+                    props = e.getProperties(PATH_MARR_PLAC);
+                break;
 
-                case DEATH:
-                    props = new Property[1];
-                    prop = e[i].getProperty("DEAT");
-                    if (prop!=null)
-                        props[0] = e[i].getProperty(new TagPath("INDI:DEAT:PLAC"));
-                    break;
+            case DEATH:
+                if(!(e instanceof Indi))
+                    return;
+                props = new Property[1];
+                prop = e.getProperty("DEAT");
+                if (prop!=null)
+                    props[0] = e.getProperty(PATH_DEAT_PLAC);
+                break;
 
-            }
+        }
 
-            if (props!=null && props.length>0) {
-                for(int j=0;j<props.length;j++) {
-                    if(props[j]!=null) {
-                        place = props[j].getValue();
-                        if (place.length()>0) {
-                            if(places.places.add(place, e[i]))
-                                places.entitiesWithKnownPlaces++;
-                        }
+        if (props!=null && props.length>0) {
+            for(int j=0;j<props.length;j++) {
+                if(props[j]!=null) {
+                    place = props[j].getValue();
+                    if (place.length()>0) {
+                        if(places.places.add(place, e))
+                            places.entitiesWithKnownPlaces++;
                     }
                 }
             }
@@ -487,7 +623,7 @@ public class ReportGedcomStatistics extends Report {
      * @param all to store results of all individuals
      * @param which info to analyze
      */
-    private void analyzeAge(Indi indi, Delta age, StatisticsIndividuals single, StatisticsIndividuals all, int which) {
+    private static void analyzeAge(Indi indi, Delta age, StatisticsIndividuals single, StatisticsIndividuals all, int which) {
 
         if(age==null)
             return;
@@ -497,207 +633,126 @@ public class ReportGedcomStatistics extends Report {
             case INDIS:
             case MARRIAGE:
 
-                if(all!=null) {
-                    all.age.add(new Integer(a),indi);
-                    all.sumAge=all.sumAge+a;
-                    if(a>all.maxAge)
-                        all.maxAge=a;
-
-                    if(a<all.minAge)
-                        all.minAge=a;
-                }
-
-                single.age.add(new Integer(a),indi);
-                single.sumAge=single.sumAge+a;
-
-                if(a>single.maxAge)
-                    single.maxAge=a;
+                if(all!=null)
+                    all.age.add(a, indi);
 
-                if(a<single.minAge)
-                    single.minAge=a;
+                single.age.add(a, indi);
                 break;
 
             case CHILDBIRTH:
 
-                single.childBirthNumber++;
-                single.sumChildBirthAge = single.sumChildBirthAge + a;
-                single.childBirthAge.add(new Integer(a), indi);
-
-                if(a < single.minChildBirthAge)
-                    single.minChildBirthAge = a;
-                if(a > single.maxChildBirthAge)
-                    single.maxChildBirthAge = a;
+                single.childBirthAge.add(a, indi);
                 break;
         }
     }
 
     /**
-     * @param all to store results for all
-     * @param males to store results for males
-     * @param females to store results for females
-     * @param unknown to store results for unknown
-     * @param e array with individuals
+     * @param indi individual to analyze
+     * @param stats to store results for all, males, females and unknown
      */
-    private void analyzeIndividuals(Entity[] e,StatisticsIndividuals all,StatisticsIndividuals males,StatisticsIndividuals females,StatisticsIndividuals unknown) {
-
-        for(int i=0;i<e.length;i++) {
+    private static void analyzeIndividual(Indi indi, StatisticsGenders stats) {
 
-            Delta age = null;
-            Indi indi = (Indi)e[i];
+        Delta age = null;
 
-            all.number++;
-
-            if(indi.getDeathDate()!=null)
-                age = indi.getAge(indi.getDeathDate().getStart());
-
-            switch (indi.getSex()) {
-
-                case PropertySex.MALE:
-                    males.number++;
-                    analyzeAge(indi, age, males, all, INDIS);
-                    break;
+        stats.all.number++;
 
-                case PropertySex.FEMALE:
-                    females.number++;
-                    analyzeAge(indi, age, females, all, INDIS);
-                    break;
+        if(indi.getDeathDate()!=null)
+            age = indi.getAge(indi.getDeathDate().getStart());
 
-                default:
-                    unknown.number++;
-                    analyzeAge(indi, age, unknown, all, INDIS);
-                    break;
-            }
-        }
-    }
+        switch (indi.getSex()) {
 
-    /** @param e the individuals
-     * @param lastNames to store the results */
-    private void analyzeLastNames(Entity[] e, StatisticsLastNames lastNames) {
+            case PropertySex.MALE:
+                stats.males.number++;
+                analyzeAge(indi, age, stats.males, stats.all, INDIS);
+                break;
 
-        // sort indis by name
-        for(int i=0;i<e.length;i++)
-            lastNames.lastNamesIndis.add(((Indi)e[i]).getLastName(), (Indi)e[i]);
+            case PropertySex.FEMALE:
+                stats.females.number++;
+                analyzeAge(indi, age, stats.females, stats.all, INDIS);
+                break;
 
-        // analyze all individuals with same name and store the result
-        Iterator it = lastNames.lastNamesIndis.getKeys().iterator();
-        ArrayList familiesToLastName = new ArrayList();
-        while(it.hasNext()) {
-            familiesToLastName.clear();
-            String name = (String)it.next();
-            // indis with the same last name
-            Iterator entities = lastNames.lastNamesIndis.getReferences(name).iterator();
-            // find families in which indis with the same last name are involved
-            while(entities.hasNext()) {
-                Indi indi = (Indi)entities.next();
-                if(indi.getNoOfFams() > 0) {
-                    Fam[] fams = indi.getFamiliesWhereSpouse();
-                    for(int j=0;j<fams.length;j++)
-                        familiesToLastName.add(fams[j]);
-                }
-            }
-            // create statistics for individuals with the same last name
-            StatisticsFamilies families = new StatisticsFamilies();
-            families.number = familiesToLastName.size();
-            StatisticsIndividuals all = new StatisticsIndividuals();
-            all.which=ALL;
-            StatisticsIndividuals males = new StatisticsIndividuals();
-            males.which=MALES;
-            StatisticsIndividuals females = new StatisticsIndividuals();
-            females.which=FEMALES;
-            StatisticsIndividuals unknown = new StatisticsIndividuals();
-            unknown.which=UNKNOWN;
-            // fill the statistics
-            analyzeIndividuals((Entity[])lastNames.lastNamesIndis.getReferences(name).toArray(new Entity[0]), all, males, females, unknown);
-            analyzeFamilies((Entity[])familiesToLastName.toArray(new Entity[0]), name, families);
-            // store the statistics
-            lastNames.lastNamesStatistic.add(name, all);
-            lastNames.lastNamesStatistic.add(name, males);
-            lastNames.lastNamesStatistic.add(name, females);
-            lastNames.lastNamesStatistic.add(name, unknown);
-            lastNames.lastNamesStatistic.add(name, families);
+            default:
+                stats.unknown.number++;
+                analyzeAge(indi, age, stats.unknown, stats.all, INDIS);
+                break;
         }
     }
 
-    /** @param e array with individuals
+    /** @param indi individual to analyze
      * @param occupations to store the results */
-    private void analyzeOccupations(Entity[] e, StatisticsOccupations occupations) {
-
-        for(int i=0;i<e.length;i++) {
-            occupations.numberIndis++;
-            // an individual might have more than one occupation
-            Property[] props = e[i].getProperties(new TagPath("INDI:OCCU"));
-            if (props!=null) {
-                for(int j=0;j<props.length;j++) {
-                    String occu = props[j].getValue();
-                    if(occu.length()>0)
-                        occupations.occupations.add(occu, e[i]);
-                }
+    private static void analyzeOccupations(Indi indi, StatisticsOccupations occupations) {
+
+        occupations.numberIndis++;
+        // an individual might have more than one occupation
+        Property[] props = indi.getProperties(PATH_OCCU);
+        if (props!=null) {
+            for(int j=0;j<props.length;j++) {
+                String occu = props[j].getValue();
+                if(occu.length()>0)
+                    occupations.occupations.add(occu, indi);
             }
         }
     }
 
     /**
      * Persons with the same last name are basically a "family". Therefore this method is also
-     * called from analyzeLastNames().
+     * called for the families of persons with a certain last name.
      *
      * @param families to store the result
      * @param lastName null for "real" families or string value for persons with a certain last name
-     * @param e the families
+     * @param fam the family
      */
-    private void analyzeFamilies(Entity[] e, String lastName, StatisticsFamilies families) {
+    private static void analyzeFamily(Fam fam, String lastName, StatisticsFamilies families) {
 
         Delta age;
 
-        for(int i=0;i<e.length;i++) {
-            Fam fam = (Fam)e[i];
+        families.number++;
 
-            // analyze marriage age of husband and wife
-            Indi husband=fam.getHusband();
-            Indi wife=fam.getWife();
-            PropertyDate date = fam.getMarriageDate();
+        // analyze marriage age of husband and wife
+        Indi husband=fam.getHusband();
+        Indi wife=fam.getWife();
+        PropertyDate date = fam.getMarriageDate();
 
-            if(date!=null) {
-                if((husband!=null)&&((lastName==null)||husband.getLastName().equals(lastName))){
-                    age = husband.getAge(date.getStart());
-                    analyzeAge(husband, age, families.husbands, null, MARRIAGE);
-                }
-                if((wife!=null)&&((lastName==null)||wife.getLastName().equals(lastName))){
-                    age= wife.getAge(date.getStart());
-                    analyzeAge(wife, age, families.wifes, null, MARRIAGE);
-                }
+        if(date!=null) {
+            if((husband!=null)&&((lastName==null)||husband.getLastName().equals(lastName))){
+                age = husband.getAge(date.getStart());
+                analyzeAge(husband, age, families.husbands, null, MARRIAGE);
+            }
+            if((wife!=null)&&((lastName==null)||wife.getLastName().equals(lastName))){
+                age= wife.getAge(date.getStart());
+                analyzeAge(wife, age, families.wifes, null, MARRIAGE);
             }
+        }
 
-            // analyze ages at child births
-            Indi[] children = fam.getChildren();
+        // analyze ages at child births
+        Indi[] children = fam.getChildren();
 
-            for(int j=0;j<children.length;j++) {
-                date = children[j].getBirthDate();
-                if(date!=null) {
-                    if ((husband!=null)&&((lastName==null)||(husband.getLastName().equals(lastName)))) {
-                        age = husband.getAge(date.getStart());
-                        analyzeAge(husband, age, families.husbands, null, CHILDBIRTH);
-                    }
-                    if ((wife!=null)&&((lastName==null)||(wife.getLastName().equals(lastName)))) {
-                        age = wife.getAge(date.getStart());
-                        analyzeAge(wife, age, families.wifes, null, CHILDBIRTH);
-                    }
+        for(int j=0;j<children.length;j++) {
+            date = children[j].getBirthDate();
+            if(date!=null) {
+                if ((husband!=null)&&((lastName==null)||(husband.getLastName().equals(lastName)))) {
+                    age = husband.getAge(date.getStart());
+                    analyzeAge(husband, age, families.husbands, null, CHILDBIRTH);
+                }
+                if ((wife!=null)&&((lastName==null)||(wife.getLastName().equals(lastName)))) {
+                    age = wife.getAge(date.getStart());
+                    analyzeAge(wife, age, families.wifes, null, CHILDBIRTH);
                 }
             }
+        }
 
-            // analyze number of children
-            families.children.add(new Integer(children.length), fam);
+        // analyze number of children
+        families.children.add(new Integer(children.length), fam);
 
-            if(children.length > 0)
-                families.withChildren++;
+        if(children.length > 0)
+            families.withChildren++;
 
-            if(children.length>families.maxChildren)
-                families.maxChildren=children.length;
+        if(children.length>families.maxChildren)
+            families.maxChildren=children.length;
 
-            if(children.length<families.minChildren)
-                families.minChildren=children.length;
-        }
+        if(children.length<families.minChildren)
+            families.minChildren=children.length;
     }
-
     /**
      * @param ages all ages added up in days
      * @param numAges number of persons added up
@@ -725,66 +780,52 @@ public class ReportGedcomStatistics extends Report {
      */
     private void printAges(int printIndis, int indent, StatisticsIndividuals stats, int which) {
 
-        int[] age;
-
         switch(which) {
             case INDIS:
             case MARRIAGE:
-
-                if(stats.age.getKeys().size()>0) {
-                    // there are indis to print
-                    if(stats.age.getSize()==1) {
-                        // we have one indi to print
-                        Indi indi = (Indi)stats.age.getReferences((Integer)stats.age.getKeys().get(0)).iterator().next();
-                        age = calculateAverageAge(stats.sumAge,1);
-                        println(getIndent(indent)+new Delta(age[2], age[1], age[0])+" "+translate("oneIndi"));
-                        if(printIndis<3)
-                            println(getIndent(indent+1)+translate("entity", indi.getId(), indi.getName() ));
-                    }
-                    else {
-                        // we have several indis to print
-                        // min. age
-                        printMinMaxAge(indent, "minAge", stats.minAge, stats.age.getReferences(new Integer(stats.minAge)));
-                        // average age
-                        age = calculateAverageAge(stats.sumAge,stats.age.getSize());
-                        println(getIndent(indent)+translate("avgAge")+" "+new Delta(age[2], age[1], age[0]));
-                        // max. age
-                        printMinMaxAge(indent, "maxAge", stats.maxAge, stats.age.getReferences(new Integer(stats.maxAge)));
-                    }
-                }
-                else
-                    // no indis found
-                    println(getIndent(indent)+translate("noData"));
+                printAges(printIndis, indent, stats.age);
                 break;
             case CHILDBIRTH:
-                if(stats.childBirthAge.getKeys().size()>0) {
-                    // there are indis to print
-                    if(stats.childBirthAge.getSize()==1) {
-                        // we have one indi to print
-                        Indi indi = (Indi)stats.childBirthAge.getReferences((Integer)stats.childBirthAge.getKeys().get(0)).iterator().next();
-                        age = calculateAverageAge(stats.sumChildBirthAge,1);
-                        println(getIndent(indent)+new Delta(age[2], age[1], age[0])+" "+translate("oneIndi"));
-                        if(printIndis<3)
-                            println(getIndent(indent+1)+translate("entity", indi.getId(), indi.getName()));
-                    }
-                    else{
-                        // we have several indis to print
-                        // min. age
-                        printMinMaxAge(indent, "minAge", stats.minChildBirthAge, stats.childBirthAge.getReferences(new Integer(stats.minChildBirthAge)));
-                        // avg age
-                        age = calculateAverageAge(stats.sumChildBirthAge,stats.childBirthNumber);
-                        println(getIndent(indent)+translate("avgAge")+" "+new Delta(age[2], age[1], age[0]));
-                        // max. age
-                        printMinMaxAge(indent, "maxAge", stats.maxChildBirthAge, stats.childBirthAge.getReferences(new Integer(stats.maxChildBirthAge)));
-                    }
-                }
-                else
-                    // no indis found
-                    println(getIndent(indent)+translate("noData"));
+                printAges(printIndis, indent, stats.childBirthAge);
                 break;
         }
     }
 
+    /** Prints min., average, and max. age
+     * @param ages to get the values from
+     * @param printIndis 1=all, 2=min./avg./max., 3=none
+     * @param indent level for indent printing
+     */
+    private void printAges(int printIndis, int indent, IntStatistic<Indi> ages) {
+
+        int[] age;
+
+        if(ages.getCount()>0) {
+            // there are indis to print
+            if(ages.getCount()==1) {
+                // we have one indi to print
+                Indi indi = ages.getMinReferences().iterator().next();
+                age = calculateAverageAge(ages.getSum(),1);
+                println(getIndent(indent)+new Delta(age[2], age[1], age[0])+" "+translate("oneIndi"));
+                if(printIndis<3)
+                    println(getIndent(indent+1)+translate("entity", indi.getId(), indi.getName() ));
+            }
+            else {
+                // we have several indis to print
+                // min. age
+                printMinMaxAge(indent, "minAge", ages.getMin(), ages.getMinReferences());
+                // average age
+                age = calculateAverageAge(ages.getSum(),ages.getCount());
+                println(getIndent(indent)+translate("avgAge")+" "+new Delta(age[2], age[1], age[0]));
+                // max. age
+                printMinMaxAge(indent, "maxAge", ages.getMax(), ages.getMaxReferences());
+            }
+        }
+        else
+            // no indis found
+            println(getIndent(indent)+translate("noData"));
+    }
+
     /**
      * @param prefix e. g. "min. age:"
      * @param age to print
@@ -981,37 +1022,14 @@ public class ReportGedcomStatistics extends Report {
         Iterator it = lastNames.lastNamesIndis.getKeys(sort).iterator();
         while(it.hasNext()) {
             String name = (String)it.next();
-            StatisticsIndividuals all=null, males=null, females=null, unknown=null;
-            StatisticsFamilies families = null;
-            Iterator stats = lastNames.lastNamesStatistic.getReferences(name).iterator();
-            while(stats.hasNext()) {
-                Object stat = stats.next();
-                if(stat instanceof StatisticsIndividuals) {
-                    switch(((StatisticsIndividuals)stat).which) {
-                        case ALL:
-                            all=(StatisticsIndividuals)stat;
-                            break;
-                        case MALES:
-                            males=(StatisticsIndividuals)stat;
-                            break;
-                        case FEMALES:
-                            females=(StatisticsIndividuals)stat;
-                            break;
-                        case UNKNOWN:
-                            unknown=(StatisticsIndividuals)stat;
-                            break;
-                    }
-                }
-                else
-                    families = (StatisticsFamilies)stat;
-            }
+            StatisticsLastName stats = lastNames.lastNamesStatistic.get(name);
             int i;
             if(reportAgeToLastNames)
                 i=1;
             else
                 i=3;
-            reportIndividuals(i, name, numberAllIndis, all, males, females, unknown);
-            reportFamilies(families, reportFamsToChildren, reportIndisToChildBirth, true);
+            reportIndividuals(i, name, numberAllIndis, stats.individuals.all, stats.individuals.males, stats.individuals.females, stats.individuals.unknown);
+            reportFamilies(stats.families, reportFamsToChildren, reportIndisToChildBirth, true);
         }
     }
 
@@ -1,10 +1,13 @@
-import java.util.ArrayList;
+import java.util.List;
 import genj.gedcom.Entity;
 import genj.gedcom.Gedcom;
 import genj.gedcom.Indi;
 import genj.gedcom.time.PointInTime;
 import genj.gedcom.Property;
 import genj.report.Report;
+import statistics.Aggregator;
+import statistics.Histogram;
+import statistics.Statistics;
 
 /**
 
@@ -62,153 +65,26 @@ public class ReportTopNames extends Report {
 	//output the report
 	public void outputReport(Gedcom gedcom) {
   
-		class objRec{
-			//constructor
-			public objRec(String str, int i) {
-				strName = str;
-				count = i;
-			}
-			//method
-			public void inccounter() {
-				count +=1;	
-			}
-			//fields
-			String strName;
-			int count;	
-		}
-		
 		//variables
-		ArrayList<objRec> alGiven = new ArrayList<objRec>();
-		ArrayList<objRec> alSurname = new ArrayList<objRec>();
-		objRec objTemp;
-		Indi person;
-		Entity[] individuals;
-		int loop, loop2, firstSpace, position, maxNames, numIndis;
-		String strGiven, strSurname, strOutput, strULine;
-		boolean flagFound, flagSwapped;
+		List<String> alGiven, alSurname;
+		int loop, maxNames, numIndis;
+		String strULine;
 		float percent;
 	
 		//grab all
-		individuals = gedcom.getEntities(Gedcom.INDI,"");
+		Entity[] individuals = gedcom.getEntities(Gedcom.INDI,"");
 		//number in file
 		numIndis = individuals.length;
 		
-		for(loop=0; loop<individuals.length; loop++) {
-	        
-			//report on each
-			person = (Indi)individuals[loop];      
-			strGiven = person.getFirstName();
-			if (!useNameClasses) {
-				strSurname = person.getLastName();
-			} else {
-				Property personClass = person.getProperty(nameClassTag);
-				if (personClass == null) {
-					strSurname = "";
-				} else {
-					strSurname = person.getProperty(nameClassTag).getDisplayValue();
-				}
-			}
-			
-			//consider only very first name i.e. not middle names or initials
-			firstSpace = strGiven.indexOf(" ");
-			if(firstSpace !=-1) strGiven = strGiven.substring(0, firstSpace);
-
-
-			//given name:
-			//if this is the first object, add it to the list
-			//otherwise iterate list for name match
-			if(alGiven.isEmpty()) {
-				objTemp = new objRec(strGiven, 1);
-				alGiven.add(objTemp);
-			} else {
-	 
-				flagFound=false;
-				
-				for(loop2=0; loop2<alGiven.size(); loop2++) {
-					//if already in list update count
-					if(alGiven.get(loop2).strName.equals(strGiven)) {
-						alGiven.get(loop2).inccounter();
-						flagFound = true;
-					}
-				}//loop2
-				
-				//if not found in list
-				if(!flagFound) {
-					//create a new record with a count of 1
-					objTemp = new objRec(strGiven, 1);
-					alGiven.add(objTemp);
-				}
-	
-			}//else
-		        	
-
-			//surname:
-			//if this is the first object, add it to the list
-			//otherwise iterate list for name match
-			if (!strSurname.equals("")) { // if surname is empty or class tag does not exist for this person
-			if(alSurname.isEmpty()) {
-				objTemp = new objRec(strSurname, 1);
-				alSurname.add(objTemp);
-			} else {
-	 
-				flagFound=false;
-				
-				for(loop2=0; loop2<alSurname.size(); loop2++) {
-					//if already in list update count
-					if(alSurname.get(loop2).strName.equals(strSurname)) {
-						alSurname.get(loop2).inccounter();
-						flagFound = true;
-					}
-				}//loop2
-				
-				//if not found in list
-				if(!flagFound) {
-					//create a new record with a count of 1
-					objTemp = new objRec(strSurname, 1);
-					alSurname.add(objTemp);
-				}
-		
-			}//else
-			}//empty surname
-	    }//loop				
-			
-	
-		//sort given name list on count
-		do { 
-			flagSwapped = false;
-			for(loop=1; loop<alGiven.size(); loop++) {
-				if((alGiven.get(loop).count > alGiven.get(loop-1).count)) {
-					//bubble up
-					//save obj higher in list
-					objTemp = alGiven.get(loop-1);
-					//swap
-					alGiven.set(loop-1, alGiven.get(loop));
-					alGiven.set(loop, objTemp);
-					//note swap
-					flagSwapped = true;
-					//break out
-					//break;
-				}
-			}
-		}while(flagSwapped);
+		//count names in one pass
+		NameCounter names = new NameCounter();
+		Statistics statistics = new Statistics();
+		statistics.add(names);
+		statistics.analyze(individuals);
 		
-		//sort surname
-		do { 
-			flagSwapped = false;
-			for(loop=1; loop<alSurname.size(); loop++) {
-				if((alSurname.get(loop).count > alSurname.get(loop-1).count)) {
-					//bubble up
-					//save obj higher in list
-					objTemp = alSurname.get(loop-1);
-					//swap
-					alSurname.set(loop-1, alSurname.get(loop));
-					alSurname.set(loop, objTemp);
-					//note swap
-					flagSwapped = true;
-					//break;
-				}
-			}
-		}while(flagSwapped);		
+		//sort on count - names with the same count stay in order of appearance
+		alGiven = names.given.getKeysByCount();
+		alSurname = names.surnames.getKeysByCount();
 		
 		
 		
@@ -226,9 +102,10 @@ public class ReportTopNames extends Report {
 				else maxNames = 20;	
 		}
 		for(loop=0; loop<maxNames; loop++) {
-			percent = (float)alGiven.get(loop).count/numIndis*100;
+			int count = names.given.getCount(alGiven.get(loop));
+			percent = (float)count/numIndis*100;
 			//long ugly statement...
-			println(align(alGiven.get(loop).strName, 20, 3) + align(Integer.toString(alGiven.get(loop).count),6,2) + "  -  " + Float.toString(percent).substring(0,4) + "%") ;					
+			println(align(alGiven.get(loop), 20, 3) + align(Integer.toString(count),6,2) + "  -  " + Float.toString(percent).substring(0,4) + "%") ;					
 		}
 		
 		//display surnames
@@ -250,10 +127,54 @@ public class ReportTopNames extends Report {
 				else maxNames = 20;	
 		}		
 		for(loop=0; loop<maxNames; loop++) {
-			percent = (float)alSurname.get(loop).count/numIndis*100;
-			println(align(alSurname.get(loop).strName, 20, 3) + align(Integer.toString(alSurname.get(loop).count),6,2) + "  -  " + Float.toString(percent).substring(0,4) + "%") ;					
+			int count = names.surnames.getCount(alSurname.get(loop));
+			percent = (float)count/numIndis*100;
+			println(align(alSurname.get(loop), 20, 3) + align(Integer.toString(count),6,2) + "  -  " + Float.toString(percent).substring(0,4) + "%") ;					
 		}		
 		
 	}
+
+	
+	//counts first given names and surnames (or name classes) of individuals
+	private class NameCounter implements Aggregator {
+		
+		Histogram<String> given = new Histogram<String>();
+		Histogram<String> surnames = new Histogram<String>();
+		
+		public void add(Entity entity) {
+			
+			Indi person = (Indi)entity;
+			String strGiven = person.getFirstName();
+			String strSurname;
+			if (!useNameClasses) {
+				strSurname = person.getLastName();
+			} else {
+				Property personClass = person.getProperty(nameClassTag);
+				if (personClass == null) {
+					strSurname = "";
+				} else {
+					strSurname = personClass.getDisplayValue();
+				}
+			}
+			
+			//consider only very first name i.e. not middle names or initials
+			int firstSpace = strGiven.indexOf(" ");
+			if(firstSpace !=-1) strGiven = strGiven.substring(0, firstSpace);
+			
+			given.add(strGiven);
+			
+			// if surname is empty or class tag does not exist for this person
+			if (!strSurname.equals(""))
+				surnames.add(strSurname);
+		}
+		
+		public Aggregator createPartial() {
+			return new NameCounter();
+		}
+		
+		public void merge(Aggregator partial) {
+			given.merge(((NameCounter)partial).given);
+			surnames.merge(((NameCounter)partial).surnames);
+		}
+	}
 }
- 
\ No newline at end of file
@@ -0,0 +1,206 @@
+package phonetics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Encodes arrays of names with a phonetics implementation. Every distinct name
+ * is encoded once and cached, names not in the cache yet are encoded in
+ * consecutive partitions by parallel workers - each with an encoder (and its
+ * state) of its own that is kept for the next batch. The worker threads are
+ * kept as well until the batch encoder is closed. A batch encoder itself is
+ * meant to be used by one thread at a time.
+ */
+public class BatchEncoder {
+
+    /** minimum number of names for a partition of its own */
+    private final static int MIN_PARTITION = 256;
+
+    /** the encoding to use */
+    private Phonetics phonetics;
+
+    /** an encoder per partition */
+    private List<Phonetics> encoders = new ArrayList<Phonetics>();
+
+    /** codes by name */
+    private Map<String, String> cache = new HashMap<String, String>();
+
+    /** maximum number of partitions encoded in parallel */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /** workers for parallel partitions - created on demand */
+    private ExecutorService executor;
+
+    /**
+     * Constructor
+     */
+    public BatchEncoder(Phonetics phonetics) {
+        this.phonetics = phonetics;
+    }
+
+    /**
+     * Sets the maximum number of partitions encoded in parallel - 1 for the calling thread only
+     */
+    public void setParallelism(int set) {
+        set = Math.max(1, set);
+        if (set != parallelism)
+            close();
+        parallelism = set;
+    }
+
+    /**
+     * Encodes one name
+     */
+    public String encode(String name) {
+        String[] codes = new String[1];
+        encode(new String[]{ name }, 0, 1, codes, 0);
+        return codes[0];
+    }
+
+    /**
+     * Encodes names
+     * @return codes in the order of the names (null for names without a code)
+     */
+    public String[] encode(String[] names) {
+        String[] codes = new String[names.length];
+        encode(names, 0, names.length, codes, 0);
+        return codes;
+    }
+
+    /**
+     * Encodes names[from..to) into codes[offset..offset+to-from)
+     */
+    public void encode(String[] names, int from, int to, String[] codes, int offset) {
+
+        // gather distinct names not encoded yet
+        List<String> missing = new ArrayList<String>();
+        Set<String> pending = new HashSet<String>();
+        for (int i = from; i < to; i++) {
+            String name = names[i];
+            if (name != null && !cache.containsKey(name) && pending.add(name))
+                missing.add(name);
+        }
+
+        // encode and remember them
+        if (!missing.isEmpty()) {
+            String[] distinct = missing.toArray(new String[missing.size()]);
+            String[] encoded = new String[distinct.length];
+            encodeDistinct(distinct, encoded);
+            for (int i = 0; i < distinct.length; i++)
+                cache.put(distinct[i], encoded[i]);
+        }
+
+        // lookup results
+        for (int i = from; i < to; i++)
+            codes[offset + i - from] = names[i] == null ? null : cache.get(names[i]);
+    }
+
+    /**
+     * Forgets all cached codes
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Stops the workers - they are started again by the next parallel batch
+     */
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Encodes names into a shared result array - partitions write disjoint ranges only
+     */
+    private void encodeDistinct(final String[] names, final String[] codes) {
+
+        int partitions = Math.min(parallelism, names.length / MIN_PARTITION);
+        if (partitions < 2) {
+            encode(getEncoder(0), names, 0, names.length, codes);
+            return;
+        }
+
+        ExecutorService executor = getExecutor();
+        List<Future<Object>> results = new ArrayList<Future<Object>>();
+        for (int p = 0; p < partitions; p++) {
+            final Phonetics encoder = getEncoder(p);
+            final int from = (int) ((long) names.length * p / partitions);
+            final int to = (int) ((long) names.length * (p + 1) / partitions);
+            results.add(executor.submit(new Callable<Object>() {
+                public Object call() {
+                    encode(encoder, names, from, to, codes);
+                    return null;
+                }
+            }));
+        }
+        // wait for all - this also makes the codes visible to us
+        for (Future<Object> result : results)
+            get(result);
+    }
+
+    /**
+     * The workers - one per partition encoded in parallel at most
+     */
+    private ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread result = new Thread(r, "BatchEncoder");
+                    result.setDaemon(true);
+                    return result;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Encodes a range of names with one encoder
+     */
+    private static void encode(Phonetics encoder, String[] names, int from, int to, String[] codes) {
+        for (int i = from; i < to; i++)
+            codes[i] = encoder.encode(names[i]);
+    }
+
+    /**
+     * The encoder of a partition - the phonetics passed in might be in use
+     * by someone else so we always work on instances of our own
+     */
+    private Phonetics getEncoder(int partition) {
+        while (encoders.size() <= partition)
+            encoders.add(phonetics.newInstance());
+        return encoders.get(partition);
+    }
+
+    /**
+     * Waits for a partition passing on errors
+     */
+    private static void get(Future<Object> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+}
@@ -824,6 +824,15 @@ public class DoubleMetaphone implements Phonetics {
         return primary.toString();
     }
     
+    /**
+     * @see phonetics.Phonetics#newInstance()
+     */
+    public Phonetics newInstance() {
+        DoubleMetaphone result = new DoubleMetaphone();
+        result.setEncodeLimit(encodeLimit);
+        return result;
+    }
+
     public String toString() {
       return "Double Metaphone";
     }
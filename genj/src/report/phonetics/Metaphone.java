@@ -250,6 +250,13 @@ public class Metaphone implements Phonetics {
         return code.toString();
     }
     
+    /**
+     * @see phonetics.Phonetics#newInstance()
+     */
+    public Phonetics newInstance() {
+        return new Metaphone();
+    }
+
     public String toString() {
       return "Metaphone";
     }
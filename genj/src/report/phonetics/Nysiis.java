@@ -21,7 +21,11 @@ public class Nysiis implements Phonetics {
         if (originalWord == null || originalWord.length() == 0)
             return null;
 
-        word = new StringBuffer(originalWord.toUpperCase());
+        // reuse the buffer of the last word
+        if (word == null)
+            word = new StringBuffer();
+        word.setLength(0);
+        word.append(originalWord.toUpperCase());
         char first;
 
         //check we actually have a word!
@@ -29,7 +33,7 @@ public class Nysiis implements Phonetics {
             return null;
 
         // strip any trailing S or Zs
-        while (word.toString().endsWith("S") || word.toString().endsWith("Z")) {
+        while (endsWith("S") || endsWith("Z")) {
             word.deleteCharAt(word.length() - 1);
         }
 
@@ -103,7 +107,7 @@ public class Nysiis implements Phonetics {
 
         replaceEnd("AY", "Y");
 
-        while (word.toString().endsWith("A")) {
+        while (endsWith("A")) {
             word.deleteCharAt(word.length() - 1);
         }
 
@@ -123,24 +127,25 @@ public class Nysiis implements Phonetics {
 
     private void reduceDuplicates() {
         char lastChar;
-        StringBuffer newWord = new StringBuffer();
+        int length = 1;
 
         if (0 == word.length()) {
             return;
         }
 
+        // compact in place
         lastChar = word.charAt(0);
-        newWord.append(lastChar);
         for (int i = 1; i < word.length(); ++i) {
-            if (lastChar != word.charAt(i)) {
-                newWord.append(word.charAt(i));
+            char c = word.charAt(i);
+            if (lastChar != c) {
+                word.setCharAt(length++, c);
             }
-            lastChar = word.charAt(i);
+            lastChar = c;
         }
+        word.setLength(length);
 
-        log("reduceDuplicates: " + word);
-
-        word = newWord;
+        if (debug)
+            log("reduceDuplicates: " + word);
     }
 
     private void replaceAll(String find, String repl) {
@@ -152,7 +157,7 @@ public class Nysiis implements Phonetics {
     }
 
     private void replaceAll(String find, String repl, int startPos, int endPos) {
-        int pos = word.toString().indexOf(find, startPos);
+        int pos = word.indexOf(find, startPos);
 
   /*
   log("Nysiis.replaceAll(): "
@@ -171,7 +176,8 @@ public class Nysiis implements Phonetics {
 
         while (-1 != pos) {
             if (-1 != endPos && pos > endPos) {
-                log("stopping pos > endPos: " + pos + ":" + endPos);
+                if (debug)
+                    log("stopping pos > endPos: " + pos + ":" + endPos);
                 break;
             }
             // log("word[" + word.length() + "]: " + word);
@@ -183,27 +189,57 @@ public class Nysiis implements Phonetics {
             word.insert(pos, repl);
             // log("ins[" + word.length() + "]:  " + word);
 
-            pos = word.toString().indexOf(find);
+            pos = word.indexOf(find);
             // log("new pos[" + word.length() + "]: " + pos);
-            log("replaceAll[" + find + "," + repl + "]: " + word);
+            if (debug)
+                log("replaceAll[" + find + "," + repl + "]: " + word);
         }
 
     }
 
     private void replaceFront(String find, String repl) {
-        if (word.toString().startsWith(find)) {
+        if (startsWith(find)) {
             word.delete(0, find.length());
             word.insert(0, repl);
-            log("replaceFront[" + find + "]: " + word);
+            if (debug)
+                log("replaceFront[" + find + "]: " + word);
         }
     }
 
     private void replaceEnd(String find, String repl) {
-        if (word.toString().endsWith(find)) {
+        if (endsWith(find)) {
             word.delete(word.length() - find.length(), word.length());
             word.append(repl);
-            log("replaceEnd[" + find + "]: " + word);
+            if (debug)
+                log("replaceEnd[" + find + "]: " + word);
+        }
+    }
+
+    /**
+     * check the start of the word without copying it
+     */
+    private boolean startsWith(String find) {
+        if (word.length() < find.length())
+            return false;
+        for (int i = 0; i < find.length(); i++) {
+            if (word.charAt(i) != find.charAt(i))
+                return false;
         }
+        return true;
+    }
+
+    /**
+     * check the end of the word without copying it
+     */
+    private boolean endsWith(String find) {
+        int offset = word.length() - find.length();
+        if (offset < 0)
+            return false;
+        for (int i = 0; i < find.length(); i++) {
+            if (word.charAt(offset + i) != find.charAt(i))
+                return false;
+        }
+        return true;
     }
 
     private void log(String msg) {
@@ -214,6 +250,15 @@ public class Nysiis implements Phonetics {
         System.out.flush();
     }
     
+    /**
+     * @see phonetics.Phonetics#newInstance()
+     */
+    public Phonetics newInstance() {
+        Nysiis result = new Nysiis();
+        result.debug = debug;
+        return result;
+    }
+
     public String toString() {
       return "Nysiis";
     }
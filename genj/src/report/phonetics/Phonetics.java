@@ -11,4 +11,10 @@ public interface Phonetics {
      */
     public String encode(String name);
 
+    /**
+     * a new encoder with the same configuration - some encoders keep state
+     * while encoding so each thread needs one of its own
+     */
+    public Phonetics newInstance();
+
 }
\ No newline at end of file
@@ -29,150 +29,125 @@ public class Phonex implements Phonetics {
         //convert to uppercase
         txt = txt.toUpperCase();
 
-        //strip any remaining punctuation
-        int current = 0;
-        StringBuffer word = new StringBuffer(txt);
-        while (current < word.length()) {
-            if (!Character.isLetter(word.charAt(current)))
-                word = word.deleteCharAt(current);
-            else
-                current++;
+        //strip any remaining punctuation while copying the letters
+        char[] input = new char[txt.length()];
+        int end = 0;
+        for (int i = 0; i < txt.length(); i++) {
+            char c = txt.charAt(i);
+            if (Character.isLetter(c))
+                input[end++] = c;
         }
 
         // preprocessing
 
         // strip any trailing S
-        while (word.toString().endsWith("S"))
-            word.deleteCharAt(word.length() - 1);
+        while (end > 0 && input[end - 1] == 'S')
+            end--;
 
         // strip any initial H
-        while (word.toString().startsWith("H"))
-            word.deleteCharAt(0);
+        int start = 0;
+        while (start < end && input[start] == 'H')
+            start++;
 
         // check there is a word left!
-        if (word.length() == 0)
+        if (start == end)
             return null;
 
-        char[] input = word.toString().toCharArray();
-        StringBuffer processed = new StringBuffer();
-
         // handle initial 1 and 2 characters exceptions
-        switch (input[0]) {
+        switch (input[start]) {
             case 'K' :
-                if (input.length > 1 && input[1] == 'N')
-                    processed.append(input, 1, input.length - 1);
-                else {
-                    input[0] = 'C';
-                    processed.append(input);
-                }
+                if (end - start > 1 && input[start + 1] == 'N')
+                    start++;
+                else
+                    input[start] = 'C';
                 break;
             case 'P' :
-                if (input.length > 1 && input[1] == 'H') {
-                    input[1] = 'F';
-                    processed.append(input, 1, input.length - 1);
+                if (end - start > 1 && input[start + 1] == 'H') {
+                    input[start + 1] = 'F';
+                    start++;
                 } else {
-                    input[0] = 'B';
-                    processed.append(input);
+                    input[start] = 'B';
                 }
                 break;
             case 'W' :
-                if (input.length > 1 && input[1] == 'R')
-                    processed.append(input, 1, input.length - 1);
-                else {
-                    processed.append(input);
-                }
+                if (end - start > 1 && input[start + 1] == 'R')
+                    start++;
                 break;
             case 'E' :
             case 'I' :
             case 'O' :
             case 'U' :
             case 'Y' :
-                input[0] = 'A';
-                processed.append(input);
+                input[start] = 'A';
                 break;
             case 'V' :
-                input[0] = 'F';
-                processed.append(input);
+                input[start] = 'F';
                 break;
             case 'Q' :
-                input[0] = 'C';
-                processed.append(input);
+                input[start] = 'C';
                 break;
             case 'J' :
-                input[0] = 'G';
-                processed.append(input);
+                input[start] = 'G';
                 break;
             case 'Z' :
-                input[0] = 'S';
-                processed.append(input);
+                input[start] = 'S';
                 break;
-            default :
-                processed.append(input);
         }
 
-        // End of preprocessing. Find the actual code
+        // End of preprocessing. Find the actual code - codes past maxCodeLen
+        // would be cut off anyway
 
-        String processedString = processed.toString();
-
-        StringBuffer code = new StringBuffer(maxCodeLen);
+        char[] code = new char[Math.max(1, maxCodeLen)];
         char last, mapped;
-        int incount = 1, count = 1;
-        code.append(processedString.charAt(0));
-        last = getCode(processedString, 0);
-        while ((incount < processedString.length()) && (mapped = getCode(processedString, incount++)) != 0 && (count < maxCodeLen)) {
+        int count = 0, incount = start + 1;
+        code[count++] = input[start];
+        last = getCode(input, start, end, start);
+        while (incount < end && count < maxCodeLen) {
+            mapped = getCode(input, start, end, incount++);
             if ((mapped != '0') && (mapped != last)) {
-                code.append(mapped);
+                code[count++] = mapped;
             }
             last = mapped;
         }
 
         // padd to max code length
-        while (code.length() < maxCodeLen)
-            code.append('0');
+        while (count < maxCodeLen)
+            code[count++] = '0';
 
-        return code.toString().substring(0, maxCodeLen);
+        return new String(code, 0, maxCodeLen);
     }
 
     /**
      * Used internally by the Phonex algorithm.
      * returns the code for a character at a given location
-     * in the given string
+     * in the given range of characters
      */
-    private char getCode(String s, int location) {
-        Character a = null, b = null, c = null;
-
-        if (location - 1 >= 0 && location - 1 < s.length())
-            a = new Character(s.charAt(location - 1));
-
-        if (location >= 0 && location < s.length())
-            b = new Character(s.charAt(location));
-
-        if (location + 1 >= 0 && location + 1 < s.length())
-            c = new Character(s.charAt(location + 1));
-
-        return getCode(a, b, c);
+    private char getCode(char[] s, int start, int end, int location) {
+        char prev = location > start ? s[location - 1] : 0;
+        char next = location + 1 < end ? s[location + 1] : 0;
+        return getCode(prev, s[location], next);
     }
 
     /**
      * Used to actually determine the code for a given character
-     * (which also depends on the previous and next characters)
+     * (which also depends on the previous and next characters, 0 for none)
      */
-    private char getCode(Character prev, Character c, Character next) {
-        if (c == null || !Character.isLetter(c.charValue())) {
+    private char getCode(char prev, char c, char next) {
+        if (!Character.isLetter(c)) {
             return '0';
         } else {
             //handle exceptions
             // D or T followed by C
-            if ((c.charValue() == 'D' || c.charValue() == 'T') && (next != null && next.charValue() == 'C'))
+            if ((c == 'D' || c == 'T') && next == 'C')
                 return '0';
             // L or R followed by vowel or end of name
-            else if ((c.charValue() == 'L' || c.charValue() == 'R') && (next == null || next.charValue() == 'A' || next.charValue() == 'E' || next.charValue() == 'I' || next.charValue() == 'O' || next.charValue() == 'U'))
+            else if ((c == 'L' || c == 'R') && (next == 0 || next == 'A' || next == 'E' || next == 'I' || next == 'O' || next == 'U'))
                 return '0';
             // D or G preceded by M or N
-            else if ((c.charValue() == 'D' || c.charValue() == 'G') && (prev != null && (prev.charValue() == 'M' || prev.charValue() == 'N')))
+            else if ((c == 'D' || c == 'G') && (prev == 'M' || prev == 'N'))
                 return '0';
             else {
-                int loc = Character.toUpperCase(c.charValue()) - 'A';
+                int loc = Character.toUpperCase(c) - 'A';
                 if (loc < 0 || loc > (CHAR_MAPPING.length - 1))
                     return '0';
                 return CHAR_MAPPING[loc];
@@ -195,6 +170,15 @@ public class Phonex implements Phonetics {
         this.maxCodeLen = maxCodeLen;
     }
     
+    /**
+     * @see phonetics.Phonetics#newInstance()
+     */
+    public Phonetics newInstance() {
+        Phonex result = new Phonex();
+        result.setMaxCodeLen(maxCodeLen);
+        return result;
+    }
+
     public String toString() {
       return "Phonex";
     }
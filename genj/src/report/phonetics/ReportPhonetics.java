@@ -6,7 +6,9 @@ import genj.gedcom.Indi;
 import genj.report.Report;
 import genj.util.ReferenceSet;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.TreeSet;
 
 /**
@@ -46,7 +48,13 @@ public class ReportPhonetics extends Report {
      */
     public void start(Gedcom gedcom) {
       Entity[] indis = gedcom.getEntities(Gedcom.INDI, "");
-      printPhonetic(gedcom, indis, outputFormats[outputFormat]);
+      // one batch encoder for the whole run
+      BatchEncoder encoder = new BatchEncoder(outputFormats[outputFormat]);
+      try {
+        printPhonetic(gedcom, indis, encoder);
+      } finally {
+        encoder.close();
+      }
     }
 
     /**
@@ -57,10 +65,11 @@ public class ReportPhonetics extends Report {
           Phonetics phonetic = (Phonetics) getValueFromUser(translate("select"), outputFormats, outputFormats[outputFormat]);
           if (phonetic== null)
               return;
-          printPhonetic(indi, phonetic);
+          // the shared instance might be encoding for someone else
+          printPhonetic(indi, phonetic.newInstance());
     }
 
-    private void printPhonetic(Gedcom gedcom, Entity[] indis, Phonetics phonetics) {
+    private void printPhonetic(Gedcom gedcom, Entity[] indis, BatchEncoder encoder) {
         Indi indi = null;
         String str = "";
 
@@ -73,14 +82,15 @@ public class ReportPhonetics extends Report {
                 indi = (Indi) indis[i];
                 names.add(indi.getLastName(), indi);
             }
-            Iterator last = names.getKeys(gedcom.getCollator()).iterator();
-            while(last.hasNext()) {
-                str = (String)last.next();
-                println(str+": "+encode(str, phonetics));
+            List last = names.getKeys(gedcom.getCollator());
+            String[] codes = encode(last, encoder);
+            for (int i = 0; i < codes.length; i++) {
+                str = (String)last.get(i);
+                println(str+": "+codes[i]);
                 Iterator first = names.getReferences(str).iterator();
                 while(first.hasNext()) {
                     indi  = (Indi)first.next();
-                    println(getIndent(2)+indi.getFirstName()+" ("+indi.getId()+")"+": "+encode(str, phonetics));
+                    println(getIndent(2)+indi.getFirstName()+" ("+indi.getId()+")"+": "+codes[i]);
                 }
             }
         }
@@ -90,10 +100,10 @@ public class ReportPhonetics extends Report {
                 indi = (Indi) indis[i];
                 names.add(indi.getLastName());
             }
-            Iterator it = names.iterator();
-            while(it.hasNext()) {
-                str = (String)it.next();
-                println(str+": "+encode(str, phonetics));
+            List last = new ArrayList(names);
+            String[] codes = encode(last, encoder);
+            for (int i = 0; i < codes.length; i++) {
+                println(last.get(i)+": "+codes[i]);
             }
         }
     }
@@ -116,6 +126,18 @@ public class ReportPhonetics extends Report {
         }
     }
 
+    /**
+     * Encode all names in one batch - empty for names without a code
+     */
+    private String[] encode(List names, BatchEncoder encoder) {
+      String[] codes = encoder.encode((String[])names.toArray(new String[names.size()]));
+      for (int i = 0; i < codes.length; i++) {
+        if (codes[i]==null)
+          codes[i] = "";
+      }
+      return codes;
+    }
+
     private String encode(String input, Phonetics phonetics) {
       String result = phonetics.encode(input);
       return result==null ? "" : result;
@@ -16,7 +16,10 @@ public class Soundex implements Phonetics {
     private final static String ACCENTS = "ŠS ŽZ šs žz ŸY ÀA ÁA ÂA ÃA ÄA ÅA ÇC ÈE ÉE ÊE ËE ÌI ÍI ÎI ÏI ÑN ÒO ÓO ÔO ÕO ÖO ØO ÙU ÚU ÛU ÜU ÝY àa áa âa ãa äa åa çc èe ée êe ëe ìi íi îi ïi ñn òo óo ôo õo öo øo ùu úu ûu üu ýy µu ÞTH þth ÐDH ðdh ßss ŒOE œoe ÆAE æae";
     static public final char[] US_ENGLISH_SOUNDEX_MAPPING = "01230120022455012623010202".toCharArray();
 
-    private String[] accents;
+    private final static String[] accents = parseAccents();
+
+    /** most characters an accent is substituted with */
+    private final static int maxSubstitute = getMaxLength(accents);
 
     private char[] soundexMapping;
 
@@ -32,44 +35,67 @@ public class Soundex implements Phonetics {
       // done
     }
 
+    /**
+     * Parse soundex accents into a table of substitutes by unicode
+     */
+    private static String[] parseAccents() {
+      Vector buffer = new Vector(256);
+      try {
+        // loop over soundex accent tokens
+        StringTokenizer tokens = new StringTokenizer(ACCENTS);
+          while (tokens.hasMoreTokens()) {
+            String token = tokens.nextToken();
+            int unicode = token.charAt(0);
+            String substitute = token.substring(1);
+            if (buffer.size()<unicode+1)
+              buffer.setSize(unicode+1);
+            buffer.set(unicode, substitute);
+          }
+      } catch (Throwable t) {
+      }
+      // now we have
+      return (String[])buffer.toArray(new String[buffer.size()]);
+    }
+
+    /**
+     * Longest substitute - at least 1
+     */
+    private static int getMaxLength(String[] substitutes) {
+      int result = 1;
+      for (int i = 0; i < substitutes.length; i++) {
+        if (substitutes[i]!=null)
+          result = Math.max(result, substitutes[i].length());
+      }
+      return result;
+    }
+
     /**
      * Substitute an accent (if applicable) with a non-accented character
      * as specified in soundex.accents of ReportPhonetics.properties
      */
     public String substituteAccents(String str) {
+      char[] buffer = new char[str.length()*maxSubstitute];
+      int length = substituteAccents(str, 0, buffer);
+      return new String(buffer, 0, length);
+    }
 
-      // have we parsed soundex accents yet?
-      if (accents==null) {
-        Vector buffer = new Vector(256);
-        try {
-          // loop over soundex accent tokens
-          StringTokenizer tokens = new StringTokenizer(ACCENTS);
-            while (tokens.hasMoreTokens()) {
-              String token = tokens.nextToken();
-              int unicode = token.charAt(0);
-              String substitute = token.substring(1);
-              if (buffer.size()<unicode+1)
-                buffer.setSize(unicode+1);
-              buffer.set(unicode, substitute);
-            }
-        } catch (Throwable t) {
-        }
-        // now we have
-        accents = (String[])buffer.toArray(new String[buffer.size()]);
-      }
-
-      // gather result
-      StringBuffer result = new StringBuffer(str.length() * 2);
-      for (int i = 0; i < str.length(); i++) {
+    /**
+     * Substitute accents of a string from given position into a buffer big
+     * enough for maxSubstitute characters per character
+     * @return length of the result in the buffer
+     */
+    private static int substituteAccents(String str, int from, char[] buffer) {
+      int length = 0;
+      for (int i = from; i < str.length(); i++) {
           char c = str.charAt(i);
-          if (c<accents.length&&accents[c]!=null)
-            result.append(accents[c]);
+          String substitute = c<accents.length ? accents[c] : null;
+          if (substitute==null)
+            buffer[length++] = c;
           else
-            result.append(c);
+            for (int j = 0; j < substitute.length(); j++)
+              buffer[length++] = substitute.charAt(j);
       }
-
-      // done
-      return result.toString();
+      return length;
     }
 
     /**
@@ -82,19 +108,24 @@ public class Soundex implements Phonetics {
       if (s == null || s.length() == 0)
           return null;
 
-        // should get a true code for each acented character
-        String str = substituteAccents(s);
+        // skip anything up to the first letter - accents are substituted in
+        // place so that doesn't change the first letter
+        int start = 0;
+        while (start < s.length() && !Character.isLetter(s.charAt(start)))
+            start++;
+        if (start == s.length())
+            return null;
 
-        // check the first letter is a character
-        if (!Character.isLetter(str.charAt(0)))
-            return encode(str.substring(1));
+        // should get a true code for each acented character
+        char[] str = new char[(s.length()-start)*maxSubstitute];
+        int length = substituteAccents(s, start, str);
 
         char out[] = { '0', '0', '0', '0' };
         char last, mapped;
         int incount = 1, count = 1;
-        out[0] = Character.toUpperCase(str.charAt(0));
-        last = getMappingCode(str.charAt(0));
-        while ((incount < str.length()) && (mapped = getMappingCode(str.charAt(incount++))) != 0 && (count < 4)) {
+        out[0] = Character.toUpperCase(str[0]);
+        last = getMappingCode(str[0]);
+        while ((incount < length) && (mapped = getMappingCode(str[incount++])) != 0 && (count < 4)) {
             if ((mapped != '0') && (mapped != last)) {
                 out[count++] = mapped;
             }
@@ -117,6 +148,13 @@ public class Soundex implements Phonetics {
         }
     }
 
+    /**
+     * @see phonetics.Phonetics#newInstance()
+     */
+    public Phonetics newInstance() {
+      return new Soundex(soundexMapping);
+    }
+
     public String toString() {
       return "Soundex";
     }
@@ -4,7 +4,10 @@ import genj.gedcom.Gedcom;
 import genj.io.GedcomReaderFactory;
 import genj.util.Origin;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.logging.Level;
@@ -22,12 +25,14 @@ public class GedcomToRdfConverter {
 			LS + "rules  : filename or number of query.rules section in " + ReportRdf.class.getSimpleName() + ".properties" + //
 			LS + "         2 includes ancestors and descendants but may take minutes" + //
 			LS + "format : default ttl; possible values: " + Arrays.deepToString(Extension.values()) + //
+			LS + "stream : default false; true writes the conversion without rules entity by entity (format ttl or nt)" + //
+			LS + "since  : file, with stream only the entities changed since the file was modified, the file is touched afterwards" + //
 			LS + "uri    : default for the options FAM, INDI, OBJE, NOTE, REPO, SOUR, SUBM" + //
 			LS + "         default for uri is " + ReportRdf.DEFAULT_URI + //
 			LS + "gedcom : filename, preceding options are applied to the conversion";
 
 	private static enum Option {
-		rules, format, uri, FAM, INDI, OBJE, NOTE, REPO, SOUR, SUBM, gedcom
+		rules, format, stream, since, uri, FAM, INDI, OBJE, NOTE, REPO, SOUR, SUBM, gedcom
 	};
 
 	public static void main(final String[] args) throws Exception {
@@ -37,6 +42,9 @@ public class GedcomToRdfConverter {
 
 		final ReportRdf reporter = new ReportRdf();
 		String language = Extension.ttl.getLanguage();
+		Extension extension = Extension.ttl;
+		boolean stream = false;
+		File since = null;
 		Logger.getLogger("").setLevel(Level.OFF);
 
 		for (int i = 0; i < args.length; i++) {
@@ -45,10 +53,20 @@ public class GedcomToRdfConverter {
 			final String value = args[++i];
 			switch (option) {
 			case format:
-				language = toLanguage(value);
+				extension = toExtension(value);
+				language = extension.getLanguage();
+				break;
+			case stream:
+				stream = Boolean.parseBoolean(value);
+				break;
+			case since:
+				since = new File(value);
 				break;
 			case gedcom:
-				reporter.convert(readGedcom(value)).write(System.out, language);
+				if (stream)
+					export(readGedcom(value), reporter, extension, since);
+				else
+					reporter.convert(readGedcom(value)).write(System.out, language);
 				break;
 			case rules:
 				reporter.queries.qRules = value;
@@ -93,9 +111,28 @@ public class GedcomToRdfConverter {
 		return new IllegalArgumentException(string);
 	}
 
-	private static String toLanguage(final String value) {
+	private static void export(final Gedcom gedcom, final ReportRdf reporter, final Extension extension, final File since) throws IOException {
+
+		final StreamingGedcomConverter converter;
+		try {
+			converter = new StreamingGedcomConverter(reporter.uriFormats.getURIs(), extension);
+		} catch (final IllegalArgumentException e) {
+			throw createException(e.getMessage());
+		}
+		if (since != null && since.exists())
+			converter.setChangedSince(since.lastModified());
+		final long started = System.currentTimeMillis();
+		converter.write(gedcom, new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8")));
+		if (since != null) {
+			if (!since.exists())
+				since.createNewFile();
+			since.setLastModified(started);
+		}
+	}
+
+	private static Extension toExtension(final String value) {
 		try {
-			return Extension.valueOf(value).getLanguage();
+			return Extension.valueOf(value);
 		} catch (final IllegalArgumentException e) {
 			throw createException("invalid value for " + Option.format + ": " + value);
 		}
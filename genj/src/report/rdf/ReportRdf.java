@@ -7,13 +7,16 @@ import genj.report.Report;
 import genj.util.swing.Action2;
 import genj.util.swing.DialogHelper;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
@@ -56,6 +59,8 @@ public class ReportRdf extends Report implements BatchCompatible {
 		public boolean reuseConversion = false;
 		public String reportFileName = "report.txt";
 		public boolean askForOverwrite = true;
+		public boolean exportOnly = false;
+		public boolean onlyChanged = false;
 	};
 
 	static class UriFormats {
@@ -68,7 +73,7 @@ public class ReportRdf extends Report implements BatchCompatible {
 		public String sour = DEFAULT_URI;
 		public String subm = DEFAULT_URI;
 
-		private Map<String, String> getURIs() {
+		Map<String, String> getURIs() {
 			Map<String, String> uris;
 			uris = new HashMap<String, String>();
 			uris.put("FAM", fam);
@@ -102,6 +107,10 @@ public class ReportRdf extends Report implements BatchCompatible {
 
 	public void start(final Gedcom gedcom) throws IOException {
 
+		if (output.exportOnly) {
+			export(gedcom);
+			return;
+		}
 		final String query = getQuery(queries.qGedcom, "query.gedcom");
 		if (optionsOk(query))
 			run("", getModel(gedcom), query);
@@ -213,6 +222,52 @@ public class ReportRdf extends Report implements BatchCompatible {
 		return model;
 	}
 
+	/**
+	 * Streams the conversion without rules to the converted file, optionally
+	 * just the entities changed since the file was written - a partial
+	 * snapshot replacing the file, see
+	 * {@link StreamingGedcomConverter#setChangedSince(long)}.
+	 */
+	public void export(final Gedcom gedcom) throws IOException {
+
+		final String fileName = output.convertedFileName.trim();
+		Extension extension = null;
+		try {
+			extension = Extension.valueOf(extractExtension(fileName));
+		} catch (final IllegalArgumentException e) {
+			// reported below
+		}
+		if (extension != Extension.nt && extension != Extension.ttl) {
+			println(fileName + " should have one of the extensions " + Extension.nt + " or " + Extension.ttl);
+			return;
+		}
+		final StreamingGedcomConverter converter = new StreamingGedcomConverter(uriFormats.getURIs(), extension);
+		progress("exporting");
+		if (fileName.startsWith("#")) {
+			converter.write(gedcom, getOut());
+			progress("export completed");
+			return;
+		}
+		final File file = new File(fileName);
+		final boolean partial = output.onlyChanged && file.exists();
+		if (partial)
+			converter.setChangedSince(file.lastModified());
+		if (doNotOverwrite(file))
+			return;
+		writeProgress(file);
+		// the next export picks up changes made while this one is running
+		final long started = System.currentTimeMillis();
+		final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		final int count;
+		try {
+			count = converter.write(gedcom, out);
+		} finally {
+			out.close();
+		}
+		file.setLastModified(started);
+		progress("exported " + count + (partial ? " changed entities (partial snapshot)" : " entities"));
+	}
+
 	private void progress(final String string) {
 
 		final DateFormat dateFormat = new SimpleDateFormat(" HH:mm:ss.SSS ");
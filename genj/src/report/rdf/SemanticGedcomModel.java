@@ -4,6 +4,7 @@ import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.hp.hpl.jena.datatypes.RDFDatatype;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.Property;
@@ -79,6 +80,10 @@ public class SemanticGedcomModel {
 		resource.addLiteral(valueProperty, value);
 	}
 
+	public void addLiteral(final Resource resource, final String lexicalForm, final RDFDatatype type) {
+		resource.addProperty(valueProperty, lexicalForm, type);
+	}
+
 	public Model getModel() {
 		return model;
 	}
@@ -8,11 +8,10 @@ import genj.gedcom.PropertyName;
 import genj.gedcom.PropertyPlace;
 import genj.gedcom.time.PointInTime;
 
-import java.util.Calendar;
-import java.util.GregorianCalendar;
+import java.util.Locale;
 import java.util.Map;
 
-import com.hp.hpl.jena.datatypes.xsd.XSDDateTime;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
 import com.hp.hpl.jena.rdf.model.InfModel;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
@@ -46,7 +45,7 @@ public class SemanticGedcomUtil {
 					final PointInTime start = date.getStart();
 					if (start.isComplete() && start.isGregorian()) {
 						final Resource propertyResource = rdfModel.addProperty(resource, tag, null);
-						rdfModel.addLiteral(propertyResource, toXsdDateTime(start));
+						rdfModel.addLiteral(propertyResource, toXsdDateTime(start), XSDDatatype.XSDdateTime);
 						continue;
 						// other dates get default treatment
 
@@ -81,10 +80,13 @@ public class SemanticGedcomUtil {
 		}
 	}
 
-	private static XSDDateTime toXsdDateTime(final PointInTime pit) {
-		String x = pit.toString()+" "+pit.getValue()+" "+pit.getYear()+" "+ pit.getMonth()+" "+ pit.getDay();
-		final Calendar calendar = new GregorianCalendar(pit.getYear(), pit.getMonth(), pit.getDay()+2);
-		return new XSDDateTime(calendar);
+	/**
+	 * The lexical xsd:dateTime of a complete gregorian date - midnight UTC of
+	 * that day, used by the model and the {@link StreamingGedcomConverter}
+	 * alike.
+	 */
+	public static String toXsdDateTime(final PointInTime pit) {
+		return String.format(Locale.US, "%04d-%02d-%02dT00:00:00Z", pit.getYear(), pit.getMonth() + 1, pit.getDay() + 1);
 	}
 
 	public Model toRdf(final Gedcom gedcom, final Map<String, String> uriFormats) {
@@ -0,0 +1,304 @@
+package rdf;
+
+import genj.gedcom.Entity;
+import genj.gedcom.Gedcom;
+import genj.gedcom.Property;
+import genj.gedcom.PropertyChange;
+import genj.gedcom.PropertyDate;
+import genj.gedcom.PropertyName;
+import genj.gedcom.time.PointInTime;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import rdf.ReportRdf.Extension;
+
+/**
+ * Writes the triples of a gedcom entity by entity as N-Triples or Turtle
+ * without building a model in memory. The triples are those of
+ * {@link SemanticGedcomUtil#toRdf(Gedcom, Map)}, no rules are applied.
+ * Chunks of entities are converted in parallel and written in order, so the
+ * output does not depend on the number of threads.
+ */
+public class StreamingGedcomConverter {
+
+	/** number of entities converted by one task */
+	private static final int CHUNK = 500;
+
+	private static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+	private static final String XSD_DATE_TIME = SemanticGedcomModel.PREFIXES.get("xsd") + "dateTime";
+	private static final String LABEL = SemanticGedcomModel.PREFIXES.get("rdfs") + "label";
+	private static final String PREDICATE = SemanticGedcomModel.PREFIXES.get("p");
+	private static final String TYPE = SemanticGedcomModel.PREFIXES.get("t");
+
+	private final Map<String, String> uriFormats;
+	private final boolean turtle;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private long changedSince = Long.MIN_VALUE;
+
+	/**
+	 * @param uriFormats
+	 *            pairs of entity tags and URIs (preferably URLs)
+	 * @param format
+	 *            {@link Extension#nt} or {@link Extension#ttl}
+	 */
+	public StreamingGedcomConverter(final Map<String, String> uriFormats, final Extension format) {
+		if (format != Extension.nt && format != Extension.ttl)
+			throw new IllegalArgumentException("can't stream " + format + ", only " + Extension.nt + " or " + Extension.ttl);
+		this.uriFormats = uriFormats;
+		this.turtle = format == Extension.ttl;
+	}
+
+	/**
+	 * @param parallelism
+	 *            maximum number of chunks converted at the same time, 1 for
+	 *            the calling thread only
+	 */
+	public void setParallelism(final int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Restricts the output to entities with a last change (CHAN) after the
+	 * specified time. Entities without a last change are skipped as unchanged,
+	 * deleted entities can't be expressed as triples. The result is a partial
+	 * snapshot with all current triples of the changed entities - it doesn't
+	 * retract their old triples and blank node labels differ from earlier
+	 * output.
+	 *
+	 * @param time
+	 *            milliseconds since 1970 (UTC), {@link Long#MIN_VALUE} for all
+	 *            entities
+	 */
+	public void setChangedSince(final long time) {
+		this.changedSince = time;
+	}
+
+	/**
+	 * Writes the triples of the (changed) entities of a gedcom.
+	 *
+	 * @return the number of entities written
+	 */
+	public int write(final Gedcom gedcom, final Writer out) throws IOException {
+
+		final List<Entity> entities = new ArrayList<Entity>();
+		for (final Entity entity : gedcom.getEntities()) {
+			if (isChanged(entity))
+				entities.add(entity);
+		}
+
+		if (turtle) {
+			for (final String prefix : SemanticGedcomModel.PREFIXES.keySet())
+				out.write("@prefix " + prefix + ": <" + SemanticGedcomModel.PREFIXES.get(prefix) + "> .\n");
+			out.write("\n");
+		}
+
+		final int chunks = (entities.size() + CHUNK - 1) / CHUNK;
+		if (parallelism < 2 || chunks < 2) {
+			for (int c = 0; c < chunks; c++)
+				out.write(convert(entities, c));
+			out.flush();
+			return entities.size();
+		}
+
+		// keep a limited number of converted chunks ahead of the writer
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, chunks));
+		try {
+			final LinkedList<Future<String>> pending = new LinkedList<Future<String>>();
+			int next = 0;
+			while (next < chunks || !pending.isEmpty()) {
+				while (next < chunks && pending.size() < 2 * parallelism) {
+					final int chunk = next++;
+					pending.add(executor.submit(new Callable<String>() {
+						public String call() {
+							return convert(entities, chunk);
+						}
+					}));
+				}
+				out.write(get(pending.removeFirst()));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		out.flush();
+		return entities.size();
+	}
+
+	private boolean isChanged(final Entity entity) {
+		if (changedSince == Long.MIN_VALUE)
+			return true;
+		final PropertyChange change = entity.getLastChange();
+		return change != null && change.getTime() > changedSince;
+	}
+
+	private static String get(final Future<String> future) {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	private String convert(final List<Entity> entities, final int chunk) {
+		final StringBuilder out = new StringBuilder();
+		final int to = Math.min(entities.size(), (chunk + 1) * CHUNK);
+		for (int i = chunk * CHUNK; i < to; i++) {
+			final Entity entity = entities.get(i);
+			final String subject = toIri(toUri(entity.getId(), entity.getTag()));
+			triple(out, subject, RDF_TYPE, toIri(TYPE + entity.getTag()));
+			triple(out, subject, PREDICATE + "id", toLiteral(entity.getId()));
+			// blank node labels only need to be unique within the document
+			addProperties(out, subject, "_:e" + i + "b", new int[1], entity.getProperties());
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Recursively writes anonymous properties of a subject, see
+	 * {@link SemanticGedcomUtil}.
+	 */
+	private void addProperties(final StringBuilder out, final String subject, final String blankPrefix, final int[] blanks, final Property... properties) {
+		if (properties == null)
+			return;
+		for (final Property property : properties) {
+			final String tag = property.getTag();
+			if (property instanceof PropertyDate) {
+				final PropertyDate date = (PropertyDate) property;
+				if (date.isValid() && date.getFormat().toString().equals("")) {
+					final PointInTime start = date.getStart();
+					if (start.isComplete() && start.isGregorian()) {
+						final String node = addProperty(out, subject, tag, blankPrefix + blanks[0]++);
+						triple(out, node, LABEL, toDateTime(start));
+						continue;
+					}
+				}
+			}
+			final String value = property.getValue();
+			final Entity referred = value.startsWith("@") ? property.getGedcom().getEntity(value.replaceAll("@", "")) : null;
+			if (referred != null) {
+				triple(out, subject, PREDICATE + tag, toIri(toUri(referred.getId(), referred.getTag())));
+			} else {
+				final String node = addProperty(out, subject, tag, blankPrefix + blanks[0]++);
+				if (value.trim().length() > 0)
+					triple(out, node, LABEL, toLiteral(value));
+				addProperties(out, node, blankPrefix, blanks, property.getProperties());
+				if (property instanceof PropertyName) {
+					final PropertyName name = (PropertyName) property;
+					triple(out, node, LABEL, toLiteral(name.getFirstName()));
+					triple(out, node, LABEL, toLiteral(name.getLastName()));
+					triple(out, node, LABEL, toLiteral(name.getSuffix()));
+				}
+			}
+		}
+	}
+
+	private String addProperty(final StringBuilder out, final String subject, final String tag, final String node) {
+		triple(out, subject, PREDICATE + tag, node);
+		triple(out, node, RDF_TYPE, toIri(TYPE + tag));
+		return node;
+	}
+
+	private String toUri(final String id, final String tag) {
+		return MessageFormat.format(uriFormats.get(tag), id);
+	}
+
+	/** subject and object are already serialized, the predicate is a full IRI */
+	private void triple(final StringBuilder out, final String subject, final String predicate, final String object) {
+		out.append(subject).append(' ');
+		if (turtle && predicate.equals(RDF_TYPE))
+			out.append('a');
+		else
+			out.append(toIri(predicate));
+		out.append(' ').append(object).append(" .\n");
+	}
+
+	private String toIri(final String iri) {
+		if (turtle) {
+			for (final String prefix : SemanticGedcomModel.PREFIXES.keySet()) {
+				final String ns = SemanticGedcomModel.PREFIXES.get(prefix);
+				if (iri.startsWith(ns) && isLocalName(iri, ns.length()))
+					return prefix + ":" + iri.substring(ns.length());
+			}
+		}
+		final StringBuilder result = new StringBuilder(iri.length() + 2).append('<');
+		for (int i = 0; i < iri.length(); i = iri.offsetByCodePoints(i, 1)) {
+			final int c = iri.codePointAt(i);
+			if (c <= ' ' || c > '~' || "<>\"{}|^`\\".indexOf(c) >= 0)
+				escape(result, c);
+			else
+				result.append((char) c);
+		}
+		return result.append('>').toString();
+	}
+
+	/** a simple local name that can follow a prefix in Turtle */
+	private static boolean isLocalName(final String iri, final int start) {
+		if (start == iri.length())
+			return false;
+		for (int i = start; i < iri.length(); i++) {
+			final char c = iri.charAt(i);
+			if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || i > start && c >= '0' && c <= '9'))
+				return false;
+		}
+		return true;
+	}
+
+	private static String toLiteral(final String value) {
+		final StringBuilder result = new StringBuilder(value.length() + 2).append('"');
+		for (int i = 0; i < value.length(); i = value.offsetByCodePoints(i, 1)) {
+			final int c = value.codePointAt(i);
+			switch (c) {
+			case '\\':
+				result.append("\\\\");
+				break;
+			case '"':
+				result.append("\\\"");
+				break;
+			case '\n':
+				result.append("\\n");
+				break;
+			case '\r':
+				result.append("\\r");
+				break;
+			case '\t':
+				result.append("\\t");
+				break;
+			default:
+				if (c < ' ' || c > '~')
+					escape(result, c);
+				else
+					result.append((char) c);
+			}
+		}
+		return result.append('"').toString();
+	}
+
+	/** N-Triples is ASCII, other characters are escaped */
+	private static void escape(final StringBuilder out, final int codePoint) {
+		if (codePoint <= 0xFFFF)
+			out.append(String.format("\\u%04X", codePoint));
+		else
+			out.append(String.format("\\U%08X", codePoint));
+	}
+
+	private String toDateTime(final PointInTime pit) {
+		return toLiteral(SemanticGedcomUtil.toXsdDateTime(pit)) + "^^" + toIri(XSD_DATE_TIME);
+	}
+}
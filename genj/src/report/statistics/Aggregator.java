@@ -0,0 +1,34 @@
+/**
+ * Reports are Freeware Code Snippets
+ *
+ * This report is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package statistics;
+
+import genj.gedcom.Entity;
+
+/**
+ * A statistic fed with the entities of a {@link Statistics} pass. Entities
+ * can be fed to partial aggregators in parallel - those are merged into
+ * the original one afterwards in the order of the entities they have seen.
+ */
+public interface Aggregator {
+
+  /**
+   * Adds an entity - called for every entity of the pass
+   */
+  public void add(Entity entity);
+
+  /**
+   * Creates an empty aggregator of the same kind collecting a partial result
+   */
+  public Aggregator createPartial();
+
+  /**
+   * Merges a partial result created by {@link #createPartial()} into this one
+   */
+  public void merge(Aggregator partial);
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Reports are Freeware Code Snippets
+ *
+ * This report is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package statistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts per key - keys are kept in the order they were first added.
+ */
+public class Histogram<KEY> {
+
+  /** counts are mutable int holders so adding doesn't box */
+  private Map<KEY, int[]> key2count = new LinkedHashMap<KEY, int[]>();
+
+  /** total of all counts */
+  private int total = 0;
+
+  /**
+   * Counts a key once
+   */
+  public void add(KEY key) {
+    add(key, 1);
+  }
+
+  /**
+   * Counts a key
+   */
+  public void add(KEY key, int count) {
+    int[] c = key2count.get(key);
+    if (c==null) {
+      c = new int[1];
+      key2count.put(key, c);
+    }
+    c[0] += count;
+    total += count;
+  }
+
+  /**
+   * Merges another histogram into this one - new keys are appended in their order
+   */
+  public void merge(Histogram<KEY> other) {
+    for (Map.Entry<KEY, int[]> entry : other.key2count.entrySet())
+      add(entry.getKey(), entry.getValue()[0]);
+  }
+
+  /** count of a key */
+  public int getCount(KEY key) {
+    int[] c = key2count.get(key);
+    return c==null ? 0 : c[0];
+  }
+
+  /** total of all counts */
+  public int getTotal() {
+    return total;
+  }
+
+  /** keys in the order they were first added */
+  public List<KEY> getKeys() {
+    return new ArrayList<KEY>(key2count.keySet());
+  }
+
+  /** keys by count descending - keys with the same count in the order they were first added */
+  public List<KEY> getKeysByCount() {
+    List<KEY> result = getKeys();
+    Collections.sort(result, new Comparator<KEY>() {
+      public int compare(KEY k1, KEY k2) {
+        return getCount(k2) - getCount(k1);
+      }
+    });
+    return result;
+  }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Reports are Freeware Code Snippets
+ *
+ * This report is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package statistics;
+
+/**
+ * Counts per index 0..size-1 (e.g. months or age groups).
+ */
+public class IntHistogram {
+
+  private int[] counts;
+
+  /**
+   * Constructor
+   */
+  public IntHistogram(int size) {
+    counts = new int[size];
+  }
+
+  /**
+   * Counts an index once - indexes out of range are ignored
+   */
+  public void inc(int index) {
+    if (index>=0&&index<counts.length)
+      counts[index]++;
+  }
+
+  /**
+   * Merges another histogram of the same size into this one
+   */
+  public void merge(IntHistogram other) {
+    for (int i=0;i<counts.length;i++)
+      counts[i] += other.counts[i];
+  }
+
+  /** number of indexes */
+  public int getSize() {
+    return counts.length;
+  }
+
+  /** count of an index */
+  public int get(int index) {
+    return counts[index];
+  }
+
+}
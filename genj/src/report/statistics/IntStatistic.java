@@ -0,0 +1,105 @@
+/**
+ * Reports are Freeware Code Snippets
+ *
+ * This report is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package statistics;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Count, sum, minimum and maximum of int values (e.g. ages in days) - references
+ * are kept for the minimum and maximum only.
+ */
+public class IntStatistic<REF> {
+
+  private int count = 0;
+  private long sum = 0;
+  private int min = Integer.MAX_VALUE;
+  private int max = Integer.MIN_VALUE;
+
+  private Set<REF> minRefs = new LinkedHashSet<REF>();
+  private Set<REF> maxRefs = new LinkedHashSet<REF>();
+
+  /**
+   * Adds a value
+   */
+  public void add(int value, REF reference) {
+    count++;
+    sum += value;
+    if (value<min) {
+      min = value;
+      minRefs.clear();
+    }
+    if (value==min)
+      minRefs.add(reference);
+    if (value>max) {
+      max = value;
+      maxRefs.clear();
+    }
+    if (value==max)
+      maxRefs.add(reference);
+  }
+
+  /**
+   * Merges another statistic into this one
+   */
+  public void merge(IntStatistic<REF> other) {
+    if (other.count==0)
+      return;
+    count += other.count;
+    sum += other.sum;
+    if (other.min<min) {
+      min = other.min;
+      minRefs.clear();
+    }
+    if (other.min==min)
+      minRefs.addAll(other.minRefs);
+    if (other.max>max) {
+      max = other.max;
+      maxRefs.clear();
+    }
+    if (other.max==max)
+      maxRefs.addAll(other.maxRefs);
+  }
+
+  /** number of values */
+  public int getCount() {
+    return count;
+  }
+
+  /** sum of values */
+  public long getSum() {
+    return sum;
+  }
+
+  /** minimum value - Integer.MAX_VALUE if empty */
+  public int getMin() {
+    return min;
+  }
+
+  /** maximum value - Integer.MIN_VALUE if empty */
+  public int getMax() {
+    return max;
+  }
+
+  /** average value - 0 if empty */
+  public double getAverage() {
+    return count==0 ? 0 : (double)sum/count;
+  }
+
+  /** references added with the minimum value */
+  public Collection<REF> getMinReferences() {
+    return minRefs;
+  }
+
+  /** references added with the maximum value */
+  public Collection<REF> getMaxReferences() {
+    return maxRefs;
+  }
+
+}
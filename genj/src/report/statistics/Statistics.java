@@ -0,0 +1,150 @@
+/**
+ * Reports are Freeware Code Snippets
+ *
+ * This report is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package statistics;
+
+import genj.gedcom.Entity;
+import genj.gedcom.Gedcom;
+import genj.util.ReferenceSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A single pass over the entities of a gedcom feeding every entity to all
+ * registered aggregators. With several processors available the entities
+ * are split into consecutive partitions analyzed in parallel by partial
+ * aggregators which are merged in order afterwards.
+ */
+public class Statistics {
+
+  /** minimum number of entities for a partition of its own */
+  private final static int MIN_PARTITION = 1000;
+
+  /** aggregators to feed */
+  private List<Aggregator> aggregators = new ArrayList<Aggregator>();
+
+  /** maximum number of partitions analyzed in parallel */
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Adds an aggregator to feed
+   */
+  public void add(Aggregator aggregator) {
+    aggregators.add(aggregator);
+  }
+
+  /**
+   * Sets the maximum number of partitions analyzed in parallel - 1 for a sequential pass
+   */
+  public void setParallelism(int set) {
+    parallelism = Math.max(1, set);
+  }
+
+  /**
+   * Analyzes all entities of given types - one type after the other
+   */
+  public void analyze(Gedcom gedcom, String[] tags) {
+    List<Entity> entities = new ArrayList<Entity>();
+    for (int i=0;i<tags.length;i++)
+      entities.addAll(gedcom.getEntities(tags[i]));
+    analyze(entities.toArray(new Entity[entities.size()]));
+  }
+
+  /**
+   * Analyzes given entities
+   */
+  public void analyze(Entity[] entities) {
+
+    int partitions = Math.min(parallelism, entities.length/MIN_PARTITION);
+    if (partitions<2) {
+      feed(entities, 0, entities.length, aggregators);
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(partitions);
+    try {
+      // analyze partitions into partial aggregators
+      List<Future<List<Aggregator>>> results = new ArrayList<Future<List<Aggregator>>>();
+      for (int p=0;p<partitions;p++) {
+        final Entity[] es = entities;
+        final int from = (int)((long)entities.length*p/partitions);
+        final int to = (int)((long)entities.length*(p+1)/partitions);
+        final List<Aggregator> partials = new ArrayList<Aggregator>(aggregators.size());
+        for (Aggregator aggregator : aggregators)
+          partials.add(aggregator.createPartial());
+        results.add(executor.submit(new Callable<List<Aggregator>>() {
+          public List<Aggregator> call() {
+            feed(es, from, to, partials);
+            return partials;
+          }
+        }));
+      }
+      // merge in order
+      for (Future<List<Aggregator>> result : results) {
+        List<Aggregator> partials = get(result);
+        for (int i=0;i<aggregators.size();i++)
+          aggregators.get(i).merge(partials.get(i));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Feeds a range of entities to aggregators
+   */
+  private static void feed(Entity[] entities, int from, int to, List<Aggregator> aggregators) {
+    Aggregator[] as = aggregators.toArray(new Aggregator[aggregators.size()]);
+    for (int e=from;e<to;e++) {
+      // Our hook into checking for Interrupt
+      if (Thread.currentThread().isInterrupted())
+        throw new RuntimeException(new InterruptedException());
+      for (int a=0;a<as.length;a++)
+        as[a].add(entities[e]);
+    }
+  }
+
+  /**
+   * Waits for a partial result passing on errors
+   */
+  private static <T> T get(Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException)cause;
+      if (cause instanceof Error)
+        throw (Error)cause;
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Merges the references of a partial reference set into another
+   * @return number of references actually added
+   */
+  public static <K,R> int merge(ReferenceSet<K,R> set, ReferenceSet<K,R> partial) {
+    int added = 0;
+    for (K key : partial.getKeys()) {
+      set.add(key);
+      for (R ref : partial.getReferences(key))
+        if (set.add(key, ref))
+          added++;
+    }
+    return added;
+  }
+
+}
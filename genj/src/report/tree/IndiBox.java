@@ -11,6 +11,8 @@ package tree;
 import genj.gedcom.Fam;
 import genj.gedcom.Indi;
 
+import java.awt.Rectangle;
+
 /**
  * Class representing a single individual box and its links to adjecent boxes.
  *
@@ -82,6 +84,12 @@ public class IndiBox {
 
     public int hMinus = 0;
 
+    /**
+     * Area of everything drawn for this box and all child-nodes, relative
+     * to the position of this box. Determined by the renderer.
+     */
+    public Rectangle bounds = null;
+
     /**
      * The individual connected with this box.
      */
@@ -0,0 +1,115 @@
+/**
+ * Reports are Freeware Code Snippets
+ *
+ * This report is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package tree.graphics;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+
+/**
+ * Outputs generated graphics as a Deep Zoom image - a pyramid of PNG tiles
+ * for viewing huge trees in a zooming image viewer. The .dzi file describes
+ * the image, tiles are written to the directory &lt;name&gt;_files next to it.
+ */
+public class DeepZoomWriter extends GraphicsFileOutput
+{
+    /**
+     * Number of pixels tiles overlap with their neighbours.
+     */
+    private static final int OVERLAP = 1;
+
+	/**
+     * Writes the image description to the output stream and the tiles
+     * of all levels to the tile directory.
+     * @param out  destination output stream
+     * @param renderer this object renders the drawing
+     */
+	public void write(OutputStream out, GraphicsRenderer renderer) throws IOException
+    {
+        int width = renderer.getImageWidth();
+        int height = renderer.getImageHeight();
+
+        Writer writer = new OutputStreamWriter(out, "UTF-8");
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\" TileSize=\""
+                + TileRenderer.TILE_SIZE + "\" Overlap=\"" + OVERLAP + "\" Format=\"png\">\n");
+        writer.write("  <Size Width=\"" + width + "\" Height=\"" + height + "\"/>\n");
+        writer.write("</Image>\n");
+        writer.flush();
+
+        String name = getFile().getName();
+        File dir = new File(getFile().getParentFile(), name.substring(0, name.length() - getFileExtension().length() - 1) + "_files");
+
+        // Level n is 2^n pixels big, the largest level is the image itself
+        int maxLevel = 0;
+        while ((1L << maxLevel) < Math.max(width, height))
+            maxLevel++;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try
+        {
+            for (int level = maxLevel; level >= 0; level--)
+                writeLevel(new TileRenderer(renderer, 1.0 / (1L << (maxLevel - level)), executor),
+                        new File(dir, String.valueOf(level)), executor);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+	}
+
+    /**
+     * Renders and writes all tiles of one level.
+     */
+    private void writeLevel(final TileRenderer tiles, File dir, ExecutorService executor) throws IOException
+    {
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Can't create directory " + dir);
+
+        int width = tiles.getWidth();
+        int height = tiles.getHeight();
+        List<Future<Object>> written = new ArrayList<Future<Object>>();
+        for (int row = 0; row * TileRenderer.TILE_SIZE < height; row++)
+            for (int col = 0; col * TileRenderer.TILE_SIZE < width; col++)
+            {
+                int x = Math.max(0, col * TileRenderer.TILE_SIZE - OVERLAP);
+                int y = Math.max(0, row * TileRenderer.TILE_SIZE - OVERLAP);
+                final Rectangle tile = new Rectangle(x, y,
+                        Math.min((col + 1) * TileRenderer.TILE_SIZE + OVERLAP, width) - x,
+                        Math.min((row + 1) * TileRenderer.TILE_SIZE + OVERLAP, height) - y);
+                final File file = new File(dir, col + "_" + row + ".png");
+                written.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws IOException
+                    {
+                        ImageIO.write(tiles.render(tile), "png", file);
+                        return file;
+                    }
+                }));
+            }
+
+        for (Future<Object> future : written)
+            TileRenderer.get(future);
+    }
+
+	public String getFileExtension() {
+		return "dzi";
+	}
+}
@@ -35,6 +35,13 @@ public abstract class GraphicsFileOutput implements GraphicsOutput {
         this.file = file;
     }
 
+    /**
+     * Returns the file written to.
+     */
+    protected File getFile() {
+        return file;
+    }
+
     /**
      * Writes the family tree to the output file.
      */
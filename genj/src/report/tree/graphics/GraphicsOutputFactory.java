@@ -44,6 +44,7 @@ public class GraphicsOutputFactory {
         add("pdf", new PdfWriter());
         add("png", new PngWriter());
         add("screen", new ScreenOutput());
+        add("dzi", new DeepZoomWriter());
     }
 
     /**
@@ -0,0 +1,170 @@
+/**
+ * Reports are Freeware Code Snippets
+ *
+ * This report is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package tree.graphics;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a PNG image row by row so that the whole image never has to be
+ * kept in memory. The image is written as 8 bit RGB.
+ */
+public class PngEncoder
+{
+    private static final byte[] SIGNATURE = { (byte)137, 80, 78, 71, 13, 10, 26, 10 };
+
+    /**
+     * Maximum size of an IDAT chunk.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private DataOutputStream out;
+
+    private Deflater deflater = new Deflater();
+
+    private DeflaterOutputStream data;
+
+    /**
+     * Filtered scanline - filter type byte followed by RGB triplets.
+     */
+    private byte[] scanline;
+
+    private int width;
+
+    private int rowsLeft;
+
+    /**
+     * Creates the object and writes the image header.
+     * @param out  destination output stream
+     * @param width  image width in pixels
+     * @param height  image height in pixels
+     */
+    public PngEncoder(OutputStream out, int width, int height) throws IOException
+    {
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.rowsLeft = height;
+        scanline = new byte[1 + 3 * width];
+
+        this.out.write(SIGNATURE);
+
+        byte[] header = new byte[13];
+        setInt(header, 0, width);
+        setInt(header, 4, height);
+        header[8] = 8;  // bit depth
+        header[9] = 2;  // color type RGB
+        writeChunk("IHDR", header, 0, header.length);
+
+        data = new DeflaterOutputStream(new ChunkOutputStream(), deflater, CHUNK_SIZE);
+    }
+
+    /**
+     * Writes the next row of the image.
+     * @param rgb  pixels in the default RGB color model
+     * @param offset  index of the row's first pixel
+     */
+    public void writeRow(int[] rgb, int offset) throws IOException
+    {
+        if (rowsLeft-- == 0)
+            throw new IllegalStateException("All rows have been written");
+
+        // Sub filter - each byte as the difference to the one of the pixel on the left
+        scanline[0] = 1;
+        int r = 0, g = 0, b = 0;
+        for (int x = 0, i = 1; x < width; x++)
+        {
+            int pixel = rgb[offset + x];
+            int pr = (pixel >> 16) & 0xff, pg = (pixel >> 8) & 0xff, pb = pixel & 0xff;
+            scanline[i++] = (byte)(pr - r);
+            scanline[i++] = (byte)(pg - g);
+            scanline[i++] = (byte)(pb - b);
+            r = pr;
+            g = pg;
+            b = pb;
+        }
+        data.write(scanline);
+    }
+
+    /**
+     * Finishes the image after all rows have been written.
+     */
+    public void finish() throws IOException
+    {
+        if (rowsLeft != 0)
+            throw new IllegalStateException(rowsLeft + " rows still to be written");
+        data.finish();
+        data.flush();
+        deflater.end();
+        writeChunk("IEND", new byte[0], 0, 0);
+        out.flush();
+    }
+
+    private void writeChunk(String type, byte[] buffer, int off, int len) throws IOException
+    {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(buffer, off, len);
+
+        out.writeInt(len);
+        out.write(typeBytes);
+        out.write(buffer, off, len);
+        out.writeInt((int)crc.getValue());
+    }
+
+    private static void setInt(byte[] buffer, int off, int value)
+    {
+        buffer[off] = (byte)(value >>> 24);
+        buffer[off + 1] = (byte)(value >>> 16);
+        buffer[off + 2] = (byte)(value >>> 8);
+        buffer[off + 3] = (byte)value;
+    }
+
+    /**
+     * Collects compressed image data into IDAT chunks.
+     */
+    private class ChunkOutputStream extends OutputStream
+    {
+        private byte[] buffer = new byte[CHUNK_SIZE];
+
+        private int count = 0;
+
+        public void write(int b) throws IOException
+        {
+            if (count == buffer.length)
+                flush();
+            buffer[count++] = (byte)b;
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            while (len > 0)
+            {
+                if (count == buffer.length)
+                    flush();
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        public void flush() throws IOException
+        {
+            if (count > 0)
+                writeChunk("IDAT", buffer, 0, count);
+            count = 0;
+        }
+    }
+}
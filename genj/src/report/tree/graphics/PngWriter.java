@@ -8,21 +8,32 @@
 
 package tree.graphics;
 
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.OutputStream;
-
-import javax.imageio.ImageIO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
  * Outputs generated graphics to a PNG file.
+ * The image is rendered in tiles which are written row by row, so memory
+ * needed depends on the image width and not on the whole image size.
  *
  * @author Przemek Wiech <pwiech@losthive.org>
  */
 public class PngWriter extends GraphicsFileOutput
 {
+    /**
+     * Size of the tiles. Wider than high as every tile is drawn by
+     * a pass over the whole tree.
+     */
+    private static final int TILE_WIDTH = 4 * TileRenderer.TILE_SIZE;
+    private static final int TILE_HEIGHT = TileRenderer.TILE_SIZE;
+
 	/**
      * Writes the drawing to the output stream.
      * @param out  destination output stream
@@ -30,12 +41,41 @@ public class PngWriter extends GraphicsFileOutput
      */
 	public void write(OutputStream out, GraphicsRenderer renderer) throws IOException
     {
-        BufferedImage image = new BufferedImage(renderer.getImageWidth(), renderer.getImageHeight(), BufferedImage.TYPE_INT_RGB);
-        Graphics2D graphics = (Graphics2D)image.getGraphics();
-        renderer.render(graphics);
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try
+        {
+            TileRenderer tiles = new TileRenderer(renderer, 1, executor);
+            int width = tiles.getWidth();
+            int height = tiles.getHeight();
+            PngEncoder encoder = new PngEncoder(out, width, height);
+
+            // Render the next row of tiles while the current one is written
+            int[] pixels = new int[width * TILE_HEIGHT];
+            List<Future<BufferedImage>> row = tiles.submitRow(0, TILE_WIDTH, TILE_HEIGHT);
+            for (int y = 0; y < height; y += TILE_HEIGHT)
+            {
+                List<Future<BufferedImage>> next = new ArrayList<Future<BufferedImage>>();
+                if (y + TILE_HEIGHT < height)
+                    next = tiles.submitRow(y + TILE_HEIGHT, TILE_WIDTH, TILE_HEIGHT);
+
+                int rowHeight = Math.min(TILE_HEIGHT, height - y);
+                for (int i = 0; i < row.size(); i++)
+                {
+                    BufferedImage tile = TileRenderer.get(row.get(i));
+                    tile.getRGB(0, 0, tile.getWidth(), rowHeight, pixels, i * TILE_WIDTH, width);
+                }
+                for (int line = 0; line < rowHeight; line++)
+                    encoder.writeRow(pixels, line * width);
+
+                row = next;
+            }
 
-        //write image to file
-        ImageIO.write(image, "png", out);
+            encoder.finish();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
 	}
 
 	public String getFileExtension() {
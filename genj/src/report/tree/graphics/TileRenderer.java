@@ -0,0 +1,134 @@
+/**
+ * Reports are Freeware Code Snippets
+ *
+ * This report is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package tree.graphics;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Renders parts of an image as separate tiles. Each tile is drawn by the
+ * renderer on its own small image with a translated and clipped Graphics2D
+ * object so only the tile's pixels are ever held in memory.
+ * Tiles can be rendered in parallel.
+ */
+public class TileRenderer
+{
+    /**
+     * Default tile width and height.
+     */
+    public static final int TILE_SIZE = 256;
+
+    private GraphicsRenderer renderer;
+
+    private double scale;
+
+    private ExecutorService executor;
+
+    /**
+     * Creates the object.
+     * @param renderer  image renderer
+     * @param scale  scale of the tiles in relation to the rendered image
+     * @param executor  runs the rendering of submitted tiles
+     */
+    public TileRenderer(GraphicsRenderer renderer, double scale, ExecutorService executor)
+    {
+        this.renderer = renderer;
+        this.scale = scale;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the scaled image width in pixels.
+     */
+    public int getWidth()
+    {
+        return (int)Math.ceil(renderer.getImageWidth() * scale);
+    }
+
+    /**
+     * Returns the scaled image height in pixels.
+     */
+    public int getHeight()
+    {
+        return (int)Math.ceil(renderer.getImageHeight() * scale);
+    }
+
+    /**
+     * Renders one tile of the scaled image.
+     */
+    public BufferedImage render(Rectangle tile)
+    {
+        BufferedImage image = new BufferedImage(tile.width, tile.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.translate(-tile.x, -tile.y);
+        graphics.clip(tile);
+        graphics.scale(scale, scale);
+        renderer.render(graphics);
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * Submits one tile of the scaled image for rendering.
+     */
+    public Future<BufferedImage> submit(final Rectangle tile)
+    {
+        return executor.submit(new Callable<BufferedImage>() {
+            public BufferedImage call()
+            {
+                return render(tile);
+            }
+        });
+    }
+
+    /**
+     * Submits a row of tiles spanning the whole width of the scaled image for rendering.
+     * @param y  top of the row
+     * @param tileWidth  width of the tiles, the last one is cut to the right of the image
+     * @param tileHeight  height of the tiles, cut to the bottom of the image
+     */
+    public List<Future<BufferedImage>> submitRow(int y, int tileWidth, int tileHeight)
+    {
+        int width = getWidth();
+        tileHeight = Math.min(tileHeight, getHeight() - y);
+        List<Future<BufferedImage>> row = new ArrayList<Future<BufferedImage>>();
+        for (int x = 0; x < width; x += tileWidth)
+            row.add(submit(new Rectangle(x, y, Math.min(tileWidth, width - x), tileHeight)));
+        return row;
+    }
+
+    /**
+     * Waits for a submitted task to finish. Rendering errors are passed on.
+     */
+    public static <T> T get(Future<T> future) throws IOException
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while rendering tiles");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new IOException(cause.getMessage());
+        }
+    }
+}
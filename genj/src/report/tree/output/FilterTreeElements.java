@@ -21,9 +21,10 @@ import tree.IndiBox;
 public class FilterTreeElements implements TreeElements {
 
     /**
-     * The graphics object to paint on.
+     * The graphics object to paint on. Kept per thread so that
+     * several tiles of the image can be rendered at the same time.
      */
-    protected Graphics2D graphics = null;
+    private ThreadLocal<Graphics2D> currentGraphics = new ThreadLocal<Graphics2D>();
 
     protected TreeElements elements;
 
@@ -31,7 +32,7 @@ public class FilterTreeElements implements TreeElements {
      * Constructs the object.
      */
     public FilterTreeElements(Graphics2D graphics, TreeElements elements) {
-        this.graphics = graphics;
+        currentGraphics.set(graphics);
         this.elements = elements;
     }
 
@@ -44,10 +45,17 @@ public class FilterTreeElements implements TreeElements {
      * Sets the Graphics2D object to draw on.
      */
     public void setGraphics(Graphics2D graphics) {
-        this.graphics = graphics;
+        currentGraphics.set(graphics);
         elements.setGraphics(graphics);
     }
 
+    /**
+     * Returns the Graphics2D object the current thread draws on.
+     */
+    protected Graphics2D getGraphics() {
+        return currentGraphics.get();
+    }
+
     /**
      * Outputs an individual box.
      * @param i  individual
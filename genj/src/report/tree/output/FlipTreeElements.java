@@ -47,6 +47,7 @@ public class FlipTreeElements extends FilterTreeElements {
             elements.drawIndiBox(indibox, x, y, gen);
             return;
         }
+        Graphics2D graphics = getGraphics();
         graphics.translate(x + indibox.width/2, y);
         graphics.scale(-1, 1);
         elements.drawIndiBox(indibox, -indibox.width/2, 0, gen);
@@ -67,6 +68,7 @@ public class FlipTreeElements extends FilterTreeElements {
             elements.drawFamBox(fambox, x, y, gen);
             return;
         }
+        Graphics2D graphics = getGraphics();
         graphics.translate(x + fambox.width/2, y);
         graphics.scale(-1, 1);
         elements.drawFamBox(fambox, -fambox.width/2, 0, gen);
@@ -80,6 +82,7 @@ public class FlipTreeElements extends FilterTreeElements {
     public void header(int width, int height) {
         if (flip)
         {
+            Graphics2D graphics = getGraphics();
             graphics.translate(width/2, 0);
             graphics.scale(-1, 1);
             graphics.translate(-width/2, 0);
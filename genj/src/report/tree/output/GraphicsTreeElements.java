@@ -292,15 +292,16 @@ public class GraphicsTreeElements implements TreeElements {
     public boolean swap_names = false;
 
     /**
-     * The graphics object to paint on.
+     * The graphics object to paint on. Kept per thread so that
+     * several tiles of the image can be rendered at the same time.
      */
-    private Graphics2D graphics = null;
+    private ThreadLocal<Graphics2D> currentGraphics = new ThreadLocal<Graphics2D>();
 
     /**
      * Sets the Graphics2D object to draw on.
      */
     public void setGraphics(Graphics2D graphics) {
-        this.graphics = graphics;
+        currentGraphics.set(graphics);
 	}
  
     /**
@@ -312,6 +313,7 @@ public class GraphicsTreeElements implements TreeElements {
      */
     public void drawIndiBox(IndiBox indibox, int x, int y, int gen) {
 
+        Graphics2D graphics = currentGraphics.get();
         
 		// Don't draw if it's not visible
         if (!graphics.hitClip(x, y, indibox.width, indibox.height))
@@ -514,6 +516,8 @@ public class GraphicsTreeElements implements TreeElements {
      */
     public void drawFamBox(FamBox fambox, int x, int y, int gen) {
 
+        Graphics2D graphics = currentGraphics.get();
+
         // Don't draw if it's not visible
         if (!graphics.hitClip(x, y, fambox.width, fambox.height))
             return;
@@ -604,7 +608,7 @@ public class GraphicsTreeElements implements TreeElements {
      * @param y2 end y
      */
     public void drawLine(int x1, int y1, int x2, int y2) {
-        graphics.drawLine(x1, y1, x2, y2);
+        currentGraphics.get().drawLine(x1, y1, x2, y2);
     }
 
     /**
@@ -615,6 +619,7 @@ public class GraphicsTreeElements implements TreeElements {
      * @param y2 end y
      */
     public void drawDashedLine(int x1, int y1, int x2, int y2) {
+        Graphics2D graphics = currentGraphics.get();
         Stroke oldStroke = graphics.getStroke();
         graphics.setStroke(DASHED_STROKE);
         graphics.drawLine(x1, y1, x2, y2);
@@ -625,6 +630,7 @@ public class GraphicsTreeElements implements TreeElements {
      * Initializes the graphics.
      */
     public void header(int width, int height) {
+        Graphics2D graphics = currentGraphics.get();
         graphics.setStroke(new BasicStroke(STROKE_WIDTH));
         graphics.setBackground(Color.WHITE);
         graphics.clearRect(0, 0, width, height);
@@ -835,7 +841,7 @@ public class GraphicsTreeElements implements TreeElements {
         // Image
         if(draw_images)
         {
-          Dimension d = MediaRenderer.getSize(i, graphics);
+          Dimension d = MediaRenderer.getSize(i, currentGraphics.get());
           if (d.width > 0 && d.height > 0) {
               int newWidth = d.width * indibox.height / d.height;
               if (newWidth < MAX_IMAGE_WIDTH)
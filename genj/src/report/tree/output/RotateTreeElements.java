@@ -52,11 +52,10 @@ public class RotateTreeElements extends FilterTreeElements {
      * @param gen generation number
      */
     public void drawIndiBox(IndiBox indibox, int x, int y, int gen) {
+        Graphics2D graphics = getGraphics();
         AffineTransform transform = graphics.getTransform();
-        transform(x, y, indibox.width, indibox.height);
-        transpose(indibox);
-        elements.drawIndiBox(indibox, 0, 0, gen);
-        transpose(indibox);
+        transform(graphics, x, y, indibox.width, indibox.height);
+        elements.drawIndiBox(transposed(indibox), 0, 0, gen);
         graphics.setTransform(transform);
     }
 
@@ -68,18 +67,17 @@ public class RotateTreeElements extends FilterTreeElements {
      * @param gen generation number
      */
     public void drawFamBox(FamBox fambox, int x, int y, int gen) {
+        Graphics2D graphics = getGraphics();
         AffineTransform transform = graphics.getTransform();
-        transform(x, y, fambox.width, fambox.height);
-        transpose(fambox);
-        elements.drawFamBox(fambox, 0, 0, gen);
-        transpose(fambox);
+        transform(graphics, x, y, fambox.width, fambox.height);
+        elements.drawFamBox(transposed(fambox), 0, 0, gen);
         graphics.setTransform(transform);
     }
 
 	/**
      * Applies the rotation transformation.
 	 */
-    private void transform(int x, int y, int w, int h) {
+    private void transform(Graphics2D graphics, int x, int y, int w, int h) {
         switch (rotation) {
             case ROTATE_0:
                 graphics.translate(x, y);
@@ -115,6 +113,28 @@ public class RotateTreeElements extends FilterTreeElements {
         fambox.height = tmp;
     }
 
+    /**
+     * Returns a transposed copy of the box. The box itself is left untouched
+     * as other threads may be drawing it at the same time.
+     */
+    private IndiBox transposed(IndiBox indibox) {
+        if (rotation == ROTATE_0 || rotation == ROTATE_180)
+            return indibox;
+        IndiBox copy = new IndiBox(indibox.individual);
+        copy.width = indibox.height;
+        copy.height = indibox.width;
+        return copy;
+    }
+
+    private FamBox transposed(FamBox fambox) {
+        if (rotation == ROTATE_0 || rotation == ROTATE_180)
+            return fambox;
+        FamBox copy = new FamBox(fambox.family);
+        copy.width = fambox.height;
+        copy.height = fambox.width;
+        return copy;
+    }
+
     public void getIndiBoxSize(IndiBox indibox)
     {
         elements.getIndiBoxSize(indibox);
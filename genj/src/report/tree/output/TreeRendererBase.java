@@ -10,7 +10,9 @@ package tree.output;
 
 import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 
+import tree.FamBox;
 import tree.IndiBox;
 import tree.graphics.GraphicsRenderer;
 
@@ -26,6 +28,11 @@ public abstract class TreeRendererBase implements GraphicsRenderer {
      */
     protected static final int PAGE_MARGIN = 10;
 
+    /**
+     * Space added around the bounds of drawn elements for the width of lines.
+     */
+    private static final int BOUNDS_MARGIN = 2;
+
     protected IndiBox firstIndi;
 
     /**
@@ -36,6 +43,9 @@ public abstract class TreeRendererBase implements GraphicsRenderer {
     public void setFirstIndi(IndiBox firstIndi)
     {
         this.firstIndi = firstIndi;
+
+        // Subtrees outside of the drawn area are skipped using their bounds
+        determineBounds(firstIndi, 0, 0);
     }
 
     public void setElements(TreeElements elements)
@@ -49,17 +59,25 @@ public abstract class TreeRendererBase implements GraphicsRenderer {
 	public void render(Graphics2D graphics)
 	{
         elements.setGraphics(graphics);
-        render();
+        renderTree(graphics);
 	}
 
     /**
      * Outputs the family tree starting from the given IndiBox.
      */
 	public void render() {
+        renderTree(null);
+	}
+
+    /**
+     * Outputs the family tree.
+     * @param clip  only subtrees visible in its clip are drawn, null to draw all
+     */
+    private void renderTree(Graphics2D clip) {
 		elements.header(getImageWidth(), getImageHeight());
-        drawTree(firstIndi, firstIndi.wMinus + PAGE_MARGIN, firstIndi.hMinus + PAGE_MARGIN, 0);
+        drawTree(firstIndi, firstIndi.wMinus + PAGE_MARGIN, firstIndi.hMinus + PAGE_MARGIN, 0, clip);
         elements.footer();
-	}
+    }
 
     /**
      * Returns the image width (in pixels, including margins)
@@ -76,13 +94,13 @@ public abstract class TreeRendererBase implements GraphicsRenderer {
     }
 
     /**
-     * Outputs the family tree starting from the given IndiBox.
+     * Outputs the lines attached to the given IndiBox.
      * @param indibox root individual box
      * @param baseX  x coordinate
      * @param baseY  y coordinate
-     * @param gen  generation number
+     * @param elements  destination of the lines
      */
-    protected abstract void drawLines(IndiBox indibox, int baseX, int baseY);
+    protected abstract void drawLines(IndiBox indibox, int baseX, int baseY, TreeElements elements);
 
     /**
      * Returns the position of the family box relative to the individual box.
@@ -95,14 +113,21 @@ public abstract class TreeRendererBase implements GraphicsRenderer {
      * @param baseX    x coordinate of individual
      * @param baseY    y coordinate of individual
      * @param gen      generation number of individual
+     * @param clip     subtrees outside of its clip are skipped, null to draw all
      */
-    private void drawTree(IndiBox indibox, int baseX, int baseY, int gen)
+    private void drawTree(IndiBox indibox, int baseX, int baseY, int gen, Graphics2D clip)
     {
         baseX += indibox.x;
         baseY += indibox.y;
 
+        // Skip the subtree if it's not visible
+        Rectangle bounds = indibox.bounds;
+        if (clip != null && bounds != null
+                && !clip.hitClip(baseX + bounds.x, baseY + bounds.y, bounds.width, bounds.height))
+            return;
+
         // Draw lines attached to this individual
-        drawLines(indibox, baseX, baseY);
+        drawLines(indibox, baseX, baseY, elements);
 
         // The individual
         elements.drawIndiBox(indibox, baseX, baseY, gen);
@@ -115,19 +140,102 @@ public abstract class TreeRendererBase implements GraphicsRenderer {
 
         // Spouse
         if (indibox.spouse != null)
-            drawTree(indibox.spouse, baseX, baseY, gen);
+            drawTree(indibox.spouse, baseX, baseY, gen, clip);
 
         // Parent
         if (indibox.parent != null)
-            drawTree(indibox.parent, baseX, baseY, gen - 1);
+            drawTree(indibox.parent, baseX, baseY, gen - 1, clip);
 
         // Children
         if (indibox.hasChildren())
             for (int i = 0; i < indibox.children.length; i++)
-                drawTree(indibox.children[i], baseX, baseY, gen + 1);
+                drawTree(indibox.children[i], baseX, baseY, gen + 1, clip);
 
         // Next marriage
         if (indibox.nextMarriage != null)
-            drawTree(indibox.nextMarriage, baseX, baseY, gen);
+            drawTree(indibox.nextMarriage, baseX, baseY, gen, clip);
+    }
+
+    /**
+     * Determines the bounds of the given IndiBox and all its child-nodes
+     * by recording what would be drawn for them.
+     * @param indibox  first individual
+     * @param baseX    x coordinate of individual
+     * @param baseY    y coordinate of individual
+     * @return area taken by the subtree
+     */
+    private Rectangle determineBounds(IndiBox indibox, int baseX, int baseY)
+    {
+        baseX += indibox.x;
+        baseY += indibox.y;
+
+        BoundsRecorder recorder = new BoundsRecorder();
+        drawLines(indibox, baseX, baseY, recorder);
+        recorder.drawIndiBox(indibox, baseX, baseY, 0);
+        if (indibox.family != null) {
+            Dimension coords = getFamboxCoords(indibox);
+            recorder.drawFamBox(indibox.family, baseX + coords.width, baseY + coords.height, 0);
+        }
+        Rectangle area = recorder.area;
+
+        if (indibox.spouse != null)
+            area.add(determineBounds(indibox.spouse, baseX, baseY));
+        if (indibox.parent != null)
+            area.add(determineBounds(indibox.parent, baseX, baseY));
+        if (indibox.hasChildren())
+            for (int i = 0; i < indibox.children.length; i++)
+                area.add(determineBounds(indibox.children[i], baseX, baseY));
+        if (indibox.nextMarriage != null)
+            area.add(determineBounds(indibox.nextMarriage, baseX, baseY));
+
+        indibox.bounds = new Rectangle(area.x - baseX - BOUNDS_MARGIN, area.y - baseY - BOUNDS_MARGIN,
+                area.width + 2 * BOUNDS_MARGIN, area.height + 2 * BOUNDS_MARGIN);
+        return area;
+    }
+
+    /**
+     * Collects the area taken by drawn elements instead of drawing them.
+     */
+    private static class BoundsRecorder implements TreeElements {
+
+        private Rectangle area = null;
+
+        private void add(int x, int y, int width, int height) {
+            if (area == null)
+                area = new Rectangle(x, y, width, height);
+            else
+                area.add(new Rectangle(x, y, width, height));
+        }
+
+        public void drawIndiBox(IndiBox indibox, int x, int y, int gen) {
+            add(x, y, indibox.width, indibox.height);
+        }
+
+        public void drawFamBox(FamBox fambox, int x, int y, int gen) {
+            add(x, y, fambox.width, fambox.height);
+        }
+
+        public void drawLine(int x1, int y1, int x2, int y2) {
+            add(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1), Math.abs(y2 - y1));
+        }
+
+        public void drawDashedLine(int x1, int y1, int x2, int y2) {
+            drawLine(x1, y1, x2, y2);
+        }
+
+        public void header(int width, int height) {
+        }
+
+        public void footer() {
+        }
+
+        public void getIndiBoxSize(IndiBox indibox) {
+        }
+
+        public void getFamBoxSize(FamBox fambox) {
+        }
+
+        public void setGraphics(Graphics2D graphics) {
+        }
     }
 }
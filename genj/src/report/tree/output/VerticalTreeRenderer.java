@@ -24,13 +24,13 @@ import tree.arrange.LayoutFactory;
 public class VerticalTreeRenderer extends TreeRendererBase {
 
     /**
-     * Outputs the family tree starting from the given IndiBox.
+     * Outputs the lines attached to the given IndiBox.
      * @param indibox root individual box
      * @param baseX  x coordinate
      * @param baseY  y coordinate
-     * @param gen  generation number
+     * @param elements  destination of the lines
      */
-	protected void drawLines(IndiBox indibox, int baseX, int baseY) {
+	protected void drawLines(IndiBox indibox, int baseX, int baseY, TreeElements elements) {
 
         int midX = baseX + getMidX(indibox);
 
@@ -10,10 +10,8 @@ package validate;
 import genj.gedcom.Entity;
 import genj.gedcom.Gedcom;
 import genj.gedcom.GedcomException;
-import genj.gedcom.MetaProperty;
 import genj.gedcom.Property;
 import genj.gedcom.Submitter;
-import genj.gedcom.TagPath;
 import genj.gedcom.UnitOfWork;
 import genj.report.Report;
 import genj.util.EnvironmentChecker;
@@ -48,6 +46,9 @@ public class ReportValidate extends Report {
   /** whether a place format is binding and has to be adhered to */
   public boolean isRelaxedPlaceFormat = false;
 
+  /** whether to keep validating changes to the gedcom after a run on it */
+  public boolean isContinuous = false;
+
   /** options of reports are picked up via field-introspection */
   public int
     maxLife      = 95,
@@ -88,18 +89,11 @@ public class ReportValidate extends Report {
   /**
    * Start for argument properties
    */
-  public List<ViewContext> start(Property[] props) {
-
-    List<ViewContext> issues = new ArrayList<ViewContext>();
+  public List<ViewContext> start(Property[] props) throws InterruptedException {
 
     if (props.length>0) {
       Gedcom gedcom = props[0].getGedcom();
-      List<Test> tests = createTests(gedcom);
-
-      for (int i=0;i<props.length;i++) {
-        TagPath path = props[i].getPath();
-        test(props[i], path, gedcom.getGrammar().getMeta(path), tests, issues);
-      }
+      List<ViewContext> issues = new Validator(this, createTests(gedcom)).validate(props);
       
       // show results
       return results(gedcom, issues);
@@ -111,20 +105,14 @@ public class ReportValidate extends Report {
   /**
    * Start for argument entity
    */
-  public List<ViewContext> start(Entity entity) {
+  public List<ViewContext> start(Entity entity) throws InterruptedException {
     return start(new Entity[]{ entity });
   }
 
-  public List<ViewContext> start(Entity[] entities) {
+  public List<ViewContext> start(Entity[] entities) throws InterruptedException {
 
     Gedcom gedcom = entities[0].getGedcom();
-    List<Test> tests = createTests(gedcom);
-
-    List<ViewContext> issues = new ArrayList<ViewContext>();
-    for (int i=0;i<entities.length;i++) {
-      TagPath path = new TagPath(entities[i].getTag());
-      test(entities[i], path, entities[i].getGedcom().getGrammar().getMeta(path), tests, issues);
-    }
+    List<ViewContext> issues = new Validator(this, createTests(gedcom)).validate(entities);
 
     // show results
     return results(gedcom, issues);
@@ -133,10 +121,8 @@ public class ReportValidate extends Report {
   /**
    * Start for argument gedcom
    */
-  public List<ViewContext> start(final Gedcom gedcom) {
+  public List<ViewContext> start(final Gedcom gedcom) throws InterruptedException {
 
-    // prepare tests
-    List<Test> tests = createTests(gedcom);
     List<ViewContext> issues = new ArrayList<ViewContext>();
 
     // test if there's a submitter
@@ -157,18 +143,29 @@ public class ReportValidate extends Report {
       issues.add(ctx);
     }
 
-    // Loop through entities and test 'em
-    for (int t=0;t<Gedcom.ENTITIES.length;t++) {
-      for (Entity e : gedcom.getEntities(Gedcom.ENTITIES[t])) {
-        TagPath path = new TagPath(e.getTag());
-        test(e, path, gedcom.getGrammar().getMeta(path), tests, issues);
-      }
+    // keep validating changes from here on
+    if (isContinuous) {
+      issues.addAll(ValidationService.get(this, gedcom).getIssues());
+    } else {
+      ValidationService.stop(gedcom);
+      // Loop through entities and test 'em
+      List<Entity> entities = new ArrayList<Entity>();
+      for (int t=0;t<Gedcom.ENTITIES.length;t++) 
+        entities.addAll(gedcom.getEntities(Gedcom.ENTITIES[t]));
+      issues.addAll(new Validator(this, createTests(gedcom)).validate(entities.toArray(new Entity[entities.size()])));
     }
 
     // show results
     return results(gedcom, issues);
   }
 
+  /**
+   * A closed gedcom isn't validated anymore
+   */
+  protected void gedcomClosed(Gedcom gedcom) {
+    ValidationService.stop(gedcom);
+  }
+
   /**
    * show validation results
    */
@@ -187,51 +184,10 @@ public class ReportValidate extends Report {
     return issues;
   }
 
-  /**
-   * Test a property (recursively)
-   */
-  private void test(Property prop, TagPath path, MetaProperty meta, List<Test> tests, List<ViewContext> issues) {
-    // test tests
-    for (int i=0, j=tests.size(); i<j; i++) {
-      Test tst = (Test)tests.get(i);
-      // applicable?
-      if (!tst.applies(prop, path))
-        continue;
-      // test it
-      tst.test(prop, path, issues, this);
-      // next
-    }
-    // don't recurse into custom underscore tags
-    if (isUnderscoreValid&&prop.getTag().startsWith("_"))
-      return;
-    // recurse into all its properties
-    for (int i=0,j=prop.getNoOfProperties();i<j;i++) {
-      // for non-system, non-transient children
-      Property child = prop.getProperty(i);
-      if (child.isTransient())
-        continue;
-      // get child tag
-      String ctag = child.getTag();
-      // check if it's a custom tag
-      if (isUnderscoreValid&&ctag.startsWith("_"))
-        continue;
-      // check if Gedcom grammar allows it
-      if (!meta.allows(ctag)) {
-        String msg = translate("err.notgedcom", ctag, prop.getGedcom().getGrammar().getVersion(), path.toString() );
-        issues.add(new ViewContext(child).setText(msg).setImage(MetaProperty.IMG_ERROR));
-        continue;
-      }
-      // dive into
-      test(child, new TagPath(path, ctag), meta.getNested(child.getTag(), false), tests, issues);
-      // next child
-    }
-    // done
-  }
-
   /**
    * Create the tests we're using
    */
-  private List<Test> createTests(Gedcom gedcom) {
+  /*package*/ List<Test> createTests(Gedcom gedcom) {
 
     List<Test> result = new ArrayList<Test>();
 
@@ -46,15 +46,49 @@ import java.util.List;
    * Test whether test applies or not
    */
   /*package*/ boolean applies(Property prop, TagPath path) {
-    // gotta match a path
-    outer: while (pathTriggers!=null) {
-      for (int j=0;j<pathTriggers.length;j++) {
-        if (pathTriggers[j].equals(path)) break outer;
-      }
-      return false;
+    return applies(path) && applies(prop.getClass());
+  }
+  
+  /**
+   * Test whether test applies to properties at given path
+   */
+  /*package*/ boolean applies(TagPath path) {
+    if (pathTriggers==null)
+      return true;
+    for (int j=0;j<pathTriggers.length;j++) {
+      if (pathTriggers[j].equals(path)) 
+        return true;
     }
-    // and type
-    return typeTrigger==null||typeTrigger.isAssignableFrom(prop.getClass());
+    return false;
+  }
+  
+  /**
+   * Test whether test applies to properties of given type
+   */
+  /*package*/ boolean applies(Class<?> type) {
+    return typeTrigger==null||typeTrigger.isAssignableFrom(type);
+  }
+  
+  /**
+   * Whether test keeps state across properties and has to see them in order
+   */
+  /*package*/ boolean isSequential() {
+    return false;
+  }
+  
+  /**
+   * Whether test compares properties across all entities - such a test can't be
+   * run on changed entities only
+   */
+  /*package*/ boolean isGlobal() {
+    return false;
+  }
+  
+  /**
+   * Paths of properties the test applies to or null for all
+   */
+  /*package*/ TagPath[] getPathTriggers() {
+    return pathTriggers;
   }
   
   /**
@@ -33,7 +33,8 @@ public class TestCardinality extends Test {
    */
   void test(Property prop, TagPath path, List<ViewContext> issues, ReportValidate report) {
     
-    MetaProperty itsmeta = prop.getMetaProperty();
+    // same as prop.getMetaProperty() without looking up prop's path again
+    MetaProperty itsmeta = prop.getGedcom().getGrammar().getMeta(path);
 
     // check children that occur more than once
     Map seen = new HashMap();
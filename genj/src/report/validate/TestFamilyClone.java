@@ -32,6 +32,13 @@ public class TestFamilyClone extends Test {
     super("FAM", Property.class);
   }
 
+  /**
+   * Remembers what it has seen
+   */
+  /*package*/ boolean isSequential() {
+    return true;
+  }
+
   /**
    * Do the test 
    */
@@ -31,6 +31,20 @@ public class TestUniqueIDs extends Test {
     super(PATHS, Property.class);
   }
 
+  /**
+   * Remembers what it has seen
+   */
+  /*package*/ boolean isSequential() {
+    return true;
+  }
+
+  /**
+   * Compares IDs of all entities
+   */
+  /*package*/ boolean isGlobal() {
+    return true;
+  }
+
   /**
    * Do the test 
    */
@@ -0,0 +1,440 @@
+/**
+ * Reports are Freeware Code Snippets
+ *
+ * This report is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package validate;
+
+import genj.gedcom.Entity;
+import genj.gedcom.Fam;
+import genj.gedcom.Gedcom;
+import genj.gedcom.GedcomException;
+import genj.gedcom.GedcomListenerAdapter;
+import genj.gedcom.Indi;
+import genj.gedcom.Property;
+import genj.gedcom.TagPath;
+import genj.gedcom.UnitOfWork;
+import genj.option.PropertyOption;
+import genj.view.ViewContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Continuous validation of a gedcom - after an initial validation of all entities
+ * only entities changed in a unit of work and the entities linked to them via
+ * FAMC/FAMS/HUSB/WIFE/CHIL are validated again. This happens in the background
+ * once the unit of work is done, so a later run of the report with the same
+ * options picks up the current issues without validating everything again.
+ * Entities are validated a chunk at a time so units of work waiting for the
+ * gedcom get their turn in between.
+ * A service stops when its gedcom is closed.
+ */
+public class ValidationService extends GedcomListenerAdapter {
+
+  /** running services */
+  private static Map<Gedcom, ValidationService> gedcom2service = new HashMap<Gedcom, ValidationService>();
+
+  /** the report with the options to validate with */
+  private ReportValidate report;
+
+  /** the gedcom */
+  private Gedcom gedcom;
+
+  /** issues found by validated entity - in order of first validation */
+  private Map<Entity, List<ViewContext>> root2issues = new LinkedHashMap<Entity, List<ViewContext>>();
+
+  /** issues found by tests that compare all entities */
+  private List<ViewContext> globalIssues = Collections.emptyList();
+
+  /** changes not validated yet */
+  private Set<Entity> touched = new LinkedHashSet<Entity>();
+  private Set<Entity> deleted = new HashSet<Entity>();
+  private boolean isGlobalTouched = false, isAllTouched = false;
+
+  /** touched entities still to validate and whether global tests have to run after them */
+  private Set<Entity> pending = new LinkedHashSet<Entity>();
+  private boolean isGlobalPending = false;
+
+  /** how many entities to validate while holding the gedcom's read lock */
+  private final static int CHUNK = 250;
+
+  /** path triggers of tests that compare all entities */
+  private List<TagPath> globalTriggers = new ArrayList<TagPath>();
+
+  /** entities with properties at those paths */
+  private Set<Entity> globalRoots = new LinkedHashSet<Entity>();
+
+  /** thread validating changes */
+  private ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    public Thread newThread(Runnable r) {
+      Thread result = new Thread(r, "ValidationService");
+      result.setDaemon(true);
+      result.setPriority(Thread.MIN_PRIORITY);
+      return result;
+    }
+  });
+
+  /**
+   * Constructor
+   */
+  private ValidationService(ReportValidate report, Gedcom gedcom) {
+    this.report = report;
+    this.gedcom = gedcom;
+    for (Test test : report.createTests(gedcom)) {
+      if (test.isGlobal()&&test.getPathTriggers()!=null)
+        Collections.addAll(globalTriggers, test.getPathTriggers());
+    }
+  }
+
+  /**
+   * Continuous validation of a gedcom - the service already running for it
+   * unless it validates with different options
+   * @param report the report with the options to validate with
+   */
+  public static ValidationService get(ReportValidate report, Gedcom gedcom) throws InterruptedException {
+
+    synchronized (gedcom2service) {
+      ValidationService service = gedcom2service.get(gedcom);
+      if (service!=null&&getOptions(service.report).equals(getOptions(report)))
+        return service;
+    }
+
+    stop(gedcom);
+    ValidationService result = new ValidationService(report, gedcom);
+    result.validateAll();
+    synchronized (gedcom2service) {
+      gedcom2service.put(gedcom, result);
+    }
+    gedcom.addGedcomListener(result);
+    return result;
+  }
+
+  /**
+   * Stop continuous validation of a gedcom
+   */
+  public static void stop(Gedcom gedcom) {
+    ValidationService service;
+    synchronized (gedcom2service) {
+      service = gedcom2service.remove(gedcom);
+    }
+    if (service!=null) {
+      gedcom.removeGedcomListener(service);
+      service.executor.shutdownNow();
+    }
+  }
+
+  /**
+   * option values of a report
+   */
+  private static String getOptions(ReportValidate report) {
+    StringBuilder result = new StringBuilder();
+    for (PropertyOption option : PropertyOption.introspect(report, true))
+      result.append(option.getProperty()).append('=').append(option.getValue()).append(';');
+    return result.toString();
+  }
+
+  /**
+   * The gedcom validated
+   */
+  public Gedcom getGedcom() {
+    return gedcom;
+  }
+
+  /**
+   * All current issues - including those of changes not validated yet
+   */
+  public List<ViewContext> getIssues() throws InterruptedException {
+    validateTouched();
+    synchronized (this) {
+      List<ViewContext> result = new ArrayList<ViewContext>();
+      for (List<ViewContext> issues : root2issues.values())
+        result.addAll(issues);
+      result.addAll(globalIssues);
+      return result;
+    }
+  }
+
+  /**
+   * validate all entities
+   */
+  private void validateAll() throws InterruptedException {
+    synchronized (this) {
+      isAllTouched = true;
+    }
+    validateTouched();
+  }
+
+  /**
+   * validate given entities (and global tests)
+   */
+  private void validate(Collection<Entity> entities, boolean global) throws InterruptedException {
+
+    // fresh tests - sequential ones keep state
+    List<Test> tests = new ArrayList<Test>();
+    List<Test> globals = new ArrayList<Test>();
+    for (Test test : report.createTests(gedcom))
+      (test.isGlobal() ? globals : tests).add(test);
+
+    // validate entities
+    Entity[] roots = entities.toArray(new Entity[entities.size()]);
+    List<List<ViewContext>> issues = new Validator(report, tests).validateEach(roots);
+    for (int i=0;i<roots.length;i++) {
+      setIssues(roots[i], issues.get(i));
+      if (isGlobal(roots[i]))
+        globalRoots.add(roots[i]);
+      else
+        globalRoots.remove(roots[i]);
+    }
+
+    // global tests look at all properties they apply to
+    if (global) {
+      List<ViewContext> result = new ArrayList<ViewContext>();
+      for (Test test : globals) {
+        for (TagPath path : test.getPathTriggers()) {
+          for (Entity entity : globalRoots) {
+            if (!entity.getTag().equals(path.getFirst()))
+              continue;
+            for (Property prop : entity.getProperties(path)) {
+              if (test.applies(prop.getClass()))
+                test.test(prop, path, result, report);
+            }
+          }
+        }
+      }
+      globalIssues = result;
+    }
+
+  }
+
+  /**
+   * remember issues found for a validated entity
+   */
+  private void setIssues(Entity root, List<ViewContext> issues) {
+    if (issues.isEmpty())
+      root2issues.remove(root);
+    else
+      root2issues.put(root, issues);
+  }
+
+  /**
+   * entities that have to be validated again because given ones were touched
+   */
+  private Set<Entity> expand(Set<Entity> entities) {
+    Set<Entity> result = new LinkedHashSet<Entity>(entities);
+    for (Entity entity : entities) {
+      // an individual's families and their members
+      if (entity instanceof Indi) {
+        Indi indi = (Indi)entity;
+        for (Fam fam : indi.getFamiliesWhereSpouse())
+          expand(fam, result);
+        for (Fam fam : indi.getFamiliesWhereChild())
+          expand(fam, result);
+      }
+      // a family's members and the spouses' other families
+      if (entity instanceof Fam) {
+        Fam fam = (Fam)entity;
+        expand(fam, result);
+        for (Indi spouse : new Indi[]{ fam.getHusband(), fam.getWife() }) {
+          if (spouse!=null)
+            Collections.addAll(result, spouse.getFamiliesWhereSpouse());
+        }
+      }
+    }
+    return result;
+  }
+
+  private void expand(Fam fam, Set<Entity> result) {
+    result.add(fam);
+    if (fam.getHusband()!=null)
+      result.add(fam.getHusband());
+    if (fam.getWife()!=null)
+      result.add(fam.getWife());
+    Collections.addAll(result, fam.getChildren());
+  }
+
+  /**
+   * whether a change at given path affects a global test
+   */
+  private boolean isGlobal(TagPath path) {
+    for (TagPath trigger : globalTriggers) {
+      if (path.startsWith(trigger)||(path.length()>1&&trigger.startsWith(path)))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * whether an entity has properties a global test applies to
+   */
+  private boolean isGlobal(Entity entity) {
+    for (TagPath trigger : globalTriggers) {
+      if (trigger.getFirst().equals(entity.getTag())&&entity.getProperties(trigger).length>0)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * gedcom callback - entity added
+   */
+  public synchronized void gedcomEntityAdded(Gedcom gedcom, Entity entity) {
+    touched.add(entity);
+    deleted.remove(entity);
+    isGlobalTouched |= isGlobal(entity);
+  }
+
+  /**
+   * gedcom callback - entity deleted
+   */
+  public synchronized void gedcomEntityDeleted(Gedcom gedcom, Entity entity) {
+    touched.remove(entity);
+    deleted.add(entity);
+    isGlobalTouched |= isGlobal(entity);
+  }
+
+  /**
+   * gedcom callback - property added
+   */
+  public synchronized void gedcomPropertyAdded(Gedcom gedcom, Property property, int pos, Property added) {
+    touched.add(property.getEntity());
+    isGlobalTouched |= isGlobal(added.getPath());
+  }
+
+  /**
+   * gedcom callback - property changed
+   */
+  public synchronized void gedcomPropertyChanged(Gedcom gedcom, Property property) {
+    touched.add(property.getEntity());
+    isGlobalTouched |= isGlobal(property.getPath());
+  }
+
+  /**
+   * gedcom callback - property deleted
+   */
+  public synchronized void gedcomPropertyDeleted(Gedcom gedcom, Property property, int pos, Property deleted) {
+    touched.add(property.getEntity());
+    isGlobalTouched |= isGlobal(new TagPath(property.getPath(), deleted.getTag()));
+  }
+
+  /**
+   * gedcom callback - header changed (place format for one)
+   */
+  public synchronized void gedcomHeaderChanged(Gedcom gedcom) {
+    isAllTouched = true;
+  }
+
+  /**
+   * gedcom callback - end of changes: validate what's been touched in the background
+   */
+  public void gedcomWriteLockReleased(Gedcom gedcom) {
+    synchronized (this) {
+      if (touched.isEmpty()&&deleted.isEmpty()&&!isGlobalTouched&&!isAllTouched)
+        return;
+    }
+    try {
+      executor.execute(new Runnable() {
+        public void run() {
+          try {
+            validateTouched();
+          } catch (InterruptedException e) {
+            // stopped
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // stopped
+    }
+  }
+
+  /**
+   * validate what's been touched so far - a chunk at a time while nobody changes the gedcom,
+   * releasing the read lock in between so waiting units of work don't wait for all of it
+   */
+  private void validateTouched() throws InterruptedException {
+    final boolean[] more = { true };
+    final InterruptedException[] interrupted = new InterruptedException[1];
+    while (more[0]) {
+      if (Thread.interrupted())
+        throw new InterruptedException();
+      try {
+        gedcom.doReadOnlyWork(new UnitOfWork() {
+          public void perform(Gedcom gedcom) {
+            synchronized (ValidationService.this) {
+              try {
+                more[0] = validateChunk();
+              } catch (InterruptedException e) {
+                interrupted[0] = e;
+              }
+            }
+          }
+        });
+      } catch (GedcomException e) {
+        throw new InterruptedException(e.getMessage());
+      }
+      if (interrupted[0]!=null)
+        throw interrupted[0];
+    }
+  }
+
+  /**
+   * validate the next chunk of what's been touched - global tests run once all entities are done
+   * @return whether there's more to validate
+   */
+  private boolean validateChunk() throws InterruptedException {
+
+    // forget deleted
+    for (Entity entity : deleted) {
+      setIssues(entity, Collections.<ViewContext>emptyList());
+      globalRoots.remove(entity);
+    }
+    touched.removeAll(deleted);
+
+    // queue touched and linked
+    pending.addAll(expand(touched));
+    if (isAllTouched) {
+      for (int t=0;t<Gedcom.ENTITIES.length;t++)
+        pending.addAll(gedcom.getEntities(Gedcom.ENTITIES[t]));
+    }
+    pending.removeAll(deleted);
+    isGlobalPending |= isGlobalTouched||isAllTouched;
+
+    touched.clear();
+    deleted.clear();
+    isGlobalTouched = false;
+    isAllTouched = false;
+
+    // validate next chunk
+    List<Entity> chunk = new ArrayList<Entity>(Math.min(CHUNK, pending.size()));
+    for (Iterator<Entity> it = pending.iterator(); it.hasNext()&&chunk.size()<CHUNK; ) {
+      chunk.add(it.next());
+      it.remove();
+    }
+    validate(chunk, false);
+    if (!pending.isEmpty())
+      return true;
+
+    // global tests once all entities are known
+    if (isGlobalPending) {
+      validate(Collections.<Entity>emptyList(), true);
+      isGlobalPending = false;
+    }
+    return false;
+  }
+
+} //ValidationService
@@ -0,0 +1,305 @@
+/**
+ * Reports are Freeware Code Snippets
+ *
+ * This report is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package validate;
+
+import genj.gedcom.Entity;
+import genj.gedcom.MetaProperty;
+import genj.gedcom.Property;
+import genj.gedcom.TagPath;
+import genj.view.ViewContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Validation of properties (recursively) with a list of tests - the tests that
+ * apply are looked up by path and type of property in a table built as paths
+ * are encountered. Properties are validated in parallel partitions, the issues
+ * found are merged in the order of a sequential validation. Tests that keep
+ * state across properties run on the merge in that order, too.
+ */
+/*package*/ class Validator {
+
+  /** number of threads */
+  private final static int THREADS = Runtime.getRuntime().availableProcessors();
+
+  /** number of partitions per thread */
+  private final static int PARTITIONS_PER_THREAD = 4;
+
+  /** minimum number of properties in a partition */
+  private final static int MIN_PARTITION = 64;
+
+  /** the report */
+  private ReportValidate report;
+
+  /** the tests */
+  private List<Test> tests;
+
+  /** dispatch table - nodes by root path */
+  private Map<TagPath, Node> roots = new HashMap<TagPath, Node>();
+
+  /**
+   * Constructor
+   */
+  /*package*/ Validator(ReportValidate report, List<Test> tests) {
+    this.report = report;
+    this.tests = tests;
+  }
+
+  /**
+   * Validate properties
+   * @return issues in order of properties
+   */
+  /*package*/ List<ViewContext> validate(Property[] props) throws InterruptedException {
+    List<ViewContext> issues = new ArrayList<ViewContext>();
+    for (List<ViewContext> each : validateEach(props))
+      issues.addAll(each);
+    return issues;
+  }
+
+  /**
+   * Validate properties
+   * @return issues found for each property (recursively) in order of properties
+   */
+  /*package*/ List<List<ViewContext>> validateEach(Property[] props) throws InterruptedException {
+
+    List<List<ViewContext>> issues = new ArrayList<List<ViewContext>>(props.length);
+    if (props.length==0)
+      return issues;
+
+    // resolve roots here - the grammar learns about unknown paths while doing so
+    Node[] nodes = new Node[props.length];
+    for (int i=0;i<props.length;i++)
+      nodes[i] = getRoot(props[i]);
+
+    // prepare partitions
+    int size = Math.max(MIN_PARTITION, props.length / (THREADS*PARTITIONS_PER_THREAD));
+    List<Partition> partitions = new ArrayList<Partition>();
+    for (int i=0;i<props.length;i+=size)
+      partitions.add(new Partition(props, nodes, i, Math.min(props.length, i+size)));
+
+    // validate them
+    if (THREADS==1||partitions.size()==1) {
+      for (Partition partition : partitions)
+        partition.call();
+    } else {
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(THREADS, partitions.size()));
+      try {
+        List<Future<Partition>> futures = executor.invokeAll(partitions);
+        for (Future<Partition> future : futures)
+          future.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException)
+          throw (RuntimeException)e.getCause();
+        throw (Error)e.getCause();
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    // merge in order
+    for (Partition partition : partitions)
+      partition.merge(issues);
+
+    // done
+    return issues;
+  }
+
+  /**
+   * Node in the dispatch table for a path
+   */
+  private Node getRoot(Property prop) {
+    // path of an entity is its tag
+    TagPath path = prop instanceof Entity ? new TagPath(prop.getTag()) : prop.getPath();
+    Node result = roots.get(path);
+    if (result==null) {
+      result = new Node(path, prop.getGedcom().getGrammar().getMeta(path));
+      roots.put(path, result);
+    }
+    return result;
+  }
+
+  /**
+   * A partition of properties to validate
+   */
+  private class Partition implements Callable<Partition> {
+
+    private Property[] props;
+    private Node[] nodes;
+    private int start, end;
+
+    /** issues found */
+    private List<ViewContext> issues = new ArrayList<ViewContext>();
+
+    /** number of issues found after each property */
+    private int[] marks;
+
+    /** sequential tests to run on merge */
+    private List<Deferred> deferred = new ArrayList<Deferred>();
+
+    /** current property */
+    private int current;
+
+    private Partition(Property[] props, Node[] nodes, int start, int end) {
+      this.props = props;
+      this.nodes = nodes;
+      this.start = start;
+      this.end = end;
+      marks = new int[end-start];
+    }
+
+    /**
+     * validate the partition's properties
+     */
+    public Partition call() {
+      for (current=start;current<end;current++) {
+        test(props[current], nodes[current]);
+        marks[current-start] = issues.size();
+      }
+      return this;
+    }
+
+    /**
+     * Test a property (recursively)
+     */
+    private void test(Property prop, Node node) {
+      // test tests
+      Test[] tests = node.getTests(prop.getClass());
+      for (int i=0;i<tests.length;i++) {
+        if (tests[i].isSequential())
+          deferred.add(new Deferred(current, issues.size(), tests[i], prop, node.path));
+        else
+          tests[i].test(prop, node.path, issues, report);
+      }
+      // don't recurse into custom underscore tags
+      if (report.isUnderscoreValid&&prop.getTag().startsWith("_"))
+        return;
+      // recurse into all its properties
+      for (int i=0,j=prop.getNoOfProperties();i<j;i++) {
+        // for non-system, non-transient children
+        Property child = prop.getProperty(i);
+        if (child.isTransient())
+          continue;
+        // get child tag
+        String ctag = child.getTag();
+        // check if it's a custom tag
+        if (report.isUnderscoreValid&&ctag.startsWith("_"))
+          continue;
+        // check if Gedcom grammar allows it
+        if (!node.meta.allows(ctag)) {
+          String msg = report.translate("err.notgedcom", ctag, prop.getGedcom().getGrammar().getVersion(), node.path.toString() );
+          issues.add(new ViewContext(child).setText(msg).setImage(MetaProperty.IMG_ERROR));
+          continue;
+        }
+        // dive into
+        test(child, node.getChild(ctag));
+        // next child
+      }
+      // done
+    }
+
+    /**
+     * merge issues into result - running deferred tests in between
+     */
+    private void merge(List<List<ViewContext>> result) {
+      int next = 0, d = 0;
+      for (int i=start;i<end;i++) {
+        List<ViewContext> each = new ArrayList<ViewContext>();
+        while (d<deferred.size()&&deferred.get(d).root==i) {
+          Deferred def = deferred.get(d++);
+          each.addAll(issues.subList(next, def.index));
+          next = def.index;
+          def.test.test(def.prop, def.path, each, report);
+        }
+        each.addAll(issues.subList(next, marks[i-start]));
+        next = marks[i-start];
+        result.add(each.isEmpty() ? Collections.<ViewContext>emptyList() : each);
+      }
+    }
+
+  } //Partition
+
+  /**
+   * A sequential test that still has to run
+   */
+  private static class Deferred {
+    private int root, index;
+    private Test test;
+    private Property prop;
+    private TagPath path;
+    private Deferred(int root, int index, Test test, Property prop, TagPath path) {
+      this.root = root;
+      this.index = index;
+      this.test = test;
+      this.prop = prop;
+      this.path = path;
+    }
+  } //Deferred
+
+  /**
+   * A path in the dispatch table - with the tests that apply to the
+   * path by type of property and the nodes of sub-paths
+   */
+  private class Node {
+
+    private TagPath path;
+    private MetaProperty meta;
+
+    /** tests that apply to path */
+    private List<Test> tests = new ArrayList<Test>();
+
+    /** tests that apply to path and type */
+    private Map<Class<?>, Test[]> type2tests = new ConcurrentHashMap<Class<?>, Test[]>();
+
+    /** sub-paths */
+    private Map<String, Node> tag2child = new ConcurrentHashMap<String, Node>();
+
+    private Node(TagPath path, MetaProperty meta) {
+      this.path = path;
+      this.meta = meta;
+      for (Test test : Validator.this.tests) {
+        if (test.applies(path))
+          tests.add(test);
+      }
+    }
+
+    private Node getChild(String tag) {
+      Node result = tag2child.get(tag);
+      if (result==null) {
+        result = new Node(new TagPath(path, tag), meta.getNested(tag, false));
+        tag2child.put(tag, result);
+      }
+      return result;
+    }
+
+    private Test[] getTests(Class<?> type) {
+      Test[] result = type2tests.get(type);
+      if (result==null) {
+        List<Test> list = new ArrayList<Test>(tests.size());
+        for (Test test : tests) {
+          if (test.applies(type))
+            list.add(test);
+        }
+        result = list.toArray(new Test[list.size()]);
+        type2tests.put(type, result);
+      }
+      return result;
+    }
+
+  } //Node
+
+} //Validator
@@ -1,30 +1,48 @@
 package website;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import javax.xml.parsers.DocumentBuilder;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentType;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 public class Html {
+	private static final String sPublicId = "-//W3C//DTD XHTML 1.0 Strict//EN";
+	private static final String sSystemId = "http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd";
+	
+	/** Elements that are written as empty tags */
+	private static final Set<String> EMPTY_ELEMENTS = new HashSet<String>(Arrays.asList(new String[] {
+			"br", "img", "input", "link", "meta", "hr" }));
+
+	/** One DOM implementation per thread, pages are created in parallel */
+	private static final ThreadLocal<DOMImplementation> domImpls = new ThreadLocal<DOMImplementation>() {
+		protected DOMImplementation initialValue() {
+			try {
+				return DocumentBuilderFactory.newInstance().newDocumentBuilder().getDOMImplementation();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+	};
+
 	Document doc = null;
 	Element body = null;
 	Element headNode;
 	
 	public Html(String title, String linkPrefix, String lang) {
-		String sPublicId = "-//W3C//DTD XHTML 1.0 Strict//EN";
-		String sSystemId = "http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd";
 		try {
-			DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder builder = builderFactory.newDocumentBuilder();
-			DOMImplementation domImpl = builder.getDOMImplementation();
+			DOMImplementation domImpl = domImpls.get();
 			DocumentType doctype = domImpl.createDocumentType("html", sPublicId, sSystemId); 
 			doc = domImpl.createDocument("http://www.w3.org/1999/xhtml","html",doctype);
 		}
@@ -248,18 +266,78 @@ public class Html {
 	}
 
 	public void toFile(File file, boolean omitXmlDeclaration) {
-		// Save the doc into the file
+		// Stream the doc into the file
+		Writer out = null;
 		try {
-			Transformer transformer = TransformerFactory.newInstance().newTransformer();
-			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-			transformer.setOutputProperty(OutputKeys.DOCTYPE_PUBLIC, "-//W3C//DTD XHTML 1.0 Strict//EN");
-			transformer.setOutputProperty(OutputKeys.DOCTYPE_SYSTEM, "http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd");
-			if (omitXmlDeclaration) transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-			StreamResult result = new StreamResult(file);
-			DOMSource source = new DOMSource(doc);
-			transformer.transform(source, result);
-		} catch (Exception e) {
+			out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 16*1024);
+			if (!omitXmlDeclaration) out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			out.write("<!DOCTYPE html PUBLIC \"" + sPublicId + "\" \"" + sSystemId + "\">\n");
+			write(doc.getDocumentElement(), 0, true, out);
+			out.write('\n');
+		} catch (IOException e) {
 			e.printStackTrace();
+		} finally {
+			if (out != null) try { out.close(); } catch (IOException e) {}
+		}
+	}
+
+	/**
+	 * Write an element - its children are indented unless there is text among them
+	 */
+	private void write(Element element, int depth, boolean indent, Writer out) throws IOException {
+		if (indent) indent(depth, out);
+		String name = element.getTagName();
+		out.write('<');
+		out.write(name);
+		NamedNodeMap attributes = element.getAttributes();
+		for (int i = 0; i < attributes.getLength(); i++) {
+			Node attribute = attributes.item(i);
+			out.write(' ');
+			out.write(attribute.getNodeName());
+			out.write("=\"");
+			escape(attribute.getNodeValue(), true, out);
+			out.write('"');
+		}
+		Node first = element.getFirstChild();
+		if (first == null && EMPTY_ELEMENTS.contains(name)) {
+			out.write(" />");
+			return;
+		}
+		out.write('>');
+
+		// Indent children if there's no text that whitespace would change
+		boolean indentChildren = indent && first != null;
+		for (Node child = first; child != null && indentChildren; child = child.getNextSibling()) {
+			if (child.getNodeType() != Node.ELEMENT_NODE) indentChildren = false;
+		}
+		for (Node child = first; child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE) write((Element)child, depth + 1, indentChildren, out);
+			else if (child.getNodeType() == Node.TEXT_NODE) escape(child.getNodeValue(), false, out);
+		}
+		if (indentChildren) indent(depth, out);
+		out.write("</");
+		out.write(name);
+		out.write('>');
+	}
+
+	private void indent(int depth, Writer out) throws IOException {
+		if (depth > 0) out.write('\n');
+		for (int i = 0; i < depth; i++) out.write("    ");
+	}
+
+	private void escape(String text, boolean attribute, Writer out) throws IOException {
+		for (int i = 0, j = text.length(); i < j; i++) {
+			char c = text.charAt(i);
+			switch (c) {
+				case '&': out.write("&amp;"); break;
+				case '<': out.write("&lt;"); break;
+				case '>': out.write("&gt;"); break;
+				case '"': if (attribute) out.write("&quot;"); else out.write(c); break;
+				case '\n': if (attribute) out.write("&#10;"); else out.write(c); break;
+				case '\r': out.write("&#13;"); break;
+				case '\t': if (attribute) out.write("&#9;"); else out.write(c); break;
+				default: out.write(c);
+			}
 		}
 	}
 
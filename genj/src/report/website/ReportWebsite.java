@@ -47,15 +47,31 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -85,6 +101,7 @@ public class ReportWebsite extends Report {
 	public String placeDisplayFormat = "all";
 	public String secondaryLanguage = "en";
     public boolean removeAllFiles = false;
+    public boolean incrementalUpdate = false;
 
 	/** Base source file of the css */
 	protected static final String cssBaseFile = "html/style.css";
@@ -108,6 +125,12 @@ public class ReportWebsite extends Report {
 	
     /** Collecting data to the index */
     protected List<Indi> personsWithImage = null;
+
+    /** Hashes of the pages' content - from the last run and for this run, if updating incrementally */
+    protected static final String PAGE_HASHES_FILE = "pages.md5";
+    protected Properties lastPageHashes = null;
+    protected Properties pageHashes = null;
+    protected byte[] pageHashSalt = null;
     
     /** Used for handling note and sources on a person/item */
     protected Element sourceDiv = null;
@@ -151,7 +174,7 @@ public class ReportWebsite extends Report {
 		
 		// Reset some variables
 		sosaStradonitzNumber = new HashMap<String, String>();
-		personsWithImage = new ArrayList<Indi>();
+		personsWithImage = Collections.synchronizedList(new ArrayList<Indi>());
 
 		// Ask for info
 		
@@ -162,8 +185,8 @@ public class ReportWebsite extends Report {
 		// make sure directory exists
 		destDir.mkdirs();
 		
-		// Ask if ok to overwrite if there were files
-		if (destDir.list().length > 0) {
+		// Ask if ok to overwrite if there were files - updating is what we're asked to do otherwise
+		if (!incrementalUpdate && destDir.list().length > 0) {
 			if (! getOptionFromUser(translateLocal("qOverwrite"), OPTION_OKCANCEL)) 
 				return; // Operation canceled by user
 		}
@@ -184,12 +207,20 @@ public class ReportWebsite extends Report {
 		// Copy the correct background image
 		copyImages(destDir);
 		
+		// Know what's there already
+		lastPageHashes = null;
+		pageHashes = null;
+		if (incrementalUpdate) {
+			lastPageHashes = loadPageHashes();
+			pageHashes = new Properties();
+		}
+		
 		generateFiles(gedcom, rootIndi);
 
 		if (secondaryLocale != null) {
 			Locale defaultLocale = Locale.getDefault();
 			// Reset some variables
-			personsWithImage = new ArrayList<Indi>();
+			personsWithImage = Collections.synchronizedList(new ArrayList<Indi>());
 			// Run again with a new lang setting
 			currentLocale = secondaryLocale;
 			currentLang = secondaryLocale.getLanguage();
@@ -200,6 +231,12 @@ public class ReportWebsite extends Report {
 			currentLocale = null;
 
 		}
+		
+		// Remember what's there now
+		if (pageHashes != null) {
+			deleteStalePages(lastPageHashes, pageHashes);
+			storePageHashes(pageHashes);
+		}
 	}
 
 	  /**
@@ -228,52 +265,31 @@ public class ReportWebsite extends Report {
 	
 	
 	protected void generateFiles(Gedcom gedcom, Indi rootIndi) throws Exception {
-	    // Iterate over all media objects, must be before individuals
+		if (pageHashes != null) pageHashSalt = makePageHashSalt();
+		
+	    // Export all media objects, must be before individuals
 		Entity[] objects = gedcom.getEntities(Gedcom.OBJE, "");
-		for(Entity object : objects) {
-			println("Exporting object " + object.getId());
-			File objeFile = makeDirFor(object.getId());
-			createMultimediaDoc((Media)object).toFile(objeFile, omitXmlDeclaration);
-		}
+		exportPages(objects);
 
-	    // Iterate over all individuals
+	    // Export all individuals, sources, repositories, notes and submitters
 		Entity[] indis = gedcom.getEntities(Gedcom.INDI, "");
-		for(Entity indi : indis) {
-			println("Exporting person " + indi.getId() + " " + getName((Indi)indi));
-			File indiFile = makeDirFor(indi.getId());
-			createIndiDoc((Indi)indi).toFile(indiFile, omitXmlDeclaration);
-		}
-		
-	    // Iterate over all sources
 		Entity[] sources = gedcom.getEntities(Gedcom.SOUR, "");
-		for(Entity source : sources) {
-			println("Exporting source " + source.getId());
-			File sourFile = makeDirFor(source.getId());
-			createSourceDoc((Source)source).toFile(sourFile, omitXmlDeclaration);
-		}
-
-	    // Iterate over all sources
 		Entity[] repos = gedcom.getEntities(Gedcom.REPO, "");
-		for(Entity repo : repos) {
-			println("Exporting repository " + repo.getId());
-			File repoFile = makeDirFor(repo.getId());
-			createRepoDoc((Repository)repo).toFile(repoFile, omitXmlDeclaration);
-		}
-
-	    // Iterate over all notes
 		Entity[] notes = gedcom.getEntities(Gedcom.NOTE, "");
-		for(Entity note : notes) {
-			println("Exporting note " + note.getId());
-			File noteFile = makeDirFor(note.getId());
-			createNoteDoc((Note)note).toFile(noteFile, omitXmlDeclaration);
-		}
-
-	    // Iterate over all submitters
 		Entity[] submitters = gedcom.getEntities(Gedcom.SUBM, "");
-		for(Entity submitter : submitters) {
-			println("Exporting submitter " + submitter.getId());
-			File submFile = makeDirFor(submitter.getId());
-			createSubmitterDoc((Submitter)submitter).toFile(submFile, omitXmlDeclaration);
+		List<Entity> entities = new ArrayList<Entity>();
+		entities.addAll(Arrays.asList(indis));
+		entities.addAll(Arrays.asList(sources));
+		entities.addAll(Arrays.asList(repos));
+		entities.addAll(Arrays.asList(notes));
+		entities.addAll(Arrays.asList(submitters));
+		exportPages(entities.toArray(new Entity[entities.size()]));
+		
+		// Keep the gallery in the order of individuals no matter what page was done first
+		Set<Indi> withImage = new HashSet<Indi>(personsWithImage);
+		personsWithImage.clear();
+		for (Entity indi : indis) {
+			if (withImage.contains(indi)) personsWithImage.add((Indi)indi);
 		}
 
 		// Make a start page and indexes
@@ -292,6 +308,211 @@ public class ReportWebsite extends Report {
 	}
 	
 	
+	/**
+	 * Export the pages of entities - pages are independent so they are created 
+	 * in parallel, each worker thread with its own copy of this report
+	 */
+	protected void exportPages(final Entity[] entities) throws Exception {
+		int threads = Math.min(Runtime.getRuntime().availableProcessors(), entities.length);
+		if (threads == 0) return;
+		final AtomicInteger next = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Object>> workers = new ArrayList<Future<Object>>();
+			for (int i = 0; i < threads; i++) {
+				final ReportWebsite worker = (ReportWebsite)clone();
+				workers.add(executor.submit(new Callable<Object>() {
+					public Object call() throws Exception {
+						for (int i = next.getAndIncrement(); i < entities.length; i = next.getAndIncrement()) 
+							worker.exportPage(entities[i]);
+						return null;
+					}
+				}));
+			}
+			for (Future<Object> worker : workers) worker.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) throw (Exception)e.getCause();
+			throw (Error)e.getCause();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Export the page of one entity - unless updating incrementally and the
+	 * page's content is the same as last time
+	 */
+	protected void exportPage(Entity entity) throws Exception {
+		String address = addressTo(entity.getId());
+		File file = makeDirFor(entity.getId());
+		if (pageHashes != null) {
+			String hash = makePageHash(entity);
+			pageHashes.setProperty(address, hash);
+			if (file.exists() && hash.equals(lastPageHashes.getProperty(address))) {
+				// Still in the gallery?
+				if (entity instanceof Indi && new File(file.getParentFile(), "gallery.jpg").exists()) 
+					personsWithImage.add((Indi)entity);
+				return;
+			}
+		}
+		Html html = null;
+		if (entity instanceof Media) {
+			println("Exporting object " + entity.getId());
+			html = createMultimediaDoc((Media)entity);
+		} else if (entity instanceof Indi) {
+			println("Exporting person " + entity.getId() + " " + getName((Indi)entity));
+			html = createIndiDoc((Indi)entity);
+		} else if (entity instanceof Source) {
+			println("Exporting source " + entity.getId());
+			html = createSourceDoc((Source)entity);
+		} else if (entity instanceof Repository) {
+			println("Exporting repository " + entity.getId());
+			html = createRepoDoc((Repository)entity);
+		} else if (entity instanceof Note) {
+			println("Exporting note " + entity.getId());
+			html = createNoteDoc((Note)entity);
+		} else if (entity instanceof Submitter) {
+			println("Exporting submitter " + entity.getId());
+			html = createSubmitterDoc((Submitter)entity);
+		}
+		if (html != null) html.toFile(file, omitXmlDeclaration);
+	}
+
+	/**
+	 * Hash of what goes into the page of an entity - the entity, the entities it 
+	 * references or is referenced by, the members of its families and for 
+	 * individuals the ancestors shown in the tree and the birth place map
+	 */
+	protected String makePageHash(Entity entity) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("MD5");
+		digest.update(pageHashSalt);
+		Set<Entity> digested = new HashSet<Entity>();
+		digestEntity(digest, entity, true, digested);
+		if (entity instanceof Indi) digestAncestors(digest, (Indi)entity, 3, digested);
+		StringBuffer result = new StringBuffer();
+		for (byte b : digest.digest()) {
+			result.append(Character.forDigit((b >> 4) & 0xf, 16));
+			result.append(Character.forDigit(b & 0xf, 16));
+		}
+		return result.toString();
+	}
+
+	protected void digestEntity(MessageDigest digest, Entity entity, boolean followReferences, Set<Entity> digested) throws Exception {
+		if (!digested.add(entity)) return;
+		digest.update(entity.getId().getBytes("UTF-8"));
+		String sosa = sosaStradonitzNumber.get(entity.getId());
+		if (sosa != null) digest.update(sosa.getBytes("UTF-8"));
+		List<Entity> references = new ArrayList<Entity>();
+		digestProperty(digest, entity, references);
+		if (!followReferences) return;
+		// Families are shown with their members
+		for (Entity reference : references) 
+			digestEntity(digest, reference, reference instanceof Fam, digested);
+	}
+
+	protected void digestProperty(MessageDigest digest, Property prop, List<Entity> references) throws Exception {
+		digest.update(prop.getTag().getBytes("UTF-8"));
+		digest.update((byte)0);
+		digest.update(prop.getValue().getBytes("UTF-8"));
+		digest.update((byte)0);
+		if (prop instanceof PropertyXRef) {
+			Entity target = ((PropertyXRef)prop).getTargetEntity();
+			if (target != null) references.add(target);
+		}
+		// Images are copied and shrunk when changed
+		if (prop instanceof PropertyFile) {
+			File file = ((PropertyFile)prop).getFile();
+			if (file != null) digest.update(Long.toString(file.lastModified()).getBytes("UTF-8"));
+		}
+		digest.update((byte)'(');
+		for (int i = 0, j = prop.getNoOfProperties(); i < j; i++) 
+			digestProperty(digest, prop.getProperty(i), references);
+		digest.update((byte)')');
+	}
+
+	protected void digestAncestors(MessageDigest digest, Indi indi, int generations, Set<Entity> digested) throws Exception {
+		if (generations == 0) return;
+		for (Indi parent : new Indi[] { indi.getBiologicalFather(), indi.getBiologicalMother() }) {
+			if (parent == null) continue;
+			digestEntity(digest, parent, false, digested);
+			digestAncestors(digest, parent, generations - 1, digested);
+		}
+	}
+
+	/**
+	 * What all pages depend on - options, language, the year for privacy and the report itself
+	 */
+	protected byte[] makePageHashSalt() throws Exception {
+		StringBuffer salt = new StringBuffer();
+		for (java.lang.reflect.Field field : getClass().getFields()) {
+			if (java.lang.reflect.Modifier.isStatic(field.getModifiers())) continue;
+			Object value = field.get(this);
+			salt.append(field.getName()).append('=');
+			salt.append(value instanceof Object[] ? Arrays.asList((Object[])value) : value).append(';');
+		}
+		salt.append(currentLang).append(';');
+		salt.append(Calendar.getInstance().get(Calendar.YEAR)).append(';');
+		if (getFile() != null) salt.append(getFile().lastModified());
+		return salt.toString().getBytes("UTF-8");
+	}
+
+	protected Properties loadPageHashes() {
+		Properties result = new Properties();
+		File file = new File(destDir, PAGE_HASHES_FILE);
+		if (file.exists()) {
+			InputStream in = null;
+			try {
+				in = new FileInputStream(file);
+				result.load(in);
+			} catch (IOException e) {
+				println("Reading " + file + " failed, updating all pages: " + e.getMessage());
+			} finally {
+				if (in != null) try { in.close(); } catch (IOException e) {}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Delete the pages of the last run that weren't made this time (their
+	 * entities are gone) - with the other files in their directories unless
+	 * a page made this time is still there
+	 */
+	protected void deleteStalePages(Properties lastHashes, Properties hashes) {
+		Set<File> dirsInUse = new HashSet<File>();
+		for (Object address : hashes.keySet())
+			dirsInUse.add(pageFile((String)address).getParentFile());
+		for (Object address : lastHashes.keySet()) {
+			if (hashes.containsKey(address)) continue;
+			File file = pageFile((String)address);
+			if (file.exists()) println("Deleting " + address);
+			file.delete();
+			File dir = file.getParentFile();
+			if (dirsInUse.contains(dir)) continue;
+			File[] files = dir.listFiles();
+			if (files == null) continue;
+			for (File curr : files) {
+				if (!curr.isDirectory()) curr.delete();
+			}
+			// Directories of other entities might be nested in here
+			while (!dir.equals(destDir) && dir.delete())
+				dir = dir.getParentFile();
+		}
+	}
+
+	protected File pageFile(String address) {
+		return new File(destDir, address.replace('/', File.separatorChar));
+	}
+
+	protected void storePageHashes(Properties hashes) throws IOException {
+		OutputStream out = new FileOutputStream(new File(destDir, PAGE_HASHES_FILE));
+		try {
+			hashes.store(out, null);
+		} finally {
+			out.close();
+		}
+	}
+
 	protected void deleteDirContent(File dir, boolean deleteThisDir) {
 		for(String name : dir.list()) {
 			File curr = new File(dir, name);
@@ -337,30 +558,125 @@ public class ReportWebsite extends Report {
 		}
 	}
 
+	/**
+	 * Make the search index - names are in shards by the first two letters of each
+	 * of their words, a manifest tells which file holds which shard. Only pairs of
+	 * shard and person are kept in memory, the entries are written shard by shard.
+	 */
 	protected void makeSearchDataPage(File dir, Entity[] indis) throws IOException {
-		println("Making search data file");
-		File file = new File(dir, "searchData.js");
-		BufferedWriter out = null;
+		println("Making search data files");
+		File searchDir = new File(dir, "search");
+		searchDir.mkdirs();
+		deleteDirContent(searchDir, false);
+
+		// Collect shard and person of each name word
+		List<String> shards = new ArrayList<String>();
+		Map<String, Integer> shardToNumber = new HashMap<String, Integer>();
+		long[] entries = new long[Math.max(16, indis.length)];
+		int numEntries = 0;
+		for (int i = 0; i < indis.length; i++) {
+			Set<String> keys = new HashSet<String>();
+			for (String word : ((Indi)indis[i]).getName().toLowerCase(Locale.ENGLISH).split("[\\s,()\"/._-]+")) {
+				if (word.length() == 0) continue;
+				String key = word.substring(0, Math.min(2, word.length()));
+				if (!keys.add(key)) continue;
+				Integer shard = shardToNumber.get(key);
+				if (shard == null) {
+					shard = new Integer(shards.size());
+					shardToNumber.put(key, shard);
+					shards.add(key);
+				}
+				if (numEntries == entries.length) {
+					long[] grown = new long[entries.length * 2];
+					System.arraycopy(entries, 0, grown, 0, numEntries);
+					entries = grown;
+				}
+				entries[numEntries++] = ((long)shard.intValue() << 32) | i;
+			}
+		}
+		
+		// Number shards in order of their keys and group the entries by shard
+		String[] keys = shards.toArray(new String[shards.size()]);
+		Arrays.sort(keys);
+		int[] rank = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) rank[shardToNumber.get(keys[i]).intValue()] = i;
+		for (int i = 0; i < numEntries; i++) 
+			entries[i] = ((long)rank[(int)(entries[i] >>> 32)] << 32) | (entries[i] & 0xffffffffL);
+		Arrays.sort(entries, 0, numEntries);
+
+		// Write the shards
+		for (int i = 0; i < numEntries; ) {
+			int shard = (int)(entries[i] >>> 32);
+			BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(searchDir, shard + ".js"), false), "UTF-8"));
+			try {
+				out.write("searchShard(" + shard + ",[");
+				for (boolean first = true; i < numEntries && (int)(entries[i] >>> 32) == shard; i++, first = false) {
+					if (!first) out.write(",\n");
+					writeSearchEntry((Indi)indis[(int)entries[i]], out);
+				}
+				out.write("]);\n");
+			} finally {
+				out.close();
+			}
+		}
+
+		// Write the manifest with the shards' keys and the sosa numbers
+		BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(searchDir, "index.js"), false), "UTF-8")); 
 		try {
-			out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, false), "UTF-8")); 
-			out.write("var searchValues = [");
+			out.write("var searchShards = {");
+			for (int i = 0; i < keys.length; i++) {
+				if (i > 0) out.write(",");
+				out.write(jsString(keys[i]) + ":" + i);
+			}
+			out.write("};\n");
+			out.write("var searchSosa = {");
 			boolean first = true;
 			for (Entity indi : indis) {
-				if (!first) {
-					out.write(",");
-					out.newLine();
-				}
-				first = false;
-				String displayName = ((Indi)indi).getName().replace('"', ' ');
-				String simpleName = displayName.toLowerCase();
 				String sosaId = sosaStradonitzNumber.get(indi.getId());
-				if (sosaId == null) sosaId = "";
-				out.write("[\"" + simpleName + "\",\"" + indi.getId().substring(1) + "\",\"" + displayName + "\",\"" + sosaId + "\"]");
+				if (sosaId == null) continue;
+				for (String sosa : sosaId.split(";")) {
+					if (!first) out.write(",");
+					first = false;
+					out.write(jsString(sosa) + ":" + jsId(indi));
+				}
 			}
-			out.write("];");
+			out.write("};\n");
 		} finally {
-			if (out != null) out.close();
+			out.close();
+		}
+	}
+
+	/**
+	 * A person in the search index - [id,name,year of birth,year of death] with 0 for unknown years
+	 */
+	protected void writeSearchEntry(Indi indi, Writer out) throws IOException {
+		int birth = 0, death = 0;
+		if (!isPrivate(indi)) {
+			PropertyDate date = indi.getBirthDate();
+			if (date != null && date.isValid()) birth = date.getStart().getYear();
+			date = indi.getDeathDate();
+			if (date != null && date.isValid()) death = date.getStart().getYear();
+		}
+		out.write("[" + jsId(indi) + "," + jsString(indi.getName()) + "," + birth + "," + death + "]");
+	}
+
+	/** The id of a person without prefix - unquoted if it is a number */
+	protected String jsId(Entity indi) {
+		String id = indi.getId().substring(1);
+		return id.matches("[1-9][0-9]{0,8}") ? id : jsString(id);
+	}
+
+	protected String jsString(String value) {
+		StringBuffer result = new StringBuffer(value.length() + 2);
+		result.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') result.append('\\').append(c);
+			else if (c < ' ') result.append(' ');
+			else result.append(c);
 		}
+		result.append('"');
+		return result.toString();
 	}
 	
 	protected void makeStartpage(Gedcom gedcom, File dir, Entity[] indis, Entity[] sources, Entity[] repos, Indi rootIndi) {
@@ -401,7 +717,7 @@ public class ReportWebsite extends Report {
 		// Search form
 		// In head
 		html.addJSFile(getLocalizedFilename("search.js", currentLocale));
-		html.addJSFile("searchData.js");
+		html.addJSFile("search/index.js");
 		// Here
 		Element searchForm = html.form(null, "javascript:displayResult();", "return displayResult();"); //id, onsubmit
 		Element searchP = html.p(getPropertyName("NAME") + " ");
@@ -2407,4 +2723,4 @@ public class ReportWebsite extends Report {
 	}
 }
 
-	
\ No newline at end of file
+	
\ No newline at end of file
@@ -1,12 +1,44 @@
+// Shards of the search index - loaded when needed
+var searchLoaded = {};
+var searchRequested = {};
+var searchPending = false;
+
+function searchShard(shard, entries) {
+	searchLoaded[shard] = entries;
+	if (searchPending) displayResult();
+}
+
 function displayResult() {
 	var result = document.getElementById('searchResult');
 
-	var searchString = document.getElementById('searchName').value.toLowerCase();
-	var searchStrings = searchString.split(" ");
-	if (searchStrings.length > 1) {
-		searchString = searchStrings[0];
+	var searchStrings = document.getElementById('searchName').value.toLowerCase().split(/[\s,()"\/._\-]+/);
+	if (searchStrings.length > 0 && searchStrings[0] == "") searchStrings.shift();
+	
+	// Find the shards with names that have a word starting like the first search string
+	var shards = [];
+	if (searchStrings.length > 0 && searchStrings[0] != "") {
+		var prefix = searchStrings[0].substring(0, 2);
+		for (var key in searchShards) {
+			if (key.indexOf(prefix) == 0) shards.push(searchShards[key]);
+		}
 	}
 	
+	// Load what's missing - we're back when it's there
+	searchPending = false;
+	for (i = 0; i < shards.length; i++) {
+		if (searchLoaded[shards[i]] == undefined) {
+			searchPending = true;
+			if (! searchRequested[shards[i]]) {
+				searchRequested[shards[i]] = true;
+				var script = document.createElement("script");
+				script.setAttribute("type", "text/javascript");
+				script.setAttribute("src", "search/" + shards[i] + ".js");
+				document.getElementsByTagName("head")[0].appendChild(script);
+			}
+		}
+	}
+	if (searchPending) return false;
+
 	// Clear previous result
 	while (result.hasChildNodes()) { 
 		result.removeChild(result.lastChild);
@@ -16,21 +48,29 @@ function displayResult() {
 
 	// Find and display result
 	var found = false;
-	for (i = 0; i < searchValues.length; i++) {
-		if (searchValues[i][0].match(searchString)) {
+	var seen = {};
+	for (i = 0; i < shards.length; i++) {
+		var entries = searchLoaded[shards[i]];
+		for (j = 0; j < entries.length; j++) {
+			var entry = entries[j];
+			if (seen[entry[0]]) continue;
+			var name = entry[1].toLowerCase();
 			var match = true;
-			if (searchStrings.length > 1) {
-				for(j = 1; j < searchStrings.length; j++){
-					if (! searchValues[i][0].match(searchStrings[j])) {
-						match = false;
-						continue;
-					}
+			for (k = 0; k < searchStrings.length; k++) {
+				if (name.indexOf(searchStrings[k]) < 0) {
+					match = false;
+					break;
 				}
 			}
 			if (match) {
+				seen[entry[0]] = true;
+				var text = entry[1];
+				if (entry[2] != 0 || entry[3] != 0) {
+					text += " (" + (entry[2] != 0 ? entry[2] : "") + "-" + (entry[3] != 0 ? entry[3] : "") + ")";
+				}
 				var link = document.createElement("a");
-				link.setAttribute("href", makeLinkToIndi(searchValues[i][1]));
-				link.appendChild(document.createTextNode(searchValues[i][2]));
+				link.setAttribute("href", makeLinkToIndi(entry[0]));
+				link.appendChild(document.createTextNode(text));
 				resultP.appendChild(link);
 				resultP.appendChild(document.createElement("br"));
 				found = true;
@@ -48,11 +88,10 @@ function displayResult() {
 
 function jumpToSosa() {
 	var sosaId = document.getElementById('searchSosa').value;
-	for (i = 0; i < searchValues.length; i++) {
-		if ((searchValues[i][3] == sosaId) || ((searchValues[i][3].indexOf(";",0) >= 0) && (searchValues[i][3].match("(^|;)"+sosaId+"(;|$)","g")))) {
-			document.location.href = makeLinkToIndi(searchValues[i][1]);
-			return false;
-		}
+	var id = searchSosa[sosaId];
+	if (id != undefined) {
+		document.location.href = makeLinkToIndi(id);
+		return false;
 	}
 	var result = document.getElementById('searchResult');
 	// Write no hits found
@@ -0,0 +1,88 @@
+package genj.common;
+
+import genj.gedcom.Fam;
+import genj.gedcom.Gedcom;
+import genj.gedcom.GedcomException;
+import genj.gedcom.Indi;
+import genj.gedcom.Property;
+import genj.gedcom.PropertyXRef;
+import genj.gedcom.TagPath;
+import genj.gedcom.UnitOfWork;
+import genj.util.swing.SortableTableModel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.table.TableModel;
+
+import junit.framework.TestCase;
+
+/**
+ * Test sorting of a property table
+ */
+public class PropertyTableWidgetTest extends TestCase {
+
+  /**
+   * test rows sorted by references follow a rename of the referenced entity
+   */
+  public void testSortByRenamedReference() throws Exception {
+
+    final Gedcom gedcom = new Gedcom();
+    final List<Fam> fams = new ArrayList<Fam>();
+    final Indi[] husbands = new Indi[3];
+    gedcom.doUnitOfWork(new UnitOfWork() {
+      public void perform(Gedcom gedcom) throws GedcomException {
+        String[] names = { "Adams", "Baker", "Clark" };
+        for (int i=0;i<names.length;i++) {
+          husbands[i] = (Indi)gedcom.createEntity(Gedcom.INDI);
+          husbands[i].setName("John", names[i]);
+          Fam fam = (Fam)gedcom.createEntity(Gedcom.FAM);
+          fam.setHusband(husbands[i]);
+          fams.add(fam);
+        }
+      }
+    });
+
+    // families sorted by husband
+    final TagPath path = new TagPath("FAM:HUSB");
+    PropertyTableWidget widget = new PropertyTableWidget(new AbstractPropertyTableModel(gedcom) {
+      public int getNumCols() {
+        return 1;
+      }
+      public int getNumRows() {
+        return fams.size();
+      }
+      public TagPath getColPath(int col) {
+        return path;
+      }
+      public Property getRowRoot(int row) {
+        return fams.get(row);
+      }
+    });
+    widget.setColumnDirections(new int[]{ SortableTableModel.ASCENDING });
+    assertOrder(widget.getTableModel(), husbands[0], husbands[1], husbands[2]);
+
+    // renaming a husband changes no family but the order
+    gedcom.doUnitOfWork(new UnitOfWork() {
+      public void perform(Gedcom gedcom) {
+        husbands[0].setName("John", "Dean");
+      }
+    });
+    assertOrder(widget.getTableModel(), husbands[1], husbands[2], husbands[0]);
+
+    // a changed family is positioned among the others with fresh keys
+    gedcom.doUnitOfWork(new UnitOfWork() {
+      public void perform(Gedcom gedcom) {
+        husbands[2].setName("John", "Allen");
+      }
+    });
+    assertOrder(widget.getTableModel(), husbands[2], husbands[1], husbands[0]);
+  }
+
+  private void assertOrder(TableModel model, Indi... expected) {
+    assertEquals(expected.length, model.getRowCount());
+    for (int row=0;row<expected.length;row++)
+      assertEquals("row "+row, expected[row], ((PropertyXRef)model.getValueAt(row, 0)).getTargetEntity());
+  }
+
+}
@@ -4,6 +4,7 @@
 package genj.fo;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 
 import javax.xml.transform.TransformerException;
@@ -35,5 +36,109 @@ public class FormatTest extends TestCase {
     // done
   }
   
+  /**
+   * a document spilled to disk has to stream the same as one kept in memory
+   */
+  public void testSpill() throws IOException {
+    
+    int spillFiles = countSpillFiles();
+    
+    ByteArrayOutputStream memory = new ByteArrayOutputStream(), spilled = new ByteArrayOutputStream();
+    new XSLFOFormat().format(fill(new Document("Spill", Integer.MAX_VALUE)), memory);
+    Document doc = fill(new Document("Spill", 0));
+    new XSLFOFormat().format(doc, spilled);
+    
+    assertTrue(memory.size()>100000);
+    assertEquals(memory.toString("UTF-8"), spilled.toString("UTF-8"));
+    
+    // spilled content is gone after formatting
+    assertEquals(spillFiles, countSpillFiles());
+    try {
+      new XSLFOFormat().format(doc, new ByteArrayOutputStream());
+      fail("formatted disposed document");
+    } catch (IOException e) {
+    }
+  }
+  
+  private int countSpillFiles() {
+    String[] files = new File(System.getProperty("java.io.tmpdir")).list();
+    int result = 0;
+    for (int i=0;i<files.length;i++) {
+      if (files[i].startsWith("genj")&&files[i].endsWith(".fo"))
+        result++;
+    }
+    return result;
+  }
+  
+  /**
+   * direct formats have to write the same as their stylesheets
+   */
+  public void testDirectFormats() throws IOException {
+    
+    // newer JDKs limit the size of xpath expressions that fo2html.xsl exceeds
+    System.setProperty("jdk.xml.xpathExprOpLimit", "0");
+    System.setProperty("jdk.xml.xpathExprGrpLimit", "0");
+    System.setProperty("jdk.xml.xpathTotalOpLimit", "0");
+    
+    assertSameOutput(new HTMLFormat(), new DirectHTMLFormat());
+    assertSameOutput(new TXTFormat(), new DirectTXTFormat());
+    assertSameOutput(new CSVFormat(), new DirectCSVFormat());
+  }
+  
+  private void assertSameOutput(Format xslt, Format direct) throws IOException {
+    // a document is formatted once - its spilled content is gone afterwards
+    ByteArrayOutputStream expected = new ByteArrayOutputStream(), actual = new ByteArrayOutputStream();
+    xslt.format(fill(new Document("Direct <&>")), expected);
+    direct.format(fill(new Document("Direct <&>")), actual);
+    assertTrue(expected.size()>0);
+    assertEquals(direct.getFormat(), expected.toString("UTF-8"), actual.toString("UTF-8"));
+  }
+  
+  private Document fill(Document doc) {
+    
+    doc.addTOC();
+    for (int s=0;s<10;s++) {
+      doc.startSection("Section "+s);
+      for (int p=0;p<100;p++) {
+        doc.nextParagraph("start-indent=10pt");
+        doc.addText("Paragraph "+p+" in section "+s+" with ");
+        doc.addText("bold", "font-weight=bold");
+        doc.addIndexTerm("Index", "Term "+(p%7), p%2==0 ? "Sub" : null);
+        doc.addText(" text \u00e4\u00f6\u00fc <&>");
+      }
+      doc.startList();
+      for (int i=0;i<100;i++) {
+        doc.nextListItem("genj:label="+i+")");
+        doc.addText("Item "+i);
+      }
+      doc.endList();
+      doc.startTable("width=100%,border=0.5pt solid black,genj:csv=true");
+      doc.addTableColumn("column-width=20%");
+      doc.addTableColumn("column-width=80%");
+      for (int r=0;r<100;r++) {
+        doc.nextTableCell();
+        doc.addText("A"+r);
+        doc.nextTableCell();
+        doc.addText("B"+r);
+      }
+      doc.endTable();
+    }
+    
+    doc.startSection("Links", "links");
+    doc.addAnchor("anchor");
+    doc.addLink("Back", "anchor");
+    doc.addExternalLink("Home \u00e9", "http://genj.sourceforge.net/a&b c");
+    doc.addText("  preserved  ", "white-space-collapse=false");
+    doc.startTable("genj:csv=true,genj:csvprefix=Prefix,genj:header=true,text-align=end,space-before.optimum=1pt,space-before=2pt");
+    doc.nextTableCell("number-columns-spanned=2");
+    doc.addText("Header");
+    doc.nextTableRow();
+    doc.nextTableCell();
+    doc.nextTableCell();
+    doc.addText("\u00a0");
+    doc.endTable();
+    
+    return doc;
+  }
   
 }
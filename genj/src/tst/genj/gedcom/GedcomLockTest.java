@@ -0,0 +1,212 @@
+package genj.gedcom;
+
+import java.awt.EventQueue;
+
+import junit.framework.TestCase;
+
+/**
+ * Test read-only work and units of work waiting for each other
+ */
+public class GedcomLockTest extends TestCase {
+
+  /**
+   * test a unit of work waits for a reader instead of failing
+   */
+  public void testWriterWaitsForReader() throws Exception {
+
+    final Gedcom gedcom = new Gedcom();
+    final Object reading = new Object();
+    final boolean[] state = new boolean[2];
+
+    // a reader in the background that waits to be told to finish
+    Thread reader = new Thread() {
+      public void run() {
+        try {
+          gedcom.doReadOnlyWork(new UnitOfWork() {
+            public void perform(Gedcom gedcom) throws GedcomException {
+              synchronized (reading) {
+                state[0] = true;
+                reading.notifyAll();
+                try {
+                  reading.wait(5000);
+                } catch (InterruptedException e) {
+                }
+                state[1] = true;
+              }
+            }
+          });
+        } catch (GedcomException e) {
+          fail(e.getMessage());
+        }
+      }
+    };
+    synchronized (reading) {
+      reader.start();
+      while (!state[0])
+        reading.wait();
+      reading.notifyAll();
+    }
+
+    // the writer gets its turn after the reader
+    gedcom.doUnitOfWork(new UnitOfWork() {
+      public void perform(Gedcom gedcom) throws GedcomException {
+        assertTrue("reader not done", state[1]);
+        gedcom.createEntity(Gedcom.INDI);
+      }
+    });
+    reader.join();
+    assertEquals(1, gedcom.getEntities(Gedcom.INDI).size());
+
+    // and can be undone
+    gedcom.undoUnitOfWork();
+    assertEquals(0, gedcom.getEntities(Gedcom.INDI).size());
+  }
+
+  /**
+   * test a unit of work on the event dispatch thread gives up on a reader
+   * that waits for the event dispatch thread (e.g. a report with output)
+   */
+  public void testWriterOnEDTGivesUp() throws Exception {
+
+    final Gedcom gedcom = new Gedcom();
+    final Object reading = new Object();
+    final boolean[] state = new boolean[3];
+
+    // a reader in the background that needs the event dispatch thread
+    Thread reader = new Thread() {
+      public void run() {
+        try {
+          gedcom.doReadOnlyWork(new UnitOfWork() {
+            public void perform(Gedcom gedcom) throws GedcomException {
+              synchronized (reading) {
+                state[0] = true;
+                reading.notifyAll();
+                try {
+                  reading.wait(5000);
+                } catch (InterruptedException e) {
+                }
+              }
+              try {
+                EventQueue.invokeAndWait(new Runnable() {
+                  public void run() {
+                  }
+                });
+                state[1] = true;
+              } catch (Exception e) {
+                fail(e.getMessage());
+              }
+            }
+          });
+        } catch (GedcomException e) {
+          fail(e.getMessage());
+        }
+      }
+    };
+    synchronized (reading) {
+      reader.start();
+      while (!state[0])
+        reading.wait();
+    }
+
+    // a writer on the event dispatch thread
+    EventQueue.invokeLater(new Runnable() {
+      public void run() {
+        // let the reader go on while we're waiting
+        synchronized (reading) {
+          reading.notifyAll();
+        }
+        try {
+          gedcom.doUnitOfWork(new UnitOfWork() {
+            public void perform(Gedcom gedcom) {
+            }
+          });
+        } catch (GedcomException e) {
+          state[2] = true;
+        }
+      }
+    });
+
+    // the writer gives up so the reader can finish
+    reader.join(10000);
+    assertTrue("reader not done", state[1]);
+    EventQueue.invokeAndWait(new Runnable() {
+      public void run() {
+      }
+    });
+    assertTrue("writer didn't give up", state[2]);
+  }
+
+  /**
+   * test a unit of work on the event dispatch thread waits for a short reader
+   */
+  public void testWriterOnEDTWaits() throws Exception {
+
+    final Gedcom gedcom = new Gedcom();
+    final boolean[] state = new boolean[2];
+    final Object reading = new Object();
+
+    // a reader that is done soon
+    Thread reader = new Thread() {
+      public void run() {
+        try {
+          gedcom.doReadOnlyWork(new UnitOfWork() {
+            public void perform(Gedcom gedcom) {
+              synchronized (reading) {
+                state[0] = true;
+                reading.notifyAll();
+              }
+              try {
+                Thread.sleep(100);
+              } catch (InterruptedException e) {
+              }
+            }
+          });
+        } catch (GedcomException e) {
+          fail(e.getMessage());
+        }
+      }
+    };
+    synchronized (reading) {
+      reader.start();
+      while (!state[0])
+        reading.wait();
+    }
+
+    EventQueue.invokeAndWait(new Runnable() {
+      public void run() {
+        try {
+          gedcom.doUnitOfWork(new UnitOfWork() {
+            public void perform(Gedcom gedcom) throws GedcomException {
+              gedcom.createEntity(Gedcom.INDI);
+            }
+          });
+          state[1] = true;
+        } catch (GedcomException e) {
+        }
+      }
+    });
+    reader.join();
+    assertTrue("writer failed", state[1]);
+    assertEquals(1, gedcom.getEntities(Gedcom.INDI).size());
+  }
+
+  /**
+   * test a reader can't start a unit of work of its own
+   */
+  public void testReaderCantWrite() throws Exception {
+    final Gedcom gedcom = new Gedcom();
+    gedcom.doReadOnlyWork(new UnitOfWork() {
+      public void perform(Gedcom gedcom) {
+        try {
+          gedcom.doUnitOfWork(new UnitOfWork() {
+            public void perform(Gedcom gedcom) {
+            }
+          });
+          fail("reader became writer");
+        } catch (GedcomException e) {
+        }
+      }
+    });
+  }
+
+}
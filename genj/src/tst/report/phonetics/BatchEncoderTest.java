@@ -0,0 +1,87 @@
+package report.phonetics;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import phonetics.BatchEncoder;
+import phonetics.Phonetics;
+import phonetics.ReportPhonetics;
+
+/**
+ * Test batch encoding against encoding one name at a time
+ */
+public class BatchEncoderTest extends TestCase {
+
+  private final static String[] SURNAMES = {
+    "Smith", "M\u00fcller", "O'Brien", "MacDonald", "Schwarzenegger", "Knight", "Wright",
+    "Phillips", "Pfeiffer", "Kaczmarek", "Stra\u00dfe", "\u00d8lsen", "Hsss", "van Beethoven",
+    "", " ", "123", "\u00c6sir", "Yves", "Xavier"
+  };
+
+  /**
+   * many names with duplicates and gaps - enough for several partitions
+   */
+  private String[] createNames() {
+    String[] names = new String[5000];
+    for (int i=0;i<names.length;i++) {
+      if (i%97==0)
+        continue;
+      names[i] = SURNAMES[i%SURNAMES.length] + (i%7==0 ? "" : Integer.toString(i%1500));
+    }
+    return names;
+  }
+
+  /**
+   * test batches match single encodings for all algorithms
+   */
+  public void testSameAsSingle() {
+    String[] names = createNames();
+    for (int p=0;p<ReportPhonetics.outputFormats.length;p++) {
+      Phonetics phonetics = ReportPhonetics.outputFormats[p];
+      Phonetics single = phonetics.newInstance();
+      for (int parallelism=1;parallelism<=4;parallelism+=3) {
+        BatchEncoder encoder = new BatchEncoder(phonetics);
+        encoder.setParallelism(parallelism);
+        try {
+          String[] codes = encoder.encode(names);
+          for (int i=0;i<names.length;i++)
+            assertEquals(phonetics+" "+names[i], names[i]==null ? null : single.encode(names[i]), codes[i]);
+          // again with the same workers
+          encoder.clear();
+          assertEquals(phonetics.toString(), Arrays.asList(codes), Arrays.asList(encoder.encode(names)));
+        } finally {
+          encoder.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * test cached codes and ranges into a shared output
+   */
+  public void testRanges() {
+    String[] names = createNames();
+    BatchEncoder encoder = new BatchEncoder(ReportPhonetics.outputFormats[0]);
+    try {
+      testRanges(encoder, names);
+    } finally {
+      encoder.close();
+    }
+  }
+
+  private void testRanges(BatchEncoder encoder, String[] names) {
+    String[] expected = encoder.encode(names);
+
+    String[] codes = new String[names.length+10];
+    encoder.encode(names, 0, 1000, codes, 10);
+    encoder.clear();
+    encoder.encode(names, 1000, names.length, codes, 1010);
+    for (int i=0;i<10;i++)
+      assertNull(codes[i]);
+    for (int i=0;i<names.length;i++)
+      assertEquals(expected[i], codes[i+10]);
+
+    assertEquals(expected[1], encoder.encode(names[1]));
+  }
+
+}
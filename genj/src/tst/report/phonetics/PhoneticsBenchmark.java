@@ -0,0 +1,107 @@
+package report.phonetics;
+
+import genj.gedcom.Entity;
+import genj.gedcom.Gedcom;
+import genj.gedcom.Indi;
+import genj.io.GedcomReaderFactory;
+import genj.util.Origin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import phonetics.BatchEncoder;
+import phonetics.Phonetics;
+import phonetics.ReportPhonetics;
+
+/**
+ * Times the phonetic encodings over the surnames of a gedcom - one name at a
+ * time versus batches with and without parallel workers.
+ * <pre>
+ * PhoneticsBenchmark [gedcom] [number of names]
+ * </pre>
+ */
+public class PhoneticsBenchmark {
+
+  private final static int ROUNDS = 5;
+
+  /** length of all codes of single encodings - printed so they can't be optimized away */
+  private static long checksum = 0;
+
+  public static void main(String[] args) throws Exception {
+
+    String file = args.length>0 ? args[0] : "gedcom/royal92.ged";
+    int size = args.length>1 ? Integer.parseInt(args[1]) : 1000000;
+
+    // surnames in gedcom order - repeated as often as needed
+    Gedcom gedcom = GedcomReaderFactory.createReader(Origin.create(new File(file).toURI().toURL()), null).read();
+    List<String> surnames = new ArrayList<String>();
+    for (Entity indi : gedcom.getEntities(Gedcom.INDI))
+      surnames.add(((Indi)indi).getLastName());
+    String[] names = new String[size];
+    for (int i=0;i<size;i++)
+      names[i] = surnames.get(i%surnames.size());
+
+    int cpus = Runtime.getRuntime().availableProcessors();
+    System.out.println(size+" names from "+surnames.size()+" surnames, "+cpus+" processors");
+    System.out.println("algorithm         single  batch(1)  batch("+cpus+")  uncached("+cpus+")  [ns per name]");
+
+    for (int p=0;p<ReportPhonetics.outputFormats.length;p++) {
+      Phonetics phonetics = ReportPhonetics.outputFormats[p];
+      System.out.println(String.format("%-16s %7.1f %9.1f %9.1f %12.1f",
+        phonetics,
+        timeSingle(phonetics.newInstance(), names),
+        timeBatch(phonetics, names, 1, false),
+        timeBatch(phonetics, names, cpus, false),
+        timeBatch(phonetics, names, cpus, true)
+      ));
+    }
+    System.out.println("checksum "+checksum);
+  }
+
+  /**
+   * best time per name encoding names one after the other
+   */
+  private static double timeSingle(Phonetics phonetics, String[] names) {
+    long best = Long.MAX_VALUE;
+    for (int r=0;r<ROUNDS;r++) {
+      long start = System.nanoTime();
+      for (int i=0;i<names.length;i++) {
+        String code = phonetics.encode(names[i]);
+        if (code!=null)
+          checksum += code.length();
+      }
+      best = Math.min(best, System.nanoTime()-start);
+    }
+    return (double)best/names.length;
+  }
+
+  /**
+   * best time per name encoding names in a batch - the cache is cleared
+   * between rounds and the distinct names of an uncached batch are made unique
+   * so every one has to be encoded
+   */
+  private static double timeBatch(Phonetics phonetics, String[] names, int parallelism, boolean uncached) {
+    if (uncached) {
+      String[] unique = new String[names.length];
+      for (int i=0;i<names.length;i++)
+        unique[i] = names[i]+" "+i;
+      names = unique;
+    }
+    long best = Long.MAX_VALUE;
+    BatchEncoder encoder = new BatchEncoder(phonetics);
+    encoder.setParallelism(parallelism);
+    try {
+      for (int r=0;r<ROUNDS;r++) {
+        encoder.clear();
+        long start = System.nanoTime();
+        encoder.encode(names);
+        best = Math.min(best, System.nanoTime()-start);
+      }
+    } finally {
+      encoder.close();
+    }
+    return (double)best/names.length;
+  }
+
+}
@@ -0,0 +1,360 @@
+/**
+ * GenJ - GenealogyJ
+ *
+ * Copyright (C) 1997 - 2005 Nils Meier <nils@meiers.net>
+ *
+ * This piece of code is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package genj.geo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A local read-only gazetteer as created by GeoImport. The file is memory-mapped
+ * and looked up the same way our webservice does (see geoq.php) so that locations
+ * can be resolved without network access.
+ * <pre>
+ *  int     MAGIC
+ *  int     #jurisdictions, then per jurisdiction: country(2) adm1(2) preferred(1) name(utf)
+ *  int     #countries, then per country: country(2) first record(int) #records(int)
+ *  int     #records, then per record (sorted by country and key): key(int) name(int) adm1(2) lat(float) lon(float)
+ *  int     #bytes in string pool, then strings as utf
+ * </pre>
+ * Records of a country are sorted by their normalized key which makes each partition
+ * a flattened trie - all names sharing a prefix are found in one contiguous range.
+ */
+public class Gazetteer {
+
+  /** file identification 'GAZ1' */
+  /*package*/ final static int MAGIC = 0x47415A31;
+
+  /** file suffix */
+  /*package*/ final static String SUFFIX = ".gaz";
+
+  /** size of one record */
+  /*package*/ final static int RECORD_SIZE = 4+4+2+4+4;
+
+  /** folding of accented latin-1 characters starting at \u00c0 */
+  private final static String FOLD =
+    "aaaaaaaceeeeiiii" + // \u00c0-\u00cf
+    "dnooooo\u00d7ouuuuyts" + // \u00d0-\u00df
+    "aaaaaaaceeeeiiii" + // \u00e0-\u00ef
+    "dnooooo\u00f7ouuuuyty";  // \u00f0-\u00ff
+
+  /** file we're reading */
+  private File file;
+
+  /** mapped records and string pool */
+  private ByteBuffer records, pool;
+
+  /** country to partition (first,count) */
+  private Map<String, int[]> partitions = new HashMap<String, int[]>();
+
+  /** countries in order */
+  private List<String> countries = new ArrayList<String>();
+
+  /** normalized jurisdiction names to [country,adm1] */
+  private Map<String, List<String[]>> name2jurisdictions = new HashMap<String, List<String[]>>();
+
+  /** country and adm1 to preferred jurisdiction name */
+  private Map<String, String> code2jurisdiction = new HashMap<String, String>();
+
+  /**
+   * Constructor
+   */
+  public Gazetteer(File file) throws IOException {
+
+    this.file = file;
+
+    FileInputStream in = new FileInputStream(file);
+    try {
+
+      // map it
+      FileChannel channel = in.getChannel();
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+      if (buffer.getInt()!=MAGIC)
+        throw new IOException(file+" is not a gazetteer");
+
+      // read jurisdictions
+      for (int j=0, n=buffer.getInt(); j<n; j++) {
+        String country = getCode(buffer);
+        String adm1 = getCode(buffer);
+        boolean preferred = buffer.get()!=0;
+        String name = getUTF(buffer, buffer.position());
+        buffer.position(buffer.position()+2+(buffer.getShort(buffer.position())&0xFFFF));
+
+        String key = normalize(name);
+        List<String[]> codes = name2jurisdictions.get(key);
+        if (codes==null) {
+          codes = new ArrayList<String[]>(1);
+          name2jurisdictions.put(key, codes);
+        }
+        codes.add(new String[]{ country, adm1 });
+        if (preferred)
+          code2jurisdiction.put(country+adm1, name);
+      }
+
+      // read partitions
+      for (int c=0, n=buffer.getInt(); c<n; c++) {
+        String country = getCode(buffer);
+        partitions.put(country, new int[]{ buffer.getInt(), buffer.getInt() });
+        countries.add(country);
+      }
+      Collections.sort(countries);
+
+      // slice records and pool
+      int size = buffer.getInt()*RECORD_SIZE;
+      records = slice(buffer, size);
+      pool = slice(buffer, buffer.getInt());
+
+    } finally {
+      // the mapping stays valid after the channel is closed
+      in.close();
+    }
+
+    // done
+  }
+
+  /**
+   * slice a buffer from current position
+   */
+  private static ByteBuffer slice(ByteBuffer buffer, int size) throws IOException {
+    if (size<0||size>buffer.remaining())
+      throw new IOException("gazetteer is truncated");
+    ByteBuffer result = buffer.slice();
+    result.limit(size);
+    buffer.position(buffer.position()+size);
+    return result;
+  }
+
+  /**
+   * read a two letter code
+   */
+  private static String getCode(ByteBuffer buffer) {
+    char[] code = new char[]{ (char)buffer.get(), (char)buffer.get() };
+    return code[0]==0 ? "" : new String(code);
+  }
+
+  /**
+   * read a utf string (java's modified utf-8 as written by DataOutput) at given position
+   */
+  private static String getUTF(ByteBuffer buffer, int pos) {
+    int len = buffer.getShort(pos)&0xFFFF;
+    pos += 2;
+    char[] chars = new char[len];
+    int n = 0;
+    for (int end=pos+len; pos<end; ) {
+      int c = buffer.get(pos++)&0xFF;
+      if (c<0x80) {
+        chars[n++] = (char)c;
+      } else if ((c&0xE0)==0xC0) {
+        chars[n++] = (char)(((c&0x1F)<<6) | (buffer.get(pos++)&0x3F));
+      } else {
+        chars[n++] = (char)(((c&0x0F)<<12) | ((buffer.get(pos++)&0x3F)<<6) | (buffer.get(pos++)&0x3F));
+      }
+    }
+    return new String(chars, 0, n);
+  }
+
+  /**
+   * Compare the normalized key in the pool at given position with given bytes
+   * @return &lt;0, 0 or &gt;0 - or 0 if prefix and the key starts with given bytes
+   */
+  private int compare(int pos, byte[] key, boolean prefix) {
+    int len = pool.getShort(pos)&0xFFFF;
+    pos += 2;
+    for (int i=0; i<len && i<key.length; i++) {
+      int d = (pool.get(pos+i)&0xFF) - (key[i]&0xFF);
+      if (d!=0) return d;
+    }
+    if (prefix&&len>=key.length)
+      return 0;
+    return len - key.length;
+  }
+
+  /**
+   * Normalize a name for lookup - lower case without accents and surrounding whitespace
+   */
+  public static String normalize(String name) {
+    name = name.trim();
+    char[] chars = new char[name.length()];
+    for (int i=0; i<chars.length; i++) {
+      char c = Character.toLowerCase(name.charAt(i));
+      if (c>='\u00c0'&&c<='\u00ff') c = FOLD.charAt(c-'\u00c0');
+      chars[i] = c;
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Encode a normalized key the way GeoImport writes it
+   */
+  /*package*/ static byte[] encode(String key) {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(key.length()+2);
+      new DataOutputStream(out).writeUTF(key);
+      byte[] result = out.toByteArray();
+      byte[] bytes = new byte[result.length-2];
+      System.arraycopy(result, 2, bytes, 0, bytes.length);
+      return bytes;
+    } catch (IOException e) {
+      throw new IllegalArgumentException(key);
+    }
+  }
+
+  /**
+   * The file we're reading
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Whether given country is covered
+   */
+  public boolean covers(Country country) {
+    return country!=null && partitions.containsKey(country.getCode());
+  }
+
+  /**
+   * Find all matching locations for given location the same way our webservice does:
+   * the city (with optional trailing '*' for prefix matches) in the first jurisdiction
+   * known and the country given - relaxing jurisdiction first, then country.
+   * @return list of matching locations or null if the city is too short
+   */
+  public List<GeoLocation> query(GeoLocation location) {
+
+    // check city - at least 3 characters
+    String city = location.getCity().trim();
+    boolean prefix = city.endsWith("*");
+    while (city.endsWith("*"))
+      city = city.substring(0, city.length()-1);
+    if (city.length()<3)
+      return null;
+    byte[] key = encode(normalize(city));
+
+    // resolve country and jurisdiction
+    String country = location.getCountry()!=null ? location.getCountry().getCode() : "";
+    String adm1 = "";
+    for (String jurisdiction : location.getJurisdictions()) {
+      if (jurisdiction.trim().length()==0)
+        break;
+      List<String[]> codes = name2jurisdictions.get(normalize(jurisdiction));
+      String[] match = null;
+      int count = 0;
+      if (codes!=null) for (String[] code : codes) {
+        if (country.length()==0||country.equals(code[0])) {
+          match = code;
+          count++;
+        }
+      }
+      if (count==1) {
+        country = match[0];
+        adm1 = match[1];
+        break;
+      }
+    }
+
+    // search with jurisdiction and country, then country only, then all
+    List<GeoLocation> result = new ArrayList<GeoLocation>();
+    while (true) {
+      search(key, prefix, country, adm1, result);
+      if (!result.isEmpty())
+        break;
+      if (adm1.length()>0)
+        adm1 = "";
+      else if (country.length()>0)
+        country = "";
+      else
+        break;
+    }
+
+    // done
+    return result;
+  }
+
+  /**
+   * search all partitions or one for key
+   */
+  private void search(byte[] key, boolean prefix, String country, String adm1, List<GeoLocation> result) {
+
+    if (country.length()>0) {
+      int[] partition = partitions.get(country);
+      if (partition!=null)
+        search(key, prefix, country, partition[0], partition[1], adm1, result);
+    } else {
+      for (String c : countries) {
+        int[] partition = partitions.get(c);
+        search(key, prefix, c, partition[0], partition[1], adm1, result);
+      }
+    }
+
+  }
+
+  /**
+   * search one partition for key
+   */
+  private void search(byte[] key, boolean prefix, String country, int first, int count, String adm1, List<GeoLocation> result) {
+
+    // binary search for the first record not less than key
+    int lo = first, hi = first+count;
+    while (lo<hi) {
+      int mid = (lo+hi)>>>1;
+      if (compare(records.getInt(mid*RECORD_SIZE), key, false)<0)
+        lo = mid+1;
+      else
+        hi = mid;
+    }
+
+    // collect all records matching
+    int start = result.size();
+    for (int r=lo; r<first+count; r++) {
+      int pos = r*RECORD_SIZE;
+      if (compare(records.getInt(pos), key, prefix)!=0)
+        break;
+      String code = new String(new char[]{ (char)records.get(pos+8), (char)records.get(pos+9) });
+      if (adm1.length()>0&&!adm1.equals(code))
+        continue;
+      GeoLocation hit = new GeoLocation(getUTF(pool, records.getInt(pos+4)), code2jurisdiction.get(country+code), Country.get(country));
+      hit.setCoordinate(records.getFloat(pos+10), records.getFloat(pos+14));
+      result.add(hit);
+    }
+
+    // keep the webservice's order - by jurisdiction then city
+    Collections.sort(result.subList(start, result.size()), new Comparator<GeoLocation>() {
+      public int compare(GeoLocation a, GeoLocation b) {
+        String ja = a.getJurisdictions().isEmpty() ? "" : a.getJurisdictions().get(0);
+        String jb = b.getJurisdictions().isEmpty() ? "" : b.getJurisdictions().get(0);
+        int i = ja.compareTo(jb);
+        return i!=0 ? i : a.getCity().compareTo(b.getCity());
+      }
+    });
+
+  }
+
+} //Gazetteer
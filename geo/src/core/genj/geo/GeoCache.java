@@ -0,0 +1,417 @@
+/**
+ * GenJ - GenealogyJ
+ *
+ * Copyright (C) 1997 - 2005 Nils Meier <nils@meiers.net>
+ *
+ * This piece of code is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package genj.geo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+/**
+ * A persistent cache of geo locations shared by all Gedcom files. Locations are
+ * appended to a log file as (jurisdictions, lat, lon, matches) - the latest record
+ * for jurisdictions wins. An in-memory open addressing index maps hashes of
+ * jurisdictions to offsets of records in the log, recently used records are
+ * kept in memory. New records are written in batches and the log is compacted
+ * when it contains too many superseded records.
+ */
+public class GeoCache {
+
+  /** file identification 'GEOC' */
+  private final static int MAGIC = 0x47454F43;
+
+  /** number of records kept in memory */
+  private final static int HOT_SIZE = 4096;
+
+  /** number of records written at once */
+  private final static int BATCH_SIZE = 256;
+
+  /** minimum number of records before compacting */
+  private final static int COMPACT_SIZE = 1024;
+
+  /** the log file */
+  private File file;
+  private RandomAccessFile log;
+
+  /** end of last good record in log */
+  private long length;
+
+  /** index of key hashes to record offsets */
+  private long[] hashes = new long[1024], offsets = new long[1024];
+
+  /** number of keys in index and number of records in log */
+  private int keys, records;
+
+  /** records recently used */
+  private Map<String, Cached> hot = new LinkedHashMap<String, Cached>(256, 0.75F, true) {
+    protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+      return size()>HOT_SIZE;
+    }
+  };
+
+  /** records not written yet */
+  private Map<String, Cached> pending = new LinkedHashMap<String, Cached>();
+
+  /**
+   * Constructor
+   */
+  public GeoCache(File file) throws IOException {
+
+    this.file = file;
+
+    File dir = file.getParentFile();
+    if (dir!=null&&!dir.exists()&&!dir.mkdirs())
+      throw new IOException("can't create "+dir);
+
+    // interrupted while swapping in a compacted log?
+    File bak = getBackup();
+    if (!file.exists()&&bak.exists())
+      bak.renameTo(file);
+
+    open();
+
+    // compact right away?
+    if (isWasteful())
+      compact();
+  }
+
+  /**
+   * open log and build index
+   */
+  private void open() throws IOException {
+
+    log = new RandomAccessFile(file, "rw");
+
+    // fresh or unknown file?
+    if (log.length()<4||log.readInt()!=MAGIC) {
+      log.setLength(0);
+      log.writeInt(MAGIC);
+      length = 4;
+      return;
+    }
+
+    // read all complete records
+    long size = log.length();
+    byte[] value = new byte[8+8+4];
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64*1024));
+    try {
+      in.skipBytes(4);
+      length = 4;
+      while (true) {
+        int len = in.readUnsignedShort();
+        // record cut short by a crash?
+        if (length+2+len+value.length>size)
+          break;
+        byte[] key = new byte[len];
+        in.readFully(key);
+        in.readFully(value);
+        index(hash(key), length);
+        length += 2+len+value.length;
+      }
+    } catch (EOFException e) {
+      // partial record header at end
+    } finally {
+      in.close();
+    }
+
+    // truncate anything after the last complete record
+    if (log.length()>length)
+      log.setLength(length);
+
+    // done
+  }
+
+  /**
+   * Whether log contains a lot of superseded records
+   */
+  private boolean isWasteful() {
+    return records>COMPACT_SIZE && records>2*keys;
+  }
+
+  /**
+   * Lookup a location's coordinate and matches by its jurisdictions
+   * @return true if found
+   */
+  public synchronized boolean get(GeoLocation location) {
+
+    String key = location.getJurisdictionsAsString();
+
+    // in memory?
+    Cached entry = pending.get(key);
+    if (entry==null)
+      entry = hot.get(key);
+
+    // in log?
+    if (entry==null) {
+      long offset = lookup(hash(encode(key)));
+      if (offset<0)
+        return false;
+      try {
+        entry = read(offset, key);
+      } catch (IOException e) {
+        GeoService.LOG.warning("can't read cached location from "+file+" ("+e.getMessage()+")");
+      }
+      if (entry==null)
+        return false;
+      hot.put(key, entry);
+    }
+
+    // restore it
+    location.setCoordinate(entry.lat, entry.lon);
+    location.setMatches(entry.matches);
+    return true;
+  }
+
+  /**
+   * Remember a location's coordinate and matches - written with the next batch
+   */
+  public synchronized void put(GeoLocation location) {
+    Coordinate coord = location.getCoordinate();
+    Cached entry = new Cached(coord.y, coord.x, location.getMatches());
+    String key = location.getJurisdictionsAsString();
+    pending.put(key, entry);
+    hot.put(key, entry);
+    if (pending.size()>=BATCH_SIZE)
+      flush();
+  }
+
+  /**
+   * Write all pending records
+   */
+  public synchronized void flush() {
+
+    if (pending.isEmpty())
+      return;
+
+    try {
+
+      // encode all records into one block
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(pending.size()*64);
+      DataOutputStream out = new DataOutputStream(bytes);
+      long[] hashes = new long[pending.size()];
+      long[] offsets = new long[pending.size()];
+      int i = 0;
+      for (Map.Entry<String, Cached> record : pending.entrySet()) {
+        byte[] key = encode(record.getKey());
+        hashes[i] = hash(key);
+        offsets[i] = length+out.size();
+        write(out, key, record.getValue());
+        i++;
+      }
+
+      // append and index
+      log.seek(length);
+      log.write(bytes.toByteArray());
+      length += bytes.size();
+      for (i=0; i<hashes.length; i++)
+        index(hashes[i], offsets[i]);
+
+    } catch (IOException e) {
+      GeoService.LOG.warning("can't write cached locations to "+file+" ("+e.getMessage()+")");
+    }
+    pending.clear();
+
+    // time to compact?
+    if (isWasteful()) try {
+      compact();
+    } catch (IOException e) {
+      GeoService.LOG.warning("can't compact "+file+" ("+e.getMessage()+")");
+    }
+
+    // done
+  }
+
+  /**
+   * Rewrite log with latest records only
+   */
+  private void compact() throws IOException {
+
+    File tmp = new File(file.getPath()+".tmp");
+    long[] compacted = new long[offsets.length];
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64*1024));
+    try {
+      out.writeInt(MAGIC);
+      for (int i=0; i<hashes.length; i++) {
+        if (hashes[i]==0)
+          continue;
+        log.seek(offsets[i]);
+        byte[] key = new byte[log.readUnsignedShort()];
+        log.readFully(key);
+        compacted[i] = out.size();
+        write(out, key, new Cached(log.readDouble(), log.readDouble(), log.readInt()));
+      }
+    } finally {
+      out.close();
+    }
+
+    // swap files - where renaming over an existing file isn't possible
+    // the old log is kept as a backup until the compacted one is in place
+    log.close();
+    if (!tmp.renameTo(file)) {
+      File bak = getBackup();
+      bak.delete();
+      if (!file.renameTo(bak)||!tmp.renameTo(file)) {
+        if (!file.exists())
+          bak.renameTo(file);
+        tmp.delete();
+        log = new RandomAccessFile(file, "rw");
+        throw new IOException("can't replace "+file);
+      }
+      bak.delete();
+    }
+    log = new RandomAccessFile(file, "rw");
+    length = log.length();
+    offsets = compacted;
+    records = keys;
+
+    GeoService.LOG.fine("compacted "+file+" to "+keys+" locations");
+  }
+
+  /**
+   * the old log while it's being replaced by a compacted one
+   */
+  private File getBackup() {
+    return new File(file.getPath()+".bak");
+  }
+
+  /**
+   * Write all pending records and close the log
+   */
+  public synchronized void close() {
+    flush();
+    try {
+      log.close();
+    } catch (IOException e) {
+    }
+  }
+
+  /**
+   * read a record at given offset
+   * @return entry or null if the record has a different key
+   */
+  private Cached read(long offset, String key) throws IOException {
+    log.seek(offset);
+    if (!key.equals(log.readUTF()))
+      return null;
+    return new Cached(log.readDouble(), log.readDouble(), log.readInt());
+  }
+
+  /**
+   * write a record
+   */
+  private static void write(DataOutputStream out, byte[] key, Cached entry) throws IOException {
+    out.writeShort(key.length);
+    out.write(key);
+    out.writeDouble(entry.lat);
+    out.writeDouble(entry.lon);
+    out.writeInt(entry.matches);
+  }
+
+  /**
+   * encode key as modified utf-8 without length
+   */
+  private static byte[] encode(String key) {
+    return Gazetteer.encode(key);
+  }
+
+  /**
+   * 64-bit FNV-1a hash of key (never 0 which marks empty slots)
+   */
+  private static long hash(byte[] key) {
+    long result = 0xcbf29ce484222325L;
+    for (int i=0; i<key.length; i++) {
+      result ^= key[i]&0xFF;
+      result *= 0x100000001b3L;
+    }
+    return result==0 ? 1 : result;
+  }
+
+  /**
+   * find offset for hash
+   * @return offset or -1
+   */
+  private long lookup(long hash) {
+    int mask = hashes.length-1;
+    for (int i=(int)(hash^(hash>>>32))&mask; hashes[i]!=0; i=(i+1)&mask) {
+      if (hashes[i]==hash)
+        return offsets[i];
+    }
+    return -1;
+  }
+
+  /**
+   * index offset for hash
+   */
+  private void index(long hash, long offset) {
+
+    records++;
+
+    // grow?
+    if ((keys+1)*4>hashes.length*3) {
+      long[] oldHashes = hashes, oldOffsets = offsets;
+      hashes = new long[oldHashes.length*2];
+      offsets = new long[oldHashes.length*2];
+      keys = 0;
+      for (int i=0; i<oldHashes.length; i++) {
+        if (oldHashes[i]!=0)
+          slot(oldHashes[i], oldOffsets[i]);
+      }
+    }
+
+    slot(hash, offset);
+  }
+
+  private void slot(long hash, long offset) {
+    int mask = hashes.length-1;
+    int i = (int)(hash^(hash>>>32))&mask;
+    while (hashes[i]!=0&&hashes[i]!=hash)
+      i = (i+1)&mask;
+    if (hashes[i]==0)
+      keys++;
+    hashes[i] = hash;
+    offsets[i] = offset;
+  }
+
+  /**
+   * A cached coordinate and match count
+   */
+  private static class Cached {
+    private double lat, lon;
+    private int matches;
+    private Cached(double lat, double lon, int matches) {
+      this.lat = lat;
+      this.lon = lon;
+      this.matches = matches;
+    }
+  } //Cached
+
+} //GeoCache
@@ -0,0 +1,276 @@
+/**
+ * GenJ - GenealogyJ
+ *
+ * Copyright (C) 1997 - 2005 Nils Meier <nils@meiers.net>
+ *
+ * This piece of code is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package genj.geo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * A spatial index of valid locations - a uniform grid over lon/lat with
+ * support for clustering locations that are closer than a given distance
+ */
+/*package*/ class GeoIndex {
+
+  /** size of a grid cell in degrees */
+  private final static double CELL = 1.0;
+
+  /** cells with locations */
+  private Map<Long, List<GeoLocation>> cells = new HashMap<Long, List<GeoLocation>>();
+
+  /** cell of each location */
+  private Map<GeoLocation, Long> location2cell = new HashMap<GeoLocation, Long>();
+
+  /** last clustering - in a grid of cells of cluster size */
+  private Map<Long, List<GeoLocation>> clusters;
+  private double clusterSize;
+
+  /**
+   * key of cell for coordinate
+   */
+  private static Long cell(double x, double y, double size) {
+    return cell((long)Math.floor(x/size), (long)Math.floor(y/size));
+  }
+
+  /**
+   * key of cell for grid position
+   */
+  private static Long cell(long x, long y) {
+    return new Long( (x<<32) + (y&0xFFFFFFFFL) );
+  }
+
+  /**
+   * add location to its cell
+   */
+  private static Long add(Map<Long, List<GeoLocation>> cells, double size, GeoLocation location) {
+    Coordinate coord = location.getCoordinate();
+    Long cell = cell(coord.x, coord.y, size);
+    List<GeoLocation> locations = cells.get(cell);
+    if (locations==null) {
+      locations = new ArrayList<GeoLocation>(4);
+      cells.put(cell, locations);
+    }
+    locations.add(location);
+    return cell;
+  }
+
+  /**
+   * Add or update a location - invalid locations are removed
+   */
+  public synchronized void put(GeoLocation location) {
+
+    // drop it from where it was
+    remove(location);
+    if (!location.isValid())
+      return;
+
+    // add to cell
+    location2cell.put(location, add(cells, CELL, location));
+    clusters = null;
+  }
+
+  /**
+   * Remove a location
+   */
+  public synchronized void remove(GeoLocation location) {
+    Long cell = location2cell.remove(location);
+    if (cell==null)
+      return;
+    List<GeoLocation> locations = cells.get(cell);
+    locations.remove(location);
+    if (locations.isEmpty())
+      cells.remove(cell);
+    clusters = null;
+  }
+
+  /**
+   * Remove all
+   */
+  public synchronized void clear() {
+    cells.clear();
+    location2cell.clear();
+    clusters = null;
+  }
+
+  /**
+   * Number of locations
+   */
+  public synchronized int size() {
+    return location2cell.size();
+  }
+
+  /**
+   * All locations
+   */
+  public synchronized List<GeoLocation> getLocations() {
+    return new ArrayList<GeoLocation>(location2cell.keySet());
+  }
+
+  /**
+   * Locations inside envelope
+   */
+  public synchronized List<GeoLocation> query(Envelope envelope) {
+    List<GeoLocation> result = new ArrayList<GeoLocation>();
+    query(cells, CELL, envelope, result);
+    return result;
+  }
+
+  /**
+   * Locations inside envelope from a grid of cells
+   */
+  private static void query(Map<Long, List<GeoLocation>> cells, double size, Envelope envelope, List<GeoLocation> result) {
+
+    if (envelope.isNull())
+      return;
+
+    // few enough cells to look at one by one?
+    long x1 = (long)Math.floor(envelope.getMinX()/size), x2 = (long)Math.floor(envelope.getMaxX()/size);
+    long y1 = (long)Math.floor(envelope.getMinY()/size), y2 = (long)Math.floor(envelope.getMaxY()/size);
+    if ((double)(x2-x1+1)*(y2-y1+1) < cells.size()) {
+      for (long x=x1; x<=x2; x++) {
+        for (long y=y1; y<=y2; y++) {
+          List<GeoLocation> locations = cells.get(cell(x, y));
+          if (locations!=null)
+            collect(locations, envelope, result);
+        }
+      }
+    } else {
+      for (List<GeoLocation> locations : cells.values())
+        collect(locations, envelope, result);
+    }
+
+  }
+
+  private static void collect(List<GeoLocation> locations, Envelope envelope, List<GeoLocation> result) {
+    for (GeoLocation location : locations) {
+      if (envelope.contains(location.getCoordinate()))
+        result.add(location);
+    }
+  }
+
+  /**
+   * Locations within distance of coordinate - if there are none the members
+   * of the nearest cluster within distance from the last clustering
+   */
+  public synchronized List<GeoLocation> query(Coordinate coord, double distance) {
+
+    Envelope envelope = new Envelope(coord.x-distance, coord.x+distance, coord.y-distance, coord.y+distance);
+
+    List<GeoLocation> result = query(envelope);
+    for (int i=result.size()-1; i>=0; i--) {
+      if (result.get(i).getCoordinate().distance(coord)>distance)
+        result.remove(i);
+    }
+
+    // try clusters
+    if (result.isEmpty()&&clusters!=null) {
+      Cluster nearest = null;
+      List<GeoLocation> candidates = new ArrayList<GeoLocation>();
+      query(clusters, clusterSize, envelope, candidates);
+      for (GeoLocation cluster : candidates) {
+        if (!(cluster instanceof Cluster))
+          continue;
+        double d = cluster.getCoordinate().distance(coord);
+        if (d<=distance&&(nearest==null||d<nearest.getCoordinate().distance(coord)))
+          nearest = (Cluster)cluster;
+      }
+      if (nearest!=null)
+        result.addAll(nearest.members);
+    }
+
+    return result;
+  }
+
+  /**
+   * Clustered locations inside envelope - locations closer to each other than
+   * size are aggregated into one cluster, single locations are returned as is
+   */
+  public synchronized List<GeoLocation> cluster(Envelope envelope, double size) {
+
+    // cluster everything for size unless known - each location not clustered
+    // yet takes its unclustered neighbours closer than size from the index
+    if (clusters==null||clusterSize!=size) {
+
+      clusters = new HashMap<Long, List<GeoLocation>>();
+      clusterSize = size;
+
+      Set<GeoLocation> clustered = new HashSet<GeoLocation>(location2cell.size());
+      List<GeoLocation> neighbours = new ArrayList<GeoLocation>();
+      for (GeoLocation location : location2cell.keySet()) {
+        if (!clustered.add(location))
+          continue;
+        Coordinate coord = location.getCoordinate();
+        List<GeoLocation> members = new ArrayList<GeoLocation>(1);
+        members.add(location);
+        neighbours.clear();
+        query(cells, CELL, new Envelope(coord.x-size, coord.x+size, coord.y-size, coord.y+size), neighbours);
+        for (GeoLocation neighbour : neighbours) {
+          if (neighbour.getCoordinate().distance(coord)<size&&clustered.add(neighbour))
+            members.add(neighbour);
+        }
+        add(clusters, size, members.size()==1 ? location : new Cluster(members));
+      }
+    }
+
+    // clusters inside envelope
+    List<GeoLocation> result = new ArrayList<GeoLocation>();
+    query(clusters, clusterSize, envelope, result);
+    return result;
+  }
+
+  /**
+   * An aggregation of locations shown at their center
+   */
+  /*package*/ static class Cluster extends GeoLocation {
+
+    private List<GeoLocation> members;
+
+    private Cluster(List<GeoLocation> members) {
+      super(Collections.min(members).getCity()+" (+"+(members.size()-1)+")", null, null);
+      this.members = members;
+
+      double x = 0, y = 0;
+      for (GeoLocation member : members) {
+        x += member.getCoordinate().x;
+        y += member.getCoordinate().y;
+      }
+      setCoordinate(y/members.size(), x/members.size());
+    }
+
+    /** identity */
+    public boolean equals(Object obj) {
+      return this==obj;
+    }
+
+    /** identity */
+    public int hashCode() {
+      return System.identityHashCode(this);
+    }
+
+  } //Cluster
+
+} //GeoIndex
@@ -52,6 +52,9 @@ import com.vividsolutions.jump.feature.FeatureSchema;
  */
 public class GeoLocation extends Point implements Feature, Comparable {
 
+  /** order of properties */
+  private final static PropertyComparator BY_DATE = new PropertyComparator(".:DATE");
+  
   /** "locale to displayCountries to country-codes"*/
   private static Map<String, Map<String,String>> locale2displayCountry2code = new HashMap<String, Map<String,String>>();
   
@@ -325,7 +328,22 @@ public class GeoLocation extends Point implements Feature, Comparable {
       if (!properties.contains(prop))
         properties.add(prop);
     }
-    Collections.sort(properties, new PropertyComparator(".:DATE"));
+    Collections.sort(properties, BY_DATE);
+  }
+  
+  /**
+   * Add a property keeping properties in order of date
+   */
+  /*package*/ void addProperty(Property prop) {
+    int pos = Collections.binarySearch(properties, prop, BY_DATE);
+    properties.add(pos<0 ? -pos-1 : pos+1, prop);
+  }
+  
+  /**
+   * Remove a property
+   */
+  /*package*/ void removeProperty(Property prop) {
+    properties.remove(prop);
   }
   
   /**
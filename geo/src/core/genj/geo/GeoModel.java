@@ -23,19 +23,26 @@ import genj.gedcom.Entity;
 import genj.gedcom.Gedcom;
 import genj.gedcom.GedcomListener;
 import genj.gedcom.Property;
+import genj.gedcom.PropertyPlace;
+import genj.util.DirectAccessTokenizer;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -50,16 +57,37 @@ import com.vividsolutions.jts.geom.Coordinate;
 
   private final static Logger LOG = Logger.getLogger("genj.geo");
   
+  /** maximum number of locations per webservice request */
+  /*package*/ final static int BATCH_SIZE = 100;
+  
+  /** number of concurrent webservice requests */
+  /*package*/ final static int THREADS = 4;
+  
   /** state */
+  private GeoService service;
   private List<GeoModelListener> listeners = new CopyOnWriteArrayList<GeoModelListener>();
   private Gedcom gedcom;
   private Map<GeoLocation,GeoLocation> locations = new HashMap<GeoLocation, GeoLocation>();
+  
+  /** parsed locations by place - kept even when not referenced anymore */
+  private Map<String,GeoLocation> place2location = new HashMap<String, GeoLocation>();
+  
+  /** location of each event */
+  private Map<Property,GeoLocation> event2location = new HashMap<Property, GeoLocation>();
   private Worker worker = new Worker();
   
   /**
    * Constructor
    */
   public GeoModel() {
+    this(GeoService.getInstance());
+  }
+  
+  /**
+   * Constructor
+   */
+  /*package*/ GeoModel(GeoService service) {
+    this.service = service;
     // start a worker
     Thread t = new Thread(worker);
     t.setDaemon(true);
@@ -94,11 +122,11 @@ import com.vividsolutions.jts.geom.Coordinate;
     if (gedcom!=null) {
       // clear our list of locations
       Collection removed = new ArrayList(locations.keySet());
-      for (Iterator it = removed.iterator(); it.hasNext();)  {
-        GeoLocation loc = (GeoLocation) it.next();
-        locations.remove(loc);
-        fireLocationRemoved(loc);
-      }
+      locations.clear();
+      place2location.clear();
+      event2location.clear();
+      for (Iterator it = removed.iterator(); it.hasNext();)  
+        fireLocationRemoved((GeoLocation) it.next());
       // detach
       gedcom.removeGedcomListener(this);
     }
@@ -109,11 +137,12 @@ import com.vividsolutions.jts.geom.Coordinate;
     // new one?
     if (gedcom!=null) {
       // grab everything again
-      for (Iterator it = GeoLocation.parseEntities(gedcom.getEntities()).iterator(); it.hasNext();) {
-        GeoLocation loc = (GeoLocation) it.next();
-        locations.put(loc, loc);
-        fireLocationAdded(loc);
+      for (Entity entity : gedcom.getEntities()) {
+        for (int p=0; p<entity.getNoOfProperties(); p++) 
+          update(entity.getProperty(p), null);
       }
+      for (GeoLocation loc : locations.keySet())
+        fireLocationAdded(loc);
       // start a resolver
       worker.queue(gedcom, locations.keySet(), false);
       // attach
@@ -130,7 +159,7 @@ import com.vividsolutions.jts.geom.Coordinate;
     loc = (GeoLocation)locations.get(loc);
     if (loc!=null) {
       loc.setCoordinate(coord);
-      GeoService.getInstance().remember(gedcom, loc);
+      service.remember(gedcom, loc);
       fireLocationUpdated(loc);
     }
   }
@@ -206,64 +235,219 @@ import com.vividsolutions.jts.geom.Coordinate;
     listeners.remove((GeoModelListener)Spin.over(l));
   }
 
-  public void gedcomEntityAdded(Gedcom gedcom, Entity entity) {
+  /**
+   * Calculate the key of an event's place 
+   * @return key or null if event has no place
+   */
+  private String getPlace(Property event) {
+    
+    // place or address - same preference as GeoLocation
+    Property plac = event.getProperty("PLAC");
+    if (plac instanceof PropertyPlace) {
+      String value = plac.getValue().trim();
+      if (value.length()==0)
+        return null;
+      // normalize whitespace around jurisdictions
+      StringBuffer result = new StringBuffer(value.length()+1);
+      result.append('P');
+      DirectAccessTokenizer tokens = new DirectAccessTokenizer(value, PropertyPlace.JURISDICTION_SEPARATOR);
+      for (int i=0, j=tokens.count(); i<j; i++) {
+        if (i>0) result.append(PropertyPlace.JURISDICTION_SEPARATOR);
+        result.append(tokens.get(i).trim());
+      }
+      return result.toString();
+    }
+    
+    Property addr = event.getProperty("ADDR");
+    if (addr!=null) {
+      Property city = addr.getProperty("CITY");
+      if (city==null)
+        return null;
+      Property stae = addr.getProperty("STAE"), ctry = addr.getProperty("CTRY");
+      return "A" + city.getDisplayValue().trim() 
+        + '|' + (stae!=null ? stae.getDisplayValue().trim() : "") 
+        + '|' + (ctry!=null ? ctry.getDisplayValue().trim() : "");
+    }
+    
+    return null;
+  }
+  
+  /**
+   * Find the location for a place - each place is parsed once only
+   */
+  private GeoLocation getLocation(String place, Property event) {
     
-    // reparse entities changed
-    Set added = GeoLocation.parseEntities(Collections.singletonList(entity));
+    GeoLocation result = place2location.get(place);
+    if (result==null&&!place2location.containsKey(place)) {
+      try {
+        result = new GeoLocation(event);
+        result.removeProperty(event);
+      } catch (IllegalArgumentException e) {
+        // not a location - remember that as well
+      }
+      place2location.put(place, result);
+    }
+    
+    // use the known instance for the same location
+    if (result!=null) {
+      GeoLocation known = locations.get(result);
+      if (known!=null)
+        result = known;
+    }
     
-    for (Iterator locs = added.iterator(); locs.hasNext(); ) {
-      GeoLocation loc = (GeoLocation)locs.next();
-      GeoLocation old = (GeoLocation)locations.get(loc);
-      if (old!=null) {
-        old.add(loc);
+    return result;
+  }
+  
+  /**
+   * Update the location of an event 
+   * @param event a top-level property of an entity
+   * @param added locations added to the model (null if no notifications wanted)
+   */
+  private void update(Property event, Collection<GeoLocation> added) {
+    
+    GeoLocation old = event2location.get(event);
+    
+    // where is it now?
+    String place = event.getParent()!=null ? getPlace(event) : null;
+    GeoLocation now = place!=null ? getLocation(place, event) : null;
+
+    // same as before?
+    if (old==now) {
+      if (old!=null&&added!=null)
         fireLocationUpdated(old);
+      return;
+    }
+    
+    // release old
+    if (old!=null) {
+      event2location.remove(event);
+      old.removeProperty(event);
+      if (old.getNumProperties()==0) {
+        locations.remove(old);
+        if (added!=null) fireLocationRemoved(old);
       } else {
-        locations.put(loc, loc);
-        fireLocationAdded(loc);
+        if (added!=null) fireLocationUpdated(old);
+      }
+    }
+    
+    // reference new
+    if (now!=null) {
+      event2location.put(event, now);
+      now.addProperty(event);
+      if (!locations.containsKey(now)) {
+        locations.put(now, now);
+        if (added!=null) {
+          fireLocationAdded(now);
+          if (!now.isValid()) added.add(now);
+        }
+      } else {
+        if (added!=null) fireLocationUpdated(now);
       }
     }
     
-    // resolve
-    worker.queue(gedcom, added, true);
+    // done
+  }
+  
+  /**
+   * Update events and resolve what's been added
+   */
+  private void update(Collection<Property> events) {
+    List<GeoLocation> added = new ArrayList<GeoLocation>();
+    for (Property event : events)
+      update(event, added);
+    if (!added.isEmpty())
+      worker.queue(gedcom, added, true);
+  }
+  
+  /**
+   * Find the event (top-level property) for a property
+   */
+  private Property getEvent(Property prop) {
+    if (prop instanceof Entity)
+      return null;
+    while (!(prop.getParent() instanceof Entity)) {
+      prop = prop.getParent();
+      if (prop==null)
+        return null;
+    }
+    return prop;
+  }
+  
+  /**
+   * All events of an entity
+   */
+  private List<Property> getEvents(Entity entity) {
+    List<Property> result = new ArrayList<Property>(entity.getNoOfProperties());
+    for (int p=0; p<entity.getNoOfProperties(); p++) 
+      result.add(entity.getProperty(p));
+    return result;
+  }
+
+  public void gedcomEntityAdded(Gedcom gedcom, Entity entity) {
+    update(getEvents(entity));
   }
 
   public void gedcomEntityDeleted(Gedcom gedcom, Entity entity) {
-    
-    List current = new ArrayList(locations.keySet());
-    for (Iterator locs = current.iterator(); locs.hasNext(); ) {
-      GeoLocation loc = (GeoLocation)locs.next();
-      loc.removeEntity(entity);
-      if (loc.getNumProperties()==0) {
-        locations.remove(loc);
-        fireLocationRemoved(loc);
+    for (Property event : getEvents(entity)) {
+      GeoLocation old = event2location.remove(event);
+      if (old==null)
+        continue;
+      old.removeProperty(event);
+      if (old.getNumProperties()==0) {
+        locations.remove(old);
+        fireLocationRemoved(old);
       } else {
-        fireLocationUpdated(loc);
+        fireLocationUpdated(old);
       }
     }
-    
   }
 
   public void gedcomPropertyAdded(Gedcom gedcom, Property property, int pos, Property added) {
-    gedcomPropertyChanged(gedcom, property);
+    Property event = getEvent(added);
+    if (event!=null)
+      update(Collections.singletonList(event));
   }
 
   public void gedcomPropertyChanged(Gedcom gedcom, Property property) {
-    Entity entity = property.getEntity();
-    gedcomEntityDeleted(gedcom, entity);
-    gedcomEntityAdded(gedcom, entity);
+    Property event = getEvent(property);
+    if (event!=null)
+      update(Collections.singletonList(event));
   }
 
   public void gedcomPropertyDeleted(Gedcom gedcom, Property property, int pos, Property deleted) {
-    gedcomPropertyChanged(gedcom, property);
+    // an event itself or something inside of one
+    Property event = property instanceof Entity ? deleted : getEvent(property);
+    if (event!=null)
+      update(Collections.singletonList(event));
   }
 
   /**
-   * our asynchronous worker
+   * our asynchronous worker - resolves locations from cache inline and
+   * sends what's left to the webservice in concurrent batches
    */
-  private class Worker implements Runnable {
+  private class Worker implements Runnable, ThreadFactory {
     
     private BlockingDeque<Job> jobs = new LinkedBlockingDeque<Job>();
+    
+    /** executor for webservice requests */
+    private ExecutorService executor = Executors.newFixedThreadPool(THREADS, this);
+    
+    /** locations being resolved remotely by key - with all locations waiting for it */
+    private Map<String, List<GeoLocation>> inflight = new HashMap<String, List<GeoLocation>>();
+    
+    /** number of jobs and batches in progress */
+    private int active = 0;
+    
+    /** status of work in progress */
+    private int misses = 0;
+    private GeoServiceException error;
 
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "GeoModel.Worker");
+      t.setDaemon(true);
+      return t;
+    }
+    
     public void run() {
       while (true) try { 
         
@@ -271,37 +455,165 @@ import com.vividsolutions.jts.geom.Coordinate;
         Job job = jobs.takeFirst();
         
         // let folks know
-        fireAsyncResolveStart();
-        
-        // talk to service
-        GeoServiceException gse = null;
+        begin();
         try {
-          GeoService.getInstance().match(job.gedcom, job.locations, job.matchAll);
-        } catch (GeoServiceException ex) {
-          LOG.log(Level.FINE, ex.getMessage(), ex);
-          gse = ex;
+          resolve(job);
+        } finally {
+          end(0, null);
         }
         
-        // update all locations - some might have changed even in case of err
-        int misses = 0;
-        for (GeoLocation location : job.locations) {
-          if (!location.isValid()) misses++;
-          GeoLocation old = (GeoLocation)locations.get(location);
-          if (old!=null) fireLocationUpdated(location);
-        }
-          
-        // let folks know
-        if (gse!=null)
-          fireAsyncResolveEnd(GeoModelListener.ERROR, gse.getMessage());
-        else
-          fireAsyncResolveEnd(misses>0 ? GeoModelListener.SOME_MATCHED : GeoModelListener.ALL_MATCHED, "");
-          
-        
       } catch (Throwable t) {
         LOG.log(Level.WARNING, "throwable in GeoModel.Worker", t);
       }
     }
     
+    /**
+     * resolve a job's locations
+     */
+    private void resolve(Job job) {
+      
+      // one location per key - the others wait for it
+      Map<String, List<GeoLocation>> key2locations = new LinkedHashMap<String, List<GeoLocation>>();
+      for (GeoLocation location : job.locations) {
+        String key = location.getJurisdictionsAsString();
+        List<GeoLocation> same = key2locations.get(key);
+        if (same==null) {
+          same = new ArrayList<GeoLocation>(1);
+          key2locations.put(key, same);
+        }
+        same.add(location);
+      }
+      List<GeoLocation> unique = new ArrayList<GeoLocation>(key2locations.size());
+      for (List<GeoLocation> same : key2locations.values())
+        unique.add(same.get(0));
+      
+      // look into cache inline and show what we've got right away
+      List<GeoLocation> todos = service.matchLocally(job.gedcom, unique);
+      Set<String> todoKeys = new HashSet<String>(todos.size());
+      for (GeoLocation todo : todos)
+        todoKeys.add(todo.getJurisdictionsAsString());
+      for (Map.Entry<String, List<GeoLocation>> entry : key2locations.entrySet()) {
+        if (!todoKeys.contains(entry.getKey()))
+          update(entry.getValue().get(0), entry.getValue());
+      }
+      
+      // no more todos?
+      if (todos.isEmpty() || (todos.size()!=unique.size()&&!job.matchAll) || service.isOffline()) {
+        synchronized (this) {
+          misses += todos.size();
+        }
+        return;
+      }
+      
+      // batch todos that aren't in flight already
+      List<GeoLocation> batch = new ArrayList<GeoLocation>(BATCH_SIZE);
+      for (GeoLocation todo : todos) {
+        String key = todo.getJurisdictionsAsString();
+        synchronized (this) {
+          List<GeoLocation> waiting = inflight.get(key);
+          if (waiting!=null) {
+            waiting.addAll(key2locations.get(key));
+            continue;
+          }
+          inflight.put(key, new ArrayList<GeoLocation>(key2locations.get(key)));
+        }
+        batch.add(todo);
+        if (batch.size()==BATCH_SIZE) {
+          submit(job.gedcom, batch);
+          batch = new ArrayList<GeoLocation>(BATCH_SIZE);
+        }
+      }
+      if (!batch.isEmpty())
+        submit(job.gedcom, batch);
+      
+      // done
+    }
+    
+    /**
+     * send a batch of locations to the webservice
+     */
+    private void submit(final Gedcom gedcom, final List<GeoLocation> batch) {
+      
+      begin();
+      
+      executor.execute(new Runnable() {
+        public void run() {
+          GeoServiceException gse = null;
+          try {
+            service.matchRemotely(gedcom, batch);
+          } catch (GeoServiceException ex) {
+            LOG.log(Level.FINE, ex.getMessage(), ex);
+            gse = ex;
+          } catch (Throwable t) {
+            LOG.log(Level.WARNING, "throwable in GeoModel.Worker", t);
+          }
+          // update all locations waiting - some might have changed even in case of err
+          int misses = 0;
+          for (GeoLocation location : batch) {
+            List<GeoLocation> waiting;
+            synchronized (Worker.this) {
+              waiting = inflight.remove(location.getJurisdictionsAsString());
+            }
+            if (!location.isValid()) 
+              misses += waiting.size();
+            update(location, waiting);
+          }
+          end(misses, gse);
+        }
+      });
+      
+    }
+    
+    /**
+     * update locations from a resolved one
+     */
+    private void update(GeoLocation resolved, List<GeoLocation> same) {
+      for (GeoLocation location : same) {
+        if (location!=resolved&&resolved.isValid()) {
+          location.setCoordinate(resolved.getCoordinate());
+          location.setMatches(resolved.getMatches());
+        }
+        GeoLocation old = (GeoLocation)locations.get(location);
+        if (old!=null) fireLocationUpdated(location);
+      }
+    }
+    
+    /**
+     * track start of work
+     */
+    private void begin() {
+      synchronized (this) {
+        if (active++>0)
+          return;
+        misses = 0;
+        error = null;
+      }
+      fireAsyncResolveStart();
+    }
+    
+    /**
+     * track end of work
+     */
+    private void end(int misses, GeoServiceException gse) {
+      int status;
+      String msg;
+      synchronized (this) {
+        this.misses += misses;
+        if (gse!=null) error = gse;
+        if (--active>0)
+          return;
+        if (error!=null) {
+          status = GeoModelListener.ERROR;
+          msg = error.getMessage();
+        } else {
+          status = this.misses>0 ? GeoModelListener.SOME_MATCHED : GeoModelListener.ALL_MATCHED;
+          msg = "";
+        }
+      }
+      // let folks know
+      fireAsyncResolveEnd(status, msg);
+    }
+    
     void queue(Gedcom gedcom, Collection<GeoLocation> todo, boolean matchAll) {
       jobs.push(new Job(gedcom, todo, matchAll));
     }
@@ -39,8 +39,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -67,6 +69,15 @@ public class GeoService {
   /** maps */
   private List maps;
   
+  /** shared cache of locations */
+  private GeoCache cache;
+  
+  /** local gazetteers */
+  private List<Gazetteer> gazetteers;
+  
+  /** whether to stay away from the webservice */
+  private boolean offline = Boolean.valueOf(EnvironmentChecker.getProperty("genj.geo.offline", "false", "checking for offline geo service")).booleanValue();
+  
   /** our query url */
   private static URL createQueryURL() {
     try {
@@ -80,7 +91,23 @@ public class GeoService {
    * Constructor
    */
   private GeoService() {
-   }
+    this(new File(EnvironmentChecker.getProperty("user.home.genj/geo", GEO_DIR, "looking for geo cache"), "locations.cache"));
+  }
+  
+  /**
+   * Constructor
+   * @param file the shared cache file to use
+   */
+  /*package*/ GeoService(File file) {
+    
+    // open shared cache
+    try {
+      cache = new GeoCache(file);
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "can't open geo cache "+file+" - falling back to per-file properties", e);
+    }
+    
+  }
   
   /**
    * Singleton acces
@@ -121,14 +148,124 @@ public class GeoService {
   }
   
   /**
-   * Find a registry for gedcom file (geo.properties) 
+   * Whether the webservice is not used 
+   */
+  public boolean isOffline() {
+    return offline;
+  }
+  
+  /**
+   * Set whether the webservice is not used - only registry and local gazetteers are consulted then
+   */
+  public void setOffline(boolean set) {
+    offline = set;
+  }
+  
+  /**
+   * Available local gazetteers
+   */
+  private synchronized List<Gazetteer> getGazetteers() {
+    
+    // know all gazetteers already?
+    if (gazetteers==null) {
+      
+      gazetteers = new ArrayList<Gazetteer>();
+      
+      // loop over files 
+      File[] files = getGeoFiles();
+      for (int i=0;i<files.length;i++) {
+        if (files[i].isFile()&&files[i].getName().endsWith(Gazetteer.SUFFIX)) try {
+          gazetteers.add(new Gazetteer(files[i]));
+          LOG.info("using local gazetteer "+files[i]);
+        } catch (Throwable t) {
+          LOG.log(Level.WARNING, "problem reading gazetteer from "+files[i], t);
+        }
+      }
+    }
+    
+    // done
+    return gazetteers;
+  }
+  
+  /**
+   * Find all matching locations for given location in local gazetteers 
+   * @return list of matching locations or null if no local gazetteer can answer
+   */
+  private List<GeoLocation> local(GeoLocation location) {
+    
+    List<Gazetteer> gazetteers = getGazetteers();
+    if (gazetteers.isEmpty())
+      return null;
+    
+    // prefer gazetteers covering the location's country
+    List<GeoLocation> result = null;
+    for (int pass=0; pass<2; pass++) {
+      for (Gazetteer gazetteer : gazetteers) {
+        if ((pass==0)!=gazetteer.covers(location.getCountry()))
+          continue;
+        List<GeoLocation> hits = gazetteer.query(location);
+        if (hits==null)
+          continue;
+        if (result==null)
+          result = hits;
+        else
+          result.addAll(hits);
+      }
+      if (result!=null&&!result.isEmpty())
+        break;
+    }
+    
+    // done
+    return result;
+  }
+  
+  /**
+   * Find a registry for gedcom file (geo.properties) - used by earlier versions
+   * and now only where the shared cache isn't available
+   * @return registry or null if not available
    */
   private Registry getRegistry(Gedcom gedcom) {
+    if (gedcom==null)
+      return null;
     String name = gedcom.getName();
     if (name.endsWith(".ged")) 
       name = name.substring(0, name.length()-".ged".length());
     name = name + ".geo.properties";
-    return Registry.get(gedcom.getOrigin().getFile(name));
+    File file = gedcom.getOrigin().getFile(name);
+    if (file==null||(cache!=null&&!file.exists()))
+      return null;
+    return Registry.get(file);
+  }
+  
+  /**
+   * Restore a location's coordinate from shared cache or gedcom's registry 
+   * @return true if restored
+   */
+  private boolean restore(Registry registry, GeoLocation location) {
+    
+    // in shared cache?
+    if (cache!=null&&cache.get(location))
+      return true;
+    
+    // in registry?
+    if (registry==null)
+      return false;
+    String restored  = registry.get(location.getJurisdictionsAsString(), (String)null);
+    if (restored==null)
+      return false;
+    try {
+      StringTokenizer tokens = new StringTokenizer(restored, ",");
+      location.setCoordinate( Double.parseDouble(tokens.nextToken()), Double.parseDouble(tokens.nextToken()));
+      if (tokens.hasMoreTokens())
+        location.setMatches(Integer.parseInt(tokens.nextToken()));
+    } catch (Throwable t) {
+      return false;
+    }
+    
+    // migrate into cache
+    if (cache!=null)
+      cache.put(location);
+    return true;
   }
   
   /**
@@ -280,6 +417,10 @@ public class GeoService {
    * @return list of matching locations
    */
   public List query(GeoLocation location) throws GeoServiceException {
+    // try local first
+    List<GeoLocation> hits = local(location);
+    if ((hits!=null&&!hits.isEmpty())||offline)
+      return hits!=null ? hits : new ArrayList();
     // run query and grab first result list
     List rows = webservice(URL, Collections.singletonList(location ), true);
     return rows.isEmpty() ?  new ArrayList() : (List)rows.get(0);
@@ -293,29 +434,15 @@ public class GeoService {
    * @return return matched locations
    */
   public Collection<GeoLocation> match(Gedcom gedcom, Collection<GeoLocation> locations, boolean matchAll) throws GeoServiceException {
-
-    // grab registry
-    Registry registry = getRegistry(gedcom);
     
-    // loop over locations try to use registry for matching
-    List matched = new ArrayList(locations.size());
-    List todos = new ArrayList(locations.size());
-    for (Iterator it=locations.iterator(); it.hasNext(); ) {
-      GeoLocation location = (GeoLocation)it.next();
-        // something we can map through the registry or have to add to todo-list?
-        String restored  = registry.get(location.getJurisdictionsAsString(), (String)null);
-        if (restored!=null) try {
-          StringTokenizer tokens = new StringTokenizer(restored, ",");
-        location.setCoordinate( Double.parseDouble(tokens.nextToken()), Double.parseDouble(tokens.nextToken()));
-        if (tokens.hasMoreTokens())
-          location.setMatches(Integer.parseInt(tokens.nextToken()));
-      } catch (Throwable t) {
-      }
-      // fine or still todo?
-      if (location.isValid())
+    // resolve what we can without the webservice
+    List<GeoLocation> todos = matchLocally(gedcom, locations);
+    
+    List<GeoLocation> matched = new ArrayList<GeoLocation>(locations.size());
+    Set<GeoLocation> unmatched = new HashSet<GeoLocation>(todos);
+    for (GeoLocation location : locations) {
+      if (!unmatched.contains(location))
         matched.add(location);
-      else
-        todos.add(location);
     }
     
     // no more todos?
@@ -323,49 +450,134 @@ public class GeoService {
       return matched;
     
     // do a webservice call for all the todos
-    List rows = webservice(URL, todos, true);
+    matched.addAll(matchRemotely(gedcom, todos));
+    
+    // done
+    return matched;
+  }
+  
+  /**
+   * Resolve locations from shared cache and local gazetteers
+   * @param gedcom the gedcom file the locations are for
+   * @param locations the locations to resolve
+   * @return locations that couldn't be resolved
+   */
+  public List<GeoLocation> matchLocally(Gedcom gedcom, Collection<GeoLocation> locations) {
+    
+    // grab registry of earlier versions
+    Registry registry = getRegistry(gedcom);
+    
+    // loop over locations try to use cache for matching
+    List<GeoLocation> todos = new ArrayList<GeoLocation>(locations.size());
+    for (GeoLocation location : locations) {
+      // fine or still todo?
+      if (!restore(registry, location)||!location.isValid())
+        todos.add(location);
+    }
+    
+    // resolve what we can with local gazetteers
+    if (!todos.isEmpty() && !getGazetteers().isEmpty()) {
+      for (Iterator<GeoLocation> it=todos.iterator(); it.hasNext(); ) {
+        GeoLocation todo = it.next();
+        List hits = local(todo);
+        if (hits!=null&&!hits.isEmpty()) {
+          match(gedcom, todo, hits);
+          it.remove();
+        }
+      }
+    }
+    
+    // write what we've learned in one batch
+    if (cache!=null)
+      cache.flush();
     
-    // recheck todos for results
-    for (int i=0; i<todos.size(); i++) {
-      GeoLocation todo  = (GeoLocation)todos.get(i);
+    // done
+    return todos;
+  }
+  
+  /**
+   * Resolve locations with one call to the webservice - nothing is done when offline
+   * @param gedcom the gedcom file the locations are for
+   * @param locations the locations to resolve
+   * @return locations that were resolved
+   */
+  public List<GeoLocation> matchRemotely(Gedcom gedcom, List<GeoLocation> locations) throws GeoServiceException {
+    
+    List<GeoLocation> matched = new ArrayList<GeoLocation>(locations.size());
+    if (locations.isEmpty() || offline)
+      return matched;
+    
+    // do a webservice call for all the locations
+    List rows = webservice(URL, locations, true);
+    
+    // recheck locations for results
+    for (int i=0; i<locations.size(); i++) {
+      GeoLocation todo  = locations.get(i);
       List hits = (List)rows.get(i);
       // no hits no fun
       if (!hits.isEmpty()) {
-        // calculate match by score
-        GeoLocation match = null;
-        int matchScore = -1;
-        for (int h=0;h<hits.size();h++) {
-          GeoLocation hit = (GeoLocation)hits.get(h);
-          int hitScore = 0;
-          if (todo.getCity().equals(hit.getCity())) hitScore+=8;
-          if (todo.getJurisdictions().containsAll(hit.getJurisdictions())) hitScore+=4;
-          if (todo.getCountry()!=null&&todo.getCountry().equals(hit.getCountry())) hitScore+=2;
-          if (Country.HERE.equals(hit.getCountry())) hitScore+=1;
-          if (hitScore>matchScore) {
-            match = hit;
-            matchScore = hitScore;
-          }
-        }
-        // keep it
-        todo.setCoordinate(match.getCoordinate());
-        todo.setMatches(hits.size());
-        remember(gedcom, todo);
+        match(gedcom, todo, hits);
         matched.add(todo);
       }
     }
     
+    // write what we've learned in one batch
+    if (cache!=null)
+      cache.flush();
+    
     // done
     return matched;
   }
+  
+  /**
+   * Match a location against the best scoring of given hits and remember it
+   */
+  private void match(Gedcom gedcom, GeoLocation todo, List hits) {
+    
+    // calculate match by score
+    GeoLocation match = null;
+    int matchScore = -1;
+    for (int h=0;h<hits.size();h++) {
+      GeoLocation hit = (GeoLocation)hits.get(h);
+      int hitScore = 0;
+      if (todo.getCity().equals(hit.getCity())) hitScore+=8;
+      if (todo.getJurisdictions().containsAll(hit.getJurisdictions())) hitScore+=4;
+      if (todo.getCountry()!=null&&todo.getCountry().equals(hit.getCountry())) hitScore+=2;
+      if (Country.HERE.equals(hit.getCountry())) hitScore+=1;
+      if (hitScore>matchScore) {
+        match = hit;
+        matchScore = hitScore;
+      }
+    }
+    
+    // keep it
+    todo.setCoordinate(match.getCoordinate());
+    todo.setMatches(hits.size());
+    store(gedcom, todo);
+  }
 
   /**
    * Remember a specific location's lat and lon
    */
   public void remember(Gedcom gedcom, GeoLocation location) {
-    if (gedcom==null)
+    store(gedcom, location);
+    if (cache!=null)
+      cache.flush();
+  }
+  
+  /**
+   * Store a location's lat and lon in shared cache (or gedcom's registry without)
+   */
+  private void store(Gedcom gedcom, GeoLocation location) {
+    if (cache!=null) {
+      cache.put(location);
+      return;
+    }
+    Registry registry = getRegistry(gedcom);
+    if (registry==null)
       return;
     Coordinate coord = location.getCoordinate();
-    getRegistry(gedcom).put(location.getJurisdictionsAsString(), coord.y + "," + coord.x + "," + location.getMatches());
+    registry.put(location.getJurisdictionsAsString(), coord.y + "," + coord.x + "," + location.getMatches());
   }
   
   /**
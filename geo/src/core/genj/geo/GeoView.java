@@ -55,7 +55,6 @@ import javax.swing.ToolTipManager;
 
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Envelope;
-import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.feature.FeatureCollection;
 import com.vividsolutions.jump.feature.FeatureSchema;
 import com.vividsolutions.jump.workbench.model.FeatureEventType;
@@ -94,6 +93,12 @@ public class GeoView extends View {
   
   /*package*/ final static Resources RESOURCES = Resources.get(GeoView.class);
   
+  /** distance in pixels below which locations are clustered */
+  private final static int CLUSTER_DISTANCE = 20;
+  
+  /** distance in pixels for picking locations with the mouse */
+  private final static int PICK_DISTANCE = 3;
+  
   /** the current map */
   private GeoMap currentMap;
   
@@ -398,6 +403,19 @@ public class GeoView extends View {
       return selection.size();
     }
     
+    /** selection in envelope */
+    public List query(Envelope envelope) {
+      List result = new ArrayList();
+      synchronized (this) {
+        for (Iterator it = selection.iterator(); it.hasNext();) {
+          GeoLocation location = (GeoLocation) it.next();
+          if (envelope.contains(location.getCoordinate())) 
+            result.add(location);
+        }
+      }
+      return result;
+    }
+    
     /** selection access */
     public List getFeatures() {
 //      if (!selection.isEmpty()) {
@@ -412,11 +430,12 @@ public class GeoView extends View {
   } //SelectionLayer
   
   /**
-   * A layer for our model's locations
+   * A layer for our model's locations - locations that are close to each other at 
+   * the current zoom level are shown as one cluster
    */
   private class LocationsLayer extends Layer implements FeatureCollection, GeoModelListener, ActionListener {
     
-    private List locations = new ArrayList();
+    private GeoIndex locations = new GeoIndex();
     
     protected Timer updateTimer;
     
@@ -438,14 +457,17 @@ public class GeoView extends View {
     }
     
     private void reset() {
-      for (Iterator it = model.getLocations().iterator(); it.hasNext(); ) {
-        GeoLocation location = (GeoLocation)it.next();
-        if (location.isValid())
-          locations.add(location);
-      }
+      locations.clear();
+      for (Iterator it = model.getLocations().iterator(); it.hasNext(); ) 
+        locations.put((GeoLocation)it.next());
       updateTimer.start();
     }
     
+    /** locations within distance in pixels of point in model coordinates */
+    public List getLocations(Coordinate coord, int pixels) {
+      return locations.query(coord, pixels/layerPanel.getViewport().getScale());
+    }
+    
     /** initializer */
     protected void initStyles() {
       
@@ -490,15 +512,13 @@ public class GeoView extends View {
 
     /** geo model - a location has been added */
     public void locationAdded(GeoLocation location) {
-      if (location.isValid())
-        locations.add(location);
+      locations.put(location);
       updateTimer.start();
     }
 
     /** geo model - a location has been updated */
     public void locationUpdated(GeoLocation location) {
-      if (location.isValid()&&!locations.contains(location))
-        locations.add(location);
+      locations.put(location);
       updateTimer.start();
     }
 
@@ -525,19 +545,14 @@ public class GeoView extends View {
     
     /** feature collection - feature access */
     public List getFeatures() {
-      return locations;
+      return locations.getLocations();
     }
     
-    /** feature collection - feature access */
+    /** feature collection - feature access clustered for current zoom level */
     public List query(Envelope envelope) {
-      List locations = getFeatures();
-      ArrayList result = new ArrayList(locations.size());
-      for (Iterator it = locations.iterator(); it.hasNext();) {
-        Feature feature = (Feature) it.next();
-        if (feature.getGeometry().getEnvelopeInternal().intersects(envelope)) 
-          result.add(feature);
-      }
-      return result;
+      if (layerPanel==null)
+        return locations.query(envelope);
+      return locations.cluster(envelope, CLUSTER_DISTANCE/layerPanel.getViewport().getScale());
     }
     
   } //LocationsLayer
@@ -555,7 +570,7 @@ public class GeoView extends View {
     
     private List getLocations(MouseEvent event) {
       try {
-        List result = new ArrayList(layerPanel.featuresWithVertex(event.getPoint(), 3,  model.getLocations()));
+        List result = locationLayer.getLocations(getViewport().toModelCoordinate(event.getPoint()), PICK_DISTANCE);
         Collections.sort(result);
         return result;
       } catch (Throwable t) {
@@ -22,7 +22,9 @@ package genj.geo;
 import genj.util.DirectAccessTokenizer;
 import genj.util.Resources;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -31,9 +33,15 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
 
 /**
  * This type knows how to convert geo data file into cvs for genj's geo service 
@@ -41,6 +49,7 @@ import java.util.StringTokenizer;
  *  http://geonames.usgs.gov/geonames/stategaz/index.html
  * and GNS (GEOnet Name Server)
  *  http://earth-info.nga.mil/gns/html/cntry_files.html
+ * Optionally a local gazetteer is written as well (see Gazetteer)
  */
 public class GeoImport {
 
@@ -48,14 +57,17 @@ public class GeoImport {
   private static Parser USGS = new USGSParser(), GNS = new GNSParser(); 
   
   private Writer sqlOut;
+  private GazetteerWriter gazOut;
   private int nLocations,nJurisdictions;
   
   /**
    * Constructor
    */
-  private GeoImport(File out) throws IOException {
+  private GeoImport(File out, File gazetteer) throws IOException {
     this.sqlOut = new OutputStreamWriter(new FileOutputStream(out), UTF8);
     sqlOut.write("SET NAMES utf8; SET CHARACTER SET utf8;");
+    if (gazetteer!=null)
+      gazOut = new GazetteerWriter(gazetteer);
   }
   
   /**
@@ -72,7 +84,7 @@ public class GeoImport {
     
     // check argument
     if (args.length<2) {
-      log("Use : GeoImport [-j create jurisdictions] [path to folder with geodata files from USGS or GNS] [output filename]");
+      log("Use : GeoImport [-j create jurisdictions] [-g gazetteer filename] [path to folder with geodata files from USGS or GNS] [output filename]");
       return;
     }
     
@@ -88,8 +100,15 @@ public class GeoImport {
         files++;
       }
       
+      // gazetteer option?
+      File gazetteer = null;
+      if (args.length>files+3&&args[files].equals("-g")) {
+        gazetteer = new File(args[files+1]);
+        files+=2;
+      }
+      
       // do the import
-      GeoImport gi = new GeoImport(new File(args[files+1]));
+      GeoImport gi = new GeoImport(new File(args[files+1]), gazetteer);
       if (jurisdictions) gi.parseJurisdictions();
       gi.parseFolder(new File(args[files]));
       gi.close();
@@ -127,17 +146,21 @@ public class GeoImport {
         StringTokenizer names = new StringTokenizer(jurisdictions.getString(key), ",");
         for (int n=0; names.hasMoreTokens(); n++) {
           nJurisdictions++;
+          String name = names.nextToken().trim();
           
           sqlOut.write("INSERT INTO jurisdictions VALUES (\"");
           sqlOut.write(country.toLowerCase());
           sqlOut.write("\",\"");
           sqlOut.write(adm1.toLowerCase()); //paranoid as we are
           sqlOut.write("\",\"");
-          sqlOut.write(names.nextToken().trim());
+          sqlOut.write(name);
           sqlOut.write("\",");
           sqlOut.write(n==0 ? '1' : '0');
           sqlOut.write(");");
           
+          if (gazOut!=null)
+            gazOut.addJurisdiction(country.toLowerCase(), adm1.toLowerCase(), name, n==0);
+          
         }
       }
       
@@ -195,6 +218,8 @@ public class GeoImport {
       if (parser.parse(line, filename))  {
         nLocations++;
         parser.write(sqlOut);
+        if (gazOut!=null)
+          gazOut.addLocation(parser.city, parser.state.toLowerCase(), parser.country.toLowerCase(), parser.lat, parser.lon);
       }
       // next
     }
@@ -212,6 +237,10 @@ public class GeoImport {
       sqlOut.close();
       sqlOut = null;
     }      
+    if (gazOut!=null) {
+      gazOut.close();
+      gazOut = null;
+    }
   }
 
   /**
@@ -386,4 +415,143 @@ public class GeoImport {
     
   }
   
+  /**
+   * A writer for a local gazetteer - all locations are collected in memory,
+   * sorted by country and normalized name and written on close
+   */
+  private static class GazetteerWriter {
+    
+    private File file;
+    private List<String[]> jurisdictions = new ArrayList<String[]>();
+    private Map<String, List<Location>> country2locations = new TreeMap<String, List<Location>>();
+    
+    /** constructor */
+    GazetteerWriter(File file) {
+      this.file = file;
+    }
+    
+    /** add a jurisdiction */
+    void addJurisdiction(String country, String adm1, String name, boolean preferred) {
+      jurisdictions.add(new String[]{ country, adm1, name, preferred ? "1" : "0" });
+    }
+    
+    /** add a location */
+    void addLocation(String city, String adm1, String country, float lat, float lon) {
+      List<Location> locations = country2locations.get(country);
+      if (locations==null) {
+        locations = new ArrayList<Location>();
+        country2locations.put(country, locations);
+      }
+      locations.add(new Location(city, adm1, lat, lon));
+    }
+    
+    /** write a two letter code */
+    private void writeCode(DataOutputStream out, String code) throws IOException {
+      out.writeByte(code.length()>0 ? code.charAt(0) : 0);
+      out.writeByte(code.length()>1 ? code.charAt(1) : 0);
+    }
+    
+    /** write it */
+    void close() throws IOException {
+      
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      try {
+        
+        out.writeInt(Gazetteer.MAGIC);
+        
+        // jurisdictions
+        out.writeInt(jurisdictions.size());
+        for (String[] jurisdiction : jurisdictions) {
+          writeCode(out, jurisdiction[0]);
+          writeCode(out, jurisdiction[1]);
+          out.writeByte(jurisdiction[3].equals("1") ? 1 : 0);
+          out.writeUTF(jurisdiction[2]);
+        }
+        
+        // sort each country's locations by key and lay out the string pool
+        Map<String, Integer> pool = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        int poolSize = 0, count = 0;
+        for (List<Location> locations : country2locations.values()) {
+          Collections.sort(locations);
+          for (Location location : locations) {
+            for (int i=0; i<2; i++) {
+              String s = i==0 ? location.key : location.city;
+              Integer offset = pool.get(s);
+              if (offset==null) {
+                offset = new Integer(poolSize);
+                pool.put(s, offset);
+                strings.add(s);
+                poolSize += 2+Gazetteer.encode(s).length;
+              }
+              if (i==0) location.keyOffset = offset.intValue(); else location.cityOffset = offset.intValue();
+            }
+          }
+        }
+        
+        // partitions
+        out.writeInt(country2locations.size());
+        for (Map.Entry<String, List<Location>> entry : country2locations.entrySet()) {
+          writeCode(out, entry.getKey());
+          out.writeInt(count);
+          out.writeInt(entry.getValue().size());
+          count += entry.getValue().size();
+        }
+        
+        // records
+        out.writeInt(count);
+        for (List<Location> locations : country2locations.values()) {
+          for (Location location : locations) {
+            out.writeInt(location.keyOffset);
+            out.writeInt(location.cityOffset);
+            writeCode(out, location.adm1);
+            out.writeFloat(location.lat);
+            out.writeFloat(location.lon);
+          }
+        }
+        
+        // string pool
+        out.writeInt(poolSize);
+        for (String s : strings)
+          out.writeUTF(s);
+        
+      } finally {
+        out.close();
+      }
+      
+      log("Info: Wrote gazetteer "+file+" with "+jurisdictions.size()+" jurisdictions and "+country2locations.size()+" countries");
+    }
+    
+  } //GazetteerWriter
+  
+  /**
+   * A location for the gazetteer ordered by its normalized key
+   */
+  private static class Location implements Comparable<Location> {
+    
+    String city, key, adm1;
+    byte[] bytes;
+    float lat, lon;
+    int keyOffset, cityOffset;
+    
+    Location(String city, String adm1, float lat, float lon) {
+      this.city = city;
+      this.key = Gazetteer.normalize(city);
+      this.bytes = Gazetteer.encode(key);
+      this.adm1 = adm1;
+      this.lat = lat;
+      this.lon = lon;
+    }
+    
+    /** byte-wise comparison as done by Gazetteer */
+    public int compareTo(Location that) {
+      for (int i=0; i<bytes.length && i<that.bytes.length; i++) {
+        int d = (bytes[i]&0xFF) - (that.bytes[i]&0xFF);
+        if (d!=0) return d;
+      }
+      return bytes.length - that.bytes.length;
+    }
+    
+  } //Location
+  
 }
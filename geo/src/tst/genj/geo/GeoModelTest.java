@@ -0,0 +1,214 @@
+/**
+ * GenJ - GenealogyJ
+ *
+ * Copyright (C) 1997 - 2005 Nils Meier <nils@meiers.net>
+ *
+ * This piece of code is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package genj.geo;
+
+import genj.gedcom.Gedcom;
+import genj.gedcom.GedcomException;
+import genj.gedcom.Indi;
+import genj.gedcom.Property;
+import genj.gedcom.UnitOfWork;
+import genj.util.Origin;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Test GeoModel's tracking of locations and resolving them against a local stand-in for the webservice
+ */
+public class GeoModelTest extends TestCase {
+
+  private File cache;
+  private StandIn service;
+
+  /**
+   * Prepare a stand-in service with an empty cache
+   */
+  protected void setUp() throws Exception {
+    cache = File.createTempFile("geo", ".cache");
+    cache.delete();
+    service = new StandIn(cache);
+  }
+
+  /**
+   * Cleanup
+   */
+  protected void tearDown() throws Exception {
+    cache.delete();
+  }
+
+  /**
+   * resolving a gedcom's locations
+   */
+  public void testResolve() throws Exception {
+
+    // 500 individuals in 250 different places
+    Gedcom gedcom = new Gedcom(Origin.create("file://foo.ged"));
+    for (int i=0;i<500;i++) {
+      Indi indi = (Indi)gedcom.createEntity(Gedcom.INDI);
+      Property birt = indi.addProperty("BIRT", "");
+      birt.addProperty("PLAC", "Place"+(i%250)+", Jurisdiction"+(i%250));
+    }
+
+    Listener listener = resolve(gedcom);
+
+    assertEquals(GeoModelListener.ALL_MATCHED, listener.status);
+    assertEquals("one update per location", 250, listener.updated.size());
+    assertEquals("one request per location", 250, service.requested.size());
+    assertTrue("batches are bounded", service.maxBatch<=GeoModel.BATCH_SIZE);
+    assertTrue("batches are concurrent", service.maxConcurrent>1);
+
+    // a second time everything comes from cache
+    service.requested.clear();
+    listener = resolve(gedcom);
+    assertEquals(GeoModelListener.ALL_MATCHED, listener.status);
+    assertEquals(250, listener.updated.size());
+    assertEquals("no requests for cached locations", 0, service.requested.size());
+  }
+
+  /**
+   * incremental updates of locations on gedcom changes
+   */
+  public void testIncremental() throws Exception {
+
+    Gedcom gedcom = new Gedcom(Origin.create("file://foo.ged"));
+    final Indi indi = (Indi)gedcom.createEntity(Gedcom.INDI);
+    final Property birt = indi.addProperty("BIRT", "");
+    birt.addProperty("PLAC", "Lohmar, Nordrhein-Westfalen");
+    Property deat = indi.addProperty("DEAT", "");
+    final Property plac = deat.addProperty("PLAC", "Lohmar ,Nordrhein-Westfalen");
+
+    GeoModel model = new GeoModel(service);
+    model.setGedcom(gedcom);
+
+    // same place with different whitespace is one location
+    assertEquals(1, model.getNumLocations());
+    GeoLocation lohmar = (GeoLocation)model.getLocations().iterator().next();
+    assertEquals(2, lohmar.getNumProperties());
+
+    // change one place
+    gedcom.doUnitOfWork(new UnitOfWork() {
+      public void perform(Gedcom gedcom) {
+        plac.setValue("Siegburg, Nordrhein-Westfalen");
+      }
+    });
+    assertEquals(2, model.getNumLocations());
+    assertEquals(1, lohmar.getNumProperties());
+
+    // delete the other event
+    gedcom.doUnitOfWork(new UnitOfWork() {
+      public void perform(Gedcom gedcom) {
+        indi.delProperty(birt);
+      }
+    });
+    assertEquals(1, model.getNumLocations());
+    assertFalse(model.getLocations().contains(lohmar));
+
+    // delete the individual
+    gedcom.doUnitOfWork(new UnitOfWork() {
+      public void perform(Gedcom gedcom) throws GedcomException {
+        gedcom.deleteEntity(indi);
+      }
+    });
+    assertEquals(0, model.getNumLocations());
+  }
+
+  /**
+   * resolve all locations of gedcom and wait for the result
+   */
+  private Listener resolve(Gedcom gedcom) throws Exception {
+    GeoModel model = new GeoModel(service);
+    Listener listener = new Listener();
+    model.addGeoModelListener(listener);
+    synchronized (listener) {
+      model.setGedcom(gedcom);
+      listener.wait(10000);
+    }
+    model.removeGeoModelListener(listener);
+    return listener;
+  }
+
+  /**
+   * A listener waiting for the end of resolving
+   */
+  private class Listener implements GeoModelListener {
+    private int status = -1;
+    private Set<GeoLocation> updated = Collections.synchronizedSet(new HashSet<GeoLocation>());
+    public void locationAdded(GeoLocation location) {
+    }
+    public void locationUpdated(GeoLocation location) {
+      assertTrue(location.isValid());
+      updated.add(location);
+    }
+    public void locationRemoved(GeoLocation location) {
+    }
+    public void asyncResolveStart() {
+    }
+    public void asyncResolveEnd(int status, String msg) {
+      synchronized (this) {
+        this.status = status;
+        notify();
+      }
+    }
+  }
+
+  /**
+   * A stand-in for the webservice that knows every place
+   */
+  private static class StandIn extends GeoService {
+
+    private Set<String> requested = Collections.synchronizedSet(new HashSet<String>());
+    private int concurrent, maxConcurrent, maxBatch;
+
+    private StandIn(File cache) {
+      super(cache);
+    }
+
+    protected List webservice(URL url, List locations, boolean followRedirect) throws GeoServiceException {
+      synchronized (this) {
+        maxConcurrent = Math.max(maxConcurrent, ++concurrent);
+        maxBatch = Math.max(maxBatch, locations.size());
+      }
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+      }
+      List rows = new ArrayList();
+      for (int i=0;i<locations.size();i++) {
+        GeoLocation location = (GeoLocation)locations.get(i);
+        assertTrue("requested twice", requested.add(location.getJurisdictionsAsString()));
+        GeoLocation hit = new GeoLocation(location.getCity(), null, null);
+        hit.setCoordinate(i, i);
+        rows.add(Collections.singletonList(hit));
+      }
+      synchronized (this) {
+        concurrent--;
+      }
+      return rows;
+    }
+  }
+
+}
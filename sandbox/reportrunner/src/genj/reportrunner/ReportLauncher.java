@@ -1,21 +1,21 @@
 package genj.reportrunner;
 
-import genj.gedcom.Entity;
+import genj.fo.Format;
 import genj.gedcom.Gedcom;
 import genj.gedcom.Indi;
-import genj.io.GedcomReader;
+import genj.report.BatchRunner;
 import genj.report.Report;
 import genj.report.ReportLoader;
-import genj.util.Origin;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
@@ -49,21 +49,26 @@ public class ReportLauncher
     private Map<String, ReportProxy> proxiesByName = new HashMap<String, ReportProxy>();
 
     /**
-     * Currently open gedcom file.
+     * Runs reports in parallel on gedcom files loaded once.
      */
-    private Gedcom gedcom = null;
-
+    private BatchRunner batch;
 
     /**
-     * Currently open gedcom file name.
+     * Initializes the launcher.
      */
-    private String gedcomFile = null;
+    public ReportLauncher()
+    {
+        this(1);
+    }
 
     /**
      * Initializes the launcher.
+     * @param threads  number of reports to run in parallel
      */
-    public ReportLauncher()
+    public ReportLauncher(int threads)
     {
+        batch = new BatchRunner(threads);
+
         // Load reports
         ReportLoader reportLoader = ReportLoader.getInstance();
         Report[] reports = reportLoader.getReports();
@@ -72,62 +77,59 @@ public class ReportLauncher
     }
 
     /**
-     * Runs a report based on specified options.
+     * Submits a report based on specified options - the report runs in parallel
+     * with others, see waitFor().
      * @param options  Options for running a report
      */
     public void runReport(Map<String, String> options) throws ReportRunnerException, IOException
     {
         String reportName = options.get(REPORT_OPTION);
-        ReportRunner.LOG.info("Running report: " + reportName);
+        ReportRunner.LOG.info("Submitting report: " + reportName);
         if (reportName == null)
         	throw new ReportRunnerException("Report name not supplied");
 
-        // get report proxy
-        ReportProxy proxy = getProxy(reportName);
+        Report report = reportsByName.get(reportName);
+        if (report == null)
+            throw new ReportRunnerException("Report " + reportName + " not found");
 
-        // set report options
-        proxy.resetOptions();
+        // collect report options
+        String output = null;
+        Format format = getFormat(options.get(FORMAT_OPTION));
+        Map<String, String> reportOptions = new HashMap<String, String>();
         for (Map.Entry<String, String> entry : options.entrySet())
         {
             String key = entry.getKey();
             if (key.equals(OUTPUT_OPTION))
-                proxy.setOutputFileName(entry.getValue());
-            else if (key.equals(FORMAT_OPTION))
-                proxy.setOutputFormat(entry.getValue());
-            else if (!key.equals(REPORT_OPTION) && !key.equals(GEDCOM_OPTION) && !key.equals(INDIVIDUAL_OPTION) && !key.equals(OUTPUT_DIR_OPTION))
-                proxy.setOption(key, entry.getValue());
+                output = entry.getValue();
+            else if (!key.equals(REPORT_OPTION) && !key.equals(GEDCOM_OPTION) && !key.equals(INDIVIDUAL_OPTION) && !key.equals(OUTPUT_DIR_OPTION) && !key.equals(FORMAT_OPTION))
+                reportOptions.put(key, entry.getValue());
         }
 
-        // If gedcom is not loaded then load it
+        // The gedcom is loaded once for all reports
         String input = options.get(GEDCOM_OPTION);
-        if (input != null && !input.equals(gedcomFile))
-        {
-            Origin origin = Origin.create(new File(input).toURI().toURL());
-            GedcomReader reader = new GedcomReader(origin);
-            gedcom = reader.read();
-            gedcomFile = input;
-        }
+        if (input == null)
+            throw new ReportRunnerException("Gedcom not supplied for report " + reportName);
+        Gedcom gedcom = batch.getGedcom(new File(input));
 
-        Set<Class<?>> contexts = proxy.getContexts();
         Object context = gedcom;
         List<Object> contextList = null;
 
         String indiId = options.get(INDIVIDUAL_OPTION);
-        if (indiId != null && contexts.contains(Indi.class))
+        if (indiId != null)
         {
+            contextList = new ArrayList<Object>();
             if (indiId.matches("\\w*") && !indiId.equals("all"))
             {
-                context = gedcom.getEntity(Gedcom.INDI, indiId);
-                if (context == null)
+                Indi indi = (Indi)gedcom.getEntity(Gedcom.INDI, indiId);
+                if (indi == null)
                 {
                     ReportRunner.LOG.warning("Individual '" + indiId + "' not found");
                     return;
                 }
+                contextList.add(indi);
             }
             else
             {
-                contextList = new ArrayList<Object>();
-
                 // special cases
                 if (indiId.equals("all"))
                     indiId = ".*";
@@ -147,62 +149,90 @@ public class ReportLauncher
                     return;
                 }
             }
+
+            // Only individuals the report accepts
+            int selected = contextList.size();
+            for (Iterator<Object> it = contextList.iterator(); it.hasNext(); )
+            {
+                if (report.accepts(it.next()) == null)
+                    it.remove();
+            }
+
+            // A report not for these individuals runs on the gedcom
+            if (contextList.isEmpty())
+            {
+                if (report.accepts(gedcom) == null)
+                    throw new ReportRunnerException("Report context could not be established for report " + reportName);
+                ReportRunner.LOG.info("Report " + reportName + " doesn't accept the individuals, running it on the gedcom");
+                contextList = null;
+            }
+            else if (contextList.size() < selected)
+                ReportRunner.LOG.warning("Report " + reportName + " doesn't accept " + (selected - contextList.size()) + " of the individuals");
         }
-        else if (!contexts.contains(Gedcom.class))
+        else if (report.accepts(gedcom) == null)
         	throw new ReportRunnerException("Report context could not be established for report " + reportName);
 
         if (contextList != null)
         {
-            int size = contextList.size();
-            ReportRunner.LOG.info("Running report " + size + " times: " + reportName);
-            int count = 0;
+            ReportRunner.LOG.info("Submitting report " + contextList.size() + " times: " + reportName);
             for (Object o : contextList)
-            {
-                count++;
-                if (o instanceof Entity)
-                    ReportRunner.LOG.info("[" + count + "/" + size + "] " + ((Entity)o).getId());
-                else
-                    ReportRunner.LOG.info("[" + count + "/" + size + "]");
-                startReport(proxy, o);
-            }
+                submitReport(report, gedcom, o, reportOptions, output, format);
         }
         else
-            startReport(proxy, context);
+            submitReport(report, gedcom, context, reportOptions, output, format);
     }
 
     /**
-     * @param proxy
-     * @param context
-     * @throws ReportProxyException
+     * Looks up the format for documents of FO-based reports.
+     * @param name  name of the format or null for the default
      */
-    private void startReport(ReportProxy proxy, Object context) throws ReportProxyException
+    private Format getFormat(String name) throws ReportRunnerException
     {
-        // Replace variables in output field
-        String output = proxy.getOutputFileName();
-        if (output != null)
+        if (name == null)
+            return null;
+        for (Format format : Format.getFormats())
         {
-            String newOutput = output;
-            if (context instanceof Indi)
-            {
-                Indi indi = (Indi)context;
-                newOutput = newOutput.replaceAll("\\$i", indi.getId());
-                newOutput = newOutput.replaceAll("\\$n", indi.getName());
-                newOutput = newOutput.replaceAll("\\$f", indi.getFirstName());
-                newOutput = newOutput.replaceAll("\\$l", indi.getLastName());
-            }
-            proxy.setOutputFileName(newOutput);
+            if (format.getFormat().equalsIgnoreCase(name))
+                return format;
+        }
+        throw new ReportRunnerException("Format " + name + " not found, use one of " + getFormats());
+    }
 
-            // Make sure all directories exist
-            File parentDir = new File(newOutput).getParentFile();
-            if (parentDir != null)
-                parentDir.mkdirs();
+    /**
+     * Submits one run of a report.
+     */
+    private void submitReport(Report report, Gedcom gedcom, Object context, Map<String, String> options, String output, Format format) throws ReportRunnerException
+    {
+        // Replace variables in output field
+        if (output != null && context instanceof Indi)
+        {
+            Indi indi = (Indi)context;
+            output = output.replaceAll("\\$i", indi.getId());
+            output = output.replaceAll("\\$n", indi.getName());
+            output = output.replaceAll("\\$f", indi.getFirstName());
+            output = output.replaceAll("\\$l", indi.getLastName());
         }
 
-        proxy.start(context);
+        try
+        {
+            batch.submit(report, gedcom, context, options, output == null ? null : new File(output), format);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new ReportRunnerException(e.getMessage());
+        }
+    }
 
-        // Switch back to original output file name
-        if (output != null)
-            proxy.setOutputFileName(output);
+    /**
+     * Waits for all submitted reports and writes a summary.
+     * @param summary  where to write the summary to or null
+     */
+    public void waitFor(Writer summary) throws InterruptedException, IOException
+    {
+        batch.waitFor();
+        batch.shutdown();
+        if (summary != null)
+            batch.writeSummary(summary);
     }
 
     /**
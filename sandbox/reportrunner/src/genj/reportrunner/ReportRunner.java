@@ -2,9 +2,11 @@ package genj.reportrunner;
 
 import java.io.File;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -38,6 +40,8 @@ public class ReportRunner
     private static final String CONFIG_ARGUMENT = "config";
     private static final String HELP_ARGUMENT = "help";
     private static final String HELP_REPORTS_ARGUMENT = "help-reports";
+    private static final String THREADS_ARGUMENT = "threads";
+    private static final String SUMMARY_ARGUMENT = "summary";
 
     public static final Logger LOG = Logger.getLogger("genj.reportrunner");
 
@@ -62,7 +66,11 @@ public class ReportRunner
             Locale.setDefault(new Locale(language));
         }
 
-        ReportLauncher launcher = new ReportLauncher();
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (arguments.get(THREADS_ARGUMENT) != null)
+            threads = Integer.parseInt(arguments.get(THREADS_ARGUMENT));
+
+        ReportLauncher launcher = new ReportLauncher(threads);
 
         // Display help messages when --help or --help-reports option is provided
         if (arguments.containsKey(HELP_ARGUMENT))
@@ -96,9 +104,22 @@ public class ReportRunner
         List<Map<String, String>> optionsList = getOptionsList(new FileReader(arguments.get(CONFIG_ARGUMENT)), defaults);
 
         // Run the reports
-        LOG.info("Executing " + optionsList.size() + " reports");
+        LOG.info("Executing " + optionsList.size() + " reports on " + threads + " threads");
         for (Map<String, String> options : optionsList)
             launcher.runReport(options);
+
+        // Wait for all and write the summary
+        String summary = arguments.get(SUMMARY_ARGUMENT);
+        Writer out = summary == null ? null : new FileWriter(summary);
+        try
+        {
+            launcher.waitFor(out);
+        }
+        finally
+        {
+            if (out != null)
+                out.close();
+        }
     }
 
     /**
@@ -228,6 +249,14 @@ public class ReportRunner
         opt.setArgName("lang");
         cliOptions.addOption(opt);
 
+        opt = new Option("t", THREADS_ARGUMENT, true, "Number of reports to run in parallel");
+        opt.setArgName("n");
+        cliOptions.addOption(opt);
+
+        opt = new Option("s", SUMMARY_ARGUMENT, true, "Summary of report runs with timings (csv)");
+        opt.setArgName("file");
+        cliOptions.addOption(opt);
+
         opt = new Option(null, HELP_REPORTS_ARGUMENT, false, "Display a list of available reports");
         cliOptions.addOption(opt);
 